@@ -69,6 +69,10 @@ OPARENT: '(';
 
 CPARENT: ')';
 
+OBRACKET: '[';
+
+CBRACKET: ']';
+
 PLUS: '+';
 
 MINUS: '-';
@@ -103,6 +107,8 @@ EXTENDS: 'extends';
 
 FALSE: 'false';
 
+FOR: 'for';
+
 IF: 'if';
 
 INSTANCEOF: 'instanceof';
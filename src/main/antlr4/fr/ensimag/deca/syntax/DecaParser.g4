@@ -161,6 +161,15 @@ inst returns[AbstractInst tree]
             setLocation($tree, $start);
             LOG.trace($tree);
         }
+    | FOR OPARENT init=expr SEMI condition=expr SEMI step=expr CPARENT OBRACE body=list_inst CBRACE {
+            assert($init.tree != null);
+            assert($condition.tree != null);
+            assert($step.tree != null);
+            assert($body.tree != null);
+            $tree = new For($init.tree, $condition.tree, $step.tree, $body.tree);
+            setLocation($tree, $start);
+            LOG.trace($tree);
+        }
     | RETURN expr SEMI {
             assert($expr.tree != null);
             $tree = new Return($expr.tree);
@@ -432,6 +441,14 @@ select_expr returns[AbstractExpr tree]
             // we matched "e.i"
         }
         )
+    | e1=select_expr o=OBRACKET index=expr CBRACKET {
+            // we matched "e1[index]"
+            assert($e1.tree != null);
+            assert($index.tree != null);
+            $tree = new ArrayElement($e1.tree, $index.tree);
+            setLocation($tree, $o);
+            LOG.trace($tree);
+        }
     ;
 
 primary_expr returns[AbstractExpr tree]
@@ -468,6 +485,13 @@ primary_expr returns[AbstractExpr tree]
             $tree = new New($ident.tree);
             setLocation($tree, $n);
         }
+    | n=NEW ident OBRACKET size=expr CBRACKET dims=array_dimensions[$ident.tree] {
+            // we matched "new t[size][]...[]", an array of t[]...[]
+            assert($ident.tree != null);
+            assert($size.tree != null);
+            $tree = new NewArray($dims.tree, $size.tree);
+            setLocation($tree, $n);
+        }
     | cast=OPARENT type CPARENT OPARENT expr CPARENT {
             assert($type.tree != null);
             assert($expr.tree != null);
@@ -483,13 +507,26 @@ primary_expr returns[AbstractExpr tree]
     ;
 
 type returns[AbstractIdentifier tree]
-    : ident {
+    : ident dims=array_dimensions[$ident.tree] {
             assert($ident.tree != null);
-            $tree = $ident.tree;
+            $tree = $dims.tree;
             LOG.trace($tree);
         }
     ;
 
+// the type of the arrays of element, one [] for each dimension
+array_dimensions[AbstractIdentifier element] returns[AbstractIdentifier tree]
+@init   {
+            $tree = $element;
+        }
+    : (OBRACKET CBRACKET {
+            $tree = new Identifier(this.getDecacCompiler().getSymbTable().create(
+                    $tree.getName().getName() + "[]"));
+            $tree.setLocation($element.getLocation());
+        }
+      )*
+    ;
+
 literal returns[AbstractExpr tree]
 @init   {
             // to treat exceptions with the right location
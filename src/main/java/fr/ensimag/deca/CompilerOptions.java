@@ -3,9 +3,11 @@ package fr.ensimag.deca;
 import java.io.File;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import fr.ensimag.deca.tools.BuildCache;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
@@ -60,6 +62,66 @@ public class CompilerOptions {
         return armBool;
     }
 
+    public String getArmArch() {
+        return armArch;
+    }
+
+    /**
+     * @return true if the targeted ARM architecture has the division
+     * instruction sdiv
+     */
+    public boolean getArmHardwareDivide() {
+        return ARM_ARCHS_WITH_DIVIDE.contains(armArch);
+    }
+
+    public boolean getDaemon() {
+        return daemon;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getOptimization() {
+        return optimization;
+    }
+
+    public boolean getFusedMultiplyAdd() {
+        return fusedMultiplyAdd;
+    }
+
+    public boolean getRun() {
+        return run;
+    }
+
+    public boolean getCache() {
+        return cache;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * @return the build cache shared by all the compilations of these options
+     */
+    public synchronized BuildCache getBuildCache() {
+        if (buildCache == null) {
+            buildCache = new BuildCache(cacheDir);
+        }
+        return buildCache;
+    }
+
+    /**
+     * @return a description of the options changing the generated code,
+     * used in the keys of the build cache
+     */
+    public String getCodeGenKey() {
+        return "r=" + registers + ";n=" + noCheck + ";a=" + armBool
+                + ";O=" + optimization + ";fma=" + fusedMultiplyAdd
+                + ";arch=" + armArch;
+    }
+
 
     private int debug = 0;
     private boolean parallel = false;
@@ -74,7 +136,37 @@ public class CompilerOptions {
 
     // new argument to check if we want an ARM program
     private boolean armBool = false;
+
+    // ARM architecture targeted with -a (--arm-arch ARCH): the integer
+    // divisions use sdiv on those which have it, a routine otherwise
+    public static final String DEFAULT_ARM_ARCH = "armv6";
+    private static final List<String> ARM_ARCHS =
+            Arrays.asList(DEFAULT_ARM_ARCH, "armv7-a", "armv7ve", "armv8-a");
+    private static final List<String> ARM_ARCHS_WITH_DIVIDE =
+            Arrays.asList("armv7ve", "armv8-a");
+    private String armArch = DEFAULT_ARM_ARCH;
+    private boolean optionArmArchSpotted = false;
     
+    // compile server (--daemon) and the port used to reach it (--port N),
+    // 0 meaning stdin for the server and no server for the client
+    private boolean daemon = false;
+    private int port = 0;
+
+    // level of the optimizations done on the decorated tree (-O0, -O1, -O2)
+    private int optimization = 0;
+
+    // compute the float expressions a * b + c with FMA (--fma), whose
+    // result is rounded once instead of twice
+    private boolean fusedMultiplyAdd = false;
+
+    // run the generated programs in the IMA virtual machine (--run)
+    private boolean run = false;
+
+    // incremental build cache (--no-cache, --cache-dir DIR)
+    private boolean cache = true;
+    private File cacheDir = new File(System.getProperty("user.home"), ".decac-cache");
+    private BuildCache buildCache = null;
+
     // ugly way to get rid of the case -b -r 16 
     private boolean optionRSpotted = false;
     
@@ -96,6 +188,21 @@ public class CompilerOptions {
             } else if ( args[k].equals("-r") && ( k+1 >= args.length )) {
                 // no number of registers will be recognized
                 throw new CLIException("Nothing after -r");
+            } else if ( args[k].equals("--port") && ( k+1 < args.length ) ) {
+                k++;
+                checkPort(args[k]);
+            } else if ( args[k].equals("--port") && ( k+1 >= args.length )) {
+                throw new CLIException("Nothing after --port");
+            } else if ( args[k].equals("--cache-dir") && ( k+1 < args.length ) ) {
+                k++;
+                cacheDir = new File(args[k]);
+            } else if ( args[k].equals("--cache-dir") && ( k+1 >= args.length )) {
+                throw new CLIException("Nothing after --cache-dir");
+            } else if ( args[k].equals("--arm-arch") && ( k+1 < args.length ) ) {
+                k++;
+                checkArmArch(args[k]);
+            } else if ( args[k].equals("--arm-arch") && ( k+1 >= args.length )) {
+                throw new CLIException("Nothing after --arm-arch");
             } else {
                 try{
                     processArg(args, k);
@@ -136,23 +243,40 @@ public class CompilerOptions {
         if (optionRSpotted && armBool) {
             throw new CLIException("-r X and -a are uncompatible");
         }
+
+        // the architecture only changes the ARM programs
+        if (optionArmArchSpotted && !armBool) {
+            throw new CLIException("--arm-arch ARCH requires -a");
+        }
  	
         // if no arguments were seen, we explain how decac should be used
         if (args.length == 0) {
             throw new CLIException("No option nor file given");
         }
         
-        if (sourceFiles.size() == 0) {
+        // the virtual machine only runs IMA programs
+        if (run && (parse || verification || armBool || daemon)) {
+            throw new CLIException("--run is uncompatible with -p, -v, -a and --daemon");
+        }
+
+        if (daemon) {
+            // the files are given later, in the requests sent to the server
+            if (sourceFiles.size() != 0 || printBanner) {
+                throw new CLIException("--daemon is uncompatible with files and -b");
+            }
+        } else if (sourceFiles.size() == 0) {
             // if no file was detected
             if ( printBanner && ( parallel || (debug != 0) || parse ||
                     verification || noCheck || warnings || 
-                    optionRSpotted || armBool ) ) {
+                    optionRSpotted || armBool || run || optimization != 0 ||
+                    fusedMultiplyAdd ) ) {
                 // if printBanner was written but other options too
                 throw new CLIException("-b is uncompatible with" +
                         "other options");
             } else if ( ( parallel || (debug != 0) || parse ||
                     verification || noCheck || warnings || 
-                    optionRSpotted || armBool ) ) {
+                    optionRSpotted || armBool || port != 0 || run ||
+                    optimization != 0 || fusedMultiplyAdd ) ) {
                 // options were given without file
                 throw new CLIException("no file given");
             }
@@ -168,8 +292,10 @@ public class CompilerOptions {
     }
 
     protected void displayUsage() {
-        System.out.println("\033[1;95m    Usage : decac [[-p | -v] [-n] [-a | -r X] [-d]*" + 
-                " [-P] [-w] <deca file>...] | [-b]\u001B[m");
+        System.out.println("\033[1;95m    Usage : decac [[-p | -v] [-n] [-a [--arm-arch ARCH] | -r X] [-d]* [-O0 | -O1 | -O2]" + 
+                " [--fma] [-P] [-w] [--run] [--port N] [--no-cache | --cache-dir DIR]" +
+                " <deca file>...] | [-b]" +
+                " | [--daemon [--port N]]\u001B[m");
         System.out.println(); 
         System.out.println("\033[96m-b  (banner): prints the team banner");
         System.out.println("-p  (parse): stops at the tree building step and " +
@@ -185,12 +311,38 @@ public class CompilerOptions {
         System.out.println("-d (debug): activates debug traces. " +
                 "Repeat several time for diferent traces level: " +
                 "INFO, DEBUG, TRACE");
+        System.out.println("-O1 (optimize): folds the constant expressions " +
+                "and simplifies the operations with a neutral operand " +
+                "(-O0, the default, does not)");
+        System.out.println("-O2 (optimize more): also inlines the small " +
+                "methods at their call sites, when the call always runs " +
+                "the same method");
+        System.out.println("--fma: computes the float expressions a * b + c " +
+                "with a fused multiply-add (FMA), which rounds the result " +
+                "once: it may differ from the one of a multiplication " +
+                "followed by an addition");
         System.out.println("-P  (parallel): if several source files "+
                 "are given, starts their parallel compilations");
         System.out.println("-w  (warnings): enables warning messages during "+
                 "compilation");
 	System.out.println("-a  (arm target): produces a .s file instead of a"+
-                " regular .ass file \u001B[0m");
+                " regular .ass file");
+        System.out.println("--arm-arch ARCH: ARM architecture targeted with -a, " +
+                "among " + ARM_ARCHS + " (default " + DEFAULT_ARM_ARCH + "); " +
+                "the integer divisions use sdiv on " + ARM_ARCHS_WITH_DIVIDE +
+                " and a shift-and-subtract routine on the others");
+        System.out.println("--run: runs the generated programs in the " +
+                "virtual machine of decac, like ima would");
+        System.out.println("--daemon (compile server): keeps decac running and " +
+                "compiles the requests read on stdin, or received on " +
+                "localhost:N with --port N");
+        System.out.println("--port N (client): sends the compilation to the " +
+                "server listening on localhost:N, or compiles locally if " +
+                "there is none");
+        System.out.println("--no-cache: always compiles the files, even if " +
+                "they did not change since the last compilation");
+        System.out.println("--cache-dir DIR: directory of the build cache " +
+                "(default ~/.decac-cache) \u001B[0m");
     }
 
 
@@ -234,6 +386,18 @@ public class CompilerOptions {
             }
         }
         
+        else if (arg.equals("-O0")) {
+            optimization = 0;
+        }
+
+        else if (arg.equals("-O1")) {
+            optimization = 1;
+        }
+
+        else if (arg.equals("-O2")) {
+            optimization = 2;
+        }
+
         else if (arg.equals("-P")) {
             parallel = true;
         }
@@ -255,6 +419,22 @@ public class CompilerOptions {
 	else if (arg.equals("-a")) {
             armBool = true;
         }
+
+        else if (arg.equals("--daemon")) {
+            daemon = true;
+        }
+
+        else if (arg.equals("--fma")) {
+            fusedMultiplyAdd = true;
+        }
+
+        else if (arg.equals("--run")) {
+            run = true;
+        }
+
+        else if (arg.equals("--no-cache")) {
+            cache = false;
+        }
         
         else {
             throw new CLIException("option or file not recognized: " + arg);
@@ -279,6 +459,27 @@ public class CompilerOptions {
         }
     }
     
+    // Treats the argument following "--port"
+    private void checkPort(String portString) throws CLIException {
+        try {
+            port = Integer.parseInt(portString);
+        } catch (NumberFormatException nfe) {
+            throw new CLIException("--port N has not N as a number");
+        }
+        if ((port < 1) || (port > 65535)) {
+            throw new CLIException("--port N does not match 1 <= N <= 65535");
+        }
+    }
+
+    // Treats the argument following "--arm-arch"
+    private void checkArmArch(String arch) throws CLIException {
+        if (!ARM_ARCHS.contains(arch)) {
+            throw new CLIException("--arm-arch ARCH does not match one of " + ARM_ARCHS);
+        }
+        optionArmArchSpotted = true;
+        armArch = arch;
+    }
+
     // debug function
     @Override
     public String toString() {
@@ -291,7 +492,14 @@ public class CompilerOptions {
         s += "-n (noCheck): " + Boolean.toString(noCheck) + "\n";
         s += "-w (warnings): " + Boolean.toString(warnings) + "\n";
         s += "-r (registers): " + Integer.toString(registers) + "\n";
+        s += "-O (optimization): " + Integer.toString(optimization) + "\n";
 	s += "-a (armBool): " + Boolean.toString(armBool) + "\n";
+        s += "--arm-arch: " + armArch + "\n";
+        s += "--run: " + Boolean.toString(run) + "\n";
+        s += "--daemon: " + Boolean.toString(daemon) + "\n";
+        s += "--port: " + Integer.toString(port) + "\n";
+        s += "--no-cache: " + Boolean.toString(!cache) + "\n";
+        s += "--cache-dir: " + cacheDir + "\n";
         s += "-files: " + sourceFiles.toString() + "\n";
         s += "]";
         
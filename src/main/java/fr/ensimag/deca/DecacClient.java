@@ -0,0 +1,111 @@
+package fr.ensimag.deca;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import org.apache.log4j.Logger;
+
+/**
+ * Thin client of the compile server (see DecacServer): sends the arguments
+ * of decac to localhost:port and displays the answer.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class DecacClient {
+    private static final Logger LOG = Logger.getLogger(DecacClient.class);
+
+    /**
+     * Time allowed to reach the server before compiling locally (ms)
+     */
+    private static final int CONNECT_TIMEOUT = 500;
+
+    /**
+     * Send the compilation described by args to the server.
+     *
+     * @return the exit status of the compilation, or null if no server could
+     * be reached (the caller then compiles in-process)
+     */
+    public static Integer forward(int port, String[] args) {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                    CONNECT_TIMEOUT);
+        } catch (IOException e) {
+            LOG.debug("Cannot reach the compile server", e);
+            closeQuietly(socket);
+            return null;
+        }
+
+        try {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                    socket.getOutputStream(), StandardCharsets.UTF_8));
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+            out.println(toRequest(args));
+            out.flush();
+            // the answer is complete once the exit line is received
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(DecacServer.EXIT)) {
+                    return Integer.parseInt(line.substring(DecacServer.EXIT.length()).trim());
+                } else if (line.startsWith(DecacServer.OUT)) {
+                    System.out.println(line.substring(DecacServer.OUT.length()));
+                } else if (line.startsWith(DecacServer.ERR)) {
+                    System.err.println(line.substring(DecacServer.ERR.length()));
+                } else if (line.startsWith(DecacServer.FILE)) {
+                    LOG.info("Generated " + line.substring(DecacServer.FILE.length()));
+                }
+            }
+            System.err.println("Connection to the compile server lost");
+            return 1;
+        } catch (IOException e) {
+            System.err.println("Connection to the compile server lost: " + e.getMessage());
+            return 1;
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Build the request line: --port and --run are only meaningful for the
+     * client (the programs are run by the client, see DecacMain), and source
+     * files are made absolute since the server runs in another
+     * directory.
+     */
+    static String toRequest(String[] args) {
+        StringBuilder request = new StringBuilder();
+        for (int k = 0; k < args.length; k++) {
+            String arg = args[k];
+            if (arg.equals("--port")) {
+                k++;
+                continue;
+            }
+            if (arg.equals("--run")) {
+                continue;
+            }
+            if (arg.endsWith(".deca")) {
+                arg = new File(arg).getAbsolutePath();
+            }
+            // always tab-terminated, so that a single path containing
+            // spaces is not split by the server
+            request.append(arg).append('\t');
+        }
+        return request.toString();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+}
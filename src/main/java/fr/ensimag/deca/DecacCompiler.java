@@ -5,7 +5,11 @@ import fr.ensimag.deca.syntax.DecaLexer;
 import fr.ensimag.deca.syntax.DecaParser;
 import fr.ensimag.deca.codegen.ErrorManager;
 import fr.ensimag.deca.codegen.ARMErrorManager;
+import fr.ensimag.deca.codegen.ARMFrame;
 import fr.ensimag.deca.codegen.ARMFunctionManager;
+import fr.ensimag.deca.codegen.ARMPeepholeOptimizer;
+import fr.ensimag.deca.codegen.IMAPeepholeOptimizer;
+import fr.ensimag.deca.codegen.PeepholeOptimizer;
 import fr.ensimag.deca.tools.DecacInternalError;
 import fr.ensimag.deca.tools.SymbolTable;
 import fr.ensimag.deca.tools.StackHashTableSymbol;
@@ -16,10 +20,13 @@ import fr.ensimag.deca.tree.LocationException;
 import fr.ensimag.ima.pseudocode.*;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.lang.Runnable;
 
@@ -56,7 +63,7 @@ public class DecacCompiler implements Runnable {
 
     private EnvironmentExp envExp = new EnvironmentExp(null);
     private SymbolTable symbTable = new SymbolTable();
-    private EnvironmentType envTypes = EnvironmentType.getEnvTypes();
+    private EnvironmentType envTypes = new EnvironmentType();
     private StackHashTableSymbol stackTable = new StackHashTableSymbol();
     private CodeAnalyzer codeAnalyzer = new CodeAnalyzer();
     private ErrorManager errorManager = new ErrorManager();
@@ -198,6 +205,20 @@ public class DecacCompiler implements Runnable {
         program.addFirstInstruction(instruction);
     }
 
+    /**
+     * @see fr.ensimag.ima.pseudocode.GenericProgram#size()
+     */
+    public int getProgramSize() {
+        return program.size();
+    }
+
+    /**
+     * @see fr.ensimag.ima.pseudocode.GenericProgram#getLines(int)
+     */
+    public List<AbstractLine> getProgramLines(int start) {
+        return program.getLines(start);
+    }
+
     /**
      * @see
      * fr.ensimag.ima.pseudocode.IMAProgram#display()
@@ -211,6 +232,8 @@ public class DecacCompiler implements Runnable {
     private final File source;
     private Register ListRegister;
     private ARMRegister ListRegisterARM;
+    private ARMRegister ListFloatRegisterARM;
+    private ARMFrame armFrame;
 
     public void setListRegister(Register list){
         ListRegister = list;
@@ -222,6 +245,28 @@ public class DecacCompiler implements Runnable {
 
 
     public boolean getEmitWarnings() { return emitWarnings; }
+
+    /**
+     * Counters used to name the anonymous labels and ARM string constants.
+     * They belong to the compiler instance so that the generated code does
+     * not depend on the other files compiled by the same process (decac -P).
+     */
+    private int labelCounter = 0;
+    private int armStringCounter = 0;
+
+    /**
+     * @return a new label, unique within this compilation
+     */
+    public Label newLabel() {
+        return new Label("label" + labelCounter++);
+    }
+
+    /**
+     * @return a new name for an ARM string constant in .data
+     */
+    public String newARMStringName() {
+        return "msg" + armStringCounter++;
+    }
     
     public void setListRegisterARM(ARMRegister list){
         ListRegisterARM = list;
@@ -231,6 +276,29 @@ public class DecacCompiler implements Runnable {
         return ListRegisterARM;
     }
 
+    public void setListFloatRegisterARM(ARMRegister list) {
+        ListFloatRegisterARM = list;
+    }
+
+    /**
+     * @return the bench of the s registers for the float temporaries (ARM)
+     */
+    public ARMRegister getListFloatRegisterARM() {
+        return ListFloatRegisterARM;
+    }
+
+    public void setArmFrame(ARMFrame frame) {
+        armFrame = frame;
+    }
+
+    /**
+     * @return the frame of the main program, with the places of its
+     * variables (ARM)
+     */
+    public ARMFrame getArmFrame() {
+        return armFrame;
+    }
+
     public ARMFunctionManager getArmFunctionManager() {
         return armFunctionManager;
     }
@@ -247,28 +315,71 @@ public class DecacCompiler implements Runnable {
 
 
     /**
-     * Run the compiler (parse source file, generate code)
-     *
-     * @return true on error
+     * Stream used to display compilation errors and warnings
      */
-    public boolean compile() {
+    private PrintStream err = System.err;
+
+    public PrintStream getErrorStream() {
+        return err;
+    }
+
+    /**
+     * @return the name of the assembly file generated for the source file
+     * (.ass, or .s with -a)
+     */
+    public String getDestFile() {
+        return getDestFile(source, compilerOptions);
+    }
+
+    public static String getDestFile(File source, CompilerOptions compilerOptions) {
         String sourceFile = source.getAbsolutePath();
         String[] tmp = sourceFile.split("\\.");
         String destFile = tmp[0];
         for (int i = 1; i < tmp.length - 1; i++) {
             destFile += "." + tmp[i];
         }
-        if (!this.compilerOptions.getArmBool()) {
+        if (!compilerOptions.getArmBool()) {
             destFile += ".ass";
         } else {
             destFile += ".s";
         }
+        return destFile;
+    }
+
+    /**
+     * Run the compiler (parse source file, generate code)
+     *
+     * @return true on error
+     */
+    public boolean compile() {
+        return compile(System.out, System.err);
+    }
+
+    /**
+     * Run the compiler, sending the decompiled program (-p) to out and the
+     * diagnostics to err (used by the compile server, see DecacServer).
+     *
+     * @return true on error
+     */
+    public boolean compile(PrintStream out, PrintStream err) {
+        String sourceFile = source.getAbsolutePath();
+        String destFile = getDestFile();
         LOG.info(" dest:"+ destFile);
-        PrintStream err = System.err;
-        PrintStream out = System.out;
+        this.err = err;
+        String cacheKey = getCacheKey();
+        if (cacheKey != null && compilerOptions.getBuildCache().restore(
+                cacheKey, source, new File(destFile))) {
+            LOG.info("Up to date (build cache): " + destFile);
+            return false;
+        }
         LOG.debug("Compiling file " + sourceFile + " to assembly file " + destFile);
         try {
-            return doCompile(sourceFile, destFile, out, err);
+            boolean error = doCompile(sourceFile, destFile, out, err);
+            if (!error && cacheKey != null) {
+                compilerOptions.getBuildCache().store(cacheKey, includedFiles,
+                        new File(destFile));
+            }
+            return error;
         } catch (LocationException e) {
             e.display(err);
             return true;
@@ -301,6 +412,41 @@ public class DecacCompiler implements Runnable {
         }
     }
 
+    /**
+     * @return the key of the source file in the build cache, or null if the
+     * cache must not be used for this compilation
+     */
+    private String getCacheKey() {
+        if (!compilerOptions.getCache() || compilerOptions.getParse()
+                || compilerOptions.getVerification() || compilerOptions.getWarnings()
+                || compilerOptions.getDebug() > 0) {
+            // no assembly file, or messages expected from the compilation
+            return null;
+        }
+        try {
+            byte[] content = Files.readAllBytes(source.toPath());
+            return compilerOptions.getBuildCache().key(content,
+                    compilerOptions.getCodeGenKey());
+        } catch (IOException e) {
+            // the error will be reported by the compilation itself
+            return null;
+        }
+    }
+
+    /**
+     * Files included by the source (name in the #include directive -> content)
+     */
+    private final Map<String, String> includedFiles = new LinkedHashMap<String, String>();
+
+    /**
+     * Called by the lexer for each #include directive
+     */
+    public void addIncludedFile(String name, String content) {
+        if (!includedFiles.containsKey(name)) {
+            includedFiles.put(name, content);
+        }
+    }
+
     /**
      * First part of the first context analysis pass: initializing the
      * builtin types, including the Object class and its EnvironmentExp,
@@ -380,6 +526,9 @@ public class DecacCompiler implements Runnable {
             return false;
         }
 
+        prog.optimizeProgram(this);
+        assert(prog.checkAllDecorations());
+
         addComment("start main program");
         if(!this.compilerOptions.getArmBool()){
             prog.codeGenProgram(this);
@@ -388,20 +537,24 @@ public class DecacCompiler implements Runnable {
         }
         
         addComment("end main program");
-        
-        LOG.debug("Generated assembly code:" + nl + program.display());
-        LOG.info("Output file assembly file is: " + destName);
 
-        FileOutputStream fstream = null;
-        try {
-            fstream = new FileOutputStream(destName);
-        } catch (FileNotFoundException e) {
-            throw new DecacFatalError("Failed to open output file: " + e.getLocalizedMessage());
+        PeepholeOptimizer peephole = compilerOptions.getArmBool()
+                ? new ARMPeepholeOptimizer()
+                : new IMAPeepholeOptimizer(getListRegister().getNbRegisters());
+        peephole.optimize(program.getLines(0));
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Generated assembly code:" + nl + program.display());
         }
+        LOG.info("Output file assembly file is: " + destName);
 
         LOG.info("Writing assembler file ...");
 
-        program.display(new PrintStream(fstream));
+        try {
+            program.write(Paths.get(destName));
+        } catch (IOException e) {
+            throw new DecacFatalError("Failed to write output file: " + e.getLocalizedMessage());
+        }
         LOG.info("Compilation of " + sourceName + " successful.");
         return false;
     }
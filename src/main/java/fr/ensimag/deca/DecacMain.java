@@ -1,13 +1,20 @@
 package fr.ensimag.deca;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
 import org.apache.log4j.Logger;
 import java.util.concurrent.*;
 import java.lang.Runtime;
 import java.util.LinkedList;
-import java.lang.Runnable;
+import java.util.List;
 
 import fr.ensimag.deca.tools.SuperBanner;
+import fr.ensimag.ima.vm.ImaAssembler;
+import fr.ensimag.ima.vm.ImaMachine;
+import fr.ensimag.ima.vm.ImaSyntaxError;
 
 /**
  * Main class for the command-line Deca compiler.
@@ -17,7 +24,7 @@ import fr.ensimag.deca.tools.SuperBanner;
  */
 public class DecacMain {
     private static Logger LOG = Logger.getLogger(DecacMain.class);
-    
+
     public static void main(String[] args) {
         // example log4j message.
         LOG.info("Decac compiler started");
@@ -32,39 +39,139 @@ public class DecacMain {
             System.exit(1);
         }
         if (options.getPrintBanner()) {
-            
+
             System.out.println(new SuperBanner());
         }
 
+        if (options.getDaemon()) {
+            DecacServer server = new DecacServer();
+            if (options.getPort() == 0) {
+                server.serveStdin();
+            } else {
+                server.serveSocket(options.getPort());
+            }
+            System.exit(0);
+        }
+
+        if (options.getPort() != 0) {
+            // a compile server may be running: let it do the job
+            Integer status = DecacClient.forward(options.getPort(), args);
+            if (status != null) {
+                if (status == 0 && options.getRun()) {
+                    // the server only compiles, the programs run here
+                    boolean[] errors = new boolean[options.getSourceFiles().size()];
+                    status = runPrograms(options, errors, System.in, System.out,
+                            System.err) ? 1 : 0;
+                }
+                System.exit(status);
+            }
+            LOG.info("No compile server on port " + options.getPort()
+                    + ", compiling locally");
+        }
+
+        boolean[] errors = compileFiles(options, System.out, System.err);
+        for (boolean fileError : errors) {
+            if (fileError) {
+                error = true;
+            }
+        }
+        if (options.getRun() && runPrograms(options, errors, System.in,
+                System.out, System.err)) {
+            error = true;
+        }
+        System.exit(error ? 1 : 0);
+    }
+
+    /**
+     * Run in the IMA virtual machine, one after the other, the programs
+     * generated for the source files of options (decac --run).
+     *
+     * @param errors for each source file, true if its compilation failed (its
+     * program is then not run)
+     * @return true if one of the programs could not be run, or ended with an
+     * error
+     */
+    static boolean runPrograms(CompilerOptions options, boolean[] errors,
+            InputStream in, PrintStream out, PrintStream err) {
+        boolean error = false;
+        List<File> sources = options.getSourceFiles();
+        for (int k = 0; k < sources.size(); k++) {
+            if (errors[k]) {
+                continue;
+            }
+            String destFile = DecacCompiler.getDestFile(sources.get(k), options);
+            LOG.info("Running " + destFile);
+            try {
+                ImaMachine machine = new ImaMachine(ImaAssembler.assemble(
+                        Files.readAllBytes(new File(destFile).toPath())), in, out);
+                if (machine.run() != 0) {
+                    error = true;
+                }
+            } catch (ImaSyntaxError e) {
+                err.println(destFile + ":" + e.getLine() + ": " + e.getReason());
+                error = true;
+            } catch (IOException e) {
+                err.println("Error while running " + destFile + ": " + e.getMessage());
+                error = true;
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Compile the source files given in options, in parallel if -P was given.
+     *
+     * @param out stream to use for standard output (output of decac -p)
+     * @param err stream to use to display compilation errors
+     * @return for each source file (in the order of options.getSourceFiles()),
+     * true if its compilation failed
+     */
+    static boolean[] compileFiles(CompilerOptions options, PrintStream out,
+            PrintStream err) {
+        List<File> sources = options.getSourceFiles();
+        boolean[] errors = new boolean[sources.size()];
         if (options.getParallel()) {
             ExecutorService executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors());
-            LinkedList<Future> listFuture = new LinkedList<Future>();
-            for (File source : options.getSourceFiles()){
-                DecacCompiler compiler = new DecacCompiler(options, source);
-                listFuture.add(executor.submit(compiler));
+            LinkedList<Future<Boolean>> listFuture = new LinkedList<Future<Boolean>>();
+            for (File source : sources){
+                // each compiler owns its whole state (types, registers, labels)
+                // so the tasks can safely run concurrently
+                final DecacCompiler compiler = new DecacCompiler(options, source);
+                final PrintStream compilerOut = out;
+                final PrintStream compilerErr = err;
+                listFuture.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return compiler.compile(compilerOut, compilerErr);
+                    }
+                }));
             }
-            for(Future future : listFuture){
+            executor.shutdown();
+            int k = 0;
+            for(Future<Boolean> future : listFuture){
                 try{
-                    future.get();//waiting for the end of the compiling task for each files
+                    //waiting for the end of the compiling task for each files
+                    errors[k] = future.get();
                 }catch (CancellationException e) {
-                    System.err.println("Error during parrallel compilation : CancellationException");
-                    System.exit(1);
+                    err.println("Error during parrallel compilation : CancellationException");
+                    errors[k] = true;
                 }catch (ExecutionException e) {
-                    System.err.println("Error during parrallel compilation : ExecutionException");
-                    System.exit(1);
+                    err.println("Error during parrallel compilation : ExecutionException");
+                    errors[k] = true;
                 }catch (InterruptedException e) {
-                    System.err.println("Error during parrallel compilation : InterruptedException");
-                    System.exit(1);
+                    err.println("Error during parrallel compilation : InterruptedException");
+                    errors[k] = true;
                 }
+                k++;
             }
         } else {
-            for (File source : options.getSourceFiles()) {
+            int k = 0;
+            for (File source : sources) {
                 DecacCompiler compiler = new DecacCompiler(options, source);
-                if (compiler.compile()) {
-                    error = true;
-                }
+                errors[k] = compiler.compile(out, err);
+                k++;
             }
         }
-        System.exit(error ? 1 : 0);
+        return errors;
     }
 }
@@ -0,0 +1,193 @@
+package fr.ensimag.deca;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.log4j.Logger;
+
+/**
+ * Compile server started by decac --daemon.
+ *
+ * The server stays alive between compilations, so the JVM startup, the
+ * loading of the classes, the deserialization of the ANTLR automata of
+ * DecaLexer/DecaParser and the log4j initialization are only paid once.
+ *
+ * Protocol: one request per line, made of the decac arguments separated
+ * by tabulations (or by spaces if the line contains no tabulation). Relative
+ * paths are resolved from the directory of the server. The answer is a
+ * sequence of lines:
+ * <ul>
+ * <li>"out text": standard output of decac (e.g. -p)</li>
+ * <li>"err text": error messages and warnings</li>
+ * <li>"file path": assembly file generated by the request</li>
+ * <li>"exit status": last line of the answer, 0 on success, 1 on error</li>
+ * </ul>
+ * The request "quit" stops the server.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class DecacServer {
+    private static final Logger LOG = Logger.getLogger(DecacServer.class);
+
+    public static final String QUIT = "quit";
+    public static final String OUT = "out ";
+    public static final String ERR = "err ";
+    public static final String FILE = "file ";
+    public static final String EXIT = "exit ";
+
+    private volatile boolean stopped = false;
+
+    /**
+     * Serve the requests read on the standard input until "quit" or the end
+     * of the input.
+     */
+    public void serveStdin() {
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try {
+            serve(in, out);
+        } catch (IOException e) {
+            LOG.error("Compile server stopped", e);
+        }
+    }
+
+    /**
+     * Serve the requests received on localhost:port, each connection being
+     * handled by its own thread. Stops when a client sends "quit".
+     */
+    public void serveSocket(int port) {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (ServerSocket server = new ServerSocket(port, 50,
+                InetAddress.getLoopbackAddress())) {
+            LOG.info("Compile server listening on port " + port);
+            while (!stopped) {
+                final Socket client = server.accept();
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        serveClient(client, server);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            if (!stopped) {
+                System.err.println("Compile server error: " + e.getMessage());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void serveClient(Socket client, ServerSocket server) {
+        try (Socket socket = client) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                    socket.getOutputStream(), StandardCharsets.UTF_8));
+            if (!serve(in, out)) {
+                // "quit" received: closing the server socket unblocks accept()
+                stopped = true;
+                server.close();
+            }
+        } catch (IOException e) {
+            LOG.debug("Connection to a client lost", e);
+        }
+    }
+
+    /**
+     * Answer every request read from in.
+     *
+     * @return false if the "quit" request was received, true if in was
+     * exhausted
+     */
+    boolean serve(BufferedReader in, PrintWriter out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.trim().equals(QUIT)) {
+                return false;
+            }
+            if (!line.trim().isEmpty()) {
+                handleRequest(line, out);
+                out.flush();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compile the files of one request and write the answer in out.
+     *
+     * @return the exit status of the request
+     */
+    int handleRequest(String request, PrintWriter out) {
+        String[] args = request.contains("\t") ? request.split("\t")
+                : request.trim().split(" +");
+        LOG.debug("Request: " + request);
+        CompilerOptions options = new CompilerOptions();
+        try {
+            options.parseArgs(args);
+        } catch (CLIException e) {
+            out.println(ERR + "Error during option parsing: " + e.getMessage());
+            out.println(EXIT + 1);
+            return 1;
+        }
+        if (options.getDaemon() || options.getPrintBanner() || options.getRun()) {
+            out.println(ERR + "--daemon, -b and --run cannot be sent to the server");
+            out.println(EXIT + 1);
+            return 1;
+        }
+
+        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+        boolean[] errors;
+        try {
+            PrintStream compilerOut = new PrintStream(outBytes, true, "UTF-8");
+            PrintStream compilerErr = new PrintStream(errBytes, true, "UTF-8");
+            errors = DecacMain.compileFiles(options, compilerOut, compilerErr);
+            compilerOut.flush();
+            compilerErr.flush();
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        writeLines(OUT, new String(outBytes.toByteArray(), StandardCharsets.UTF_8), out);
+        writeLines(ERR, new String(errBytes.toByteArray(), StandardCharsets.UTF_8), out);
+
+        int status = 0;
+        List<File> sources = options.getSourceFiles();
+        for (int k = 0; k < errors.length; k++) {
+            if (errors[k]) {
+                status = 1;
+            } else if (!options.getParse() && !options.getVerification()) {
+                out.println(FILE + DecacCompiler.getDestFile(sources.get(k), options));
+            }
+        }
+        out.println(EXIT + status);
+        return status;
+    }
+
+    private static void writeLines(String prefix, String text, PrintWriter out) {
+        if (text.isEmpty()) {
+            return;
+        }
+        for (String line : text.split("\r?\n")) {
+            out.println(prefix + line);
+        }
+    }
+}
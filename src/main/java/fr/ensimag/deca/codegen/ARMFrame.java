@@ -0,0 +1,218 @@
+package fr.ensimag.deca.codegen;
+
+import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.context.ExpDefinition;
+import fr.ensimag.ima.pseudocode.ARMGPRegister;
+import fr.ensimag.ima.pseudocode.ARMRegister;
+import fr.ensimag.ima.pseudocode.ImmediateInteger;
+import fr.ensimag.ima.pseudocode.instructionsARM.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Frame of the main program in the ARM code, and place of its variables.
+ *
+ * The variables are kept in the callee-saved registers: the int and boolean
+ * ones in r10 down to r6 (see ARMRegister.reserveRegister, the lower ones
+ * staying for the temporaries), the float ones in s16 to s31. The variables
+ * accessed the most (an access in a loop counting LOOP_WEIGHT times more)
+ * get them first. The other ones get a word of the frame, at [fp, #-4(k+1)]
+ * for the word k.
+ *
+ * The prologue saves the registers the frame uses, lr and fp (r11), which
+ * then points to the words; the epilogue restores them from fp, so it can
+ * be reached with values still pushed (errors).
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class ARMFrame {
+
+    /**
+     * Weight of an access in a loop, for each loop around it
+     */
+    public static final int LOOP_WEIGHT = 8;
+
+    private static final int FIRST_FLOAT_REGISTER = 16;
+    private static final int NB_FLOAT_REGISTERS = 16;
+
+    /**
+     * Greatest offset of ldr and str from fp
+     */
+    private static final int MAX_OFFSET = 4095;
+
+    private final List<ExpDefinition> variables = new ArrayList<ExpDefinition>();
+    private final Map<ExpDefinition, Integer> nbAccesses = new HashMap<ExpDefinition, Integer>();
+
+    private final Map<ExpDefinition, ARMGPRegister> registers = new HashMap<ExpDefinition, ARMGPRegister>();
+    private final Map<ExpDefinition, Integer> slots = new HashMap<ExpDefinition, Integer>();
+
+    /**
+     * Core registers to save, in increasing order
+     */
+    private final List<ARMGPRegister> savedRegisters = new ArrayList<ARMGPRegister>();
+    private int nbFloatRegisters = 0;
+    private int nbSlots = 0;
+
+    /**
+     * Add a variable of the main program, placed by allocate
+     */
+    public void addVariable(ExpDefinition variable) {
+        variables.add(variable);
+    }
+
+    /**
+     * Count accesses to a variable, to choose the ones kept in registers
+     */
+    public void addAccesses(ExpDefinition variable, int count) {
+        Integer previous = nbAccesses.get(variable);
+        nbAccesses.put(variable, previous == null ? count : previous + count);
+    }
+
+    /**
+     * Place the variables, taking the registers of the bench they need
+     */
+    public void allocate(ARMRegister bench) {
+        List<ExpDefinition> sorted = new ArrayList<ExpDefinition>(variables);
+        Collections.sort(sorted, new Comparator<ExpDefinition>() {
+            @Override
+            public int compare(ExpDefinition v1, ExpDefinition v2) {
+                return Integer.compare(accesses(v2), accesses(v1));
+            }
+        });
+        for (ExpDefinition variable : sorted) {
+            ARMGPRegister register = null;
+            if (variable.getType().isFloat()) {
+                if (nbFloatRegisters < NB_FLOAT_REGISTERS) {
+                    register = ARMRegister.getS(FIRST_FLOAT_REGISTER + nbFloatRegisters);
+                    nbFloatRegisters++;
+                }
+            } else {
+                register = bench.reserveRegister();
+                if (register != null) {
+                    savedRegisters.add(0, register);
+                }
+            }
+            if (register != null) {
+                registers.put(variable, register);
+            } else {
+                slots.put(variable, nbSlots++);
+            }
+        }
+    }
+
+    private int accesses(ExpDefinition variable) {
+        Integer count = nbAccesses.get(variable);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @return the register of the variable, null if it is in the frame
+     */
+    public ARMGPRegister getRegister(ExpDefinition variable) {
+        return registers.get(variable);
+    }
+
+    /**
+     * @return the list of the saved float registers, like "s16-s19"
+     */
+    private String floatRegisterList() {
+        // an even number of registers keeps sp aligned on 8 bytes
+        int last = FIRST_FLOAT_REGISTER + ((nbFloatRegisters + 1) & ~1) - 1;
+        return "{s" + FIRST_FLOAT_REGISTER + "-s" + last + "}";
+    }
+
+    public void codeGenPrologue(DecacCompiler compiler) {
+        List<ARMRegister> pushed = new ArrayList<ARMRegister>(savedRegisters);
+        if (pushed.size() % 2 != 0) {
+            // an even number of registers keeps sp aligned on 8 bytes
+            pushed.add(ARMRegister.ip);
+        }
+        pushed.add(ARMRegister.fp);
+        pushed.add(ARMRegister.lr);
+        compiler.addInstruction(new push(pushed.toArray(new ARMRegister[pushed.size()])));
+        if (nbFloatRegisters > 0) {
+            compiler.addARMBlock("        vpush " + floatRegisterList());
+        }
+        compiler.addInstruction(new mov(ARMRegister.fp, ARMRegister.sp));
+        int frameSize = (4 * nbSlots + 7) & ~7;
+        if (frameSize > 0 && frameSize < 256) {
+            compiler.addInstruction(new sub(ARMRegister.sp, ARMRegister.sp,
+                    new ImmediateInteger(frameSize)));
+        } else if (frameSize > 0) {
+            compiler.addInstruction(new ldr(ARMRegister.r0, "=" + frameSize));
+            compiler.addInstruction(new sub(ARMRegister.sp, ARMRegister.sp, ARMRegister.r0));
+        }
+    }
+
+    /**
+     * Return from main, whatever the values pushed since the prologue
+     */
+    public void codeGenEpilogue(DecacCompiler compiler) {
+        compiler.addInstruction(new mov(ARMRegister.sp, ARMRegister.fp));
+        if (nbFloatRegisters > 0) {
+            compiler.addARMBlock("        vpop " + floatRegisterList());
+        }
+        List<ARMRegister> popped = new ArrayList<ARMRegister>(savedRegisters);
+        if (popped.size() % 2 != 0) {
+            popped.add(ARMRegister.ip);
+        }
+        popped.add(ARMRegister.fp);
+        popped.add(ARMRegister.pc);
+        compiler.addInstruction(new pop(popped.toArray(new ARMRegister[popped.size()])));
+    }
+
+    /**
+     * @return the address of the word of the variable, with ip as base if
+     * it is too far from fp for ldr and str
+     */
+    private String address(DecacCompiler compiler, ExpDefinition variable) {
+        int offset = 4 * (slots.get(variable) + 1);
+        if (offset <= MAX_OFFSET) {
+            return "[fp, #-" + offset + "]";
+        }
+        // a multiple of 4096 below 2^20 is an immediate of sub
+        compiler.addInstruction(new sub(ARMRegister.ip, ARMRegister.fp,
+                new ImmediateInteger(offset & ~MAX_OFFSET)));
+        return "[ip, #-" + (offset & MAX_OFFSET) + "]";
+    }
+
+    /**
+     * Load the value of the variable in the register, an s register for a
+     * float
+     */
+    public void codeGenLoad(DecacCompiler compiler, ExpDefinition variable, ARMGPRegister target) {
+        ARMGPRegister register = registers.get(variable);
+        if (register == null && variable.getType().isFloat()) {
+            compiler.addInstruction(new vldr(target, address(compiler, variable)));
+        } else if (register == null) {
+            compiler.addInstruction(new ldr(target, address(compiler, variable)));
+        } else if (variable.getType().isFloat()) {
+            compiler.addARMBlock("        vmov.f32 " + target + ", " + register);
+        } else {
+            compiler.addInstruction(new mov(target, register));
+        }
+    }
+
+    /**
+     * Store the value of the register in the variable, from an s register
+     * for a float
+     */
+    public void codeGenStore(DecacCompiler compiler, ExpDefinition variable, ARMGPRegister source) {
+        ARMGPRegister register = registers.get(variable);
+        if (register == null && variable.getType().isFloat()) {
+            compiler.addInstruction(new vstr(source, address(compiler, variable)));
+        } else if (register == null) {
+            compiler.addInstruction(new str(source, address(compiler, variable)));
+        } else if (variable.getType().isFloat()) {
+            compiler.addARMBlock("        vmov.f32 " + register + ", " + source);
+        } else {
+            compiler.addInstruction(new mov(register, source));
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package fr.ensimag.deca.codegen;
 
 import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.ima.pseudocode.ARMGPRegister;
+import fr.ensimag.ima.pseudocode.ImmediateInteger;
 import fr.ensimag.ima.pseudocode.Label;
 import fr.ensimag.ima.pseudocode.instructionsARM.*;
 
@@ -9,6 +11,8 @@ import fr.ensimag.ima.pseudocode.instructionsARM.*;
 
 import fr.ensimag.ima.pseudocode.ARMRegister;
 
+import java.util.List;
+
 /**
  * Initial version : 19/1/2022
  * @author gl49
@@ -27,7 +31,9 @@ public class ARMFunctionManager {
      * FunctionManager generates codes for functions that are put there
      */
     public void genCodeFunctionManager(DecacCompiler compiler) {
-        genCodeDivideProgram(compiler);
+        if (!compiler.getCompilerOptions().getArmHardwareDivide()) {
+            genCodeDivideProgram(compiler);
+        }
         genCodeEndProgram(compiler);
     }
 
@@ -40,22 +46,107 @@ public class ARMFunctionManager {
         compiler.addARMBlock("tmpfloat" + ": " + ".float 0");  //temporary label to have an address to load the result of readfloat
         compiler.addARMBlock(".text");
         compiler.addARMBlock("end:");
-        compiler.addInstruction(new pop(ARMRegister.ip, ARMRegister.pc));
+        compiler.getArmFrame().codeGenEpilogue(compiler);
+    }
+
+    /**
+     * Call a function of the C library (printf, scanf), saving around it the
+     * float temporaries in use: the callee does not keep s0 to s15.
+     */
+    public void codeGenCall(DecacCompiler compiler, String function) {
+        List<ARMGPRegister> used = compiler.getListFloatRegisterARM().getUsedRegisters();
+        String saved = null;
+        if (!used.isEmpty()) {
+            int first = used.get(0).getNumber();
+            int last = used.get(used.size() - 1).getNumber();
+            if ((last - first) % 2 == 0) {
+                // an even number of registers keeps sp aligned on 8 bytes
+                if (last < 15) {
+                    last++;
+                } else {
+                    first--;
+                }
+            }
+            saved = "{s" + first + "-s" + last + "}";
+            compiler.addARMBlock("        vpush " + saved);
+        }
+        compiler.addInstruction(new bl(function));
+        if (saved != null) {
+            compiler.addARMBlock("        vpop " + saved);
+        }
+    }
+
+    /**
+     * Integer division r0 / r1 (or remainder r0 % r1 if remainder) of the
+     * values of r0 and r1, whose result is put in r0: with sdiv (and mls
+     * for the remainder) when the architecture has it, with the divide
+     * routine otherwise. r1, r2, r3 and ip may be changed.
+     */
+    public void codeGenDivide(DecacCompiler compiler, boolean remainder) {
+        if (compiler.getCompilerOptions().getArmHardwareDivide()) {
+            if (remainder) {
+                compiler.addARMBlock("        sdiv r2, r0, r1");
+                compiler.addARMBlock("        mls r0, r2, r1, r0");
+            } else {
+                compiler.addARMBlock("        sdiv r0, r0, r1");
+            }
+            return;
+        }
+        compiler.addInstruction(new bl("divide"));
+        if (remainder) {
+            compiler.addInstruction(new mov(ARMRegister.r0, ARMRegister.r1));
+        }
     }
 
+    /**
+     * Routine divide: signed division of r0 by r1 (not 0), truncated toward
+     * 0 like in Java, giving the quotient in r0 and the remainder (of the
+     * sign of the dividend) in r1.
+     *
+     * The absolute values are divided by shift-and-subtract (restoring
+     * division): the divisor is shifted to the left so that its highest
+     * bit is the one of the dividend (clz), then each step subtracts it
+     * when it is lower, sets the bit of the quotient and shifts it back.
+     * There are at most 32 steps, whatever the quotient.
+     */
     public void genCodeDivideProgram(DecacCompiler compiler) {
         compiler.addARMBlock(".text");
         Label divide = new Label("divide");
         compiler.addLabel(divide);
-        compiler.addInstruction(new push(ARMRegister.lr));
+        compiler.addInstruction(new push(ARMRegister.getR(4), ARMRegister.getR(5)));
+        // signs of the remainder (dividend) and of the quotient
+        compiler.addInstruction(new mov(ARMRegister.getR(4), ARMRegister.r0));
+        compiler.addARMBlock("        eor r5, r0, r1");
+        compiler.addInstruction(new cmp(ARMRegister.r0, 0));
+        compiler.addInstruction(new neglt(ARMRegister.r0, ARMRegister.r0));
+        compiler.addInstruction(new cmp(ARMRegister.r1, 0));
+        compiler.addInstruction(new neglt(ARMRegister.r1, ARMRegister.r1));
+        // unsigned division of the absolute values
         compiler.addInstruction(new mov(ARMRegister.r2, 0));
-        Label divide_iter = new Label("divide_iter");
-        compiler.addLabel(divide_iter);
         compiler.addInstruction(new cmp(ARMRegister.r0, ARMRegister.r1));
-        compiler.addInstruction(new poplo(ARMRegister.pc));
-        compiler.addInstruction(new sub(ARMRegister.r0, ARMRegister.r0, ARMRegister.r1));
-        compiler.addInstruction(new add(ARMRegister.r2, ARMRegister.r2, 1));
-        compiler.addInstruction(new bl("divide_iter"));
+        compiler.addARMBlock("        blo divide_end");
+        compiler.addARMBlock("        clz r3, r1");
+        compiler.addARMBlock("        clz ip, r0");
+        compiler.addARMBlock("        sub r3, r3, ip");
+        compiler.addARMBlock("        lsl r1, r1, r3");
+        compiler.addInstruction(new mov(ARMRegister.ip, new ImmediateInteger(1)));
+        compiler.addARMBlock("        lsl ip, ip, r3");
+        compiler.addLabel(new Label("divide_step"));
+        compiler.addInstruction(new cmp(ARMRegister.r0, ARMRegister.r1));
+        compiler.addARMBlock("        subhs r0, r0, r1");
+        compiler.addARMBlock("        orrhs r2, r2, ip");
+        compiler.addARMBlock("        lsr r1, r1, #1");
+        compiler.addARMBlock("        lsrs ip, ip, #1");
+        compiler.addARMBlock("        bne divide_step");
+        compiler.addLabel(new Label("divide_end"));
+        compiler.addInstruction(new mov(ARMRegister.r1, ARMRegister.r0));
+        compiler.addInstruction(new mov(ARMRegister.r0, ARMRegister.r2));
+        compiler.addInstruction(new cmp(ARMRegister.getR(5), 0));
+        compiler.addInstruction(new neglt(ARMRegister.r0, ARMRegister.r0));
+        compiler.addInstruction(new cmp(ARMRegister.getR(4), 0));
+        compiler.addInstruction(new neglt(ARMRegister.r1, ARMRegister.r1));
+        compiler.addInstruction(new pop(ARMRegister.getR(4), ARMRegister.getR(5)));
+        compiler.addARMBlock("        bx lr");
     }
 
-}
\ No newline at end of file
+}
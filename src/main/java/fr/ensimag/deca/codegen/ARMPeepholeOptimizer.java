@@ -0,0 +1,317 @@
+package fr.ensimag.deca.codegen;
+
+import fr.ensimag.ima.pseudocode.ARMBinaryInstructionStringToReg;
+import fr.ensimag.ima.pseudocode.ARMGPRegister;
+import fr.ensimag.ima.pseudocode.ARMLine;
+import fr.ensimag.ima.pseudocode.ARMRegister;
+import fr.ensimag.ima.pseudocode.ARMStackInstruction;
+import fr.ensimag.ima.pseudocode.ARMTernaryInstruction;
+import fr.ensimag.ima.pseudocode.ARMUnaryInstructionString;
+import fr.ensimag.ima.pseudocode.AbstractLine;
+import fr.ensimag.ima.pseudocode.BinaryInstruction;
+import fr.ensimag.ima.pseudocode.DVal;
+import fr.ensimag.ima.pseudocode.Instruction;
+import fr.ensimag.ima.pseudocode.Operand;
+import fr.ensimag.ima.pseudocode.instructionsARM.*;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Peephole optimizer of the ARM code.
+ *
+ * The code generation computes every value in r0 before moving it to the
+ * register or the variable it is meant for. The rules, in the order they are
+ * tried:
+ * <ul>
+ * <li>branch-to-next: a branch to the label which follows it;</li>
+ * <li>self-copy: mov rx, rx;</li>
+ * <li>redundant-move: mov rx, ry followed by mov ry, rx;</li>
+ * <li>copy-forward: mov, ldr, vmov, add or sub into r0 followed by
+ * mov rv, r0, r0 being dead, writes rv directly.</li>
+ * </ul>
+ * The blocks of raw text (see ARMProgram.addARMBlock) end the windows; they
+ * read the registers they name.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class ARMPeepholeOptimizer extends PeepholeOptimizer {
+
+    /**
+     * Raw block defining a label of the code
+     */
+    private static final Pattern LABEL = Pattern.compile("^([A-Za-z_][A-Za-z0-9_.]*):\\s*$");
+
+    public ARMPeepholeOptimizer() {
+        addRule(new BranchToNext());
+        addRule(new SelfCopy());
+        addRule(new RedundantMove());
+        addRule(new CopyForward());
+    }
+
+    /*
+     * ---------------------------------------------------------------------
+     * Rules
+     * ---------------------------------------------------------------------
+     */
+
+    private class BranchToNext extends PeepholeRule {
+        BranchToNext() {
+            super("branch-to-next");
+        }
+
+        @Override
+        public boolean apply(int k) {
+            String target = branchTarget(instruction(k));
+            if (target == null || !reachesLabel(k, target)) {
+                return false;
+            }
+            remove(k);
+            return true;
+        }
+    }
+
+    private class SelfCopy extends PeepholeRule {
+        SelfCopy() {
+            super("self-copy");
+        }
+
+        @Override
+        public boolean apply(int k) {
+            if (!isMove(instruction(k))) {
+                return false;
+            }
+            mov move = (mov) instruction(k);
+            if (!sameRegister(move.getOperand1(), move.getOperand2())) {
+                return false;
+            }
+            remove(k);
+            return true;
+        }
+    }
+
+    private class RedundantMove extends PeepholeRule {
+        RedundantMove() {
+            super("redundant-move");
+        }
+
+        @Override
+        public boolean apply(int k) {
+            int j = next(k);
+            if (!isMove(instruction(k)) || j < 0 || !isMove(instruction(j))) {
+                return false;
+            }
+            mov first = (mov) instruction(k);
+            mov second = (mov) instruction(j);
+            if (!sameRegister(second.getOperand1(), first.getOperand2())
+                    || !sameRegister(second.getOperand2(), first.getOperand1())) {
+                return false;
+            }
+            remove(j);
+            return true;
+        }
+    }
+
+    private class CopyForward extends PeepholeRule {
+        CopyForward() {
+            super("copy-forward");
+        }
+
+        @Override
+        public boolean apply(int k) {
+            Instruction first = instruction(k);
+            int j = next(k);
+            if (j < 0 || !isMove(instruction(j))) {
+                return false;
+            }
+            mov copy = (mov) instruction(j);
+            Operand copied = copy.getOperand2();
+            if (!(copied instanceof ARMGPRegister)
+                    || !(copy.getOperand1() instanceof ARMGPRegister)
+                    || sameRegister(copied, copy.getOperand1())) {
+                return false;
+            }
+            ARMGPRegister destination = (ARMGPRegister) copy.getOperand1();
+            if (isMove(first)) {
+                mov move = (mov) first;
+                if (!sameRegister(move.getOperand1(), copied) || isLive(j, copied)) {
+                    return false;
+                }
+                move.setOperands(destination, move.getOperand2());
+            } else if (first.getClass() == ldr.class) {
+                ldr load = (ldr) first;
+                if (!sameRegister(load.getOperand1(), copied) || isLive(j, copied)) {
+                    return false;
+                }
+                replace(k, new ldr(destination, load.getOperand2()));
+            } else if (first instanceof vmov && ((vmov) first).getOperand3() == null) {
+                vmov move = (vmov) first;
+                if (!sameRegister(move.getOperand1(), copied) || isLive(j, copied)) {
+                    return false;
+                }
+                replace(k, new vmov(destination, move.getOperand2()));
+            } else if ((first.getClass() == add.class || first.getClass() == sub.class)
+                    && ((ARMTernaryInstruction) first).getOperand3() != null) {
+                ARMTernaryInstruction operation = (ARMTernaryInstruction) first;
+                if (!sameRegister(operation.getOperand1(), copied) || isLive(j, copied)) {
+                    return false;
+                }
+                DVal left = (DVal) operation.getOperand2();
+                DVal right = (DVal) operation.getOperand3();
+                replace(k, first instanceof add ? new add(destination, left, right)
+                        : new sub(destination, left, right));
+            } else {
+                return false;
+            }
+            remove(j);
+            return true;
+        }
+    }
+
+    /*
+     * ---------------------------------------------------------------------
+     * Instructions
+     * ---------------------------------------------------------------------
+     */
+
+    /**
+     * @return true for an unconditional mov
+     */
+    private static boolean isMove(Instruction instruction) {
+        return instruction != null && instruction.getClass() == mov.class;
+    }
+
+    private static boolean isCall(Instruction instruction) {
+        return instruction instanceof bl || instruction instanceof bleq
+                || instruction instanceof blgt || instruction instanceof bllo
+                || instruction instanceof blmi || instruction instanceof blpl;
+    }
+
+    /**
+     * @return true if the register is one of the arguments and results of
+     * the calls (r0 to r3)
+     */
+    private static boolean isArgument(Operand register) {
+        return register.toString().matches("r[0-3]");
+    }
+
+    /**
+     * @return true if the text names the register
+     */
+    private static boolean mentions(String text, Operand register) {
+        return Pattern.compile("\\b" + register + "\\b").matcher(text).find();
+    }
+
+    @Override
+    protected Effect effect(Instruction instruction, Operand register) {
+        if (isCall(instruction)) {
+            return Effect.READ;
+        }
+        if (instruction instanceof ARMStackInstruction) {
+            ARMStackInstruction stack = (ARMStackInstruction) instruction;
+            boolean listed = false;
+            boolean returns = false;
+            for (int i = 0; i < stack.getNbOperands(); i++) {
+                listed |= sameRegister(stack.getOperand(i), register);
+                returns |= stack.getOperand(i) == ARMRegister.pc;
+            }
+            if (instruction instanceof push || instruction instanceof pusheq
+                    || instruction instanceof pushgt) {
+                return listed ? Effect.READ : Effect.NONE;
+            }
+            if (instruction.getClass() != pop.class) {
+                return listed || returns ? Effect.READ : Effect.NONE;
+            }
+            if (returns) {
+                return isArgument(register) ? Effect.READ : Effect.WRITE;
+            }
+            return listed ? Effect.WRITE : Effect.NONE;
+        }
+        if (instruction instanceof ARMUnaryInstructionString) {
+            return Effect.NONE;
+        }
+        if (instruction instanceof ARMBinaryInstructionStringToReg) {
+            ARMBinaryInstructionStringToReg memory = (ARMBinaryInstructionStringToReg) instruction;
+            if (mentions(memory.getOperand2(), register)) {
+                return Effect.READ;
+            }
+            if (!sameRegister(memory.getOperand1(), register)) {
+                return Effect.NONE;
+            }
+            return instruction instanceof str || instruction instanceof vstr
+                    ? Effect.READ : Effect.WRITE;
+        }
+        if (instruction instanceof BinaryInstruction) {
+            BinaryInstruction binary = (BinaryInstruction) instruction;
+            if (sameRegister(binary.getOperand2(), register)) {
+                return Effect.READ;
+            }
+            if (!sameRegister(binary.getOperand1(), register)) {
+                return Effect.NONE;
+            }
+            return isMove(instruction) || instruction.getClass() == neg.class
+                    ? Effect.WRITE : Effect.READ;
+        }
+        if (instruction instanceof ARMTernaryInstruction) {
+            ARMTernaryInstruction ternary = (ARMTernaryInstruction) instruction;
+            boolean three = ternary.getOperand3() != null;
+            if (sameRegister(ternary.getOperand3(), register)) {
+                return Effect.READ;
+            }
+            if (instruction instanceof vmov) {
+                // vmov rx, ry, dz writes both core registers
+                boolean toCore = ternary.getOperand1().toString().startsWith("r");
+                if (sameRegister(ternary.getOperand1(), register)) {
+                    return Effect.WRITE;
+                }
+                if (sameRegister(ternary.getOperand2(), register)) {
+                    return three && toCore ? Effect.WRITE : Effect.READ;
+                }
+                return Effect.NONE;
+            }
+            if (sameRegister(ternary.getOperand2(), register)) {
+                return Effect.READ;
+            }
+            if (!sameRegister(ternary.getOperand1(), register)) {
+                return Effect.NONE;
+            }
+            Class<?> c = instruction.getClass();
+            return three && (c == add.class || c == sub.class || c == mul.class)
+                    ? Effect.WRITE : Effect.READ;
+        }
+        return Effect.READ;
+    }
+
+    @Override
+    protected Effect effect(AbstractLine line, Operand register) {
+        if (line instanceof ARMLine && ((ARMLine) line).getComment() != null) {
+            return mentions(((ARMLine) line).getComment(), register)
+                    ? Effect.READ : Effect.NONE;
+        }
+        return super.effect(line, register);
+    }
+
+    @Override
+    protected String branchTarget(Instruction instruction) {
+        if (instruction instanceof ARMUnaryInstructionString && !isCall(instruction)) {
+            return ((ARMUnaryInstructionString) instruction).getOperand().toString()
+                    .replace("\"", "");
+        }
+        return null;
+    }
+
+    @Override
+    protected boolean fallsThrough(Instruction instruction) {
+        return instruction.getClass() != b.class;
+    }
+
+    @Override
+    protected String labelOf(AbstractLine line) {
+        if (line instanceof ARMLine && ((ARMLine) line).getComment() != null) {
+            Matcher matcher = LABEL.matcher(((ARMLine) line).getComment());
+            return matcher.matches() ? matcher.group(1) : null;
+        }
+        return super.labelOf(line);
+    }
+}
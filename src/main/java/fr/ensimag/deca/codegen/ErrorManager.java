@@ -59,6 +59,10 @@ public class ErrorManager {
         errorMap.put("Uninitialized variable access", noInitializationAccessLabel);
         Label incorrectAssemblerLabel = new Label("incorrect_assembler");
         errorMap.put("Invalid IMA assembly", incorrectAssemblerLabel);
+        Label indexOutOfBoundsLabel = new Label("index_out_of_bounds");
+        errorMap.put("Index out of bounds", indexOutOfBoundsLabel);
+        Label negativeArraySizeLabel = new Label("negative_array_size");
+        errorMap.put("Negative array size", negativeArraySizeLabel);
 
     }
 
@@ -0,0 +1,639 @@
+package fr.ensimag.deca.codegen;
+
+import fr.ensimag.ima.pseudocode.BinaryInstruction;
+import fr.ensimag.ima.pseudocode.BranchInstruction;
+import fr.ensimag.ima.pseudocode.DAddr;
+import fr.ensimag.ima.pseudocode.DVal;
+import fr.ensimag.ima.pseudocode.GPRegister;
+import fr.ensimag.ima.pseudocode.ImmediateFloat;
+import fr.ensimag.ima.pseudocode.ImmediateInteger;
+import fr.ensimag.ima.pseudocode.Instruction;
+import fr.ensimag.ima.pseudocode.Label;
+import fr.ensimag.ima.pseudocode.Operand;
+import fr.ensimag.ima.pseudocode.Register;
+import fr.ensimag.ima.pseudocode.RegisterIndexedOffset;
+import fr.ensimag.ima.pseudocode.RegisterOffset;
+import fr.ensimag.ima.pseudocode.UnaryInstruction;
+import fr.ensimag.ima.pseudocode.instructions.*;
+
+/**
+ * Peephole optimizer of the IMA code.
+ *
+ * The code generation leaves copies between R0 and the allocated registers,
+ * stores followed by loads of the same slot, branches to the next
+ * instruction... The rules, in the order they are tried:
+ * <ul>
+ * <li>branch-to-next: a branch to the label which follows it;</li>
+ * <li>self-copy: LOAD Rx, Rx;</li>
+ * <li>push-pop: PUSH Rx followed by POP Rx;</li>
+ * <li>redundant-load: LOAD Rx, Ry followed by LOAD Ry, Rx, the same value
+ * loaded twice, STORE Rx, addr followed by LOAD addr, Ry (which becomes
+ * LOAD Rx, Ry);</li>
+ * <li>constant-branch: LOAD #a, R0 followed by CMP #b, R0 and a conditional
+ * branch, which is never taken (e.g. the check of a constant divisor) or
+ * becomes BRA;</li>
+ * <li>commute-operand: LOAD x, R0 followed by ADD Rv, R0 becomes LOAD Rv, R0
+ * followed by ADD x, R0 (the same for MUL, and for CMP whose branch is
+ * mirrored), so that the copy of Rv may disappear;</li>
+ * <li>copy-forward: LOAD x, R0 followed by LOAD R0, Rv, R0 being dead,
+ * becomes LOAD x, Rv;</li>
+ * <li>operand-forward: LOAD x, R0 followed by OP R0, Rv, R0 being dead,
+ * becomes OP x, Rv;</li>
+ * <li>copy-propagation: after LOAD Rx, Ry, Ry is replaced by Rx in the
+ * operands of the next instructions, until one of them is written;</li>
+ * <li>dead-load: LOAD, LEA or OPP into a dead register, unless it reads a
+ * word from a register which may be null.</li>
+ * </ul>
+ * The condition codes set by a removed instruction are checked not to be
+ * used.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class IMAPeepholeOptimizer extends PeepholeOptimizer {
+    /**
+     * Total number of registers (decac -r), which gives the caller-saved
+     * ones (see RegisterAllocator.isCalleeSaved)
+     */
+    private final int nbRegisters;
+
+    public IMAPeepholeOptimizer(int nbRegisters) {
+        this.nbRegisters = nbRegisters;
+        addRule(new BranchToNext());
+        addRule(new SelfCopy());
+        addRule(new PushPop());
+        addRule(new RedundantLoad());
+        addRule(new ConstantBranch());
+        addRule(new CommuteOperand());
+        addRule(new CopyForward());
+        addRule(new OperandForward());
+        addRule(new CopyPropagation());
+        addRule(new DeadLoad());
+    }
+
+    /*
+     * ---------------------------------------------------------------------
+     * Rules
+     * ---------------------------------------------------------------------
+     */
+
+    private class BranchToNext extends PeepholeRule {
+        BranchToNext() {
+            super("branch-to-next");
+        }
+
+        @Override
+        public boolean apply(int k) {
+            String target = branchTarget(instruction(k));
+            if (target == null || !reachesLabel(k, target)) {
+                return false;
+            }
+            remove(k);
+            return true;
+        }
+    }
+
+    private class SelfCopy extends PeepholeRule {
+        SelfCopy() {
+            super("self-copy");
+        }
+
+        @Override
+        public boolean apply(int k) {
+            if (!(instruction(k) instanceof LOAD)) {
+                return false;
+            }
+            LOAD load = (LOAD) instruction(k);
+            if (!sameRegister(load.getOperand1(), load.getOperand2()) || conditionUsed(k)) {
+                return false;
+            }
+            remove(k);
+            return true;
+        }
+    }
+
+    private class PushPop extends PeepholeRule {
+        PushPop() {
+            super("push-pop");
+        }
+
+        @Override
+        public boolean apply(int k) {
+            int j = next(k);
+            if (!(instruction(k) instanceof PUSH) || j < 0
+                    || !(instruction(j) instanceof POP)) {
+                return false;
+            }
+            Operand pushed = ((PUSH) instruction(k)).getOperand();
+            if (!sameRegister(((POP) instruction(j)).getOperand(), pushed)
+                    || conditionUsed(j)) {
+                return false;
+            }
+            remove(k);
+            remove(j);
+            return true;
+        }
+    }
+
+    private class RedundantLoad extends PeepholeRule {
+        RedundantLoad() {
+            super("redundant-load");
+        }
+
+        @Override
+        public boolean apply(int k) {
+            Instruction first = instruction(k);
+            int j = next(k);
+            if (!(first instanceof LOAD || first instanceof STORE) || j < 0
+                    || !(instruction(j) instanceof LOAD)) {
+                return false;
+            }
+            BinaryInstruction previous = (BinaryInstruction) first;
+            LOAD load = (LOAD) instruction(j);
+            if (first instanceof LOAD) {
+                boolean backCopy = sameRegister(load.getOperand1(), previous.getOperand2())
+                        && sameRegister(load.getOperand2(), previous.getOperand1());
+                boolean reload = sameOperand(load.getOperand1(), previous.getOperand1())
+                        && sameRegister(load.getOperand2(), previous.getOperand2())
+                        && !dependsOn(load.getOperand1(), load.getOperand2());
+                if (!backCopy && !reload) {
+                    return false;
+                }
+                // the register already holds the value, with the same
+                // condition codes
+                remove(j);
+                return true;
+            }
+            if (!sameOperand(load.getOperand1(), previous.getOperand2())) {
+                return false;
+            }
+            if (sameRegister(load.getOperand2(), previous.getOperand1())) {
+                remove(j);
+            } else {
+                replace(j, new LOAD((DVal) previous.getOperand1(),
+                        (Register) load.getOperand2()));
+            }
+            return true;
+        }
+    }
+
+    private class ConstantBranch extends PeepholeRule {
+        ConstantBranch() {
+            super("constant-branch");
+        }
+
+        @Override
+        public boolean apply(int k) {
+            int j = next(k);
+            int m = j < 0 ? -1 : next(j);
+            if (!(instruction(k) instanceof LOAD) || m < 0 || !(instruction(j) instanceof CMP)
+                    || !readsCondition(m) || RegisterAllocator.isSetCondition(instruction(m))) {
+                return false;
+            }
+            LOAD load = (LOAD) instruction(k);
+            CMP compare = (CMP) instruction(j);
+            if (!sameRegister(compare.getOperand2(), load.getOperand2())) {
+                return false;
+            }
+            Operand a = load.getOperand1();
+            Operand b = compare.getOperand1();
+            boolean lower;
+            boolean equal;
+            if (a instanceof ImmediateInteger && b instanceof ImmediateInteger) {
+                lower = ((ImmediateInteger) a).getValue() < ((ImmediateInteger) b).getValue();
+                equal = ((ImmediateInteger) a).getValue() == ((ImmediateInteger) b).getValue();
+            } else if (a instanceof ImmediateFloat && b instanceof ImmediateFloat) {
+                lower = ((ImmediateFloat) a).getValue() < ((ImmediateFloat) b).getValue();
+                equal = ((ImmediateFloat) a).getValue() == ((ImmediateFloat) b).getValue();
+            } else {
+                return false;
+            }
+            BranchInstruction branch = (BranchInstruction) instruction(m);
+            // the next instructions see the condition codes of the LOAD
+            if (conditionUsed(m)) {
+                return false;
+            }
+            remove(j);
+            if (taken(branch, lower, equal)) {
+                replace(m, new BRA((Label) branch.getOperand()));
+            } else {
+                remove(m);
+            }
+            return true;
+        }
+    }
+
+    private class CommuteOperand extends PeepholeRule {
+        CommuteOperand() {
+            super("commute-operand");
+        }
+
+        @Override
+        public boolean apply(int k) {
+            int j = next(k);
+            if (!(instruction(k) instanceof LOAD) || j < 0) {
+                return false;
+            }
+            LOAD load = (LOAD) instruction(k);
+            Operand value = load.getOperand1();
+            Operand accumulator = load.getOperand2();
+            Instruction operation = instruction(j);
+            if (value instanceof GPRegister || dependsOn(value, accumulator)
+                    || !(operation instanceof ADD || operation instanceof MUL
+                            || operation instanceof CMP)) {
+                return false;
+            }
+            BinaryInstruction binary = (BinaryInstruction) operation;
+            Operand other = binary.getOperand1();
+            if (!(other instanceof GPRegister) || sameRegister(other, accumulator)
+                    || !sameRegister(binary.getOperand2(), accumulator)) {
+                return false;
+            }
+            if (operation instanceof CMP) {
+                // the accumulator ends with the other value: it must be dead,
+                // and the only use of the condition codes mirrored
+                int m = next(j);
+                if (m < 0 || isLive(j, accumulator)) {
+                    return false;
+                }
+                Instruction mirrored = mirror(instruction(m));
+                if (mirrored == null || conditionUsed(m)) {
+                    return false;
+                }
+                String target = branchTarget(instruction(m));
+                if (target != null) {
+                    int t = labelIndex(target);
+                    if (t < 0 || readsCondition(following(t - 1))) {
+                        return false;
+                    }
+                }
+                replace(m, mirrored);
+            }
+            load.setOperands(other, accumulator);
+            binary.setOperands(value, accumulator);
+            return true;
+        }
+    }
+
+    private class CopyForward extends PeepholeRule {
+        CopyForward() {
+            super("copy-forward");
+        }
+
+        @Override
+        public boolean apply(int k) {
+            Instruction first = instruction(k);
+            int j = next(k);
+            if (j < 0 || !(instruction(j) instanceof LOAD)) {
+                return false;
+            }
+            LOAD copy = (LOAD) instruction(j);
+            Operand copied = copy.getOperand1();
+            Operand destination = copy.getOperand2();
+            if (!(copied instanceof GPRegister) || sameRegister(copied, destination)) {
+                return false;
+            }
+            // LOAD and OPP set the condition codes like the copy
+            boolean setsCondition = first instanceof LOAD || first instanceof OPP;
+            if (first instanceof LOAD || first instanceof LEA || first instanceof OPP
+                    || first instanceof FLOAT || first instanceof INT) {
+                BinaryInstruction binary = (BinaryInstruction) first;
+                if (!sameRegister(binary.getOperand2(), copied)
+                        || (!setsCondition && conditionUsed(j)) || isLive(j, copied)) {
+                    return false;
+                }
+                binary.setOperands(binary.getOperand1(), destination);
+            } else if (RegisterAllocator.isSetCondition(first)) {
+                UnaryInstruction unary = (UnaryInstruction) first;
+                if (!sameRegister(unary.getOperand(), copied) || conditionUsed(j)
+                        || isLive(j, copied)) {
+                    return false;
+                }
+                unary.setOperand(destination);
+            } else {
+                return false;
+            }
+            remove(j);
+            return true;
+        }
+    }
+
+    private class OperandForward extends PeepholeRule {
+        OperandForward() {
+            super("operand-forward");
+        }
+
+        @Override
+        public boolean apply(int k) {
+            int j = next(k);
+            if (!(instruction(k) instanceof LOAD) || j < 0) {
+                return false;
+            }
+            LOAD load = (LOAD) instruction(k);
+            Operand loaded = load.getOperand2();
+            Instruction operation = instruction(j);
+            // the operation must set the condition codes like the LOAD
+            boolean setsCondition = operation instanceof ADD || operation instanceof SUB
+                    || operation instanceof MUL || operation instanceof DIV
+                    || operation instanceof QUO || operation instanceof REM
+                    || operation instanceof CMP || operation instanceof OPP;
+            if (!(setsCondition || operation instanceof FLOAT || operation instanceof INT)) {
+                return false;
+            }
+            BinaryInstruction binary = (BinaryInstruction) operation;
+            if (!sameRegister(binary.getOperand1(), loaded)
+                    || sameRegister(binary.getOperand2(), loaded)
+                    || (!setsCondition && conditionUsed(j)) || isLive(j, loaded)) {
+                return false;
+            }
+            binary.setOperands(load.getOperand1(), binary.getOperand2());
+            remove(k);
+            return true;
+        }
+    }
+
+    private class CopyPropagation extends PeepholeRule {
+        CopyPropagation() {
+            super("copy-propagation");
+        }
+
+        @Override
+        public boolean apply(int k) {
+            if (!(instruction(k) instanceof LOAD)) {
+                return false;
+            }
+            LOAD copy = (LOAD) instruction(k);
+            Operand source = copy.getOperand1();
+            Operand copied = copy.getOperand2();
+            if (!(source instanceof GPRegister) || sameRegister(source, copied)) {
+                return false;
+            }
+            boolean changed = false;
+            for (int j = next(k); j >= 0; j = next(j)) {
+                Instruction instruction = instruction(j);
+                if (instruction instanceof BinaryInstruction) {
+                    BinaryInstruction binary = (BinaryInstruction) instruction;
+                    Operand operand = binary.getOperand1();
+                    if (sameRegister(operand, copied)) {
+                        binary.setOperands(source, binary.getOperand2());
+                        changed = true;
+                    } else if (operand instanceof RegisterOffset
+                            && sameRegister(((RegisterOffset) operand).getRegister(), copied)) {
+                        binary.setOperands(new RegisterOffset(((RegisterOffset) operand).getOffset(),
+                                (Register) source), binary.getOperand2());
+                        changed = true;
+                    }
+                }
+                if (effect(instruction, copied) != Effect.NONE || writes(instruction, source)
+                        || !fallsThrough(instruction)) {
+                    break;
+                }
+            }
+            return changed;
+        }
+    }
+
+    private class DeadLoad extends PeepholeRule {
+        DeadLoad() {
+            super("dead-load");
+        }
+
+        @Override
+        public boolean apply(int k) {
+            Instruction first = instruction(k);
+            if (!(first instanceof LOAD || first instanceof LEA || first instanceof OPP)) {
+                return false;
+            }
+            BinaryInstruction load = (BinaryInstruction) first;
+            // LEA only computes the address, a read may stop the program
+            if (!(first instanceof LEA) && mayFault(load.getOperand1())) {
+                return false;
+            }
+            Operand destination = load.getOperand2();
+            if ((!(first instanceof LEA) && conditionUsed(k)) || isLive(k, destination)) {
+                return false;
+            }
+            remove(k);
+            return true;
+        }
+    }
+
+    /**
+     * @return true if reading the operand may stop the program: a word
+     * addressed from a register which may not hold an address (an object
+     * which may be null), unlike the words of the stack
+     */
+    private static boolean mayFault(Operand operand) {
+        Register base;
+        if (operand instanceof RegisterIndexedOffset) {
+            base = ((RegisterIndexedOffset) operand).getRegister();
+        } else if (operand instanceof RegisterOffset) {
+            base = ((RegisterOffset) operand).getRegister();
+        } else {
+            return false;
+        }
+        return !(sameRegister(base, Register.GB) || sameRegister(base, Register.LB)
+                || sameRegister(base, Register.SP));
+    }
+
+    /*
+     * ---------------------------------------------------------------------
+     * Instructions
+     * ---------------------------------------------------------------------
+     */
+
+    /**
+     * @return true if the condition codes set by the instruction of line k
+     * may be read by the next one
+     */
+    private boolean conditionUsed(int k) {
+        return readsCondition(following(k));
+    }
+
+    /**
+     * @return true if the instruction of line j reads the condition codes,
+     * or if it is unknown (j < 0)
+     */
+    private boolean readsCondition(int j) {
+        if (j < 0) {
+            return true;
+        }
+        Instruction instruction = instruction(j);
+        return RegisterAllocator.isSetCondition(instruction)
+                || (instruction instanceof BranchInstruction
+                        && !(instruction instanceof BRA) && !(instruction instanceof BSR)
+                        && !(instruction instanceof BOV));
+    }
+
+    /**
+     * @return true if the branch is taken after a comparison giving the
+     * condition codes lower and equal
+     */
+    private static boolean taken(BranchInstruction branch, boolean lower, boolean equal) {
+        if (branch instanceof BEQ) {
+            return equal;
+        } else if (branch instanceof BNE) {
+            return !equal;
+        } else if (branch instanceof BLT) {
+            return lower;
+        } else if (branch instanceof BLE) {
+            return lower || equal;
+        } else if (branch instanceof BGT) {
+            return !lower && !equal;
+        } else {
+            // BGE
+            return !lower;
+        }
+    }
+
+    /**
+     * @return true if the instruction may change the value of the register
+     */
+    private static boolean writes(Instruction instruction, Operand register) {
+        if (instruction instanceof BSR) {
+            // the caller-saved registers (see RegisterAllocator.isCalleeSaved)
+            // are not kept by the method, whose number is not known here
+            return register instanceof GPRegister;
+        }
+        if (instruction instanceof RINT || instruction instanceof RFLOAT) {
+            return sameRegister(register, Register.R1);
+        }
+        if (instruction instanceof BinaryInstruction) {
+            return RegisterAllocator.writesRegister(instruction)
+                    && sameRegister(((BinaryInstruction) instruction).getOperand2(), register);
+        }
+        if (instruction instanceof UnaryInstruction) {
+            return RegisterAllocator.writesRegister(instruction)
+                    && sameRegister(((UnaryInstruction) instruction).getOperand(), register);
+        }
+        return false;
+    }
+
+    /**
+     * @return the instruction using the condition codes of CMP y, x as the
+     * given one uses those of CMP x, y, null if there is none
+     */
+    private static Instruction mirror(Instruction instruction) {
+        if (instruction instanceof BEQ || instruction instanceof BNE
+                || instruction instanceof SEQ || instruction instanceof SNE) {
+            return instruction;
+        }
+        if (instruction instanceof BranchInstruction) {
+            Label target = (Label) ((BranchInstruction) instruction).getOperand();
+            if (instruction instanceof BGT) {
+                return new BLT(target);
+            } else if (instruction instanceof BLT) {
+                return new BGT(target);
+            } else if (instruction instanceof BGE) {
+                return new BLE(target);
+            } else if (instruction instanceof BLE) {
+                return new BGE(target);
+            }
+            return null;
+        }
+        if (RegisterAllocator.isSetCondition(instruction)) {
+            Register register = (Register) ((UnaryInstruction) instruction).getOperand();
+            if (instruction instanceof SGT) {
+                return new SLT(register);
+            } else if (instruction instanceof SLT) {
+                return new SGT(register);
+            } else if (instruction instanceof SGE) {
+                return new SLE(register);
+            } else if (instruction instanceof SLE) {
+                return new SGE(register);
+            }
+        }
+        return null;
+    }
+
+    private static boolean sameOperand(Operand operand1, Operand operand2) {
+        return operand1.toString().equals(operand2.toString());
+    }
+
+    /**
+     * @return true if the value of the operand depends on the register
+     */
+    private static boolean dependsOn(Operand operand, Operand register) {
+        if (operand instanceof RegisterIndexedOffset) {
+            RegisterIndexedOffset address = (RegisterIndexedOffset) operand;
+            return sameRegister(address.getRegister(), register)
+                    || sameRegister(address.getIndex(), register);
+        }
+        return sameRegister(operand, register) || (operand instanceof RegisterOffset
+                && sameRegister(((RegisterOffset) operand).getRegister(), register));
+    }
+
+    @Override
+    protected Effect effect(Instruction instruction, Operand register) {
+        if (instruction instanceof RTS) {
+            return Effect.READ;
+        }
+        if (instruction instanceof HALT || instruction instanceof ERROR) {
+            return Effect.WRITE;
+        }
+        if (instruction instanceof BSR) {
+            Operand method = ((BSR) instruction).getOperand();
+            if (dependsOn(method, register)) {
+                return Effect.READ;
+            }
+            // R0 and R1 may be read by a method written in assembly; the
+            // caller-saved registers may be overwritten by the method, so no
+            // value in them is used after the call, and the callee-saved
+            // ones keep their value (see RegisterAllocator)
+            if (sameRegister(register, Register.R0) || sameRegister(register, Register.R1)) {
+                return Effect.READ;
+            }
+            if (register instanceof GPRegister && !RegisterAllocator.isCalleeSaved(
+                    ((GPRegister) register).getNumber(), nbRegisters)) {
+                return Effect.WRITE;
+            }
+            return Effect.NONE;
+        }
+        boolean r1 = sameRegister(register, Register.R1);
+        if (r1 && (instruction instanceof WINT || instruction instanceof WFLOAT
+                || instruction instanceof WFLOATX || instruction instanceof FMA)) {
+            return Effect.READ;
+        }
+        if (r1 && (instruction instanceof RINT || instruction instanceof RFLOAT)) {
+            return Effect.WRITE;
+        }
+        Operand operand;
+        if (instruction instanceof BinaryInstruction) {
+            BinaryInstruction binary = (BinaryInstruction) instruction;
+            if (dependsOn(binary.getOperand1(), register)
+                    || (binary.getOperand2() instanceof DAddr
+                            && dependsOn(binary.getOperand2(), register))) {
+                return Effect.READ;
+            }
+            if (instruction instanceof STORE) {
+                return Effect.NONE;
+            }
+            operand = binary.getOperand2();
+        } else if (instruction instanceof UnaryInstruction) {
+            operand = ((UnaryInstruction) instruction).getOperand();
+            if (operand instanceof DAddr && dependsOn(operand, register)) {
+                return Effect.READ;
+            }
+        } else {
+            return Effect.NONE;
+        }
+        if (!sameRegister(operand, register)) {
+            return Effect.NONE;
+        }
+        return RegisterAllocator.readsRegister(instruction) ? Effect.READ : Effect.WRITE;
+    }
+
+    @Override
+    protected String branchTarget(Instruction instruction) {
+        if (instruction instanceof BranchInstruction && !(instruction instanceof BSR)) {
+            return ((BranchInstruction) instruction).getOperand().toString();
+        }
+        return null;
+    }
+
+    @Override
+    protected boolean fallsThrough(Instruction instruction) {
+        return !(instruction instanceof BRA || instruction instanceof RTS
+                || instruction instanceof HALT || instruction instanceof ERROR);
+    }
+}
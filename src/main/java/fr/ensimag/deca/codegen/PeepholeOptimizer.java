@@ -0,0 +1,351 @@
+package fr.ensimag.deca.codegen;
+
+import fr.ensimag.ima.pseudocode.AbstractLine;
+import fr.ensimag.ima.pseudocode.Instruction;
+import fr.ensimag.ima.pseudocode.Line;
+import fr.ensimag.ima.pseudocode.Operand;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.log4j.Logger;
+
+/**
+ * Peephole optimizer of the generated code, run once the whole program is
+ * generated and before it is displayed.
+ *
+ * The optimizer slides a window over the lines of the program: at each
+ * instruction, every rule of the target (see addRule) may rewrite the
+ * instructions that follow it. Passes are repeated until no rule applies, a
+ * rewrite often enabling another one. The rules only look at straight-line
+ * code: the window stops at labels (other paths join there) and at the lines
+ * which are not instructions of the target (inline assembly, raw ARM
+ * blocks). They may also ask whether a register is still read afterwards
+ * (see isLive), which follows the branches of the code.
+ *
+ * The number of lines removed by each rule is logged with -d.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public abstract class PeepholeOptimizer {
+    private static final Logger LOG = Logger.getLogger(PeepholeOptimizer.class);
+
+    /**
+     * Number of instructions a liveness query may examine before giving up
+     * (the register is then supposed to be live)
+     */
+    private static final int MAX_SCAN = 2000;
+
+    /**
+     * Effect of an instruction on a register
+     */
+    protected enum Effect {
+        /** the register is neither read nor written */
+        NONE,
+        /** the value of the register may be read */
+        READ,
+        /** the register is overwritten without being read */
+        WRITE
+    }
+
+    private final List<PeepholeRule> rules = new ArrayList<PeepholeRule>();
+    private final Map<String, Integer> removedLines = new LinkedHashMap<String, Integer>();
+
+    /**
+     * Lines being optimized, a removed line being replaced by null until the
+     * end of the pass so that the indexes stay valid
+     */
+    private List<AbstractLine> code;
+    private final Map<String, Integer> labels = new HashMap<String, Integer>();
+    private int nbRemoved;
+    private int scanBudget;
+
+    /**
+     * Add a rule, tried after the ones already added
+     */
+    public void addRule(PeepholeRule rule) {
+        rules.add(rule);
+        removedLines.put(rule.getName(), 0);
+    }
+
+    /**
+     * @return the number of lines removed by the rule of the given name
+     */
+    public int getRemovedLines(String ruleName) {
+        Integer n = removedLines.get(ruleName);
+        return n == null ? 0 : n;
+    }
+
+    /**
+     * Optimize the given lines, which are replaced
+     */
+    public void optimize(List<AbstractLine> lines) {
+        code = new ArrayList<AbstractLine>(lines);
+        int nbPasses = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            nbPasses++;
+            indexLabels();
+            for (int k = 0; k < code.size(); k++) {
+                for (PeepholeRule rule : rules) {
+                    if (instruction(k) == null) {
+                        break;
+                    }
+                    int before = nbRemoved;
+                    if (rule.apply(k)) {
+                        changed = true;
+                        removedLines.put(rule.getName(),
+                                removedLines.get(rule.getName()) + nbRemoved - before);
+                    }
+                }
+            }
+            compact();
+        }
+        lines.clear();
+        lines.addAll(code);
+        code = null;
+
+        LOG.info("Peephole optimization: " + nbRemoved + " lines removed in "
+                + nbPasses + " passes");
+        for (Map.Entry<String, Integer> entry : removedLines.entrySet()) {
+            LOG.info("    " + entry.getKey() + ": " + entry.getValue() + " lines removed");
+        }
+    }
+
+    private void indexLabels() {
+        labels.clear();
+        for (int k = 0; k < code.size(); k++) {
+            String label = labelOf(code.get(k));
+            if (label != null) {
+                labels.put(label, k);
+            }
+        }
+    }
+
+    private void compact() {
+        List<AbstractLine> result = new ArrayList<AbstractLine>(code.size());
+        for (AbstractLine line : code) {
+            if (line != null) {
+                result.add(line);
+            }
+        }
+        code = result;
+    }
+
+    /*
+     * ---------------------------------------------------------------------
+     * Window
+     * ---------------------------------------------------------------------
+     */
+
+    /**
+     * @return the instruction of line k, null if the line holds none
+     */
+    public Instruction instruction(int k) {
+        AbstractLine line = code.get(k);
+        return line instanceof Line ? ((Line) line).getInstruction() : null;
+    }
+
+    /**
+     * @return the index of the instruction executed after the one of line k,
+     * when it is only reached from it, -1 otherwise
+     */
+    public int next(int k) {
+        for (int j = k + 1; j < code.size(); j++) {
+            AbstractLine line = code.get(j);
+            if (line == null) {
+                continue;
+            }
+            if (line.getClass() != Line.class || ((Line) line).getLabel() != null) {
+                return -1;
+            }
+            if (((Line) line).getInstruction() != null) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the instruction executed after the one of line k
+     * when it does not branch, whether other paths lead to it or not, -1 if
+     * it is unknown
+     */
+    public int following(int k) {
+        for (int j = k + 1; j < code.size(); j++) {
+            AbstractLine line = code.get(j);
+            if (line == null) {
+                continue;
+            }
+            if (line.getClass() != Line.class) {
+                return -1;
+            }
+            if (((Line) line).getInstruction() != null) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the line defining the label, -1 if it is not in
+     * the code
+     */
+    public int labelIndex(String label) {
+        Integer index = labels.get(label);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return true if the label is defined before the first instruction
+     * following line k, i.e. if a branch to it from line k does nothing
+     */
+    public boolean reachesLabel(int k, String label) {
+        for (int j = k + 1; j < code.size(); j++) {
+            AbstractLine line = code.get(j);
+            if (line == null) {
+                continue;
+            }
+            if (label.equals(labelOf(line))) {
+                return true;
+            }
+            if (line.getClass() != Line.class || ((Line) line).getInstruction() != null) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replace the instruction of line k
+     */
+    public void replace(int k, Instruction instruction) {
+        ((Line) code.get(k)).setInstruction(instruction);
+    }
+
+    /**
+     * Remove the instruction of line k, its label and comment being kept
+     */
+    public void remove(int k) {
+        Line line = (Line) code.get(k);
+        line.setInstruction(null);
+        if (line.getLabel() == null && line.getComment() == null) {
+            code.set(k, null);
+        }
+        nbRemoved++;
+    }
+
+    /*
+     * ---------------------------------------------------------------------
+     * Liveness
+     * ---------------------------------------------------------------------
+     */
+
+    /**
+     * @return true if the value of the register after the instruction of
+     * line k may be read, following every path from there
+     */
+    public boolean isLive(int k, Operand register) {
+        scanBudget = MAX_SCAN;
+        return isLiveFrom(k + 1, register, new BitSet());
+    }
+
+    private boolean isLiveFrom(int start, Operand register, BitSet visited) {
+        for (int j = start; j < code.size(); j++) {
+            AbstractLine line = code.get(j);
+            if (line == null) {
+                continue;
+            }
+            if (visited.get(j)) {
+                // the paths from there are already examined
+                return false;
+            }
+            visited.set(j);
+            if (--scanBudget < 0) {
+                return true;
+            }
+            Instruction instruction = instruction(j);
+            if (instruction == null) {
+                if (effect(line, register) == Effect.READ) {
+                    return true;
+                }
+                continue;
+            }
+            switch (effect(instruction, register)) {
+            case READ:
+                return true;
+            case WRITE:
+                return false;
+            default:
+            }
+            String target = branchTarget(instruction);
+            if (target != null) {
+                int index = labelIndex(target);
+                if (index < 0 || isLiveFrom(index, register, visited)) {
+                    return true;
+                }
+            }
+            if (!fallsThrough(instruction)) {
+                return false;
+            }
+        }
+        // end of the program
+        return true;
+    }
+
+    /*
+     * ---------------------------------------------------------------------
+     * Target
+     * ---------------------------------------------------------------------
+     */
+
+    /**
+     * @return the effect of the instruction on the register. An instruction
+     * which leaves the code reads the registers still needed by the caller,
+     * and writes the other ones.
+     */
+    protected abstract Effect effect(Instruction instruction, Operand register);
+
+    /**
+     * @return the effect on the register of a line which is not an
+     * instruction of the target (comment, label, inline assembly...)
+     */
+    protected Effect effect(AbstractLine line, Operand register) {
+        return line.getClass() == Line.class ? Effect.NONE : Effect.READ;
+    }
+
+    /**
+     * @return the label the instruction may jump to, null if it is not a
+     * branch inside the code (calls included)
+     */
+    protected abstract String branchTarget(Instruction instruction);
+
+    /**
+     * @return false if the next instruction is never executed after this one
+     */
+    protected abstract boolean fallsThrough(Instruction instruction);
+
+    /**
+     * @return the name of the label defined by the line, null if there is
+     * none
+     */
+    protected String labelOf(AbstractLine line) {
+        if (line instanceof Line && ((Line) line).getLabel() != null) {
+            return ((Line) line).getLabel().toString();
+        }
+        return null;
+    }
+
+    /**
+     * @return true if both operands are the same register
+     */
+    protected static boolean sameRegister(Operand operand, Operand register) {
+        return operand != null && register != null
+                && operand.toString().equals(register.toString());
+    }
+}
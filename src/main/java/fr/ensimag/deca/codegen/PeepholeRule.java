@@ -0,0 +1,34 @@
+package fr.ensimag.deca.codegen;
+
+/**
+ * Rewriting rule of a peephole optimizer (see PeepholeOptimizer.addRule).
+ *
+ * A rule looks at the window of code starting at a given instruction, reads
+ * it through the optimizer (instruction, next, isLive...) and rewrites it in
+ * place with replace and remove.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public abstract class PeepholeRule {
+    private final String name;
+
+    /**
+     * @param name name of the rule in the statistics of the optimizer
+     */
+    protected PeepholeRule(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Try to rewrite the window of code starting at the instruction of index
+     * k.
+     *
+     * @return true if the code was changed
+     */
+    public abstract boolean apply(int k);
+}
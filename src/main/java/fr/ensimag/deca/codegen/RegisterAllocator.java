@@ -0,0 +1,1047 @@
+package fr.ensimag.deca.codegen;
+
+import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.tools.DecacInternalError;
+import fr.ensimag.ima.pseudocode.AbstractLine;
+import fr.ensimag.ima.pseudocode.BinaryInstruction;
+import fr.ensimag.ima.pseudocode.BranchInstruction;
+import fr.ensimag.ima.pseudocode.DVal;
+import fr.ensimag.ima.pseudocode.GPRegister;
+import fr.ensimag.ima.pseudocode.Instruction;
+import fr.ensimag.ima.pseudocode.Line;
+import fr.ensimag.ima.pseudocode.Operand;
+import fr.ensimag.ima.pseudocode.Register;
+import fr.ensimag.ima.pseudocode.RegisterIndexedOffset;
+import fr.ensimag.ima.pseudocode.RegisterOffset;
+import fr.ensimag.ima.pseudocode.UnaryInstruction;
+import fr.ensimag.ima.pseudocode.instructions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.log4j.Logger;
+
+/**
+ * Register allocator of the IMA code generation.
+ *
+ * The code generation keeps its intermediate results in virtual registers
+ * (see Register.getRegister), as many as it needs. Once the code of a
+ * routine (the main program, a method or the initialization of the fields of
+ * a class) is generated, the allocator:
+ * <ul>
+ * <li>promotes the variables of the routine, i.e. the slots given with
+ * addVariable whose address is never used, to virtual registers, so that
+ * they stay in registers across statements;</li>
+ * <li>computes the liveness of the virtual registers on the control flow
+ * graph of the routine, and the interval of instructions in which each of
+ * them is live;</li>
+ * <li>assigns the registers R2 to R(n-1), n being given by the option -r, by
+ * a linear scan of these intervals. When there are not enough registers, the
+ * values living the longest are spilled (a variable goes back to its slot,
+ * a temporary gets a new slot) and the allocation is done again;</li>
+ * <li>replaces the virtual registers by the physical ones.</li>
+ * </ul>
+ * R0 and R1 are never allocated: they keep their role of accumulator and
+ * scratch register.
+ *
+ * The other registers follow a calling convention (see isCalleeSaved). The
+ * first half of them are callee-saved: a routine saves the ones it uses (see
+ * getCalleeSavedRegisters), so they keep their value across a call. The
+ * second half are caller-saved: a routine may use them without saving them,
+ * so a value living across a call (BSR) is rather given a callee-saved
+ * register. When there is none left, it is stored to a slot of the frame
+ * before the call and loaded back after it, unless that costs more than
+ * keeping it in memory: it is then spilled. The costs count the calls and
+ * the accesses, LOOP_WEIGHT times more for each loop around them. The values
+ * which do not live across a call take the caller-saved registers first,
+ * which a method does not have to save.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class RegisterAllocator {
+    private static final Logger LOG = Logger.getLogger(RegisterAllocator.class);
+
+    /**
+     * Weight of an instruction in a loop, for each loop around it
+     */
+    private static final int LOOP_WEIGHT = 8;
+    private static final int MAX_LOOP_DEPTH = 4;
+
+    /**
+     * Slot of a variable of the routine, which may be kept in a register
+     */
+    private static class Variable {
+        private final RegisterOffset slot;
+        /**
+         * true for the parameters: the value is in the slot when the routine
+         * starts, so the register has to be loaded from it
+         */
+        private final boolean loadedAtEntry;
+        private int nbAccesses = 0;
+        private boolean addressUsed = false;
+
+        Variable(RegisterOffset slot, boolean loadedAtEntry) {
+            this.slot = slot;
+            this.loadedAtEntry = loadedAtEntry;
+        }
+    }
+
+    private final DecacCompiler compiler;
+    private final String routineName;
+    private final Register spillBase;
+    private final int firstSpillOffset;
+
+    private final List<Variable> variables = new ArrayList<Variable>();
+    private final Map<Register, Map<Integer, Variable>> variablesBySlot = new HashMap<Register, Map<Integer, Variable>>();
+
+    /**
+     * Slot of each promoted variable, where it goes back if it is spilled
+     */
+    private final Map<GPRegister, RegisterOffset> variableSlots = new HashMap<GPRegister, RegisterOffset>();
+
+    /**
+     * Temporaries used to access a spilled value, which live for one
+     * instruction and cannot be spilled themselves
+     */
+    private final Set<GPRegister> unspillable = new HashSet<GPRegister>();
+
+    private final Map<GPRegister, RegisterOffset> spillSlots = new HashMap<GPRegister, RegisterOffset>();
+    private int nbSpillSlots = 0;
+    private int nbSpilled = 0;
+
+    private Map<GPRegister, GPRegister> assignment;
+    private final TreeSet<Integer> usedRegisters = new TreeSet<Integer>();
+
+    /**
+     * Live interval of each virtual register of the last allocation, by
+     * position (see assignRegisters)
+     */
+    private final Map<GPRegister, int[]> intervals = new HashMap<GPRegister, int[]>();
+
+    /**
+     * Virtual registers given a caller-saved register while they live across
+     * a call, saved around it
+     */
+    private final List<GPRegister> savedAcrossCalls = new ArrayList<GPRegister>();
+    private int nbSavesAroundCalls = 0;
+
+    /**
+     * @param routineName name of the routine in the report of the allocation
+     * @param spillBase base register of the slots of the spilled values
+     * @param firstSpillOffset offset from spillBase of the first of these
+     * slots, the other ones following it
+     */
+    public RegisterAllocator(DecacCompiler compiler, String routineName,
+            Register spillBase, int firstSpillOffset) {
+        this.compiler = compiler;
+        this.routineName = routineName;
+        this.spillBase = spillBase;
+        this.firstSpillOffset = firstSpillOffset;
+    }
+
+    /**
+     * Declare the slot of a variable of the routine (local variable, parameter
+     * or global variable of the main program).
+     *
+     * @param loadedAtEntry true if the slot holds a value when the routine
+     * starts (parameters)
+     */
+    public void addVariable(RegisterOffset slot, boolean loadedAtEntry) {
+        Map<Integer, Variable> slots = variablesBySlot.get(slot.getRegister());
+        if (slots == null) {
+            slots = new HashMap<Integer, Variable>();
+            variablesBySlot.put(slot.getRegister(), slots);
+        }
+        if (!slots.containsKey(slot.getOffset())) {
+            Variable variable = new Variable(slot, loadedAtEntry);
+            variables.add(variable);
+            slots.put(slot.getOffset(), variable);
+        }
+    }
+
+    /**
+     * @return the physical registers used by the routine, in increasing order
+     */
+    public List<GPRegister> getUsedRegisters() {
+        List<GPRegister> registers = new ArrayList<GPRegister>();
+        for (int number : usedRegisters) {
+            registers.add(Register.getR(number));
+        }
+        return registers;
+    }
+
+    /**
+     * @return the callee-saved registers used by the routine, in increasing
+     * order: the ones it has to save
+     */
+    public List<GPRegister> getCalleeSavedRegisters() {
+        List<GPRegister> registers = new ArrayList<GPRegister>();
+        for (int number : usedRegisters) {
+            if (isCalleeSaved(number)) {
+                registers.add(Register.getR(number));
+            }
+        }
+        return registers;
+    }
+
+    /**
+     * @return true if the register of the given number has to be saved by
+     * the routines which use it, false if it is saved by the caller when
+     * needed. The registers R2 to R(n-1) are split in two halves, the
+     * callee-saved ones being the first half (with the middle register when
+     * their number is odd).
+     */
+    public boolean isCalleeSaved(int number) {
+        return isCalleeSaved(number, compiler.getListRegister().getNbRegisters());
+    }
+
+    /**
+     * @param nbRegisters total number of registers (decac -r)
+     * @see #isCalleeSaved(int)
+     */
+    public static boolean isCalleeSaved(int number, int nbRegisters) {
+        return number >= 2 && number < 2 + (nbRegisters - 1) / 2;
+    }
+
+    /**
+     * @return the number of words needed after spillBase + firstSpillOffset
+     * by the spilled temporaries
+     */
+    public int getNbSpillSlots() {
+        return nbSpillSlots;
+    }
+
+    /**
+     * @return the number of values (variables or temporaries) spilled to
+     * memory
+     */
+    public int getNbSpilled() {
+        return nbSpilled;
+    }
+
+    /**
+     * Allocate the registers of a routine, whose lines are replaced.
+     * Branches to labels outside of the given lines leave the routine.
+     */
+    public void allocate(List<AbstractLine> routine) {
+        List<Line> code = new ArrayList<Line>();
+        for (AbstractLine line : routine) {
+            if (!(line instanceof Line)) {
+                // written in assembly, the code generation uses no register
+                LOG.debug("No register allocation in " + routineName);
+                return;
+            }
+            code.add((Line) line);
+        }
+
+        int nbPromoted = promoteVariables(code);
+        List<GPRegister> spilled = assignRegisters(code);
+        while (!spilled.isEmpty()) {
+            nbSpilled += spilled.size();
+            spill(code, new HashSet<GPRegister>(spilled));
+            spilled = assignRegisters(code);
+        }
+        saveAroundCalls(code);
+        code = replaceVirtualRegisters(code);
+
+        routine.clear();
+        routine.addAll(code);
+        LOG.info("Register allocation of " + routineName + ": "
+                + assignment.size() + " values (" + nbPromoted + " variables) in "
+                + getUsedRegisters() + ", " + nbSpilled + " spilled, "
+                + nbSpillSlots + " spill slots, " + nbSavesAroundCalls
+                + " saves around calls");
+    }
+
+    /*
+     * ---------------------------------------------------------------------
+     * Promotion of the variables
+     * ---------------------------------------------------------------------
+     */
+
+    private Variable variableAt(Operand operand) {
+        if (operand instanceof RegisterOffset) {
+            RegisterOffset address = (RegisterOffset) operand;
+            Map<Integer, Variable> slots = variablesBySlot.get(address.getRegister());
+            if (slots != null) {
+                return slots.get(address.getOffset());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replace the accesses to the slots of the variables by virtual
+     * registers: a read becomes a register operand and STORE R, slot becomes
+     * LOAD R, register (which sets the condition codes the same way).
+     *
+     * @return the number of promoted variables
+     */
+    private int promoteVariables(List<Line> code) {
+        if (variables.isEmpty()) {
+            return 0;
+        }
+        for (Line line : code) {
+            Instruction instruction = line.getInstruction();
+            if (instruction instanceof BinaryInstruction) {
+                BinaryInstruction binary = (BinaryInstruction) instruction;
+                Variable read = variableAt(binary.getOperand1());
+                if (read != null) {
+                    if (binary instanceof LEA) {
+                        read.addressUsed = true;
+                    } else {
+                        read.nbAccesses++;
+                    }
+                }
+                Variable written = variableAt(binary.getOperand2());
+                if (written != null) {
+                    if (binary instanceof STORE) {
+                        written.nbAccesses++;
+                    } else {
+                        written.addressUsed = true;
+                    }
+                }
+            } else if (instruction instanceof UnaryInstruction) {
+                Variable variable = variableAt(((UnaryInstruction) instruction).getOperand());
+                if (variable != null) {
+                    variable.addressUsed = true;
+                }
+            }
+        }
+
+        Map<Variable, GPRegister> promoted = new HashMap<Variable, GPRegister>();
+        List<Line> entry = new ArrayList<Line>();
+        for (Variable variable : variables) {
+            // a parameter read once is better read from its slot
+            int minAccesses = variable.loadedAtEntry ? 2 : 1;
+            if (!variable.addressUsed && variable.nbAccesses >= minAccesses) {
+                GPRegister register = compiler.getListRegister().getRegister(compiler);
+                promoted.put(variable, register);
+                variableSlots.put(register, variable.slot);
+                if (variable.loadedAtEntry) {
+                    entry.add(new Line(new LOAD(variable.slot, register)));
+                }
+            }
+        }
+        if (promoted.isEmpty()) {
+            return 0;
+        }
+
+        for (Line line : code) {
+            Instruction instruction = line.getInstruction();
+            if (instruction instanceof BinaryInstruction) {
+                BinaryInstruction binary = (BinaryInstruction) instruction;
+                Operand op1 = binary.getOperand1();
+                Variable read = variableAt(op1);
+                if (read != null && promoted.containsKey(read)) {
+                    op1 = promoted.get(read);
+                }
+                Variable written = variableAt(binary.getOperand2());
+                if (written != null && promoted.containsKey(written)) {
+                    line.setInstruction(new LOAD((DVal) op1, promoted.get(written)));
+                } else {
+                    binary.setOperands(op1, binary.getOperand2());
+                }
+            }
+        }
+        code.addAll(0, entry);
+        return promoted.size();
+    }
+
+    /*
+     * ---------------------------------------------------------------------
+     * Registers read and written by the instructions
+     * ---------------------------------------------------------------------
+     */
+
+    static boolean isSetCondition(Instruction instruction) {
+        return instruction instanceof SEQ || instruction instanceof SNE
+                || instruction instanceof SGT || instruction instanceof SGE
+                || instruction instanceof SLT || instruction instanceof SLE
+                || instruction instanceof SOV;
+    }
+
+    /**
+     * @return true if the instruction reads its register operand (the
+     * second one of a binary instruction)
+     */
+    static boolean readsRegister(Instruction instruction) {
+        return !(instruction instanceof LOAD || instruction instanceof LEA
+                || instruction instanceof OPP || instruction instanceof FLOAT
+                || instruction instanceof INT || instruction instanceof NEW
+                || instruction instanceof POP || isSetCondition(instruction));
+    }
+
+    /**
+     * @return true if the instruction writes its register operand (the
+     * second one of a binary instruction)
+     */
+    static boolean writesRegister(Instruction instruction) {
+        if (instruction instanceof BinaryInstruction) {
+            return !(instruction instanceof CMP || instruction instanceof STORE);
+        }
+        return instruction instanceof POP || instruction instanceof SHL
+                || instruction instanceof SHR || isSetCondition(instruction);
+    }
+
+    private static GPRegister virtualRegister(Operand operand) {
+        if (operand instanceof GPRegister && ((GPRegister) operand).isVirtual()) {
+            return (GPRegister) operand;
+        }
+        return null;
+    }
+
+    private static GPRegister virtualBase(Operand operand) {
+        if (operand instanceof RegisterOffset) {
+            return virtualRegister(((RegisterOffset) operand).getRegister());
+        }
+        if (operand instanceof RegisterIndexedOffset) {
+            return virtualRegister(((RegisterIndexedOffset) operand).getRegister());
+        }
+        return null;
+    }
+
+    private static GPRegister virtualIndex(Operand operand) {
+        if (operand instanceof RegisterIndexedOffset) {
+            return virtualRegister(((RegisterIndexedOffset) operand).getIndex());
+        }
+        return null;
+    }
+
+    /**
+     * @return the address operand whose base and index registers are
+     * replaced by the given ones (null to keep them)
+     */
+    private static Operand readdress(Operand operand, GPRegister base, GPRegister index) {
+        if (base == null && index == null) {
+            return operand;
+        }
+        if (operand instanceof RegisterOffset) {
+            return new RegisterOffset(((RegisterOffset) operand).getOffset(), base);
+        }
+        RegisterIndexedOffset address = (RegisterIndexedOffset) operand;
+        return new RegisterIndexedOffset(address.getOffset(),
+                base != null ? base : address.getRegister(),
+                index != null ? index : address.getIndex());
+    }
+
+    /**
+     * Add to uses and defs the virtual registers read and written by the
+     * instruction
+     */
+    private static void usesAndDefs(Instruction instruction, List<GPRegister> uses,
+            List<GPRegister> defs) {
+        Operand operand;
+        if (instruction instanceof BinaryInstruction) {
+            BinaryInstruction binary = (BinaryInstruction) instruction;
+            addIfNotNull(uses, virtualRegister(binary.getOperand1()));
+            addIfNotNull(uses, virtualBase(binary.getOperand1()));
+            addIfNotNull(uses, virtualIndex(binary.getOperand1()));
+            addIfNotNull(uses, virtualBase(binary.getOperand2()));
+            addIfNotNull(uses, virtualIndex(binary.getOperand2()));
+            operand = binary.getOperand2();
+            if (binary instanceof STORE) {
+                return;
+            }
+        } else if (instruction instanceof UnaryInstruction) {
+            operand = ((UnaryInstruction) instruction).getOperand();
+            addIfNotNull(uses, virtualBase(operand));
+            addIfNotNull(uses, virtualIndex(operand));
+        } else {
+            return;
+        }
+        GPRegister register = virtualRegister(operand);
+        if (register != null) {
+            if (readsRegister(instruction)) {
+                uses.add(register);
+            }
+            if (writesRegister(instruction)) {
+                defs.add(register);
+            }
+        }
+    }
+
+    private static void addIfNotNull(List<GPRegister> list, GPRegister register) {
+        if (register != null) {
+            list.add(register);
+        }
+    }
+
+    /*
+     * ---------------------------------------------------------------------
+     * Liveness and linear scan
+     * ---------------------------------------------------------------------
+     */
+
+    /**
+     * Try to assign a physical register to each virtual register of the code.
+     *
+     * @return the virtual registers to spill, the assignment being done if
+     * there is none
+     */
+    private List<GPRegister> assignRegisters(List<Line> code) {
+        // instructions and position of the labels
+        List<Instruction> instructions = new ArrayList<Instruction>();
+        Map<String, Integer> labels = new HashMap<String, Integer>();
+        for (Line line : code) {
+            if (line.getLabel() != null) {
+                labels.put(line.getLabel().toString(), instructions.size());
+            }
+            if (line.getInstruction() != null) {
+                instructions.add(line.getInstruction());
+            }
+        }
+        int n = instructions.size();
+
+        // numbering of the virtual registers, registers read and written
+        final List<GPRegister> registers = new ArrayList<GPRegister>();
+        Map<GPRegister, Integer> numbers = new HashMap<GPRegister, Integer>();
+        int[][] uses = new int[n][];
+        int[][] defs = new int[n][];
+        List<GPRegister> u = new ArrayList<GPRegister>();
+        List<GPRegister> d = new ArrayList<GPRegister>();
+        Map<Integer, Integer> copies = new HashMap<Integer, Integer>();
+        for (int i = 0; i < n; i++) {
+            u.clear();
+            d.clear();
+            usesAndDefs(instructions.get(i), u, d);
+            uses[i] = number(u, registers, numbers);
+            defs[i] = number(d, registers, numbers);
+            Instruction instruction = instructions.get(i);
+            if (instruction instanceof LOAD && uses[i].length == 1 && defs[i].length == 1
+                    && virtualRegister(((LOAD) instruction).getOperand1()) != null) {
+                // copy: both registers should be the same one
+                copies.put(defs[i][0], uses[i][0]);
+                copies.put(uses[i][0], defs[i][0]);
+            }
+        }
+
+        // control flow graph
+        int[][] successors = new int[n][];
+        for (int i = 0; i < n; i++) {
+            Instruction instruction = instructions.get(i);
+            List<Integer> next = new ArrayList<Integer>();
+            if (instruction instanceof BranchInstruction) {
+                Integer target = labels.get(((BranchInstruction) instruction).getOperand().toString());
+                if (target != null && target < n) {
+                    next.add(target);
+                }
+            }
+            if (!(instruction instanceof BRA || instruction instanceof RTS
+                    || instruction instanceof HALT || instruction instanceof ERROR)
+                    && i + 1 < n) {
+                next.add(i + 1);
+            }
+            successors[i] = new int[next.size()];
+            for (int k = 0; k < next.size(); k++) {
+                successors[i][k] = next.get(k);
+            }
+        }
+
+        // liveness, computed backwards until a fixpoint is reached
+        BitSet[] liveIn = new BitSet[n];
+        BitSet[] liveOut = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            liveIn[i] = new BitSet();
+            liveOut[i] = new BitSet();
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = n - 1; i >= 0; i--) {
+                BitSet out = new BitSet();
+                for (int s : successors[i]) {
+                    out.or(liveIn[s]);
+                }
+                BitSet in = (BitSet) out.clone();
+                for (int v : defs[i]) {
+                    in.clear(v);
+                }
+                for (int v : uses[i]) {
+                    in.set(v);
+                }
+                liveOut[i] = out;
+                if (!in.equals(liveIn[i])) {
+                    liveIn[i] = in;
+                    changed = true;
+                }
+            }
+        }
+
+        // live intervals: instruction i reads its operands at 2i and writes
+        // its result at 2i+1
+        int m = registers.size();
+        final int[] start = new int[m];
+        final int[] end = new int[m];
+        Arrays.fill(start, Integer.MAX_VALUE);
+        Arrays.fill(end, -1);
+        for (int i = 0; i < n; i++) {
+            for (int v = liveIn[i].nextSetBit(0); v >= 0; v = liveIn[i].nextSetBit(v + 1)) {
+                extend(start, end, v, 2 * i);
+            }
+            for (int v : uses[i]) {
+                extend(start, end, v, 2 * i);
+            }
+            for (int v : defs[i]) {
+                extend(start, end, v, 2 * i + 1);
+            }
+            for (int v = liveOut[i].nextSetBit(0); v >= 0; v = liveOut[i].nextSetBit(v + 1)) {
+                extend(start, end, v, 2 * i + 1);
+            }
+        }
+
+        // values living across a call: defined before it, live after it
+        List<Integer> calls = new ArrayList<Integer>();
+        for (int i = 0; i < n; i++) {
+            if (instructions.get(i) instanceof BSR) {
+                calls.add(i);
+            }
+        }
+        boolean[] crossesCall = new boolean[m];
+        for (int v = 0; v < m; v++) {
+            int k = firstCallFrom(calls, start[v]);
+            crossesCall[v] = k < calls.size() && 2 * calls.get(k) + 1 <= end[v];
+        }
+
+        // cost of a value kept in memory (an access at each of its uses and
+        // definitions) and of a value saved around the calls it lives across
+        long[] weight = loopWeights(successors);
+        long[] memoryCost = new long[m];
+        long[] saveCost = new long[m];
+        for (int i = 0; i < n; i++) {
+            for (int v : uses[i]) {
+                memoryCost[v] += weight[i];
+            }
+            for (int v : defs[i]) {
+                memoryCost[v] += weight[i];
+            }
+        }
+        for (int v = 0; v < m; v++) {
+            for (int k = firstCallFrom(calls, start[v]);
+                    k < calls.size() && 2 * calls.get(k) + 1 <= end[v]; k++) {
+                saveCost[v] += 2 * weight[calls.get(k)];
+            }
+        }
+
+        // linear scan
+        List<Integer> order = new ArrayList<Integer>();
+        for (int v = 0; v < m; v++) {
+            order.add(v);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer v1, Integer v2) {
+                return start[v1] != start[v2] ? Integer.compare(start[v1], start[v2])
+                        : Integer.compare(v1, v2);
+            }
+        });
+        TreeSet<Integer> freeCalleeSaved = new TreeSet<Integer>();
+        TreeSet<Integer> freeCallerSaved = new TreeSet<Integer>();
+        for (int k = 2; k < compiler.getListRegister().getNbRegisters(); k++) {
+            (isCalleeSaved(k) ? freeCalleeSaved : freeCallerSaved).add(k);
+        }
+        int[] physical = new int[m];
+        Arrays.fill(physical, -1);
+        List<Integer> active = new ArrayList<Integer>();
+        List<GPRegister> spilled = new ArrayList<GPRegister>();
+        for (int v : order) {
+            for (Iterator<Integer> it = active.iterator(); it.hasNext();) {
+                int a = it.next();
+                if (end[a] < start[v]) {
+                    (isCalleeSaved(physical[a]) ? freeCalleeSaved : freeCallerSaved)
+                            .add(physical[a]);
+                    it.remove();
+                }
+            }
+            if (crossesCall[v] && freeCalleeSaved.isEmpty() && memoryCost[v] < saveCost[v]
+                    && !unspillable.contains(registers.get(v))) {
+                // used less than it would be saved around the calls
+                spilled.add(registers.get(v));
+                continue;
+            }
+            TreeSet<Integer> preferred = crossesCall[v] ? freeCalleeSaved : freeCallerSaved;
+            TreeSet<Integer> other = crossesCall[v] ? freeCallerSaved : freeCalleeSaved;
+            TreeSet<Integer> free = preferred.isEmpty() ? other : preferred;
+            if (!free.isEmpty()) {
+                Integer copy = copies.get(v);
+                int chosen = free.first();
+                if (copy != null && physical[copy] >= 0 && free.contains(physical[copy])) {
+                    chosen = physical[copy];
+                }
+                free.remove(chosen);
+                physical[v] = chosen;
+                active.add(v);
+            } else {
+                // spill the value which lives the longest
+                int victim = unspillable.contains(registers.get(v)) ? -1 : v;
+                for (int a : active) {
+                    if (!unspillable.contains(registers.get(a))
+                            && (victim < 0 || end[a] > end[victim])) {
+                        victim = a;
+                    }
+                }
+                if (victim < 0) {
+                    throw new DecacInternalError("Not enough registers in " + routineName);
+                }
+                spilled.add(registers.get(victim));
+                if (victim != v) {
+                    physical[v] = physical[victim];
+                    physical[victim] = -1;
+                    active.remove(Integer.valueOf(victim));
+                    active.add(v);
+                }
+            }
+        }
+
+        if (spilled.isEmpty()) {
+            assignment = new HashMap<GPRegister, GPRegister>();
+            for (int v = 0; v < m; v++) {
+                assignment.put(registers.get(v), Register.getR(physical[v]));
+                usedRegisters.add(physical[v]);
+                intervals.put(registers.get(v), new int[] {start[v], end[v]});
+                if (crossesCall[v] && !isCalleeSaved(physical[v])) {
+                    savedAcrossCalls.add(registers.get(v));
+                }
+            }
+        }
+        return spilled;
+    }
+
+    /**
+     * @return the weight of each instruction, LOOP_WEIGHT to the power of the
+     * number of loops around it, a loop being closed by a branch backwards
+     */
+    private static long[] loopWeights(int[][] successors) {
+        int n = successors.length;
+        int[] depth = new int[n];
+        for (int i = 0; i < n; i++) {
+            for (int target : successors[i]) {
+                for (int k = target; k <= i; k++) {
+                    depth[k]++;
+                }
+            }
+        }
+        long[] weight = new long[n];
+        for (int i = 0; i < n; i++) {
+            weight[i] = 1;
+            for (int k = 0; k < Math.min(depth[i], MAX_LOOP_DEPTH); k++) {
+                weight[i] *= LOOP_WEIGHT;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * @return the index in calls (sorted indexes of instructions) of the
+     * first call at or after the given position
+     */
+    private static int firstCallFrom(List<Integer> calls, int position) {
+        int low = 0;
+        int high = calls.size();
+        while (low < high) {
+            int middle = (low + high) / 2;
+            if (2 * calls.get(middle) < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int[] number(List<GPRegister> list, List<GPRegister> registers,
+            Map<GPRegister, Integer> numbers) {
+        int[] result = new int[list.size()];
+        for (int k = 0; k < list.size(); k++) {
+            Integer number = numbers.get(list.get(k));
+            if (number == null) {
+                number = registers.size();
+                numbers.put(list.get(k), number);
+                registers.add(list.get(k));
+            }
+            result[k] = number;
+        }
+        return result;
+    }
+
+    private static void extend(int[] start, int[] end, int v, int position) {
+        start[v] = Math.min(start[v], position);
+        end[v] = Math.max(end[v], position);
+    }
+
+    /*
+     * ---------------------------------------------------------------------
+     * Spill code
+     * ---------------------------------------------------------------------
+     */
+
+    private RegisterOffset slotOf(GPRegister register) {
+        RegisterOffset slot = variableSlots.get(register);
+        if (slot == null) {
+            slot = spillSlots.get(register);
+            if (slot == null) {
+                slot = new RegisterOffset(firstSpillOffset + nbSpillSlots, spillBase);
+                nbSpillSlots++;
+                spillSlots.put(register, slot);
+            }
+        }
+        return slot;
+    }
+
+    private static boolean sameSlot(Operand operand, RegisterOffset slot) {
+        return operand instanceof RegisterOffset
+                && ((RegisterOffset) operand).getRegister() == slot.getRegister()
+                && ((RegisterOffset) operand).getOffset() == slot.getOffset();
+    }
+
+    /**
+     * Rewrite the code so that the spilled registers live in memory: they
+     * are used directly as the first operand of the instructions which accept
+     * a memory operand, and through a short temporary elsewhere.
+     */
+    private void spill(List<Line> code, Set<GPRegister> spilled) {
+        List<Line> result = new ArrayList<Line>();
+        for (Line line : code) {
+            Instruction instruction = line.getInstruction();
+            List<GPRegister> u = new ArrayList<GPRegister>();
+            List<GPRegister> d = new ArrayList<GPRegister>();
+            if (instruction != null) {
+                usesAndDefs(instruction, u, d);
+            }
+            u.retainAll(spilled);
+            d.retainAll(spilled);
+            if (u.isEmpty() && d.isEmpty()) {
+                result.add(line);
+                continue;
+            }
+
+            List<Line> before = new ArrayList<Line>();
+            List<Line> after = new ArrayList<Line>();
+            SpillRewriter rewriter = new SpillRewriter(spilled, before);
+            if (instruction instanceof LOAD && spilled.contains(((LOAD) instruction).getOperand2())) {
+                // the value is written directly to its slot
+                RegisterOffset slot = slotOf((GPRegister) ((LOAD) instruction).getOperand2());
+                DVal source = (DVal) rewriter.memory(((LOAD) instruction).getOperand1());
+                if (sameSlot(source, slot)) {
+                    line.setInstruction(null);
+                } else if (source instanceof GPRegister) {
+                    line.setInstruction(new STORE((GPRegister) source, slot));
+                } else {
+                    GPRegister temporary = newTemporary();
+                    line.setInstruction(new LOAD(source, temporary));
+                    after.add(new Line(new STORE(temporary, slot)));
+                }
+            } else {
+                boolean reads = readsRegister(instruction);
+                if (instruction instanceof BinaryInstruction) {
+                    BinaryInstruction binary = (BinaryInstruction) instruction;
+                    Operand op1 = binary instanceof STORE ? rewriter.register(binary.getOperand1(), true)
+                            : rewriter.memory(binary.getOperand1());
+                    binary.setOperands(op1, rewriter.register(binary.getOperand2(), reads));
+                } else {
+                    UnaryInstruction unary = (UnaryInstruction) instruction;
+                    unary.setOperand(rewriter.register(unary.getOperand(), reads));
+                }
+                for (GPRegister register : d) {
+                    after.add(new Line(new STORE(rewriter.temporaries.get(register), slotOf(register))));
+                }
+            }
+
+            if (!before.isEmpty() && line.getLabel() != null) {
+                // the reloads are done when jumping to the instruction
+                before.get(0).setLabel(line.getLabel());
+                line.setLabel(null);
+            }
+            result.addAll(before);
+            if (line.getInstruction() != null || line.getLabel() != null
+                    || line.getComment() != null) {
+                result.add(line);
+            }
+            result.addAll(after);
+        }
+        code.clear();
+        code.addAll(result);
+    }
+
+    private GPRegister newTemporary() {
+        GPRegister temporary = compiler.getListRegister().getRegister(compiler);
+        unspillable.add(temporary);
+        return temporary;
+    }
+
+    /**
+     * Replacement of the spilled registers in the operands of an instruction
+     */
+    private class SpillRewriter {
+        private final Set<GPRegister> spilled;
+        private final List<Line> reloads;
+        private final Map<GPRegister, GPRegister> temporaries = new HashMap<GPRegister, GPRegister>();
+
+        SpillRewriter(Set<GPRegister> spilled, List<Line> reloads) {
+            this.spilled = spilled;
+            this.reloads = reloads;
+        }
+
+        /**
+         * @return the temporary holding the value of register, loaded before
+         * the instruction
+         */
+        private GPRegister temporary(GPRegister register, boolean reload) {
+            GPRegister temporary = temporaries.get(register);
+            if (temporary == null) {
+                temporary = newTemporary();
+                temporaries.put(register, temporary);
+                if (reload) {
+                    reloads.add(new Line(new LOAD(slotOf(register), temporary)));
+                }
+            }
+            return temporary;
+        }
+
+        private Operand base(Operand operand) {
+            GPRegister base = virtualBase(operand);
+            GPRegister index = virtualIndex(operand);
+            return readdress(operand,
+                    base != null && spilled.contains(base) ? temporary(base, true) : null,
+                    index != null && spilled.contains(index) ? temporary(index, true) : null);
+        }
+
+        /**
+         * Operand which can be a memory operand
+         */
+        Operand memory(Operand operand) {
+            if (operand instanceof GPRegister && spilled.contains(operand)) {
+                return slotOf((GPRegister) operand);
+            }
+            return base(operand);
+        }
+
+        /**
+         * Operand which has to be a register (or an address)
+         *
+         * @param reads true if the instruction reads the register
+         */
+        Operand register(Operand operand, boolean reads) {
+            if (operand instanceof GPRegister && spilled.contains(operand)) {
+                return temporary((GPRegister) operand, reads);
+            }
+            return base(operand);
+        }
+    }
+
+    /*
+     * ---------------------------------------------------------------------
+     * Final code
+     * ---------------------------------------------------------------------
+     */
+
+    /**
+     * Store the values given a caller-saved register to their slot before
+     * each call they live across, and load them back after it. The slots are
+     * relative to spillBase, so they do not move with the arguments pushed
+     * for the call.
+     */
+    private void saveAroundCalls(List<Line> code) {
+        if (savedAcrossCalls.isEmpty()) {
+            return;
+        }
+        List<Line> result = new ArrayList<Line>();
+        int i = 0;
+        for (Line line : code) {
+            if (line.getInstruction() == null) {
+                result.add(line);
+                continue;
+            }
+            List<GPRegister> saved = new ArrayList<GPRegister>();
+            if (line.getInstruction() instanceof BSR) {
+                for (GPRegister register : savedAcrossCalls) {
+                    int[] interval = intervals.get(register);
+                    if (interval[0] <= 2 * i && 2 * i + 1 <= interval[1]) {
+                        saved.add(register);
+                    }
+                }
+            }
+            List<Line> after = new ArrayList<Line>();
+            for (GPRegister register : saved) {
+                Line store = new Line(new STORE(register, slotOf(register)));
+                if (line.getLabel() != null) {
+                    store.setLabel(line.getLabel());
+                    line.setLabel(null);
+                }
+                result.add(store);
+                after.add(new Line(new LOAD(slotOf(register), register)));
+            }
+            result.add(line);
+            result.addAll(after);
+            nbSavesAroundCalls += saved.size();
+            i++;
+        }
+        code.clear();
+        code.addAll(result);
+    }
+
+    private Operand physical(Operand operand) {
+        GPRegister register = virtualRegister(operand);
+        if (register != null) {
+            return assignment.get(register);
+        }
+        GPRegister base = virtualBase(operand);
+        GPRegister index = virtualIndex(operand);
+        return readdress(operand, base != null ? assignment.get(base) : null,
+                index != null ? assignment.get(index) : null);
+    }
+
+    private List<Line> replaceVirtualRegisters(List<Line> code) {
+        List<Line> result = new ArrayList<Line>();
+        for (int k = 0; k < code.size(); k++) {
+            Line line = code.get(k);
+            Instruction instruction = line.getInstruction();
+            if (instruction instanceof BinaryInstruction) {
+                BinaryInstruction binary = (BinaryInstruction) instruction;
+                binary.setOperands(physical(binary.getOperand1()), physical(binary.getOperand2()));
+                if (binary instanceof LOAD && binary.getOperand1() == binary.getOperand2()
+                        && !conditionUsed(code, k + 1)) {
+                    // copy between two values given the same register
+                    line.setInstruction(null);
+                }
+            } else if (instruction instanceof UnaryInstruction) {
+                UnaryInstruction unary = (UnaryInstruction) instruction;
+                unary.setOperand(physical(unary.getOperand()));
+            }
+            if (line.getInstruction() != null || line.getLabel() != null
+                    || line.getComment() != null) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the first instruction from index k uses the condition
+     * codes set by the previous one
+     */
+    private static boolean conditionUsed(List<Line> code, int k) {
+        while (k < code.size() && code.get(k).getInstruction() == null) {
+            if (code.get(k).getLabel() != null) {
+                return true;
+            }
+            k++;
+        }
+        if (k == code.size()) {
+            return true;
+        }
+        Instruction next = code.get(k).getInstruction();
+        return isSetCondition(next) || (next instanceof BranchInstruction
+                && !(next instanceof BRA) && !(next instanceof BOV));
+    }
+}
@@ -0,0 +1,47 @@
+package fr.ensimag.deca.context;
+
+import fr.ensimag.deca.tools.SymbolTable.Symbol;
+import fr.ensimag.deca.tree.Location;
+import fr.ensimag.deca.tree.Visibility;
+
+/**
+ * Type of the arrays of a type (int[], float[], A[], int[][]...), named
+ * after it. An array is one block of the heap: its length at index 0, then
+ * its elements.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class ArrayType extends Type {
+    private final Type elementType;
+    /**
+     * The only member of an array, its length, which cannot be assigned
+     */
+    private final EnvironmentExp members = new EnvironmentExp(null);
+
+    public ArrayType(Symbol name, Type elementType, Symbol length, Type intType) {
+        super(name);
+        this.elementType = elementType;
+        members.put(length, new FieldDefinition(intType, Location.BUILTIN,
+                Visibility.PUBLIC, null, 0));
+    }
+
+    public Type getElementType() {
+        return elementType;
+    }
+
+    public EnvironmentExp getMembers() {
+        return members;
+    }
+
+    @Override
+    public boolean isArray() {
+        return true;
+    }
+
+    @Override
+    public boolean sameType(Type otherType) {
+        return otherType.isArray()
+                && elementType.sameType(((ArrayType) otherType).getElementType());
+    }
+}
@@ -41,6 +41,28 @@ public class ClassDefinition extends TypeDefinition {
 
     private int numberOfFields = 0;
     private int numberOfMethods = 0;
+
+    /**
+     * Number of the class in a preorder traversal of the class hierarchy, and
+     * greatest number of its subclasses: the subclasses of the class are the
+     * ones whose number is in this interval (see ClassHierarchy.numberClasses)
+     */
+    private int number;
+    private int lastSubclassNumber;
+
+    public int getNumber() {
+        return number;
+    }
+
+    public int getLastSubclassNumber() {
+        return lastSubclassNumber;
+    }
+
+    public void setNumbers(int number, int lastSubclassNumber) {
+        Validate.isTrue(number <= lastSubclassNumber);
+        this.number = number;
+        this.lastSubclassNumber = lastSubclassNumber;
+    }
     
     @Override
     public boolean isClass() {
@@ -0,0 +1,101 @@
+package fr.ensimag.deca.context;
+
+import fr.ensimag.deca.tools.SymbolTable.Symbol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class hierarchy of the whole program, used to know which declaration of a
+ * method a call runs.
+ *
+ * A Deca program is compiled in one piece: the classes added to the hierarchy
+ * are all the classes that may be instantiated, so a method which is not
+ * redefined below the static type of a call is the one which is run.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class ClassHierarchy {
+    private final Map<ClassDefinition, List<ClassDefinition>> subclasses =
+            new HashMap<ClassDefinition, List<ClassDefinition>>();
+
+    /**
+     * Add a class declared in the program (Object is not added)
+     */
+    public void addClass(ClassDefinition definition) {
+        ClassDefinition superClass = definition.getSuperClass();
+        if (!subclasses.containsKey(superClass)) {
+            subclasses.put(superClass, new ArrayList<ClassDefinition>());
+        }
+        subclasses.get(superClass).add(definition);
+    }
+
+    /**
+     * @return the direct subclasses of the class
+     */
+    public List<ClassDefinition> getSubclasses(ClassDefinition definition) {
+        List<ClassDefinition> result = subclasses.get(definition);
+        return result == null ? new ArrayList<ClassDefinition>() : result;
+    }
+
+    /**
+     * @return the class whose declaration of the method is run on an object
+     * of the given class (the class itself or one of its superclasses)
+     */
+    public ClassDefinition getImplementation(ClassDefinition definition, Symbol method) {
+        for (ClassDefinition c = definition; c != null; c = c.getSuperClass()) {
+            ExpDefinition def = c.getMembers().getCurrent(method);
+            if (def != null && def.isMethod()) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the class whose declaration of the method is run on all the
+     * objects of the given class and of its subclasses, null if it depends
+     * on the class of the object
+     */
+    public ClassDefinition getUniqueImplementation(ClassDefinition definition, Symbol method) {
+        ClassDefinition implementation = getImplementation(definition, method);
+        if (implementation == null || isRedefinedBelow(definition, method)) {
+            return null;
+        }
+        return implementation;
+    }
+
+    /**
+     * Number the classes in a preorder traversal of the hierarchy from root
+     * (Object), so that a class is a subclass of another one when its number
+     * is in the interval of the other one (see ClassDefinition.setNumbers)
+     */
+    public void numberClasses(ClassDefinition root) {
+        numberFrom(root, 0);
+    }
+
+    /**
+     * @return the greatest number given to the class and its subclasses
+     */
+    private int numberFrom(ClassDefinition definition, int number) {
+        int last = number;
+        for (ClassDefinition subclass : getSubclasses(definition)) {
+            last = numberFrom(subclass, last + 1);
+        }
+        definition.setNumbers(number, last);
+        return last;
+    }
+
+    private boolean isRedefinedBelow(ClassDefinition definition, Symbol method) {
+        for (ClassDefinition subclass : getSubclasses(definition)) {
+            if (subclass.getMembers().getCurrent(method) != null
+                    || isRedefinedBelow(subclass, method)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -46,7 +46,7 @@ public class ContextTools {
         if (t1.sameType(t2)) {
             return true;
         }
-        if (t2.isNull() && t1.isClass()) {
+        if (t2.isNull() && (t1.isClass() || t1.isArray())) {
             return true;
         }
         if (t1.isClass() && t2.isClass()) {
@@ -129,7 +129,8 @@ public class ContextTools {
             return compiler.getEnvTypes().get(compiler.getSymbTable().get("boolean")).getType();
         }
         if (op.equals("==") || op.equals("!=")) {
-            boolean class_condition = (t1.isClass() || t1.isNull()) ||  (t2.isClass() || t2.isNull());
+            boolean class_condition = (t1.isClass() || t1.isNull() || t1.isArray())
+                    || (t2.isClass() || t2.isNull() || t2.isArray());
             if (!(t1.isBoolean() && t2.isBoolean()) && !class_condition) {
                 throw new ContextualError(
                         "(RULE 3.33) " + (!((t1.isBoolean() || t1.isInt() || t1.isFloat()) &&
@@ -11,21 +11,16 @@ import java.util.Map;
  *
  * Built-ins are added during the compiler's initialization.
  *
- * Uses the singleton pattern to guarantee the existence of only one instance
- * of the dictionary.
+ * Each DecacCompiler owns its own instance, so that the classes declared in
+ * one source file are not visible when compiling another one.
  *
  * @author Troy
  * @date 07/01/2022
  */
 public class EnvironmentType {
-    private static EnvironmentType instance = new EnvironmentType();
     private Map<Symbol, TypeDefinition> envTypes = new HashMap<>();
 
-    private EnvironmentType() {}
-
-    public static EnvironmentType getEnvTypes() {
-        return instance;
-    }
+    public EnvironmentType() {}
 
     public TypeDefinition get(Symbol s, Location location) throws ContextualError {
         if (!envTypes.containsKey(s)) {
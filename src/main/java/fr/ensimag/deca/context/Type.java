@@ -70,6 +70,10 @@ public abstract class Type {
         return false;
     }
 
+    public boolean isArray() {
+        return false;
+    }
+
     /**
      * Returns the same object, as type ClassType, if possible. Throws
      * ContextualError(errorMessage, l) otherwise.
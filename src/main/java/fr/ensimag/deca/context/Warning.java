@@ -1,6 +1,7 @@
 package fr.ensimag.deca.context;
 
 import fr.ensimag.deca.tree.Location;
+import java.io.PrintStream;
 
 /**
  * Class used to emit formatted warning messages when decac's -w option has
@@ -16,6 +17,10 @@ public class Warning {
     }
 
     public void emit() {
+        emit(System.err);
+    }
+
+    public void emit(PrintStream s) {
 //        StringBuilder sb = new StringBuilder(location.toString());
 //        sb.deleteCharAt(0); sb.deleteCharAt(sb.length()-1);
 //        int i = sb.indexOf((", "));
@@ -23,7 +28,7 @@ public class Warning {
 //        System.err.println(
 //                "[\u001B[31mWARNING\u001B[0m]" + location.getFilename() + ":" +
 //                sb + ": " + message);
-        System.err.println(
+        s.println(
                 "[\u001B[31mWARNING\u001B[0m]" + location.getFilename() + ":" +
                 location.getLine() + ":" + location.getPositionInLine() + ": " + message);
     }
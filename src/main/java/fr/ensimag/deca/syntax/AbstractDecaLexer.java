@@ -14,6 +14,7 @@ import org.antlr.v4.runtime.IntStream;
 import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.apache.commons.lang.Validate;
 import org.apache.log4j.Logger;
@@ -160,9 +161,29 @@ public abstract class AbstractDecaLexer extends Lexer {
      */
     CharStream findFile(String name) throws IOException,
             IncludeFileNotFound {
+        CharStream stream = findFile(getSource(), name);
+        if (stream == null) {
+            throw new IncludeFileNotFound(name, this, getInputStream()); // TODO: check this
+        }
+        if (getDecacCompiler() != null) {
+            // the build cache needs the content of every included file
+            getDecacCompiler().addIncludedFile(name,
+                    stream.getText(Interval.of(0, stream.size() - 1)));
+        }
+        return stream;
+    }
+
+    /**
+     * Look up the file "name" included by the source file src, the same way
+     * {@link #findFile(String)} does.
+     *
+     * @return An ANTLR stream to read from, or null if the file was not found
+     * @throws IOException
+     *             when the file was found but could not be opened
+     */
+    public static CharStream findFile(File src, String name) throws IOException {
         // Look in the directory containing the source file ...
         String dir = "."; // default value used e.g. when reading from stdin
-        File src = getSource();
         if (src != null && src.getParent() != null) {
             dir = src.getParent();
         }
@@ -180,8 +201,7 @@ public abstract class AbstractDecaLexer extends Lexer {
             // Use fromReader(Reader, String) to catch the file name --- fromStream(InputStream) does not.
             return CharStreams.fromReader(new InputStreamReader(url.openStream()), url.getFile());
         }
-
-        throw new IncludeFileNotFound(name, this, getInputStream()); // TODO: check this
+        return null;
     }
 
     /**
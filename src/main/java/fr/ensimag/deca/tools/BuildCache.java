@@ -0,0 +1,261 @@
+package fr.ensimag.deca.tools;
+
+import fr.ensimag.deca.syntax.AbstractDecaLexer;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.apache.log4j.Logger;
+
+/**
+ * Content-addressed cache of the generated assembly files.
+ *
+ * An entry is identified by the hash of the compiler itself, of the options
+ * changing the generated code and of the source file. It records the hash of
+ * every file included by the source (as found by AbstractDecaLexer.findFile),
+ * so that a change in an included file invalidates the entry, followed by the
+ * assembly code. Entries are single files, written atomically, whose
+ * modification date is updated on each hit: the least recently used ones are
+ * removed when the cache grows bigger than its size limit.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class BuildCache {
+    private static final Logger LOG = Logger.getLogger(BuildCache.class);
+
+    /**
+     * Size limit of the cache directory, in bytes
+     */
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private static final String HEADER = "decac-cache 1";
+    private static final String INCLUDE = "include ";
+    private static final String END_OF_HEADER = "--";
+    private static final String SUFFIX = ".entry";
+
+    private static String compilerFingerprint = null;
+
+    private final File dir;
+    private final long maxSize;
+
+    public BuildCache(File dir) {
+        this(dir, DEFAULT_MAX_SIZE);
+    }
+
+    public BuildCache(File dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the key of the entry of a source file
+     */
+    public String key(byte[] source, String options) {
+        MessageDigest digest = newDigest();
+        digest.update(getCompilerFingerprint().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(options.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(source);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Copy the cached assembly code of the entry key into dest, provided that
+     * the files included by source did not change.
+     *
+     * @return true on a hit
+     */
+    public boolean restore(String key, File source, File dest) {
+        File entry = new File(dir, key + SUFFIX);
+        if (!entry.isFile()) {
+            return false;
+        }
+        try {
+            byte[] content = Files.readAllBytes(entry.toPath());
+            int pos = 0;
+            boolean first = true;
+            while (true) {
+                int eol = indexOf(content, (byte) '\n', pos);
+                if (eol < 0) {
+                    return false;
+                }
+                String line = new String(content, pos, eol - pos, StandardCharsets.UTF_8);
+                pos = eol + 1;
+                if (first) {
+                    if (!line.equals(HEADER)) {
+                        return false;
+                    }
+                    first = false;
+                } else if (line.equals(END_OF_HEADER)) {
+                    break;
+                } else if (line.startsWith(INCLUDE)) {
+                    String[] fields = line.split(" ", 3);
+                    if (fields.length != 3 || !fields[1].equals(hashInclude(source, fields[2]))) {
+                        LOG.debug("Included file " + fields[fields.length - 1] + " changed");
+                        return false;
+                    }
+                } else {
+                    return false;
+                }
+            }
+            File tmp = File.createTempFile(dest.getName(), ".tmp", dest.getAbsoluteFile().getParentFile());
+            Files.write(tmp.toPath(), Arrays.copyOfRange(content, pos, content.length));
+            Files.move(tmp.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            entry.setLastModified(System.currentTimeMillis());
+            return true;
+        } catch (IOException e) {
+            // a broken or concurrently removed entry is just a miss
+            LOG.debug("Cannot read cache entry " + entry, e);
+            return false;
+        }
+    }
+
+    /**
+     * Record the assembly file dest, generated from a source whose entry is key
+     * and which included the given files (name in the #include directive
+     * -> content).
+     */
+    public void store(String key, Map<String, String> includes, File dest) {
+        try {
+            Files.createDirectories(dir.toPath());
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            StringBuilder header = new StringBuilder(HEADER).append('\n');
+            for (Map.Entry<String, String> include : includes.entrySet()) {
+                header.append(INCLUDE).append(hash(include.getValue()))
+                        .append(' ').append(include.getKey()).append('\n');
+            }
+            header.append(END_OF_HEADER).append('\n');
+            content.write(header.toString().getBytes(StandardCharsets.UTF_8));
+            content.write(Files.readAllBytes(dest.toPath()));
+
+            File tmp = File.createTempFile(key, ".tmp", dir);
+            Files.write(tmp.toPath(), content.toByteArray());
+            Files.move(tmp.toPath(), new File(dir, key + SUFFIX).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            evict();
+        } catch (IOException e) {
+            LOG.warn("Cannot write in the build cache " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Remove the least recently used entries until the cache fits in maxSize
+     */
+    private synchronized void evict() {
+        File[] entries = dir.listFiles();
+        if (entries == null) {
+            return;
+        }
+        long size = 0;
+        List<File> files = new ArrayList<File>();
+        for (File f : entries) {
+            if (f.getName().endsWith(SUFFIX)) {
+                size += f.length();
+                files.add(f);
+            }
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        files.sort(Comparator.comparingLong(File::lastModified));
+        for (File f : files) {
+            if (size <= maxSize) {
+                break;
+            }
+            long length = f.length();
+            if (f.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private static String hashInclude(File source, String name) throws IOException {
+        CharStream stream = AbstractDecaLexer.findFile(source, name);
+        if (stream == null) {
+            return "";
+        }
+        return hash(stream.getText(Interval.of(0, stream.size() - 1)));
+    }
+
+    private static String hash(String text) {
+        return toHex(newDigest().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Identifies the version of the compiler: a cached entry must not survive
+     * a change of the compiler itself. Computed from the names, sizes and
+     * dates of the class files (or of the jar) decac is loaded from.
+     */
+    private static synchronized String getCompilerFingerprint() {
+        if (compilerFingerprint == null) {
+            StringBuilder sb = new StringBuilder();
+            try {
+                File location = new File(BuildCache.class.getProtectionDomain()
+                        .getCodeSource().getLocation().toURI());
+                fingerprint(location, sb);
+            } catch (URISyntaxException | SecurityException | NullPointerException e) {
+                // unknown location: entries stay valid as long as the cache
+                // is used by the same process
+                sb.append(System.nanoTime());
+            }
+            compilerFingerprint = toHex(newDigest().digest(
+                    sb.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+        return compilerFingerprint;
+    }
+
+    private static void fingerprint(File f, StringBuilder sb) {
+        if (f.isDirectory()) {
+            File[] children = f.listFiles();
+            if (children == null) {
+                return;
+            }
+            Arrays.sort(children);
+            for (File child : children) {
+                fingerprint(child, sb);
+            }
+        } else {
+            sb.append(f.getPath()).append(' ').append(f.length()).append(' ')
+                    .append(f.lastModified()).append('\n');
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new DecacInternalError("SHA-256 not available");
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static int indexOf(byte[] array, byte b, int from) {
+        for (int k = from; k < array.length; k++) {
+            if (array[k] == b) {
+                return k;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,5 +1,15 @@
 package fr.ensimag.deca.tools;
 
+import fr.ensimag.ima.pseudocode.AbstractLine;
+import fr.ensimag.ima.pseudocode.ImmediateInteger;
+import fr.ensimag.ima.pseudocode.Instruction;
+import fr.ensimag.ima.pseudocode.Line;
+import fr.ensimag.ima.pseudocode.instructions.ADDSP;
+import fr.ensimag.ima.pseudocode.instructions.BSR;
+import fr.ensimag.ima.pseudocode.instructions.POP;
+import fr.ensimag.ima.pseudocode.instructions.PUSH;
+import fr.ensimag.ima.pseudocode.instructions.SUBSP;
+import java.util.List;
 import org.apache.log4j.Logger;
 
 /**
@@ -78,6 +88,51 @@ public class CodeAnalyzer {
     public void incrMethodsTableSize(int neededSize) {
         methodsTableSize += neededSize;
     }
+
+    /**
+     * @param size words pushed by the code of the main program on top of
+     * its variables (see getCallStackSize)
+     */
+    public void setCallStackSize(int size) {
+        if (size > stackSizeInstructions) {
+            stackSizeInstructions = size;
+        }
+    }
+
+    /**
+     * Number of words the code of a routine pushes on top of its frame: the
+     * words of the calls (ADDSP of the arguments, PUSH of a new object) and
+     * the 2 words of each BSR, which the TSTO of the routine has to count
+     * since the called routine tests the stack only after them.
+     *
+     * @param lines code of the body of the routine, without its prologue
+     */
+    public static int getCallStackSize(List<AbstractLine> lines) {
+        int depth = 0;
+        int maxDepth = 0;
+        for (AbstractLine line : lines) {
+            if (!(line instanceof Line) || ((Line) line).getInstruction() == null) {
+                continue;
+            }
+            Instruction instruction = ((Line) line).getInstruction();
+            if (instruction instanceof ADDSP) {
+                depth += ((ImmediateInteger) ((ADDSP) instruction).getOperand()).getValue();
+            } else if (instruction instanceof SUBSP) {
+                depth -= ((ImmediateInteger) ((SUBSP) instruction).getOperand()).getValue();
+            } else if (instruction instanceof PUSH) {
+                depth++;
+            } else if (instruction instanceof POP) {
+                depth--;
+            } else if (instruction instanceof BSR) {
+                // return address and LB of the caller
+                maxDepth = Math.max(maxDepth, depth + 2);
+            }
+            // the depth is the one of the straight code, never below the frame
+            depth = Math.max(depth, 0);
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        return maxDepth;
+    }
     
 
 }
@@ -26,9 +26,23 @@ public class StackHashTableSymbol {
     private Map<Symbol, RegisterOffset> map = new HashMap<Symbol, RegisterOffset>();
     private Map<Symbol, RegisterOffset> Classmap = new HashMap<Symbol, RegisterOffset>();
     private Label enfOfCurrentMethod;
+    /**
+     * Beginning of the body of the method being generated, where its tail
+     * calls jump (see MethodCall.makeTailCall)
+     */
+    private Label startOfCurrentMethod;
     private List<Symbol> ListDeclVar = new LinkedList<>();
     private List<Symbol> ListLocalDeclVar = new LinkedList<>();
     private int size = 1;
+    /**
+     * Address of the object of the method being generated
+     */
+    private RegisterOffset thisAddress = new RegisterOffset(-2, Register.LB);
+    /**
+     * Words of the routine being generated kept for the inlined methods and
+     * the loop invariants (see MethodCall and While), null if there is none
+     */
+    private RegisterOffset nextInlineSlot;
 
     public void setEnfOfCurrentMethod(Label enfOfCurrentMethod) {
         this.enfOfCurrentMethod = enfOfCurrentMethod;
@@ -38,6 +52,54 @@ public class StackHashTableSymbol {
         return enfOfCurrentMethod;
     }
 
+    public void setStartOfCurrentMethod(Label startOfCurrentMethod) {
+        this.startOfCurrentMethod = startOfCurrentMethod;
+    }
+
+    public Label getStartOfCurrentMethod() {
+        return startOfCurrentMethod;
+    }
+
+    public RegisterOffset getThis() {
+        return thisAddress;
+    }
+
+    /**
+     * @param thisAddress address of the object whose method is generated,
+     * -2(LB) in a method and another word for an inlined method
+     */
+    public void setThis(RegisterOffset thisAddress) {
+        this.thisAddress = thisAddress;
+    }
+
+    /**
+     * Give the words of the routine starting at firstSlot to the inlined
+     * methods (null: there is none)
+     */
+    public void setInlineSlots(RegisterOffset firstSlot) {
+        nextInlineSlot = firstSlot;
+    }
+
+    public boolean hasInlineSlots() {
+        return nextInlineSlot != null;
+    }
+
+    /**
+     * @return the next word given to the inlined methods
+     */
+    public RegisterOffset newInlineSlot() {
+        if (nextInlineSlot == null) {
+            throw new DecacInternalError("no word kept for the inlined methods");
+        }
+        RegisterOffset slot = nextInlineSlot;
+        nextInlineSlot = new RegisterOffset(slot.getOffset() + 1, slot.getRegister());
+        return slot;
+    }
+
+    public boolean contains(Symbol name) {
+        return map.containsKey(name);
+    }
+
     /**
      * Create or reuse a symbol.
      * 
@@ -84,6 +146,21 @@ public class StackHashTableSymbol {
         size++;
     }
 
+    /**
+     * @return the offset from GB of the next global word to be allocated
+     */
+    public int getNextOffset(){
+        return size;
+    }
+
+    /**
+     * Allocate nbWords global words without symbol (e.g. the slots of the
+     * values spilled by the register allocator)
+     */
+    public void reserve(int nbWords){
+        size += nbWords;
+    }
+
     public List<Symbol> getListDeclVar(){
         return ListDeclVar;
     }
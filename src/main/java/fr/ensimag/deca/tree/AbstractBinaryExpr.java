@@ -72,6 +72,15 @@ public abstract class  AbstractBinaryExpr extends AbstractExpr {
 
     protected void codeGenInstARM(DecacCompiler compiler){
         leftOperand.codeGenInstARM(compiler);
+        if (leftOperand.getType().isFloat()) {
+            // the left value waits in an s register
+            ARMGPRegister usedRegister = compiler.getListFloatRegisterARM().getRegister(compiler);
+            compiler.addARMBlock("        vmov.f32 " + usedRegister + ", s0");
+            rightOperand.codeGenInstARM(compiler);
+            this.codeGenOperationsARM(usedRegister, ARMRegister.s0, compiler);
+            compiler.getListFloatRegisterARM().freeRegister(usedRegister, compiler);
+            return;
+        }
         ARMGPRegister usedRegister = compiler.getListRegisterARM().getRegister(compiler);
 
         compiler.addInstruction(new mov(usedRegister, ARMRegister.getR(0)));
@@ -100,14 +109,24 @@ public abstract class  AbstractBinaryExpr extends AbstractExpr {
         if(getType().isInt()) {
             compiler.addInstruction(new mov(ARMRegister.r1, ARMRegister.r0));
             compiler.addInstruction(new ldr(ARMRegister.r0, "=int"));
+            compiler.addInstruction(new bl("printf"));
         }
         else {
-            compiler.addInstruction(new vmov(ARMRegister.s0, ARMRegister.r0));
-            compiler.addARMBlock("        vcvt.f64.f32 d0, s0");
-            compiler.addInstruction(new vmov(ARMRegister.r2, ARMRegister.r3, ARMRegister.d0));
-            compiler.addInstruction(new ldr(ARMRegister.r0, "=flottant"));
+            codeGenPrintFloatARM(compiler, ARMRegister.s0);
         }
-        compiler.addInstruction(new bl("printf"));
+    }
+
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        setLeftOperand(leftOperand.foldExpr(compiler));
+        setRightOperand(rightOperand.foldExpr(compiler));
+        return this;
+    }
+
+    @Override
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        setLeftOperand(motion.hoist(leftOperand));
+        setRightOperand(motion.hoist(rightOperand));
     }
 
     abstract void codeGenOperations(Register Reg1, Register storedRegister, DecacCompiler compiler);
@@ -1,6 +1,7 @@
 package fr.ensimag.deca.tree;
 
 import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.context.ClassHierarchy;
 import fr.ensimag.deca.context.ContextualError;
 import fr.ensimag.deca.tools.SymbolTable;
 
@@ -33,6 +34,11 @@ public abstract class AbstractDeclClass extends Tree {
     protected abstract void verifyClassBody(DecacCompiler compiler)
             throws ContextualError;
 
+    /**
+     * Add the class to the hierarchy of the program (after the verification)
+     */
+    protected abstract void addToHierarchy(ClassHierarchy hierarchy);
+
     /**
      * Generate assembly code for the IMA instruction.
      *
@@ -65,4 +65,10 @@ public abstract class AbstractDeclVar extends Tree {
      */
     protected abstract void codeGenDeclVarAllocARM(DecacCompiler compiler);
 
+    /**
+     * Analyse the declaration to find the method calls whose object is not
+     * null (see NonNullAnalysis)
+     */
+    protected abstract void analyzeNonNull(NonNullAnalysis analysis);
+
 }
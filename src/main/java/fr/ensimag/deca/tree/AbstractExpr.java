@@ -9,7 +9,19 @@ import java.io.PrintStream;
 
 import fr.ensimag.ima.pseudocode.Register;
 import fr.ensimag.ima.pseudocode.RegisterOffset;
+import fr.ensimag.ima.pseudocode.ARMGPRegister;
+import fr.ensimag.ima.pseudocode.ARMRegister;
+import fr.ensimag.ima.pseudocode.ImmediateInteger;
+import fr.ensimag.ima.pseudocode.instructions.BEQ;
+import fr.ensimag.ima.pseudocode.instructions.BNE;
+import fr.ensimag.ima.pseudocode.instructions.CMP;
 import fr.ensimag.ima.pseudocode.instructions.LOAD;
+import fr.ensimag.ima.pseudocode.instructionsARM.beq;
+import fr.ensimag.ima.pseudocode.instructionsARM.bl;
+import fr.ensimag.ima.pseudocode.instructionsARM.bne;
+import fr.ensimag.ima.pseudocode.instructionsARM.cmp;
+import fr.ensimag.ima.pseudocode.instructionsARM.ldr;
+import fr.ensimag.ima.pseudocode.instructionsARM.vmov;
 import org.apache.commons.lang.Validate;
 
 /**
@@ -127,7 +139,7 @@ public abstract class AbstractExpr extends AbstractInst {
         }
     }
 
-    protected void divideCheck() {
+    protected void divideCheck(DecacCompiler compiler) {
         // NO OP (overriden in IntLiteral and FloatLiteral class)
     }
 
@@ -154,10 +166,122 @@ public abstract class AbstractExpr extends AbstractInst {
         throw new UnsupportedOperationException("not yet implemented");
     }
 
+    /**
+     * Generate ARM code computing the expression in r0, or in s0 if it is a
+     * float: the floats stay in the VFP registers
+     *
+     * @param compiler
+     */
     protected void codeGenInstARM(DecacCompiler compiler) {
         throw new UnsupportedOperationException("not yet implemented");
     }
 
+    /**
+     * Print the float of the s register: printf takes it as a double, in r2
+     * and r3
+     */
+    protected static void codeGenPrintFloatARM(DecacCompiler compiler, ARMGPRegister single) {
+        compiler.addARMBlock("        vcvt.f64.f32 d0, " + single);
+        compiler.addInstruction(new vmov(ARMRegister.r2, ARMRegister.r3, ARMRegister.d0));
+        compiler.addInstruction(new ldr(ARMRegister.r0, "=flottant"));
+        compiler.addInstruction(new bl("printf"));
+    }
+
+    /**
+     * Constant folding and algebraic simplification (decac -O1), done after
+     * the contextual verification: the operands are folded first.
+     *
+     * @param compiler
+     * @return the decorated expression replacing this one (this by default)
+     */
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        return this;
+    }
+
+    /**
+     * @return an int literal replacing this expression in the tree
+     */
+    IntLiteral foldedLiteral(int value) {
+        IntLiteral literal = new IntLiteral(value);
+        literal.setType(getType());
+        literal.setLocation(getLocation());
+        return literal;
+    }
+
+    /**
+     * @return a float literal replacing this expression in the tree
+     */
+    FloatLiteral foldedLiteral(float value) {
+        FloatLiteral literal = new FloatLiteral(value);
+        literal.setType(getType());
+        literal.setLocation(getLocation());
+        return literal;
+    }
+
+    /**
+     * @return a boolean literal replacing this expression in the tree
+     */
+    BooleanLiteral foldedLiteral(boolean value) {
+        BooleanLiteral literal = new BooleanLiteral(value);
+        literal.setType(getType());
+        literal.setLocation(getLocation());
+        return literal;
+    }
+
+    /**
+     * Generate code for a boolean expression used as a condition: jump to
+     * target if the value of the expression is jumpIfTrue, fall through
+     * otherwise. By default, the value is computed in R0 and then tested.
+     *
+     * @param compiler
+     * @param jumpIfTrue value of the expression for which the jump is taken
+     * @param target
+     */
+    protected void codeGenCondition(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        codeGenInst(compiler);
+        compiler.addInstruction(new CMP(new ImmediateInteger(0), Register.R0));
+        codeGenBranch(compiler, jumpIfTrue, target);
+    }
+
+    /**
+     * Jump to target according to the Z flag set by the value of the
+     * expression (0 for false).
+     */
+    protected void codeGenBranch(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        if (jumpIfTrue) {
+            compiler.addInstruction(new BNE(target));
+        } else {
+            compiler.addInstruction(new BEQ(target));
+        }
+    }
+
+    /**
+     * Same as codeGenCondition in ARM
+     */
+    protected void codeGenConditionARM(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        codeGenInstARM(compiler);
+        compiler.addInstruction(new cmp(ARMRegister.r0, 0));
+        if (jumpIfTrue) {
+            compiler.addInstruction(new bne(target.toString()));
+        } else {
+            compiler.addInstruction(new beq(target.toString()));
+        }
+    }
+
+    /**
+     * @return true if the expression contains an assignment
+     */
+    boolean assignsVariable() {
+        final boolean[] found = {false};
+        iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                found[0] |= t instanceof Assign;
+            }
+        });
+        return found[0];
+    }
+
     @Override
     protected void decompileInst(IndentPrintStream s) {
         decompile(s);
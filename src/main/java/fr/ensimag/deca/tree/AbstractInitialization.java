@@ -28,7 +28,10 @@ public abstract class AbstractInitialization extends Tree {
 
     protected abstract void codeGenDeclVar(DecacCompiler compiler, AbstractIdentifier varName);
 
-    protected abstract void codeGenDeclField(DecacCompiler compiler);
+    /**
+     * Put in R0 the initial value of a field of the given type
+     */
+    protected abstract void codeGenDeclField(DecacCompiler compiler, Type type);
 
     protected abstract void codeGenDeclVarARM(DecacCompiler compiler, AbstractIdentifier varName);
 
@@ -8,6 +8,9 @@ import fr.ensimag.deca.context.EnvironmentExp;
 import fr.ensimag.deca.tools.IndentPrintStream;
 import fr.ensimag.ima.pseudocode.Label;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Instruction
  *
@@ -42,6 +45,43 @@ public abstract class AbstractInst extends Tree {
      */
     protected abstract void codeGenInstARM(DecacCompiler compiler);
 
+    /**
+     * Analyse the instruction to find the method calls whose object is not
+     * null (see NonNullAnalysis). The instructions which do not change the
+     * flow of control keep this default.
+     */
+    protected void analyzeNonNull(NonNullAnalysis analysis) {
+        analysis.analyzeInstruction(this);
+    }
+
+    /**
+     * @return false if the instruction never completes, so that the
+     * instructions following it are never run
+     */
+    protected boolean completesNormally() {
+        return true;
+    }
+
+    /**
+     * Remove the unreachable instructions inside the instruction (see
+     * DeadCodeElimination)
+     *
+     * @return the instructions replacing it
+     */
+    protected List<AbstractInst> removeUnreachable(DeadCodeElimination analysis) {
+        return Collections.<AbstractInst>singletonList(this);
+    }
+
+    /**
+     * Analyse the liveness of the variables backward through the instruction,
+     * removing the dead stores it contains (see DeadCodeElimination)
+     *
+     * @return true if the instruction itself is dead
+     */
+    protected boolean removeDeadStores(DeadCodeElimination analysis) {
+        return analysis.analyzeInstruction(this);
+    }
+
     /**
      * Decompile the tree, considering it as an instruction.
      *
@@ -17,6 +17,22 @@ public abstract class AbstractMain extends Tree {
     protected abstract void codeGenMain(DecacCompiler compiler);
     protected abstract void codeGenMainARM(DecacCompiler compiler);
 
+    /**
+     * Remove the null checks of the method calls whose object is known not
+     * to be null (see NonNullAnalysis)
+     *
+     * @return the number of null checks removed
+     */
+    protected abstract int eliminateNullChecks();
+
+    /**
+     * Remove the instructions which are never run or whose result is never
+     * used (see DeadCodeElimination)
+     *
+     * @return the number of instructions removed
+     */
+    protected abstract int eliminateDeadCode();
+
 
     /**
      * Implements non-terminal "main" of [SyntaxeContextuelle] in pass 3 
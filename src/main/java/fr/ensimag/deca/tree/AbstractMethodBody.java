@@ -14,4 +14,32 @@ public abstract class AbstractMethodBody extends Tree {
     protected abstract void codeGenMethodBody(DecacCompiler compiler);
 
     protected abstract int getNumberLocalVariables();
+
+    /**
+     * @return the number of nodes of the body if it may be inlined at the
+     * call sites of the method (see MethodCall), -1 otherwise
+     */
+    protected abstract int getInliningSize();
+
+    /**
+     * @return true if the end of the body may be reached, false if all its
+     * paths end with a return
+     */
+    protected abstract boolean reachesEnd();
+
+    /**
+     * Remove the null checks of the method calls whose object is known not
+     * to be null (see NonNullAnalysis)
+     *
+     * @return the number of null checks removed
+     */
+    protected abstract int eliminateNullChecks();
+
+    /**
+     * Remove the instructions which are never run or whose result is never
+     * used (see DeadCodeElimination)
+     *
+     * @return the number of instructions removed
+     */
+    protected abstract int eliminateDeadCode();
 }
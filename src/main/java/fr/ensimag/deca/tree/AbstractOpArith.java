@@ -35,12 +35,96 @@ public abstract class AbstractOpArith extends AbstractBinaryExpr {
             }
         }
         if (compiler.getEmitWarnings()) {
-            getRightOperand().divideCheck();
+            getRightOperand().divideCheck(compiler);
         }
         setType(resType);
         return resType;
     }
 
+    /**
+     * @return the result of the operation on two int literals, or null if
+     * it cannot be computed at compile time (overflow, division by zero)
+     */
+    abstract Integer foldInt(int left, int right);
+
+    /**
+     * @return the result of the operation on two float literals, or null if
+     * it cannot be computed at compile time (see floatResult)
+     */
+    abstract Float foldFloat(float left, float right);
+
+    /**
+     * Algebraic simplification of the operation when its operands are not
+     * both literals.
+     *
+     * @return the expression replacing this one
+     */
+    AbstractExpr simplify(DecacCompiler compiler) {
+        return this;
+    }
+
+    /**
+     * @return result if it fits in an int, null otherwise
+     */
+    static Integer intResult(long result) {
+        if (result != (int) result) {
+            return null;
+        }
+        return (int) result;
+    }
+
+    /**
+     * @param result result of the operation on floats, rounded as in IMA
+     * @param exact the same operation computed on doubles
+     * @return result, or null if IMA would raise an overflow (infinite or
+     * NaN result) or if the result underflows (denormalized, or rounded to 0)
+     */
+    static Float floatResult(float result, double exact) {
+        if (Float.isInfinite(result) || Float.isNaN(result)
+                || (result == 0 && exact != 0)
+                || (result != 0 && Math.abs(result) < Float.MIN_NORMAL)) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * @return true if expr is the int literal value
+     */
+    static boolean isIntLiteral(AbstractExpr expr, int value) {
+        return expr instanceof IntLiteral && ((IntLiteral) expr).getValue() == value;
+    }
+
+    /**
+     * @return true if expr is the literal value, as an int or as a float
+     */
+    static boolean isLiteral(AbstractExpr expr, int value) {
+        return isIntLiteral(expr, value)
+                || (expr instanceof FloatLiteral && ((FloatLiteral) expr).getValue() == value);
+    }
+
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        super.foldExpr(compiler);
+        AbstractExpr left = getLeftOperand();
+        AbstractExpr right = getRightOperand();
+        if (left instanceof IntLiteral && right instanceof IntLiteral) {
+            Integer result = foldInt(((IntLiteral) left).getValue(), ((IntLiteral) right).getValue());
+            if (result != null) {
+                return foldedLiteral(result.intValue());
+            }
+        } else if (left instanceof FloatLiteral && right instanceof FloatLiteral) {
+            Float result = foldFloat(((FloatLiteral) left).getValue(), ((FloatLiteral) right).getValue());
+            if (result != null) {
+                return foldedLiteral(result.floatValue());
+            }
+        } else {
+            return simplify(compiler);
+        }
+        return this;
+    }
+
     abstract void codeGenOperations(Register Reg1, Register storedRegister, DecacCompiler compiler);
     abstract void codeGenOperationsARM(ARMRegister Reg1, ARMRegister storedRegister, DecacCompiler compiler);
+
 }
@@ -2,9 +2,20 @@ package fr.ensimag.deca.tree;
 
 import fr.ensimag.deca.context.*;
 import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.tools.DecacInternalError;
+import fr.ensimag.ima.pseudocode.ARMRegister;
+import fr.ensimag.ima.pseudocode.ImmediateInteger;
+import fr.ensimag.ima.pseudocode.Label;
 import fr.ensimag.ima.pseudocode.Register;
+import fr.ensimag.ima.pseudocode.instructions.BRA;
+import fr.ensimag.ima.pseudocode.instructions.LOAD;
+import fr.ensimag.ima.pseudocode.instructionsARM.b;
+import fr.ensimag.ima.pseudocode.instructionsARM.mov;
 
 /**
+ * Lazy boolean operators: the right operand is only evaluated when the left
+ * one does not determine the result, so the code is generated with jumps
+ * (see codeGenCondition) rather than with operations on the two values.
  *
  * @author gl49
  * @date 01/01/2022
@@ -25,5 +36,38 @@ public abstract class AbstractOpBool extends AbstractBinaryExpr {
         return resType;
     }
 
-    abstract void codeGenOperations(Register Reg1, Register storedRegister, DecacCompiler compiler);
+    @Override
+    protected void codeGenInst(DecacCompiler compiler) {
+        Label falseLabel = compiler.newLabel();
+        Label endLabel = compiler.newLabel();
+        codeGenCondition(compiler, false, falseLabel);
+        compiler.addInstruction(new LOAD(new ImmediateInteger(1), Register.R0));
+        compiler.addInstruction(new BRA(endLabel));
+        compiler.addLabel(falseLabel);
+        compiler.addInstruction(new LOAD(new ImmediateInteger(0), Register.R0));
+        compiler.addLabel(endLabel);
+    }
+
+    @Override
+    protected void codeGenInstARM(DecacCompiler compiler) {
+        Label falseLabel = compiler.newLabel();
+        Label endLabel = compiler.newLabel();
+        codeGenConditionARM(compiler, false, falseLabel);
+        compiler.addInstruction(new mov(ARMRegister.r0, 1));
+        compiler.addInstruction(new b(endLabel.toString()));
+        compiler.addLabel(falseLabel);
+        compiler.addInstruction(new mov(ARMRegister.r0, 0));
+        compiler.addLabel(endLabel);
+    }
+
+    @Override
+    void codeGenOperations(Register Reg1, Register storedRegister, DecacCompiler compiler) {
+        throw new DecacInternalError(getOperatorName() + " does not evaluate both of its operands");
+    }
+
+    @Override
+    void codeGenOperationsARM(ARMRegister Reg1, ARMRegister storedRegister, DecacCompiler compiler) {
+        throw new DecacInternalError(getOperatorName() + " does not evaluate both of its operands");
+    }
+
 }
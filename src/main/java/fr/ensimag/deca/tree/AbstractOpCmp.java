@@ -1,12 +1,18 @@
 package fr.ensimag.deca.tree;
 
 import fr.ensimag.deca.context.*;
+import fr.ensimag.ima.pseudocode.ARMGPRegister;
 import fr.ensimag.ima.pseudocode.ARMRegister;
+import fr.ensimag.ima.pseudocode.ARMUnaryInstructionString;
+import fr.ensimag.ima.pseudocode.BranchInstruction;
+import fr.ensimag.ima.pseudocode.GPRegister;
+import fr.ensimag.ima.pseudocode.Label;
 import fr.ensimag.ima.pseudocode.Register;
 import fr.ensimag.deca.DecacCompiler;
 import fr.ensimag.ima.pseudocode.instructions.CMP;
+import fr.ensimag.ima.pseudocode.instructions.LOAD;
+import fr.ensimag.ima.pseudocode.instructionsARM.cmp;
 import fr.ensimag.ima.pseudocode.instructionsARM.mov;
-import fr.ensimag.ima.pseudocode.instructionsARM.vmov;
 
 /**
  *
@@ -41,10 +47,101 @@ public abstract class AbstractOpCmp extends AbstractBinaryExpr {
     }
 
     public void codeGenOperationsARM(ARMRegister Reg1, ARMRegister storedRegister, DecacCompiler compiler){
-        compiler.addInstruction(new vmov(ARMRegister.s0, Reg1));
-        compiler.addInstruction(new vmov(ARMRegister.s1, storedRegister));
+        codeGenCompareARM(Reg1, storedRegister, compiler);
         compiler.addInstruction(new mov(ARMRegister.r0, 0));
-        compiler.addARMBlock("        vcmp.f32 s0, s1");
-        compiler.addARMBlock("        vmrs APSR_nzcv, fpscr"); // copy fpcsr to fpcsr to read flags
     }
+
+    /**
+     * Compare the left value with the right one: with vcmp on the s
+     * registers for floats, with cmp otherwise
+     */
+    private void codeGenCompareARM(ARMRegister left, ARMRegister right, DecacCompiler compiler) {
+        if (getLeftOperand().getType().isFloat()) {
+            compiler.addARMBlock("        vcmp.f32 " + left + ", " + right);
+            compiler.addARMBlock("        vmrs APSR_nzcv, fpscr"); // copy fpcsr to fpcsr to read flags
+        } else {
+            compiler.addInstruction(new cmp(left, right));
+        }
+    }
+
+    /**
+     * @param lower true if the left operand is lower than the right one
+     * @param equal true if the operands are equal
+     * @return the value of the comparison
+     */
+    abstract boolean foldComparison(boolean lower, boolean equal);
+
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        super.foldExpr(compiler);
+        AbstractExpr left = getLeftOperand();
+        AbstractExpr right = getRightOperand();
+        if (left instanceof IntLiteral && right instanceof IntLiteral) {
+            int l = ((IntLiteral) left).getValue();
+            int r = ((IntLiteral) right).getValue();
+            return foldedLiteral(foldComparison(l < r, l == r));
+        }
+        if (left instanceof FloatLiteral && right instanceof FloatLiteral) {
+            float l = ((FloatLiteral) left).getValue();
+            float r = ((FloatLiteral) right).getValue();
+            return foldedLiteral(foldComparison(l < r, l == r));
+        }
+        if (left instanceof BooleanLiteral && right instanceof BooleanLiteral) {
+            // only == and != compare booleans
+            boolean l = ((BooleanLiteral) left).getValue();
+            boolean r = ((BooleanLiteral) right).getValue();
+            return foldedLiteral(foldComparison(false, l == r));
+        }
+        return this;
+    }
+
+    /**
+     * @param jumpIfTrue
+     * @param target
+     * @return the IMA branch to target taken when the comparison is
+     * jumpIfTrue, after CMP of the left value with the right one (in R0)
+     */
+    abstract BranchInstruction getBranch(boolean jumpIfTrue, Label target);
+
+    /**
+     * @param jumpIfTrue
+     * @param target
+     * @return the ARM branch to target taken when the comparison is
+     * jumpIfTrue, after the comparison of the left value with the right one
+     * (cmp, or vcmp for floats)
+     */
+    abstract ARMUnaryInstructionString getBranchARM(boolean jumpIfTrue, Label target);
+
+    @Override
+    protected void codeGenCondition(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        getLeftOperand().codeGenInst(compiler);
+        GPRegister usedRegister = compiler.getListRegister().getRegister(compiler);
+
+        compiler.addInstruction(new LOAD(Register.R0, usedRegister));
+        getRightOperand().codeGenInst(compiler);
+        compiler.addInstruction(new CMP(usedRegister, Register.R0));
+        compiler.getListRegister().freeRegister(usedRegister, compiler);
+        compiler.addInstruction(getBranch(jumpIfTrue, target));
+    }
+
+    @Override
+    protected void codeGenConditionARM(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        getLeftOperand().codeGenInstARM(compiler);
+        boolean isFloat = getLeftOperand().getType().isFloat();
+        ARMRegister bench = isFloat ? compiler.getListFloatRegisterARM()
+                : compiler.getListRegisterARM();
+        ARMGPRegister usedRegister = bench.getRegister(compiler);
+
+        if (isFloat) {
+            compiler.addARMBlock("        vmov.f32 " + usedRegister + ", s0");
+        } else {
+            compiler.addInstruction(new mov(usedRegister, ARMRegister.r0));
+        }
+        getRightOperand().codeGenInstARM(compiler);
+        codeGenCompareARM(usedRegister, isFloat ? ARMRegister.s0 : ARMRegister.r0, compiler);
+        // restoring the register (pop) does not change the flags
+        bench.freeRegister(usedRegister, compiler);
+        compiler.addInstruction(getBranchARM(jumpIfTrue, target));
+    }
+
 }
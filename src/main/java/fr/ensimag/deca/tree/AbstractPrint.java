@@ -31,6 +31,11 @@ public abstract class AbstractPrint extends AbstractInst {
         return arguments;
     }
 
+    @Override
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        arguments.hoistChildren(motion);
+    }
+
     @Override
     protected void verifyInst(DecacCompiler compiler, EnvironmentExp localEnv,
             ClassDefinition currentClass, Type returnType) throws ContextualError {
@@ -48,6 +48,17 @@ public abstract class AbstractUnaryExpr extends AbstractExpr {
         this.codeGenOperationsARM(ARMRegister.r0, compiler);
     }
 
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        operand = operand.foldExpr(compiler);
+        return this;
+    }
+
+    @Override
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        operand = motion.hoist(operand);
+    }
+
     abstract void codeGenOperations(GPRegister storedRegister, DecacCompiler compiler);
 
     abstract void codeGenOperationsARM(ARMRegister storedRegister, DecacCompiler compiler);
@@ -1,13 +1,7 @@
 package fr.ensimag.deca.tree;
 
-import fr.ensimag.ima.pseudocode.Register;
-import fr.ensimag.ima.pseudocode.ARMRegister;
 import fr.ensimag.deca.DecacCompiler;
-import fr.ensimag.ima.pseudocode.instructions.ADD;
-import fr.ensimag.ima.pseudocode.instructions.CMP;
-import fr.ensimag.ima.pseudocode.instructions.SEQ;
-import fr.ensimag.ima.pseudocode.ImmediateInteger;
-import fr.ensimag.ima.pseudocode.instructionsARM.*;
+import fr.ensimag.ima.pseudocode.Label;
 
 /**
  *
@@ -25,17 +19,44 @@ public class And extends AbstractOpBool {
         return "&&";
     }
 
-    public void codeGenOperations(Register Reg1, Register storedRegister, DecacCompiler compiler){
-        compiler.addInstruction(new ADD(Reg1, storedRegister));
-        compiler.addInstruction(new CMP(new ImmediateInteger(2), storedRegister));
-        compiler.addInstruction(new SEQ(compiler.getListRegister().R0));
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        super.foldExpr(compiler);
+        if (getLeftOperand() instanceof BooleanLiteral) {
+            // true && b is b, false && b is false without evaluating b
+            return ((BooleanLiteral) getLeftOperand()).getValue() ? getRightOperand() : getLeftOperand();
+        }
+        if (getRightOperand() instanceof BooleanLiteral
+                && ((BooleanLiteral) getRightOperand()).getValue()) {
+            return getLeftOperand();
+        }
+        return this;
+    }
+
+    @Override
+    protected void codeGenCondition(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        if (jumpIfTrue) {
+            Label endAnd = compiler.newLabel();
+            getLeftOperand().codeGenCondition(compiler, false, endAnd);
+            getRightOperand().codeGenCondition(compiler, true, target);
+            compiler.addLabel(endAnd);
+        } else {
+            getLeftOperand().codeGenCondition(compiler, false, target);
+            getRightOperand().codeGenCondition(compiler, false, target);
+        }
     }
 
-    public void codeGenOperationsARM(ARMRegister Reg1, ARMRegister storedRegister, DecacCompiler compiler){
-        compiler.addInstruction(new mov(ARMRegister.r3, 0));
-        compiler.addInstruction(new add(storedRegister, Reg1, storedRegister));
-        compiler.addInstruction(new cmp(storedRegister, 2));
-        compiler.addInstruction(new moveq(ARMRegister.r3, 1));
-        compiler.addInstruction(new mov(ARMRegister.r0, ARMRegister.r3));
+    @Override
+    protected void codeGenConditionARM(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        if (jumpIfTrue) {
+            Label endAnd = compiler.newLabel();
+            getLeftOperand().codeGenConditionARM(compiler, false, endAnd);
+            getRightOperand().codeGenConditionARM(compiler, true, target);
+            compiler.addLabel(endAnd);
+        } else {
+            getLeftOperand().codeGenConditionARM(compiler, false, target);
+            getRightOperand().codeGenConditionARM(compiler, false, target);
+        }
     }
+
 }
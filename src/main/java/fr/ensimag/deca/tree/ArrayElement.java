@@ -0,0 +1,157 @@
+package fr.ensimag.deca.tree;
+
+import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.context.ArrayType;
+import fr.ensimag.deca.context.ClassDefinition;
+import fr.ensimag.deca.context.ContextualError;
+import fr.ensimag.deca.context.EnvironmentExp;
+import fr.ensimag.deca.context.Type;
+import fr.ensimag.deca.tools.IndentPrintStream;
+import fr.ensimag.ima.pseudocode.GPRegister;
+import fr.ensimag.ima.pseudocode.Label;
+import fr.ensimag.ima.pseudocode.NullOperand;
+import fr.ensimag.ima.pseudocode.Register;
+import fr.ensimag.ima.pseudocode.RegisterIndexedOffset;
+import fr.ensimag.ima.pseudocode.RegisterOffset;
+import fr.ensimag.ima.pseudocode.instructions.*;
+import org.apache.commons.lang.Validate;
+
+import java.io.PrintStream;
+
+/**
+ * Element of an array, i.e. array[index]. The element of index i is the
+ * word i + 1 of the block of the array (see NewArray), addressed by
+ * 1(array, index).
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class ArrayElement extends AbstractLValue {
+    private AbstractExpr array;
+    private AbstractExpr index;
+
+    public ArrayElement(AbstractExpr array, AbstractExpr index) {
+        Validate.notNull(array);
+        Validate.notNull(index);
+        this.array = array;
+        this.index = index;
+    }
+
+    public AbstractExpr getArray() {
+        return array;
+    }
+
+    public AbstractExpr getIndex() {
+        return index;
+    }
+
+    @Override
+    public Type verifyExpr(DecacCompiler compiler, EnvironmentExp localEnv,
+            ClassDefinition currentClass) throws ContextualError {
+        Type arrayType = array.verifyExpr(compiler, localEnv, currentClass);
+        if (!arrayType.isArray()) {
+            throw new ContextualError(
+                    "(RULE 3.65) Indexing applied to expression of non-array type: (\u001B[31m" +
+                    arrayType.getName() + "\u001B[0m).", getLocation());
+        }
+        Type indexType = index.verifyExpr(compiler, localEnv, currentClass);
+        if (!indexType.isInt()) {
+            throw new ContextualError(
+                    "(RULE 3.33) Illegal index type: is " + indexType.getName() +
+                    ", int required.", index.getLocation());
+        }
+        Type elementType = ((ArrayType) arrayType).getElementType();
+        setType(elementType);
+        return elementType;
+    }
+
+    /**
+     * Compute the array and the index in two new registers. Unless decac -n,
+     * the program stops if the array is null or the index out of its bounds.
+     *
+     * @return the address of the element, whose registers are freed by
+     * freeAddress
+     */
+    RegisterIndexedOffset codeGenAddress(DecacCompiler compiler) {
+        boolean check = !compiler.getCompilerOptions().getNoCheck();
+        array.codeGenInst(compiler);
+        GPRegister block = compiler.getListRegister().getRegister(compiler);
+        compiler.addInstruction(new LOAD(Register.R0, block));
+        if (check) {
+            compiler.addInstruction(new CMP(new NullOperand(), block));
+            compiler.addInstruction(new BEQ(compiler.getErrorManager().getErrorLabel("Null dereferencing")));
+        }
+        index.codeGenInst(compiler);
+        GPRegister position = compiler.getListRegister().getRegister(compiler);
+        compiler.addInstruction(new LOAD(Register.R0, position));
+        if (check) {
+            Label outOfBounds = compiler.getErrorManager().getErrorLabel("Index out of bounds");
+            // the load of the index sets the condition codes
+            compiler.addInstruction(new BLT(outOfBounds));
+            compiler.addInstruction(new CMP(new RegisterOffset(0, block), position));
+            compiler.addInstruction(new BGE(outOfBounds));
+        }
+        return new RegisterIndexedOffset(1, block, position);
+    }
+
+    /**
+     * Free the registers of an address given by codeGenAddress
+     */
+    static void freeAddress(DecacCompiler compiler, RegisterIndexedOffset address) {
+        compiler.getListRegister().freeRegister((GPRegister) address.getIndex(), compiler);
+        compiler.getListRegister().freeRegister((GPRegister) address.getRegister(), compiler);
+    }
+
+    @Override
+    protected void codeGenInst(DecacCompiler compiler) {
+        RegisterIndexedOffset address = codeGenAddress(compiler);
+        compiler.addInstruction(new LOAD(address, Register.R0));
+        freeAddress(compiler, address);
+    }
+
+    @Override
+    protected void codeGenPrint(DecacCompiler compiler, boolean printHex) {
+        codeGenInst(compiler);
+        compiler.addInstruction(new LOAD(Register.R0, Register.R1));
+        if (getType().isInt()) {
+            compiler.addInstruction(new WINT());
+        } else if (printHex) {
+            compiler.addInstruction(new WFLOATX());
+        } else {
+            compiler.addInstruction(new WFLOAT());
+        }
+    }
+
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        array = array.foldExpr(compiler);
+        index = index.foldExpr(compiler);
+        return this;
+    }
+
+    @Override
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        array = motion.hoist(array);
+        index = motion.hoist(index);
+    }
+
+    @Override
+    public void decompile(IndentPrintStream s) {
+        array.decompile(s);
+        s.print("[");
+        index.decompile(s);
+        s.print("]");
+    }
+
+    @Override
+    protected void prettyPrintChildren(PrintStream s, String prefix) {
+        array.prettyPrint(s, prefix, false);
+        index.prettyPrint(s, prefix, true);
+    }
+
+    @Override
+    protected void iterChildren(TreeFunction f) {
+        array.iter(f);
+        index.iter(f);
+    }
+}
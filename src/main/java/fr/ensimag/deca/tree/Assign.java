@@ -8,12 +8,12 @@ import fr.ensimag.deca.context.EnvironmentExp;
 import fr.ensimag.deca.tools.IndentPrintStream;
 import fr.ensimag.ima.pseudocode.GPRegister;
 import fr.ensimag.ima.pseudocode.Register;
+import fr.ensimag.ima.pseudocode.ARMGPRegister;
 import fr.ensimag.ima.pseudocode.ARMRegister;
+import fr.ensimag.ima.pseudocode.RegisterIndexedOffset;
 import fr.ensimag.ima.pseudocode.RegisterOffset;
 import fr.ensimag.ima.pseudocode.instructions.LOAD;
 import fr.ensimag.ima.pseudocode.instructions.STORE;
-import fr.ensimag.ima.pseudocode.instructionsARM.ldr;
-import fr.ensimag.ima.pseudocode.instructionsARM.str;
 
 import java.util.Objects;
 
@@ -40,6 +40,11 @@ public class Assign extends AbstractBinaryExpr {
     public Type verifyExpr(DecacCompiler compiler, EnvironmentExp localEnv,
             ClassDefinition currentClass) throws ContextualError {
         Type currentType = getLeftOperand().verifyExpr(compiler, localEnv, currentClass);
+        if (getLeftOperand() instanceof Selection
+                && ((Selection) getLeftOperand()).getSelectingClass().getType().isArray()) {
+            throw new ContextualError("(RULE 3.32) The length of an array cannot be assigned.",
+                    getLocation());
+        }
         setType(currentType);
         setRightOperand(
                 getRightOperand().verifyRValue(compiler, localEnv, currentClass, currentType));
@@ -73,17 +78,18 @@ public class Assign extends AbstractBinaryExpr {
         GPRegister targetObject = null;
         GPRegister storePossibleObject = null;
         //on recupere a quelle adresse est stocké l'element de gauche :
+        if(super.getLeftOperand() instanceof ArrayElement){
+            RegisterIndexedOffset element = ((ArrayElement) super.getLeftOperand()).codeGenAddress(compiler);
+            super.getRightOperand().codeGenInst(compiler);
+            compiler.addInstruction(new STORE(Register.R0, element));
+            ArrayElement.freeAddress(compiler, element);
+            return;
+        }
         if(super.getLeftOperand() instanceof Selection){
             targetObject = compiler.getListRegister().getRegister(compiler);
             AbstractExpr selectingClass = ((Selection) super.getLeftOperand()).getSelectingClass();
-            //il manque la cas This et Cast
-            if(selectingClass instanceof This || selectingClass instanceof Cast || selectingClass instanceof Selection){
-                selectingClass.codeGenInst(compiler);
-                compiler.addInstruction(new LOAD(Register.R0, targetObject));
-            }else{
-                RegisterOffset r = compiler.getstackTable().get(compiler.getSymbTable().get(((Identifier)selectingClass).getName().getName()));
-                compiler.addInstruction(new LOAD(r, targetObject));
-            }
+            selectingClass.codeGenInst(compiler);
+            compiler.addInstruction(new LOAD(Register.R0, targetObject));
             targetField = new RegisterOffset(((Selection) super.getLeftOperand()).getSelectedField().getFieldDefinition().getIndex(), targetObject);
         }
         else{
@@ -91,7 +97,7 @@ public class Assign extends AbstractBinaryExpr {
                     ((Identifier) super.getLeftOperand()).getName());
             if(Objects.isNull(targetField.getRegister())){
                 storePossibleObject = compiler.getListRegister().getRegister(compiler);
-                compiler.addInstruction(new LOAD(new RegisterOffset(-2, Register.LB), storePossibleObject));
+                compiler.addInstruction(new LOAD(compiler.getstackTable().getThis(), storePossibleObject));
                 targetField = new RegisterOffset(targetField.getOffset(), storePossibleObject);
             }
         }
@@ -99,8 +105,7 @@ public class Assign extends AbstractBinaryExpr {
         super.getRightOperand().codeGenInst(compiler);
         //on stock right result into the left operand
         compiler.addInstruction(new STORE(Register.R0, targetField));
-        if(super.getLeftOperand() instanceof Selection){
-            assert targetObject != null;//defensive programming
+        if(targetObject != null){
             compiler.getListRegister().freeRegister(targetObject, compiler);
         }
         if(storePossibleObject != null){
@@ -115,8 +120,17 @@ public class Assign extends AbstractBinaryExpr {
         compiler.addInstruction(new STORE(storedRegister, offset));
     }
 
+    @Override
+    protected void codeGenInstARM(DecacCompiler compiler) {
+        // the value of the variable before the assignment is not needed
+        getRightOperand().codeGenInstARM(compiler);
+        ARMRegister value = getType().isFloat() ? ARMRegister.s0 : ARMRegister.r0;
+        codeGenOperationsARM(value, value, compiler);
+    }
+
     public void codeGenOperationsARM(ARMRegister Reg1, ARMRegister storedRegister, DecacCompiler compiler){
-        compiler.addInstruction(new ldr(ARMRegister.r2, "="+((Identifier)getLeftOperand()).getName().getName()));
-        compiler.addInstruction(new str(storedRegister, "[r2]"));
+        compiler.getArmFrame().codeGenStore(compiler,
+                ((Identifier) getLeftOperand()).getExpDefinition(), (ARMGPRegister) storedRegister);
     }
+
 }
@@ -7,11 +7,14 @@ import fr.ensimag.deca.context.ContextualError;
 import fr.ensimag.deca.context.EnvironmentExp;
 import fr.ensimag.deca.tools.IndentPrintStream;
 import fr.ensimag.ima.pseudocode.ARMRegister;
+import fr.ensimag.ima.pseudocode.Label;
+import fr.ensimag.ima.pseudocode.instructions.BRA;
 import fr.ensimag.ima.pseudocode.instructions.LOAD;
 import fr.ensimag.ima.pseudocode.instructions.WFLOAT;
 import fr.ensimag.deca.tree.StringLiteral;
 import fr.ensimag.ima.pseudocode.ImmediateFloat;
 import fr.ensimag.ima.pseudocode.ImmediateInteger;
+import fr.ensimag.ima.pseudocode.instructionsARM.b;
 import fr.ensimag.ima.pseudocode.instructionsARM.mov;
 
 import java.io.PrintStream;
@@ -86,6 +89,21 @@ public class BooleanLiteral extends AbstractExpr {
         compiler.addInstruction(new mov(ARMRegister.r0, intValue));
     }
 
+    @Override
+    protected void codeGenCondition(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        // the jump is either always or never taken
+        if (value == jumpIfTrue) {
+            compiler.addInstruction(new BRA(target));
+        }
+    }
+
+    @Override
+    protected void codeGenConditionARM(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        if (value == jumpIfTrue) {
+            compiler.addInstruction(new b(target.toString()));
+        }
+    }
+
 
     @Override
     String prettyPrintNode() {
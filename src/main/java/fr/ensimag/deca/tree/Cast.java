@@ -14,6 +14,10 @@ public class Cast extends AbstractExpr {
     private AbstractIdentifier type;
     private AbstractExpr expression;
 
+    public AbstractExpr getExpression() {
+        return expression;
+    }
+
     public Cast(AbstractIdentifier type, AbstractExpr expression) {
         this.type = type;
         this.expression = expression;
@@ -53,28 +57,20 @@ public class Cast extends AbstractExpr {
                 }     
             }
             else if(type.getDefinition().getType().isClass()){
-                Label beginElse = new Label();
-                Label endElse = new Label();
-
-                //condition instructions
-                InstanceOf instance = new InstanceOf(expression, type);
-                instance.codeGenInst(compiler);
-                compiler.addInstruction(new CMP(new ImmediateInteger(1), Register.R0));
-                compiler.addInstruction(new BNE(beginElse));
-                //then instructions§
-                if(expression instanceof Identifier){
-                    compiler.addInstruction(new LOAD(compiler.getstackTable().get(((Identifier)expression).getName()), Register.R1));
-                }else{//if expression is not an identifier, the result of expression is store in R0
-                    expression.codeGenInst(compiler);
-                    compiler.addInstruction(new LOAD(Register.R0, Register.R1));
-                }
-                compiler.addInstruction(new BRA(endElse));
-                compiler.addLabel(beginElse);
-                //else instructions
-                if (!compiler.getCompilerOptions().getNoCheck()) {
-                    compiler.addInstruction(new BRA(compiler.getErrorManager().getErrorLabel("Illegal cast")));
+                // the object stays in R0, where it is tested: null can be
+                // cast to any class, and a cast to a superclass always holds
+                if (!compiler.getCompilerOptions().getNoCheck()
+                        && !ContextTools.subtype(expression.getType(), type.getDefinition().getType())) {
+                    Label success = compiler.newLabel();
+                    InstanceOf.codeGenTest(compiler, Register.R0, type.getClassDefinition(),
+                            success, compiler.getErrorManager().getErrorLabel("Illegal cast"));
+                    compiler.addLabel(success);
                 }
-                compiler.addLabel(endElse);
+                return;
+            }
+            else if(type.getDefinition().getType().isArray()){
+                // only null can be cast to another array type
+                return;
             }
             else if(type.getDefinition().getType().isFloat()){
                 compiler.addInstruction(new FLOAT(Register.R0, Register.R1));
@@ -88,22 +84,28 @@ public class Cast extends AbstractExpr {
 
     protected void codeGenInstARM(DecacCompiler compiler){
         expression.codeGenInstARM(compiler);
+        if (type.getDefinition().getType().isClass()) {
+            // the object stays in r0; the ARM code has no method tables, so
+            // there is no class to test it against
+            return;
+        }
         // we only add the instruction if the cast is really needed
         if (!type.getDefinition().getType().sameType(expression.getType())) {
-            compiler.addInstruction(new vmov(ARMRegister.s0, ARMRegister.r0));
+            // the float is in s0, the int in r0
             if(type.getDefinition().getType().isInt()){
-                compiler.addARMBlock("        vcvt.s32.f32 s1, s0");
+                compiler.addARMBlock("        vcvt.s32.f32 s0, s0");
                 if (!compiler.getCompilerOptions().getNoCheck()) {
                     compiler.addInstruction(new bvs("float_arithmetic_overflow"));
                 }
+                compiler.addInstruction(new vmov(ARMRegister.r0, ARMRegister.s0));
             }
             else if(type.getDefinition().getType().isFloat()){
-                compiler.addARMBlock("        vcvt.f32.s32 s1, s0");
+                compiler.addInstruction(new vmov(ARMRegister.s0, ARMRegister.r0));
+                compiler.addARMBlock("        vcvt.f32.s32 s0, s0");
                 if (!compiler.getCompilerOptions().getNoCheck()) {
                    compiler.addInstruction(new bvs("float_arithmetic_overflow"));
                 }
             }
-            compiler.addInstruction(new vmov(ARMRegister.r0, ARMRegister.s1));
         }
     }
 
@@ -137,11 +139,7 @@ public class Cast extends AbstractExpr {
             compiler.addInstruction(new bl("printf"));
         }
         else {
-            compiler.addInstruction(new vmov(ARMRegister.s0, ARMRegister.r0));
-            compiler.addARMBlock("        vcvt.f64.f32 d0, s0");
-            compiler.addInstruction(new vmov(ARMRegister.r2, ARMRegister.r3, ARMRegister.d0));
-            compiler.addInstruction(new ldr(ARMRegister.r0, "=flottant"));
-            compiler.addInstruction(new bl("printf"));
+            codeGenPrintFloatARM(compiler, ARMRegister.s0);
         }
     }
 
@@ -151,10 +149,22 @@ public class Cast extends AbstractExpr {
         expression.prettyPrint(s, prefix, true);
     }
 
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        expression = expression.foldExpr(compiler);
+        return this;
+    }
+
+    @Override
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        expression = motion.hoist(expression);
+    }
+
     @Override
     protected void iterChildren(TreeFunction f) {
         type.iter(f);
         expression.iter(f);
     }
+
 }
 
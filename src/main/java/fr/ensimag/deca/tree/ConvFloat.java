@@ -36,6 +36,16 @@ public class ConvFloat extends AbstractUnaryExpr {
         return compiler.getEnvTypes().get(compiler.getSymbTable().create("float")).getType();
     }
 
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        super.foldExpr(compiler);
+        if (getOperand() instanceof IntLiteral) {
+            // FLOAT rounds to the nearest float, as the conversion in Java
+            return foldedLiteral((float) ((IntLiteral) getOperand()).getValue());
+        }
+        return this;
+    }
+
     public void codeGenOperations(GPRegister storedRegister, DecacCompiler compiler){
         // Nothing to do
     }
@@ -56,11 +66,7 @@ public class ConvFloat extends AbstractUnaryExpr {
 
     protected void codeGenPrintARM(DecacCompiler compiler, boolean printHex){
         codeGenInstARM(compiler);
-        compiler.addInstruction(new vmov(ARMRegister.s0, ARMRegister.r0));
-        compiler.addARMBlock("        vcvt.f64.f32 d0, s0");
-        compiler.addInstruction(new vmov(ARMRegister.r2, ARMRegister.r3, ARMRegister.d0));
-        compiler.addInstruction(new ldr(ARMRegister.r0, "=flottant"));        
-        compiler.addInstruction(new bl("printf"));
+        codeGenPrintFloatARM(compiler, ARMRegister.s0);
     }
 
 
@@ -81,8 +87,7 @@ public class ConvFloat extends AbstractUnaryExpr {
     public void codeGenInstARM(DecacCompiler compiler){
         super.getOperand().codeGenInstARM(compiler);
         compiler.addInstruction(new vmov(ARMRegister.s0, ARMRegister.r0));
-        compiler.addARMBlock("        vcvt.f32.s32 s1, s0");
-        compiler.addInstruction(new vmov(ARMRegister.r0, ARMRegister.s1));
+        compiler.addARMBlock("        vcvt.f32.s32 s0, s0");
     }
 
 }
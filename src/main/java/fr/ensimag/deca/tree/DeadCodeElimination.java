@@ -0,0 +1,189 @@
+package fr.ensimag.deca.tree;
+
+import fr.ensimag.deca.context.Definition;
+import fr.ensimag.deca.context.ExpDefinition;
+import fr.ensimag.deca.context.ParamDefinition;
+import fr.ensimag.deca.context.VariableDefinition;
+import org.apache.log4j.Logger;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Removal of the instructions of a routine (the main program or a method)
+ * which are never run or whose result is never used.
+ *
+ * The unreachable instructions are the branch of a conditional whose
+ * condition is a literal and which is not taken, the body of a loop whose
+ * condition is false, and the instructions following an instruction which
+ * never completes (a return, a conditional whose branches both return, a
+ * loop whose condition is true).
+ *
+ * The dead stores are found by a backward liveness analysis of the variables
+ * and parameters of the routine: an assignment to a variable which is not
+ * read before its next assignment or the end of the routine is removed, as
+ * well as an instruction which computes an expression without using it,
+ * when the expression has no side effect (see hasSideEffects). The fields
+ * are not tracked: they outlive the routine.
+ *
+ * Each removed instruction is logged (decac -d).
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class DeadCodeElimination {
+    private static final Logger LOG = Logger.getLogger(DeadCodeElimination.class);
+
+    /**
+     * Variables which may be read after the instruction being analysed
+     */
+    private final Set<ExpDefinition> live;
+    /**
+     * False while the liveness in a loop is computed: the instructions are
+     * removed once it is known
+     */
+    private final boolean removing;
+    /**
+     * Number of instructions removed, shared by the copies of the analysis
+     */
+    private final int[] nbRemoved;
+
+    public DeadCodeElimination() {
+        this(new HashSet<ExpDefinition>(), true, new int[1]);
+    }
+
+    private DeadCodeElimination(Set<ExpDefinition> live, boolean removing, int[] nbRemoved) {
+        this.live = live;
+        this.removing = removing;
+        this.nbRemoved = nbRemoved;
+    }
+
+    /**
+     * @param removing false to compute the liveness without removing
+     * anything
+     * @return an analysis in the same state, for another path of the routine
+     */
+    DeadCodeElimination copy(boolean removing) {
+        return new DeadCodeElimination(new HashSet<ExpDefinition>(live), removing, nbRemoved);
+    }
+
+    boolean isRemoving() {
+        return removing;
+    }
+
+    /**
+     * Join of two paths: a variable is live if it is on one of them
+     */
+    void join(DeadCodeElimination other) {
+        live.addAll(other.live);
+    }
+
+    /**
+     * @return true if the same variables are live in both analyses
+     */
+    boolean sameLiveness(DeadCodeElimination other) {
+        return live.equals(other.live);
+    }
+
+    public int getNbRemoved() {
+        return nbRemoved[0];
+    }
+
+    /**
+     * Record the removal of an instruction of the routine
+     */
+    void remove(Tree inst, String reason) {
+        if (removing) {
+            nbRemoved[0]++;
+            LOG.info("Dead code at " + inst.getLocation() + " removed: " + reason);
+        }
+    }
+
+    /**
+     * @return the definition of the expression if it is a variable or a
+     * parameter of the routine, null otherwise
+     */
+    private static ExpDefinition variable(AbstractExpr expr) {
+        if (!(expr instanceof Identifier)) {
+            return null;
+        }
+        Definition def = ((Identifier) expr).getDefinition();
+        if (def instanceof VariableDefinition || def instanceof ParamDefinition) {
+            return (ExpDefinition) def;
+        }
+        return null;
+    }
+
+    /**
+     * @return true if computing the expression may do more than giving its
+     * value: call a method, read, assign, allocate, or stop the program on an
+     * error (division by zero, float overflow, illegal cast, null
+     * dereferencing, index out of bounds)
+     */
+    static boolean hasSideEffects(AbstractExpr expr) {
+        final boolean[] found = {false};
+        expr.iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                found[0] |= t instanceof MethodCall || t instanceof AbstractReadExpr
+                        || t instanceof Assign || t instanceof New || t instanceof NewArray
+                        || t instanceof Divide || t instanceof Modulo
+                        || t instanceof Cast || t instanceof Selection || t instanceof ArrayElement
+                        || (t instanceof AbstractOpArith && ((AbstractOpArith) t).getType().isFloat());
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Mark as live the variables read in the tree
+     */
+    void addUses(Tree tree) {
+        tree.iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                if (t instanceof AbstractExpr) {
+                    ExpDefinition def = variable((AbstractExpr) t);
+                    if (def != null) {
+                        live.add(def);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Analyse an instruction which does not change the flow of control,
+     * going backward
+     *
+     * @return true if the instruction is dead and must be removed
+     */
+    boolean analyzeInstruction(AbstractInst inst) {
+        if (inst instanceof Assign) {
+            Assign assign = (Assign) inst;
+            ExpDefinition def = variable(assign.getLeftOperand());
+            if (def != null) {
+                if (!live.contains(def) && !hasSideEffects(assign.getRightOperand())) {
+                    remove(inst, "value of " + def.getType() + " variable never read");
+                    return true;
+                }
+                live.remove(def);
+                addUses(assign.getRightOperand());
+                return false;
+            }
+        } else if (inst instanceof AbstractExpr && !hasSideEffects((AbstractExpr) inst)) {
+            remove(inst, "value never used");
+            return true;
+        }
+        addUses(inst);
+        return false;
+    }
+
+    /**
+     * Analyse a return: nothing is live after it
+     */
+    void analyzeReturn(AbstractExpr returned) {
+        live.clear();
+        addUses(returned);
+    }
+}
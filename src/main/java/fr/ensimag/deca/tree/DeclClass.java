@@ -49,6 +49,41 @@ public class DeclClass extends AbstractDeclClass {
         return className.getName();
     }
 
+    public ClassDefinition getClassDefinition() {
+        return className.getClassDefinition();
+    }
+
+    public ListDeclField getFields() {
+        return fields;
+    }
+
+    /**
+     * @return the declaration of the method in the class, null if the class
+     * does not declare it
+     */
+    public DeclMethod getMethod(SymbolTable.Symbol name) {
+        for (AbstractDeclMethod method : methods.getList()) {
+            if (((DeclMethod) method).getName() == name) {
+                return (DeclMethod) method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replace the tail calls of the methods of the class by jumps (see
+     * DeclMethod.eliminateTailCalls)
+     *
+     * @return the number of calls replaced
+     */
+    int eliminateTailCalls() {
+        int nbReplaced = 0;
+        for (AbstractDeclMethod method : methods.getList()) {
+            nbReplaced += ((DeclMethod) method).eliminateTailCalls(getClassDefinition());
+        }
+        return nbReplaced;
+    }
+
     /**
      * Class declaration context check (first pass). First checks whether the superclass exists, then checks
      * whether the class hasn't already been declared.
@@ -143,8 +178,15 @@ public class DeclClass extends AbstractDeclClass {
         methods.iter(f);
     }
 
+    @Override
+    protected void addToHierarchy(ClassHierarchy hierarchy) {
+        hierarchy.addClass(className.getClassDefinition());
+    }
+
     protected void codeGenTable(DecacCompiler compiler){
         compiler.addComment("construction of Method Table for "+className.getName().getName());
+        ListDeclClass.codeGenClassNumber(compiler, className.getClassDefinition());
+        compiler.incrMethodsTableSize(2);
         RegisterOffset superClassAdress = compiler.getstackTable().getClass(superClass.getName());
         compiler.getstackTable().putClass(className.getName(), Register.GB);
         compiler.addInstruction(new LEA(superClassAdress, Register.R0));
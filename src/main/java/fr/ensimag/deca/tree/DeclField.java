@@ -118,7 +118,7 @@ public class DeclField extends AbstractDeclField {
         initialization.iter(f);
     }
     protected void codeGen(DecacCompiler compiler, int fieldCounter){
-        initialization.codeGenDeclField(compiler);
+        initialization.codeGenDeclField(compiler, type.getType());
         compiler.addInstruction(new LOAD(new RegisterOffset(-2, Register.LB), Register.R1));
         compiler.addInstruction(new STORE(Register.R0, new RegisterOffset(fieldCounter, Register.R1)));
     }
@@ -1,7 +1,9 @@
 package fr.ensimag.deca.tree;
 
 import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.codegen.RegisterAllocator;
 import fr.ensimag.deca.context.*;
+import fr.ensimag.deca.tools.CodeAnalyzer;
 import fr.ensimag.deca.tools.IndentPrintStream;
 import fr.ensimag.deca.tools.SymbolTable;
 import fr.ensimag.ima.pseudocode.*;
@@ -9,12 +11,19 @@ import fr.ensimag.ima.pseudocode.instructions.*;
 import org.apache.commons.lang.Validate;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DeclMethod extends AbstractDeclMethod {
     final private AbstractIdentifier returnType;
     final private AbstractIdentifier methodName;
     final private ListDeclParam declParameters;
     final private AbstractMethodBody block;
+    /**
+     * True when a return of the method calls it again, which jumps to the
+     * beginning of its body (see eliminateTailCalls)
+     */
+    private boolean hasSelfTailCalls = false;
 
     public DeclMethod(AbstractIdentifier returnType, AbstractIdentifier methodName,
             ListDeclParam declParameters, AbstractMethodBody block) {
@@ -27,6 +36,63 @@ public class DeclMethod extends AbstractDeclMethod {
         this.block = block;
     }
 
+    public SymbolTable.Symbol getName() {
+        return methodName.getName();
+    }
+
+    public ListDeclParam getParameters() {
+        return declParameters;
+    }
+
+    public AbstractMethodBody getBody() {
+        return block;
+    }
+
+    public Type getReturnType() {
+        return returnType.getType();
+    }
+
+    /**
+     * Replace the calls whose result the method returns by jumps (with -O1,
+     * see MethodCall.makeTailCall), so that a recursion runs in the frame of
+     * its first call
+     *
+     * @param currentClass class declaring the method
+     * @return the number of calls replaced
+     */
+    int eliminateTailCalls(final ClassDefinition currentClass) {
+        final int[] nbReplaced = {0};
+        block.iterChildren(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                if (t instanceof Return
+                        && ((Return) t).eliminateTailCall(currentClass, DeclMethod.this)) {
+                    nbReplaced[0]++;
+                }
+            }
+        });
+        return nbReplaced[0];
+    }
+
+    /**
+     * Record that a return of the method calls it again
+     */
+    void addSelfTailCall() {
+        hasSelfTailCalls = true;
+    }
+
+    /**
+     * @return true if the line is the jump of a tail call to another method,
+     * the only jumps to the code of a method
+     */
+    private static boolean isTailCallJump(AbstractLine line) {
+        if (!(line instanceof Line) || !(((Line) line).getInstruction() instanceof BRA)) {
+            return false;
+        }
+        Operand target = ((BRA) ((Line) line).getInstruction()).getOperand();
+        return target instanceof Label && target.toString().startsWith("code.");
+    }
+
     /**
      * Context check second pass. Checks return type, then checks whether the method
      * name is already in use in the current environment (illegal). If not, checks
@@ -143,10 +209,10 @@ public class DeclMethod extends AbstractDeclMethod {
     }
 
     protected void codeGen(DecacCompiler compiler, String className){
-        compiler.addLabel(new Label("code."+className+"."+methodName.getName().getName()));
-        Label endOfMethod = new Label("fin."+className+"."+methodName.getName().getName());
+        String name = className + "." + methodName.getName().getName();
+        compiler.addLabel(new Label("code." + name));
+        Label endOfMethod = new Label("fin." + name);
         compiler.getstackTable().setEnfOfCurrentMethod(endOfMethod);
-        compiler.getListRegister().useAllRegisters();
         Line tstoline;
         compiler.resetCodeAnalyzer();
         tstoline = new Line(new TSTO(0)); // creation de la ligne
@@ -155,21 +221,79 @@ public class DeclMethod extends AbstractDeclMethod {
         if (!compiler.getCompilerOptions().getNoCheck()) {
             compiler.addInstruction(new BOV(compiler.getErrorManager().getErrorLabel("Stack overflow")));
         }
+        // the local variables, the words of the inlined methods and of the
+        // loop invariants, then the spilled values, are above LB
+        int nbInlineSlots = MethodCall.countInlineSlots(block) + While.countInvariantSlots(block);
+        int nbLocalVariables = block.getNumberLocalVariables() + nbInlineSlots;
+        if (nbInlineSlots > 0) {
+            compiler.getstackTable().setInlineSlots(new RegisterOffset(
+                    block.getNumberLocalVariables() + 1, Register.LB));
+        }
+        RegisterAllocator allocator = new RegisterAllocator(compiler, name, Register.LB, nbLocalVariables + 1);
         int counter = -3;
         for(AbstractDeclParam p : declParameters.getList()){
-            compiler.getstackTable().put(p.getName() , new RegisterOffset(counter, Register.LB));
+            RegisterOffset slot = new RegisterOffset(counter, Register.LB);
+            compiler.getstackTable().put(p.getName() , slot);
+            allocator.addVariable(slot, true);
             counter--;
         }
+        allocator.addVariable(new RegisterOffset(-2, Register.LB), true);
+        for (int k = 1; k <= nbLocalVariables; k++) {
+            allocator.addVariable(new RegisterOffset(k, Register.LB), false);
+        }
+        int bodyStart = compiler.getProgramSize();
+        if (hasSelfTailCalls) {
+            // after the prologue: a tail call keeps the frame
+            Label startOfMethod = new Label("body." + name);
+            compiler.getstackTable().setStartOfCurrentMethod(startOfMethod);
+            compiler.addLabel(startOfMethod);
+        }
         block.codeGenMethodBody(compiler);
-        if(!returnType.getType().isVoid()){
-            compiler.addInstruction(new WSTR(new ImmediateString("Error : end of the method " +className+"."+methodName.getName().getName() + " without return")));
+        compiler.getstackTable().setInlineSlots(null);
+        if(!returnType.getType().isVoid() && block.reachesEnd()){
+            compiler.addInstruction(new WSTR(new ImmediateString("Error : end of the method " + name + " without return")));
             compiler.addInstruction(new WNL());
             compiler.addInstruction(new ERROR());
         }
+        allocator.allocate(compiler.getProgramLines(bodyStart));
+        int callStackSize = CodeAnalyzer.getCallStackSize(compiler.getProgramLines(bodyStart));
+
+        // the callee-saved registers used by the method are saved, the caller
+        // finds them unchanged
+        List<GPRegister> usedRegisters = allocator.getCalleeSavedRegisters();
+        int frameSize = nbLocalVariables + allocator.getNbSpillSlots();
+        List<AbstractLine> prologue = new ArrayList<AbstractLine>();
+        if (frameSize > 0) {
+            prologue.add(new Line(new ADDSP(frameSize)));
+        }
+        for (GPRegister r : usedRegisters) {
+            prologue.add(new Line(new PUSH(r)));
+        }
+        compiler.getProgramLines(bodyStart).addAll(0, prologue);
+        List<AbstractLine> epilogue = new ArrayList<AbstractLine>();
+        for (int k = usedRegisters.size() - 1; k >= 0; k--) {
+            epilogue.add(new Line(new POP(usedRegisters.get(k))));
+        }
+        if (frameSize > 0) {
+            epilogue.add(new Line(new SUBSP(frameSize)));
+        }
+        // a tail call to another method releases the frame before its jump
+        List<AbstractLine> body = compiler.getProgramLines(bodyStart);
+        for (int k = 0; k < body.size(); k++) {
+            if (isTailCallJump(body.get(k))) {
+                for (AbstractLine l : epilogue) {
+                    body.add(k, new Line(((Line) l).getInstruction()));
+                    k++;
+                }
+            }
+        }
         compiler.addLabel(endOfMethod);
-        compiler.addInstruction(new SUBSP(block.getNumberLocalVariables()));
+        for (AbstractLine l : epilogue) {
+            compiler.add(l);
+        }
         compiler.addInstruction(new RTS());
-        tstoline.setInstruction(new TSTO(compiler.getCodeAnalyzer().getNeededStackSize())); // on recupere de codeAnalyzer le vrai nombre et on le set
+        tstoline.setInstruction(new TSTO(compiler.getCodeAnalyzer().getNeededStackSize()
+                + allocator.getNbSpillSlots() + usedRegisters.size() + callStackSize)); // on recupere de codeAnalyzer le vrai nombre et on le set
         for(AbstractDeclParam p : declParameters.getList()){
             compiler.getstackTable().remove(p.getName());
         }
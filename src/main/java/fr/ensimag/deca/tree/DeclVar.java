@@ -97,19 +97,11 @@ public class DeclVar extends AbstractDeclVar {
     }
     
     /*
-     * Allocate place in ARM memory
+     * Allocate place in ARM memory: a register or a word of the frame of main
      */
     protected void codeGenDeclVarAllocARM(DecacCompiler compiler){
         if(!varName.getDefinition().getType().isString()){//si on veut declarer un string, il faut juste creer le symbol en java
-            if (varName.getDefinition().getType().isBoolean()) {
-                compiler.addARMBlock(varName.getName().getName() + ": " + ".int 0");  //label with name of variable   
-            }
-            if (varName.getDefinition().getType().isInt()) {
-                compiler.addARMBlock(varName.getName().getName() + ": " + ".int 0");  //label with name of variable   
-            }
-            if (varName.getDefinition().getType().isFloat()) {
-                compiler.addARMBlock(varName.getName().getName() + ": " + ".float 0");  //label with name of variable   
-            }
+            compiler.getArmFrame().addVariable(varName.getExpDefinition());
         }    
     }
 
@@ -129,4 +121,12 @@ public class DeclVar extends AbstractDeclVar {
         varName.prettyPrint(s, prefix, false);
         initialization.prettyPrint(s, prefix, true);
     }
+
+    @Override
+    protected void analyzeNonNull(NonNullAnalysis analysis) {
+        AbstractExpr init = initialization instanceof Initialization
+                ? ((Initialization) initialization).getExpression() : null;
+        analysis.analyzeDeclaration(varName.getExpDefinition(), init);
+    }
+
 }
@@ -9,6 +9,7 @@ import fr.ensimag.deca.context.Type;
 import fr.ensimag.ima.pseudocode.instructions.DIV;
 import fr.ensimag.ima.pseudocode.instructions.LOAD;
 import fr.ensimag.ima.pseudocode.instructions.QUO;
+import fr.ensimag.ima.pseudocode.instructions.SHR;
 import fr.ensimag.ima.pseudocode.instructions.CMP;
 import fr.ensimag.ima.pseudocode.instructions.BEQ;
 import fr.ensimag.ima.pseudocode.instructions.BOV;
@@ -26,11 +27,65 @@ public class Divide extends AbstractOpArith {
     }
 
 
+    // the division of a non-negative int by 2^shift is done with shift SHR
+    // (see LoopInvariantMotion), cheaper than QUO up to MAX_SHIFT shifts
+    private static final int MAX_SHIFT = 8;
+    private int shift = 0;
+
+    /**
+     * Do the division with shifts, the left operand being known to be
+     * non-negative
+     *
+     * @return true if the divisor is a power of 2 for which it is done
+     */
+    boolean setShift(int divisor) {
+        if (divisor > 1 && Integer.bitCount(divisor) == 1
+                && Integer.numberOfTrailingZeros(divisor) <= MAX_SHIFT) {
+            shift = Integer.numberOfTrailingZeros(divisor);
+            return true;
+        }
+        return false;
+    }
+
     @Override
     protected String getOperatorName() {
         return "/";
     }
 
+    @Override
+    protected void codeGenInst(DecacCompiler compiler) {
+        if (shift == 0) {
+            super.codeGenInst(compiler);
+            return;
+        }
+        getLeftOperand().codeGenInst(compiler);
+        for (int k = 0; k < shift; k++) {
+            compiler.addInstruction(new SHR(Register.R0));
+        }
+    }
+
+    Integer foldInt(int left, int right) {
+        if (right == 0) {
+            return null;
+        }
+        return intResult((long) left / right);
+    }
+
+    Float foldFloat(float left, float right) {
+        if (right == 0) {
+            return null;
+        }
+        return floatResult(left / right, (double) left / right);
+    }
+
+    @Override
+    AbstractExpr simplify(DecacCompiler compiler) {
+        if (isLiteral(getRightOperand(), 1)) {
+            return getLeftOperand();
+        }
+        return this;
+    }
+
     public void codeGenOperations(Register Reg1, Register storedRegister, DecacCompiler compiler){
         if(getType().isFloat()){
             compiler.addInstruction(new CMP(new ImmediateFloat(0.F), storedRegister));
@@ -56,47 +111,26 @@ public class Divide extends AbstractOpArith {
 
 
         if(getType().isInt()) {
-            // here we use a function that we wrote ourselves so we need to pass absolute values
-            // and then negate the result if needed
-
-            compiler.addInstruction(new cmp(storedRegister, 0));
-            compiler.addInstruction(new beq("division_by_zero"));
-
-            // save the original numbers
-            ARMRegister old_reg1 = compiler.getListRegisterARM().getRegister(compiler);
-            compiler.addInstruction(new mov(old_reg1, Reg1));
-            ARMRegister old_reg2 = compiler.getListRegisterARM().getRegister(compiler);
-            compiler.addInstruction(new mov(old_reg2, storedRegister));
-
-            // pass the absolute values of the operands
-            compiler.addInstruction(new cmp(storedRegister, 0));
-            compiler.addInstruction(new neglt(storedRegister, storedRegister));
-            compiler.addInstruction(new cmp(Reg1, 0));
-            compiler.addInstruction(new neglt(Reg1, Reg1));
-            compiler.addInstruction(new mov(ARMRegister.r2, Reg1));
-            // passing arguments into the divide built-in function
-            compiler.addInstruction(new mov(ARMRegister.r3, storedRegister));
-            compiler.addInstruction(new mov(ARMRegister.r0, ARMRegister.r2));
-            compiler.addInstruction(new mov(ARMRegister.r1, ARMRegister.r3));
-            compiler.addInstruction(new bl("divide"));
-            compiler.addInstruction(new mov(ARMRegister.r0, ARMRegister.r2));
-            // re negating the result if needed
-            compiler.addInstruction(new cmp(old_reg2, 0));
-            compiler.addInstruction(new neglt(ARMRegister.r0, ARMRegister.r0));
-            compiler.addInstruction(new cmp(old_reg1, 0));
-            compiler.addInstruction(new neglt(ARMRegister.r0, ARMRegister.r0));
-
+            if (!compiler.getCompilerOptions().getNoCheck()) {
+                compiler.addInstruction(new cmp(storedRegister, 0));
+                compiler.addInstruction(new beq("division_by_zero"));
+            }
+            // dividend in r0 and divisor in r1, the signs are handled by
+            // the division
+            compiler.addInstruction(new mov(ARMRegister.r1, storedRegister));
+            compiler.addInstruction(new mov(ARMRegister.r0, Reg1));
+            compiler.getArmFunctionManager().codeGenDivide(compiler, false);
         }
         else {
-            compiler.addInstruction(new cmp(storedRegister, 0));
-            compiler.addInstruction(new beq("division_by_zero"));
-            compiler.addInstruction(new vmov(ARMRegister.s0, Reg1));
-            compiler.addInstruction(new vmov(ARMRegister.s1, storedRegister));
-            compiler.addARMBlock("        vdiv.f32 s0, s0, s1");
+            if (!compiler.getCompilerOptions().getNoCheck()) {
+                compiler.addARMBlock("        vcmp.f32 " + storedRegister + ", #0");
+                compiler.addARMBlock("        vmrs APSR_nzcv, fpscr");
+                compiler.addInstruction(new beq("division_by_zero"));
+            }
+            compiler.addARMBlock("        vdiv.f32 " + storedRegister + ", " + Reg1 + ", " + storedRegister);
             if (!compiler.getCompilerOptions().getNoCheck()) {
                 compiler.addInstruction(new bvs("float_arithmetic_overflow"));
             }
-            compiler.addInstruction(new vmov(storedRegister, ARMRegister.s0));
         }
     }
 
@@ -35,6 +35,16 @@ public class EmptyMain extends AbstractMain {
         compiler.addARMComment("EMPTY MAIN HERE");
     }
 
+    @Override
+    protected int eliminateNullChecks() {
+        return 0;
+    }
+
+    @Override
+    protected int eliminateDeadCode() {
+        return 0;
+    }
+
     /**
      * Contains no real information => nothing to check.
      */
@@ -1,5 +1,12 @@
 package fr.ensimag.deca.tree;
 
+import fr.ensimag.ima.pseudocode.ARMUnaryInstructionString;
+import fr.ensimag.ima.pseudocode.BranchInstruction;
+import fr.ensimag.ima.pseudocode.Label;
+import fr.ensimag.ima.pseudocode.instructions.BEQ;
+import fr.ensimag.ima.pseudocode.instructions.BNE;
+import fr.ensimag.ima.pseudocode.instructionsARM.beq;
+import fr.ensimag.ima.pseudocode.instructionsARM.bne;
 import fr.ensimag.ima.pseudocode.Register;
 import fr.ensimag.ima.pseudocode.ARMRegister;
 import fr.ensimag.ima.pseudocode.instructions.SEQ;
@@ -35,4 +42,23 @@ public class Equals extends AbstractOpExactCmp {
         super.codeGenOperationsARM(Reg1, storedRegister, compiler);
         compiler.addInstruction(new moveq(ARMRegister.r0, 1));
     }
+
+    boolean foldComparison(boolean lower, boolean equal) {
+        return equal;
+    }
+
+    BranchInstruction getBranch(boolean jumpIfTrue, Label target){
+        if (jumpIfTrue) {
+            return new BEQ(target);
+        }
+        return new BNE(target);
+    }
+
+    ARMUnaryInstructionString getBranchARM(boolean jumpIfTrue, Label target){
+        if (jumpIfTrue) {
+            return new beq(target.toString());
+        }
+        return new bne(target.toString());
+    }
+
 }
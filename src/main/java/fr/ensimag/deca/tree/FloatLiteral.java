@@ -47,11 +47,11 @@ public class FloatLiteral extends AbstractExpr {
     }
 
     @Override
-    protected void divideCheck() {
+    protected void divideCheck(DecacCompiler compiler) {
         if (value == 0.0) {
             Warning warning = new Warning(
                     "Division by zero.", getLocation());
-            warning.emit();
+            warning.emit(compiler.getErrorStream());
         }
     }
 
@@ -68,16 +68,13 @@ public class FloatLiteral extends AbstractExpr {
 
     @Override
     protected void codeGenPrintARM(DecacCompiler compiler, boolean printHex) {
-        Label tmplabel = new Label();
+        Label tmplabel = compiler.newLabel();
         compiler.addARMBlock(".data");
         compiler.addARMBlock(tmplabel + ": " + ".float " + value);  //label with name of variable 
         compiler.addARMBlock(".text");
         compiler.addInstruction(new ldr(ARMRegister.r0, "=" + tmplabel));
         compiler.addInstruction(new vldr(ARMRegister.s0, "[r0]"));
-        compiler.addARMBlock("        vcvt.f64.f32 d0, s0");
-        compiler.addInstruction(new vmov(ARMRegister.r2, ARMRegister.r3, ARMRegister.d0));
-        compiler.addInstruction(new ldr(ARMRegister.r0, "=flottant"));        
-        compiler.addInstruction(new bl("printf"));
+        codeGenPrintFloatARM(compiler, ARMRegister.s0);
     }
 
     @Override
@@ -105,13 +102,12 @@ public class FloatLiteral extends AbstractExpr {
     }
 
     public void codeGenInstARM(DecacCompiler compiler){
-        Label tmplabel = new Label();
+        Label tmplabel = compiler.newLabel();
         compiler.addARMBlock(".data");
         compiler.addARMBlock(tmplabel + ": " + ".float " + value);  //label with name of variable 
         compiler.addARMBlock(".text");
         compiler.addInstruction(new ldr(ARMRegister.r0, "=" + tmplabel));
         compiler.addInstruction(new vldr(ARMRegister.s0, "[r0]"));
-        compiler.addInstruction(new vmov(ARMRegister.r0, ARMRegister.s0));
     }
       
 
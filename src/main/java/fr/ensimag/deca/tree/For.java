@@ -0,0 +1,143 @@
+package fr.ensimag.deca.tree;
+
+import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.context.ClassDefinition;
+import fr.ensimag.deca.context.ContextualError;
+import fr.ensimag.deca.context.EnvironmentExp;
+import fr.ensimag.deca.context.Type;
+import fr.ensimag.deca.tools.IndentPrintStream;
+import org.apache.commons.lang.Validate;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loop for (init; condition; step) { body }: since there is no break nor
+ * continue, it is the while loop on the condition whose body ends with the
+ * step, run after the initialization. The analyses and the code of the loop
+ * are those of While, the step being the last instruction of its body (see
+ * LoopInvariantMotion for the induction variables).
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class For extends While {
+    private AbstractExpr init;
+    private final AbstractExpr step;
+
+    public For(AbstractExpr init, AbstractExpr condition, AbstractExpr step, ListInst body) {
+        super(condition, withStep(body, step));
+        Validate.notNull(init);
+        this.init = init;
+        this.step = step;
+    }
+
+    private static ListInst withStep(ListInst body, AbstractExpr step) {
+        Validate.notNull(body);
+        Validate.notNull(step);
+        body.add(step);
+        return body;
+    }
+
+    public AbstractExpr getInit() {
+        return init;
+    }
+
+    public AbstractExpr getStep() {
+        return step;
+    }
+
+    @Override
+    protected void codeGenInst(DecacCompiler compiler) {
+        init.codeGenInst(compiler);
+        super.codeGenInst(compiler);
+    }
+
+    @Override
+    protected void codeGenInstARM(DecacCompiler compiler) {
+        init.codeGenInstARM(compiler);
+        super.codeGenInstARM(compiler);
+    }
+
+    @Override
+    protected void verifyInst(DecacCompiler compiler, EnvironmentExp localEnv,
+            ClassDefinition currentClass, Type returnType)
+            throws ContextualError {
+        init.verifyInst(compiler, localEnv, currentClass, returnType);
+        super.verifyInst(compiler, localEnv, currentClass, returnType);
+    }
+
+    @Override
+    public void decompile(IndentPrintStream s) {
+        s.print("for (");
+        init.decompile(s);
+        s.print("; ");
+        getCondition().decompile(s);
+        s.print("; ");
+        step.decompile(s);
+        s.println(") {");
+        s.indent();
+        List<AbstractInst> insts = getBody().getList();
+        for (AbstractInst inst : insts) {
+            if (inst != step) {
+                inst.decompileInst(s);
+                s.println();
+            }
+        }
+        s.unindent();
+        s.print("}");
+    }
+
+    @Override
+    protected void foldChildren(DecacCompiler compiler) {
+        init = init.foldExpr(compiler);
+        super.foldChildren(compiler);
+    }
+
+    @Override
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        init = motion.hoist(init);
+        super.hoistChildren(motion);
+    }
+
+    @Override
+    protected void iterChildren(TreeFunction f) {
+        init.iter(f);
+        super.iterChildren(f);
+    }
+
+    @Override
+    protected void prettyPrintChildren(PrintStream s, String prefix) {
+        // the step is printed as the last instruction of the body
+        init.prettyPrint(s, prefix, false);
+        super.prettyPrintChildren(s, prefix);
+    }
+
+    @Override
+    protected List<AbstractInst> removeUnreachable(DeadCodeElimination analysis) {
+        if (super.removeUnreachable(analysis).isEmpty()) {
+            // the initialization is still run
+            return Collections.<AbstractInst>singletonList(init);
+        }
+        return Collections.<AbstractInst>singletonList(this);
+    }
+
+    /**
+     * The initialization is kept, the variables it reads (and the one it
+     * assigns) being live before the loop.
+     */
+    @Override
+    protected boolean removeDeadStores(DeadCodeElimination analysis) {
+        super.removeDeadStores(analysis);
+        analysis.addUses(init);
+        return false;
+    }
+
+    @Override
+    protected void analyzeNonNull(NonNullAnalysis analysis) {
+        analysis.analyzeInstruction(init);
+        super.analyzeNonNull(analysis);
+    }
+
+}
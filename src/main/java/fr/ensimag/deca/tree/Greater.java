@@ -1,5 +1,12 @@
 package fr.ensimag.deca.tree;
 
+import fr.ensimag.ima.pseudocode.ARMUnaryInstructionString;
+import fr.ensimag.ima.pseudocode.BranchInstruction;
+import fr.ensimag.ima.pseudocode.Label;
+import fr.ensimag.ima.pseudocode.instructions.BGE;
+import fr.ensimag.ima.pseudocode.instructions.BLT;
+import fr.ensimag.ima.pseudocode.instructionsARM.bgt;
+import fr.ensimag.ima.pseudocode.instructionsARM.ble;
 import fr.ensimag.ima.pseudocode.Register;
 import fr.ensimag.ima.pseudocode.ARMRegister;
 import fr.ensimag.deca.DecacCompiler;
@@ -34,4 +41,23 @@ public class Greater extends AbstractOpIneq {
         super.codeGenOperationsARM(Reg1, storedRegister, compiler);
         compiler.addInstruction(new movgt(ARMRegister.r0, 1));
     }
+
+    boolean foldComparison(boolean lower, boolean equal) {
+        return !lower && !equal;
+    }
+
+    BranchInstruction getBranch(boolean jumpIfTrue, Label target){
+        if (jumpIfTrue) {
+            return new BLT(target);
+        }
+        return new BGE(target);
+    }
+
+    ARMUnaryInstructionString getBranchARM(boolean jumpIfTrue, Label target){
+        if (jumpIfTrue) {
+            return new bgt(target.toString());
+        }
+        return new ble(target.toString());
+    }
+
 }
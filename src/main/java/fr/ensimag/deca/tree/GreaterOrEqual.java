@@ -1,5 +1,12 @@
 package fr.ensimag.deca.tree;
 
+import fr.ensimag.ima.pseudocode.ARMUnaryInstructionString;
+import fr.ensimag.ima.pseudocode.BranchInstruction;
+import fr.ensimag.ima.pseudocode.Label;
+import fr.ensimag.ima.pseudocode.instructions.BGT;
+import fr.ensimag.ima.pseudocode.instructions.BLE;
+import fr.ensimag.ima.pseudocode.instructionsARM.bge;
+import fr.ensimag.ima.pseudocode.instructionsARM.blt;
 import fr.ensimag.ima.pseudocode.Register;
 import fr.ensimag.ima.pseudocode.ARMRegister;
 import fr.ensimag.deca.DecacCompiler;
@@ -35,4 +42,23 @@ public class GreaterOrEqual extends AbstractOpIneq {
         super.codeGenOperationsARM(Reg1, storedRegister, compiler);
         compiler.addInstruction(new movge(ARMRegister.r0, 1));
     }
+
+    boolean foldComparison(boolean lower, boolean equal) {
+        return !lower;
+    }
+
+    BranchInstruction getBranch(boolean jumpIfTrue, Label target){
+        if (jumpIfTrue) {
+            return new BLE(target);
+        }
+        return new BGT(target);
+    }
+
+    ARMUnaryInstructionString getBranchARM(boolean jumpIfTrue, Label target){
+        if (jumpIfTrue) {
+            return new bge(target.toString());
+        }
+        return new blt(target.toString());
+    }
+
 }
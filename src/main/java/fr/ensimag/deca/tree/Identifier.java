@@ -1,8 +1,12 @@
 package fr.ensimag.deca.tree;
 
+import fr.ensimag.deca.context.ArrayType;
+import fr.ensimag.deca.context.EnvironmentType;
 import fr.ensimag.deca.context.Type;
+import fr.ensimag.deca.context.TypeDefinition;
 import fr.ensimag.deca.context.ClassType;
 import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.codegen.ARMFrame;
 import fr.ensimag.deca.context.ClassDefinition;
 import fr.ensimag.deca.context.ContextualError;
 import fr.ensimag.deca.context.Definition;
@@ -13,11 +17,14 @@ import fr.ensimag.deca.context.ExpDefinition;
 import fr.ensimag.deca.context.VariableDefinition;
 import fr.ensimag.deca.tools.DecacInternalError;
 import fr.ensimag.deca.tools.IndentPrintStream;
+import fr.ensimag.deca.tools.SymbolTable;
 import fr.ensimag.deca.tools.SymbolTable.Symbol;
 import fr.ensimag.ima.pseudocode.ImmediateString;
+import fr.ensimag.ima.pseudocode.Label;
 import java.io.PrintStream;
 import java.util.Objects;
 import fr.ensimag.ima.pseudocode.instructionsARM.*;
+import fr.ensimag.ima.pseudocode.ARMGPRegister;
 import fr.ensimag.ima.pseudocode.ARMRegister;
 import fr.ensimag.ima.pseudocode.instructions.*;
 import org.apache.commons.lang.Validate;
@@ -206,7 +213,28 @@ public class Identifier extends AbstractIdentifier {
      */
     @Override
     public Type verifyType(DecacCompiler compiler) throws ContextualError {
-        return compiler.getEnvTypes().get(this.getName(), getLocation()).getType();
+        return verifyType(compiler, getName());
+    }
+
+    /**
+     * Type of the given name. The array types (name ending with []) are
+     * added to "env_types" the first time they are used.
+     */
+    private Type verifyType(DecacCompiler compiler, Symbol typeName) throws ContextualError {
+        EnvironmentType envTypes = compiler.getEnvTypes();
+        String s = typeName.getName();
+        if (s.endsWith("[]") && envTypes.get(typeName) == null) {
+            SymbolTable symbols = compiler.getSymbTable();
+            Type elementType = verifyType(compiler, symbols.create(s.substring(0, s.length() - 2)));
+            if (elementType.isVoid()) {
+                throw new ContextualError(
+                        "(RULE 0.2) Array elements cannot be of type void.", getLocation());
+            }
+            envTypes.put(typeName, new TypeDefinition(new ArrayType(typeName, elementType,
+                    symbols.create("length"), envTypes.get(symbols.create("int")).getType()),
+                    Location.BUILTIN));
+        }
+        return envTypes.get(typeName, getLocation()).getType();
     }
     
     
@@ -253,7 +281,7 @@ public class Identifier extends AbstractIdentifier {
         if (getDefinition().isExpression()) {
             RegisterOffset R = compiler.getstackTable().get(this.getName());
             if(Objects.isNull(R.getRegister())){
-                compiler.addInstruction(new LOAD(new RegisterOffset(-2, Register.LB), Register.R0));
+                compiler.addInstruction(new LOAD(compiler.getstackTable().getThis(), Register.R0));
                 compiler.addInstruction(new LOAD(new RegisterOffset(R.getOffset(), Register.R0), Register.R1));
             }else{
                 compiler.addInstruction(new LOAD(R, Register.R1));
@@ -281,20 +309,20 @@ public class Identifier extends AbstractIdentifier {
             compiler.addInstruction(new ldr(ARMRegister.r1, "=" + this.name.toString()));
         }
         */  
-        // Ici on ne gère pas les expressions qui sont en fait déjà géré par ARM car les variables sont déclarés dans la section data
-        // il suffit donc de récupérer le nom de la variable directement. Pas besoin de passer par la StackHashTable. 
+        // Ici on ne gère que les variables de main, dont la place est donnée par ARMFrame
+        ARMFrame frame = compiler.getArmFrame();
         if (definition.getType().isInt()) {
             compiler.addInstruction(new ldr(ARMRegister.r0, "=int"));
-            compiler.addInstruction(new ldr(ARMRegister.r1, "=" + this.name.toString()));
-            compiler.addInstruction(new ldr(ARMRegister.r1, "[r1]"));
+            frame.codeGenLoad(compiler, getExpDefinition(), ARMRegister.r1);
+            compiler.addInstruction(new bl("printf"));
         } else {
-            compiler.addInstruction(new ldr(ARMRegister.r1, "=" + this.name.toString()));
-            compiler.addInstruction(new vldr(ARMRegister.s0, "[r1]"));
-            compiler.addARMBlock("        vcvt.f64.f32 d0, s0");
-            compiler.addInstruction(new vmov(ARMRegister.r2, ARMRegister.r3, ARMRegister.d0));
-            compiler.addInstruction(new ldr(ARMRegister.r0, "=flottant"));        
+            ARMGPRegister single = frame.getRegister(getExpDefinition());
+            if (single == null) {
+                frame.codeGenLoad(compiler, getExpDefinition(), ARMRegister.s0);
+                single = ARMRegister.s0;
+            }
+            codeGenPrintFloatARM(compiler, single);
         }
-        compiler.addInstruction(new bl("printf"));
     }
 
     @Override
@@ -302,7 +330,7 @@ public class Identifier extends AbstractIdentifier {
         if(getDefinition().isExpression()){
             RegisterOffset R = compiler.getstackTable().get(this.getName());
             if(Objects.isNull(R.getRegister())){
-                compiler.addInstruction(new LOAD(new RegisterOffset(-2, Register.LB), Register.R1));
+                compiler.addInstruction(new LOAD(compiler.getstackTable().getThis(), Register.R1));
                 compiler.addInstruction(new LOAD(new RegisterOffset(R.getOffset(), Register.R1), Register.R0));
             }else{
                 compiler.addInstruction(new LOAD(R, Register.R0));
@@ -310,12 +338,20 @@ public class Identifier extends AbstractIdentifier {
         }
     }
 
+    @Override
+    protected void codeGenCondition(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        // the LOAD of the variable into R0 already sets the condition codes
+        codeGenInst(compiler);
+        codeGenBranch(compiler, jumpIfTrue, target);
+    }
+
     @Override
     protected void codeGenInstARM(DecacCompiler compiler) {
         if(getDefinition().isExpression()){
-            compiler.addInstruction(new ldr(ARMRegister.r0, "=" + this.name.toString()));
-            compiler.addInstruction(new ldr(ARMRegister.r0, "[r0]"));
-  
+            // a float is loaded in s0
+            compiler.getArmFrame().codeGenLoad(compiler, getExpDefinition(),
+                    getType().isFloat() ? ARMRegister.s0 : ARMRegister.r0);
         }
     }
+
 }
@@ -2,22 +2,19 @@ package fr.ensimag.deca.tree;
 
 import fr.ensimag.deca.context.Type;
 import fr.ensimag.deca.DecacCompiler;
-import fr.ensimag.ima.pseudocode.ARMRegister;
 import fr.ensimag.ima.pseudocode.Label;
 import fr.ensimag.ima.pseudocode.Register;
-import fr.ensimag.ima.pseudocode.ImmediateInteger;
 import fr.ensimag.deca.context.ClassDefinition;
 import fr.ensimag.deca.context.ContextualError;
 import fr.ensimag.deca.context.EnvironmentExp;
 import fr.ensimag.deca.tools.IndentPrintStream;
-import fr.ensimag.ima.pseudocode.instructions.BNE;
 import fr.ensimag.ima.pseudocode.instructions.BRA;
-import fr.ensimag.ima.pseudocode.instructions.CMP;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import fr.ensimag.ima.pseudocode.instructionsARM.b;
-import fr.ensimag.ima.pseudocode.instructionsARM.bne;
-import fr.ensimag.ima.pseudocode.instructionsARM.cmp;
 import org.apache.commons.lang.Validate;
 
 /**
@@ -28,7 +25,7 @@ import org.apache.commons.lang.Validate;
  */
 public class IfThenElse extends AbstractInst {
     
-    private final AbstractExpr condition; 
+    private AbstractExpr condition;
     private final ListInst thenBranch;
     private ListInst elseBranch;
 
@@ -53,31 +50,32 @@ public class IfThenElse extends AbstractInst {
 
     @Override
     protected void codeGenInst(DecacCompiler compiler) {
-        Label beginElse = new Label();
-        Label endElse = new Label();
+        Label endElse = compiler.newLabel();
+        // without else branch, a false condition directly jumps to the end
+        Label beginElse = elseBranch.isEmpty() ? endElse : compiler.newLabel();
 
-        condition.codeGenInst(compiler);
-        compiler.addInstruction(new CMP(new ImmediateInteger(1), compiler.getListRegister().R0));
-        compiler.addInstruction(new BNE(beginElse));
+        condition.codeGenCondition(compiler, false, beginElse);
         thenBranch.codeGenListInst(compiler);
-        compiler.addInstruction(new BRA(endElse));
-        compiler.addLabel(beginElse);
-        elseBranch.codeGenListInst(compiler);
+        if (!elseBranch.isEmpty()) {
+            compiler.addInstruction(new BRA(endElse));
+            compiler.addLabel(beginElse);
+            elseBranch.codeGenListInst(compiler);
+        }
         compiler.addLabel(endElse);
     }
 
     @Override
     protected void codeGenInstARM(DecacCompiler compiler) {
-        Label beginElse = new Label();
-        Label endElse = new Label();
+        Label endElse = compiler.newLabel();
+        Label beginElse = elseBranch.isEmpty() ? endElse : compiler.newLabel();
 
-        condition.codeGenInstARM(compiler);
-        compiler.addInstruction(new cmp(ARMRegister.r0, 1));
-        compiler.addInstruction(new bne(beginElse.toString()));
+        condition.codeGenConditionARM(compiler, false, beginElse);
         thenBranch.codeGenListInstARM(compiler);
-        compiler.addInstruction(new b(endElse.toString()));
-        compiler.addLabel(beginElse);
-        elseBranch.codeGenListInstARM(compiler);
+        if (!elseBranch.isEmpty()) {
+            compiler.addInstruction(new b(endElse.toString()));
+            compiler.addLabel(beginElse);
+            elseBranch.codeGenListInstARM(compiler);
+        }
         compiler.addLabel(endElse);
     }
 
@@ -97,6 +95,18 @@ public class IfThenElse extends AbstractInst {
         s.print("}");
     }
 
+    @Override
+    protected void foldChildren(DecacCompiler compiler) {
+        condition = condition.foldExpr(compiler);
+    }
+
+    @Override
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        condition = motion.hoist(condition);
+        thenBranch.hoistChildren(motion);
+        elseBranch.hoistChildren(motion);
+    }
+
     @Override
     protected
     void iterChildren(TreeFunction f) {
@@ -111,4 +121,49 @@ public class IfThenElse extends AbstractInst {
         thenBranch.prettyPrint(s, prefix, false);
         elseBranch.prettyPrint(s, prefix, true);
     }
+
+    @Override
+    protected boolean completesNormally() {
+        return thenBranch.completesNormally() || elseBranch.completesNormally();
+    }
+
+    @Override
+    protected List<AbstractInst> removeUnreachable(DeadCodeElimination analysis) {
+        if (condition instanceof BooleanLiteral) {
+            // only the branch taken is left, in place of the conditional
+            boolean value = ((BooleanLiteral) condition).getValue();
+            analysis.remove(this, "condition always " + value);
+            ListInst taken = value ? thenBranch : elseBranch;
+            taken.removeUnreachable(analysis);
+            return new ArrayList<AbstractInst>(taken.getList());
+        }
+        thenBranch.removeUnreachable(analysis);
+        elseBranch.removeUnreachable(analysis);
+        return Collections.<AbstractInst>singletonList(this);
+    }
+
+    @Override
+    protected boolean removeDeadStores(DeadCodeElimination analysis) {
+        DeadCodeElimination elseAnalysis = analysis.copy(analysis.isRemoving());
+        thenBranch.removeDeadStores(analysis);
+        elseBranch.removeDeadStores(elseAnalysis);
+        analysis.join(elseAnalysis);
+        if (thenBranch.isEmpty() && elseBranch.isEmpty()
+                && !DeadCodeElimination.hasSideEffects(condition)) {
+            analysis.remove(this, "empty conditional");
+            return true;
+        }
+        analysis.addUses(condition);
+        return false;
+    }
+
+    @Override
+    protected void analyzeNonNull(NonNullAnalysis analysis) {
+        analysis.analyzeInstruction(condition);
+        NonNullAnalysis elseAnalysis = analysis.copy();
+        thenBranch.analyzeNonNull(analysis);
+        elseBranch.analyzeNonNull(elseAnalysis);
+        analysis.join(elseAnalysis);
+    }
+
 }
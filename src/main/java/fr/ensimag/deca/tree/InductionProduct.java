@@ -0,0 +1,145 @@
+package fr.ensimag.deca.tree;
+
+import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.context.ClassDefinition;
+import fr.ensimag.deca.context.EnvironmentExp;
+import fr.ensimag.deca.context.Type;
+import fr.ensimag.deca.tools.IndentPrintStream;
+import fr.ensimag.ima.pseudocode.Register;
+import fr.ensimag.ima.pseudocode.RegisterOffset;
+import fr.ensimag.ima.pseudocode.instructions.ADD;
+import fr.ensimag.ima.pseudocode.instructions.LOAD;
+import fr.ensimag.ima.pseudocode.instructions.STORE;
+import fr.ensimag.ima.pseudocode.instructions.WINT;
+import org.apache.commons.lang.Validate;
+
+import java.io.PrintStream;
+
+/**
+ * Product i * k of the induction variable i of a loop by a factor k which
+ * does not change in it (see LoopInvariantMotion): the product is computed
+ * before the loop in a word of the routine, and the word is incremented by
+ * c * k after the step i = i + c of each iteration, which replaces a MUL by
+ * an ADD.
+ *
+ * The products of the loop with the same factor share the word of the
+ * first one.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class InductionProduct extends AbstractExpr {
+    private final Multiply product;
+    /**
+     * Value added to the word at each iteration, c * k
+     */
+    private final AbstractExpr increment;
+    /**
+     * Product holding the word, this for the first one
+     */
+    private final InductionProduct accumulator;
+    /**
+     * Word holding the product while the loop is generated, null if the
+     * product is computed in place
+     */
+    private RegisterOffset slot;
+
+    /**
+     * @param accumulator product of the loop with the same factor, null if
+     * there is none
+     */
+    public InductionProduct(Multiply product, AbstractExpr increment,
+            InductionProduct accumulator) {
+        Validate.notNull(product);
+        Validate.notNull(increment);
+        this.product = product;
+        this.increment = increment;
+        this.accumulator = accumulator == null ? this : accumulator;
+        setType(product.getType());
+        setLocation(product.getLocation());
+    }
+
+    public Multiply getProduct() {
+        return product;
+    }
+
+    /**
+     * @return true if the product holds its word
+     */
+    boolean isAccumulator() {
+        return accumulator == this;
+    }
+
+    /**
+     * Compute the product before the loop, in a new word of the routine
+     */
+    void codeGenPreheader(DecacCompiler compiler) {
+        slot = compiler.getstackTable().newInlineSlot();
+        product.codeGenInst(compiler);
+        compiler.addInstruction(new STORE(Register.R0, slot));
+    }
+
+    /**
+     * Follow the step of the induction variable, at the end of an iteration
+     */
+    void codeGenIncrement(DecacCompiler compiler) {
+        increment.codeGenInst(compiler);
+        compiler.addInstruction(new ADD(slot, Register.R0));
+        compiler.addInstruction(new STORE(Register.R0, slot));
+    }
+
+    /**
+     * End of the loop: the word may be used by another part of the routine
+     */
+    void freeSlot() {
+        slot = null;
+    }
+
+    @Override
+    public Type verifyExpr(DecacCompiler compiler, EnvironmentExp localEnv,
+            ClassDefinition currentClass) {
+        // built from a verified expression
+        return getType();
+    }
+
+    @Override
+    protected void codeGenInst(DecacCompiler compiler) {
+        if (accumulator.slot == null) {
+            product.codeGenInst(compiler);
+        } else {
+            compiler.addInstruction(new LOAD(accumulator.slot, Register.R0));
+        }
+    }
+
+    @Override
+    protected void codeGenPrint(DecacCompiler compiler, boolean printHex) {
+        codeGenInst(compiler);
+        compiler.addInstruction(new LOAD(Register.R0, Register.R1));
+        compiler.addInstruction(new WINT());
+    }
+
+    @Override
+    protected void codeGenInstARM(DecacCompiler compiler) {
+        product.codeGenInstARM(compiler);
+    }
+
+    @Override
+    protected void codeGenPrintARM(DecacCompiler compiler, boolean printHex) {
+        product.codeGenPrintARM(compiler, printHex);
+    }
+
+    @Override
+    public void decompile(IndentPrintStream s) {
+        product.decompile(s);
+    }
+
+    @Override
+    protected void prettyPrintChildren(PrintStream s, String prefix) {
+        product.prettyPrint(s, prefix, true);
+    }
+
+    @Override
+    protected void iterChildren(TreeFunction f) {
+        product.iter(f);
+    }
+}
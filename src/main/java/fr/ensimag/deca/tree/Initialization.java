@@ -10,8 +10,6 @@ import fr.ensimag.ima.pseudocode.ARMRegister;
 import fr.ensimag.ima.pseudocode.GPRegister;
 import fr.ensimag.ima.pseudocode.instructions.LOAD;
 import fr.ensimag.ima.pseudocode.instructions.STORE;
-import fr.ensimag.ima.pseudocode.instructionsARM.str;
-import fr.ensimag.ima.pseudocode.instructionsARM.ldr;
 import fr.ensimag.ima.pseudocode.ImmediateInteger;
 import fr.ensimag.ima.pseudocode.Register;
 import fr.ensimag.ima.pseudocode.RegisterOffset;
@@ -58,14 +56,14 @@ public class Initialization extends AbstractInitialization {
     }
 
     protected void codeGenDeclVarARM(DecacCompiler compiler, AbstractIdentifier varName){
-        expression.codeGenInstARM(compiler); // we admit that the result will be in register r0.  
-        compiler.addInstruction(new ldr(ARMRegister.getR(1), "=" + varName.getName().getName()));
-        compiler.addInstruction(new str(ARMRegister.getR(0), "[r1]"));
+        expression.codeGenInstARM(compiler); // we admit that the result will be in register r0 (s0 for a float).
+        compiler.getArmFrame().codeGenStore(compiler, varName.getExpDefinition(),
+                expression.getType().isFloat() ? ARMRegister.s0 : ARMRegister.r0);
         compiler.incrDeclaredVariables(1);
     }
 
     @Override
-    protected void codeGenDeclField(DecacCompiler compiler) {
+    protected void codeGenDeclField(DecacCompiler compiler, Type type) {
         expression.codeGenInst(compiler);
     }
 
@@ -75,6 +73,11 @@ public class Initialization extends AbstractInitialization {
         getExpression().decompile(s);
     }
 
+    @Override
+    protected void foldChildren(DecacCompiler compiler) {
+        expression = expression.foldExpr(compiler);
+    }
+
     @Override
     protected
     void iterChildren(TreeFunction f) {
@@ -85,4 +88,5 @@ public class Initialization extends AbstractInitialization {
     protected void prettyPrintChildren(PrintStream s, String prefix) {
         expression.prettyPrint(s, prefix, true);
     }
+
 }
@@ -42,32 +42,66 @@ public class InstanceOf extends AbstractExpr {
         comparedTo.prettyPrint(s, prefix, true);
     }
 
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        expr = expr.foldExpr(compiler);
+        return this;
+    }
+
     @Override
     protected void iterChildren(TreeFunction f) {
         expr.iter(f);
         comparedTo.iter(f);
     }
 
+    /**
+     * Jump to failure if the object in the register is not an instance of
+     * the class, and to ifNull if it is null. The register is unchanged.
+     *
+     * A class is a subclass of the target when its number, stored before
+     * its method table, is in the interval of the target (see
+     * ClassHierarchy.numberClasses): two comparisons whatever the depth of
+     * the hierarchy.
+     */
+    static void codeGenTest(DecacCompiler compiler, GPRegister object,
+            ClassDefinition target, Label ifNull, Label failure) {
+        compiler.addInstruction(new CMP(new NullOperand(), object));
+        compiler.addInstruction(new BEQ(ifNull));
+        if (target.getSuperClass() == null) {
+            // every object is an instance of Object
+            return;
+        }
+        compiler.addInstruction(new LOAD(new RegisterOffset(0, object), Register.R1));
+        compiler.addInstruction(new LOAD(new RegisterOffset(-1, Register.R1), Register.R1));
+        compiler.addInstruction(new CMP(new ImmediateInteger(target.getNumber()), Register.R1));
+        compiler.addInstruction(new BLT(failure));
+        compiler.addInstruction(new CMP(new ImmediateInteger(target.getLastSubclassNumber()), Register.R1));
+        compiler.addInstruction(new BGT(failure));
+    }
+
     protected void codeGenInst(DecacCompiler compiler){
-        Label start = new Label();
-        Label success = new Label();
-        Label failure = new Label();
-        Label end = new Label();
+        Label failure = compiler.newLabel();
+        Label end = compiler.newLabel();
         expr.codeGenInst(compiler);
-        compiler.addInstruction(new LOAD(new RegisterOffset(0, Register.R0), Register.R0));
-        compiler.addInstruction(new LEA(  compiler.getstackTable().getClass( comparedTo.getName()) , Register.R1));
-        compiler.addLabel(start);
-        compiler.addInstruction(new CMP(Register.R0, Register.R1));
-        compiler.addInstruction(new BEQ(success));
-        compiler.addInstruction(new LOAD(new RegisterOffset( 0 , Register.R0), Register.R0));
-        compiler.addInstruction(new CMP( new NullOperand(), Register.R0));
-        compiler.addInstruction(new BEQ(failure));
-        compiler.addInstruction(new BRA(start));
-        compiler.addLabel(success);
+        codeGenTest(compiler, Register.R0, comparedTo.getClassDefinition(), failure, failure);
         compiler.addInstruction(new LOAD(new ImmediateInteger(1), Register.R0));
         compiler.addInstruction(new BRA(end));
         compiler.addLabel(failure);
         compiler.addInstruction(new LOAD(new ImmediateInteger(0), Register.R0));
         compiler.addLabel(end);
     }
+
+    @Override
+    protected void codeGenCondition(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        expr.codeGenInst(compiler);
+        ClassDefinition classDefinition = comparedTo.getClassDefinition();
+        if (jumpIfTrue) {
+            Label failure = compiler.newLabel();
+            codeGenTest(compiler, Register.R0, classDefinition, failure, failure);
+            compiler.addInstruction(new BRA(target));
+            compiler.addLabel(failure);
+        } else {
+            codeGenTest(compiler, Register.R0, classDefinition, target, target);
+        }
+    }
 }
@@ -36,11 +36,11 @@ public class IntLiteral extends AbstractExpr {
     }
 
     @Override
-    protected void divideCheck() {
+    protected void divideCheck(DecacCompiler compiler) {
         if (value == 0) {
             Warning warning = new Warning(
                     "Division by zero.", getLocation());
-            warning.emit();
+            warning.emit(compiler.getErrorStream());
         }
     }
 
@@ -1,6 +1,8 @@
 package fr.ensimag.deca.tree;
 
 import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.context.ClassDefinition;
+import fr.ensimag.deca.context.ClassHierarchy;
 import fr.ensimag.deca.context.ContextualError;
 import fr.ensimag.deca.tools.IndentPrintStream;
 import fr.ensimag.deca.tools.SymbolTable;
@@ -9,6 +11,9 @@ import fr.ensimag.deca.tools.SymbolTable.Symbol;
 import fr.ensimag.ima.pseudocode.instructions.*;
 import org.apache.log4j.Logger;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  *
  * @author gl49
@@ -54,16 +59,42 @@ public class ListDeclClass extends TreeList<AbstractDeclClass> {
         }
     }
 
+    /**
+     * @return the hierarchy of the classes of the program
+     */
+    public ClassHierarchy getHierarchy() {
+        ClassHierarchy hierarchy = new ClassHierarchy();
+        for (AbstractDeclClass decl: getList()) {
+            decl.addToHierarchy(hierarchy);
+        }
+        return hierarchy;
+    }
+
+    /**
+     * @return the declaration of each class of the program
+     */
+    public Map<ClassDefinition, DeclClass> getDeclarations() {
+        Map<ClassDefinition, DeclClass> declarations = new HashMap<ClassDefinition, DeclClass>();
+        for (AbstractDeclClass decl: getList()) {
+            declarations.put(((DeclClass) decl).getClassDefinition(), (DeclClass) decl);
+        }
+        return declarations;
+    }
+
     protected void codeGenTable(DecacCompiler compiler) {
         compiler.addComment(" --------------------------------------------------");
         compiler.addComment("             Construction of Method Table");
         compiler.addComment(" --------------------------------------------------");
 
 
+        Symbol objectSymbol = compiler.getSymbTable().get("Object");
+        ClassDefinition objectDefinition = (ClassDefinition) compiler.getEnvTypes().get(objectSymbol);
+        getHierarchy().numberClasses(objectDefinition);
+
         compiler.addComment("construction of Method Table for Object");
+        codeGenClassNumber(compiler, objectDefinition);
         compiler.addInstruction(new LOAD(new NullOperand(), Register.R0));
 
-        Symbol objectSymbol = compiler.getSymbTable().get("Object");
         compiler.getstackTable().putClass(objectSymbol, Register.GB);
         compiler.addInstruction(new STORE(Register.R0, compiler.getstackTable().getClass(objectSymbol)));
 
@@ -78,6 +109,17 @@ public class ListDeclClass extends TreeList<AbstractDeclClass> {
         }
     }
 
+    /**
+     * Store the number of the class (see ClassHierarchy.numberClasses) in the
+     * word before its method table, where instanceof and the casts read it
+     */
+    static void codeGenClassNumber(DecacCompiler compiler, ClassDefinition definition) {
+        RegisterOffset slot = new RegisterOffset(compiler.getstackTable().getNextOffset(), Register.GB);
+        compiler.getstackTable().reserve(1);
+        compiler.addInstruction(new LOAD(new ImmediateInteger(definition.getNumber()), Register.R0));
+        compiler.addInstruction(new STORE(Register.R0, slot));
+    }
+
     protected void codeGen(DecacCompiler compiler) {
         compiler.addComment(" --------------------------------------------------");
         compiler.addComment("             Object Class");
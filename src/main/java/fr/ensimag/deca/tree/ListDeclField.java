@@ -1,14 +1,21 @@
 package fr.ensimag.deca.tree;
 
 import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.codegen.RegisterAllocator;
+import fr.ensimag.deca.tools.CodeAnalyzer;
 import fr.ensimag.deca.tools.IndentPrintStream;
+import fr.ensimag.ima.pseudocode.AbstractLine;
+import fr.ensimag.ima.pseudocode.GPRegister;
 import fr.ensimag.ima.pseudocode.Label;
+import fr.ensimag.ima.pseudocode.Line;
 import fr.ensimag.ima.pseudocode.Register;
 import fr.ensimag.ima.pseudocode.RegisterOffset;
 import fr.ensimag.ima.pseudocode.instructions.*;
 import org.apache.log4j.Logger;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ListDeclField extends TreeList<AbstractDeclField> {
     private static final Logger LOG = Logger.getLogger(DecacCompiler.class);
@@ -31,11 +38,14 @@ public class ListDeclField extends TreeList<AbstractDeclField> {
     }
 
     protected void codeGen(DecacCompiler compiler, AbstractIdentifier className,AbstractIdentifier superClass) {
-        compiler.addLabel(new Label("init."+className.getName().getName()));
-        compiler.addInstruction(new TSTO(className.getClassDefinition().getNumberOfFields()));
+        String name = "init." + className.getName().getName();
+        compiler.addLabel(new Label(name));
+        Line tstoline = new Line(new TSTO(0));
+        compiler.add(tstoline);
         if (!compiler.getCompilerOptions().getNoCheck()) {
             compiler.addInstruction(new BOV(compiler.getErrorManager().getErrorLabel("Stack overflow")));
         }
+        int bodyStart = compiler.getProgramSize();
         //initialization of every field
         for (AbstractDeclField field: getList()) {
             field.codeGen(compiler, ((DeclField)field).getFieldName().getFieldDefinition().getIndex());
@@ -51,6 +61,29 @@ public class ListDeclField extends TreeList<AbstractDeclField> {
                 field.codeGen(compiler, ((DeclField)field).getFieldName().getFieldDefinition().getIndex());
             }
         }
+        //the initializations use registers like a method, saved the same way
+        RegisterAllocator allocator = new RegisterAllocator(compiler, name, Register.LB, 1);
+        allocator.addVariable(new RegisterOffset(-2, Register.LB), true);
+        allocator.allocate(compiler.getProgramLines(bodyStart));
+        int callStackSize = CodeAnalyzer.getCallStackSize(compiler.getProgramLines(bodyStart));
+        List<GPRegister> usedRegisters = allocator.getCalleeSavedRegisters();
+        int nbSpillSlots = allocator.getNbSpillSlots();
+        List<AbstractLine> prologue = new ArrayList<AbstractLine>();
+        if (nbSpillSlots > 0) {
+            prologue.add(new Line(new ADDSP(nbSpillSlots)));
+        }
+        for (GPRegister r : usedRegisters) {
+            prologue.add(new Line(new PUSH(r)));
+        }
+        compiler.getProgramLines(bodyStart).addAll(0, prologue);
+        for (int k = usedRegisters.size() - 1; k >= 0; k--) {
+            compiler.addInstruction(new POP(usedRegisters.get(k)));
+        }
+        if (nbSpillSlots > 0) {
+            compiler.addInstruction(new SUBSP(nbSpillSlots));
+        }
         compiler.addInstruction(new RTS());
+        tstoline.setInstruction(new TSTO(className.getClassDefinition().getNumberOfFields()
+                + nbSpillSlots + usedRegisters.size() + callStackSize));
     }
 }
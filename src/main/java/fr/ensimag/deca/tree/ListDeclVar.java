@@ -5,9 +5,6 @@ import fr.ensimag.deca.context.ClassDefinition;
 import fr.ensimag.deca.context.ContextualError;
 import fr.ensimag.deca.context.EnvironmentExp;
 import fr.ensimag.deca.tools.IndentPrintStream;
-import fr.ensimag.ima.pseudocode.instructions.ADDSP;
-import fr.ensimag.ima.pseudocode.instructionsARM.*;
-import fr.ensimag.ima.pseudocode.ARMRegister; 
 import org.apache.log4j.Logger;
 
 /**
@@ -54,33 +51,38 @@ public class ListDeclVar extends TreeList<AbstractDeclVar> {
 
     public void codeGenListDeclLocalVar(DecacCompiler compiler) {
         int counter = 1;
-        compiler.addInstruction(new ADDSP(getList().size()));
         for (AbstractDeclVar i : getList()) {
             i.codeGenDeclLocalVar(compiler, counter);
             counter++;
         }
     }
 
+    public void analyzeNonNull(NonNullAnalysis analysis) {
+        for (AbstractDeclVar i : getList()) {
+            i.analyzeNonNull(analysis);
+        }
+    }
+
     public int getNumberLocalVariable(){
         return getList().size();
     }
 
-    public void codeGenListDeclVarARM(DecacCompiler compiler) {
-        compiler.addARMBlock(".data");
+    /**
+     * Give the variables a place in the frame of main (ARM)
+     */
+    public void codeGenListDeclVarAllocARM(DecacCompiler compiler) {
         for (AbstractDeclVar i : getList()) {
             i.codeGenDeclVarAllocARM(compiler);
         }
+    }
 
-        compiler.addARMBlock(".text");
-
-        compiler.addARMBlock("_varDeclAssign:");
-        compiler.addInstruction(new push(ARMRegister.lr));
+    /**
+     * Initialize the variables, once the frame of main is set up (ARM)
+     */
+    public void codeGenListDeclVarARM(DecacCompiler compiler) {
         for (AbstractDeclVar i : getList()) {
             i.codeGenDeclVarARM(compiler);
         }
-        compiler.addInstruction(new pop(ARMRegister.pc));
-
     }
 
-
 }
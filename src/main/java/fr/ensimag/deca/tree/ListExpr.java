@@ -15,6 +15,19 @@ import fr.ensimag.deca.tools.IndentPrintStream;
  */
 public class ListExpr extends TreeList<AbstractExpr> {
 
+    @Override
+    protected void foldChildren(DecacCompiler compiler) {
+        for (int i = 0; i < size(); i++) {
+            set(i, getList().get(i).foldExpr(compiler));
+        }
+    }
+
+    @Override
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        for (int i = 0; i < size(); i++) {
+            set(i, motion.hoist(getList().get(i)));
+        }
+    }
 
     @Override
     public void decompile(IndentPrintStream s) {
@@ -7,7 +7,9 @@ import fr.ensimag.ima.pseudocode.Instruction;
 import fr.ensimag.ima.pseudocode.Label;
 import org.apache.log4j.Logger;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * @author gl49
@@ -34,7 +36,7 @@ public class ListInst extends TreeList<AbstractInst> {
                     Warning warning = new Warning(
                             "Last instruction of non-void method is not a return statement.",
                             inst.getLocation());
-                    warning.emit();
+                    warning.emit(compiler.getErrorStream());
                 }
             }
         } else {
@@ -56,6 +58,80 @@ public class ListInst extends TreeList<AbstractInst> {
         }
     }
 
+    /**
+     * @return false if an instruction of the list never completes
+     */
+    public boolean completesNormally() {
+        for (AbstractInst i : getList()) {
+            if (!i.completesNormally()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove the instructions which are never run (see DeadCodeElimination)
+     */
+    public void removeUnreachable(DeadCodeElimination analysis) {
+        List<AbstractInst> kept = new ArrayList<AbstractInst>();
+        boolean reachable = true;
+        for (AbstractInst i : getList()) {
+            if (!reachable) {
+                analysis.remove(i, "never reached");
+                continue;
+            }
+            for (AbstractInst j : i.removeUnreachable(analysis)) {
+                kept.add(j);
+                reachable = reachable && j.completesNormally();
+            }
+        }
+        getModifiableList().clear();
+        getModifiableList().addAll(kept);
+    }
+
+    /**
+     * Analyse the liveness of the variables backward through the list,
+     * removing its dead stores (see DeadCodeElimination)
+     */
+    public void removeDeadStores(DeadCodeElimination analysis) {
+        List<AbstractInst> list = getModifiableList();
+        for (int k = list.size() - 1; k >= 0; k--) {
+            if (list.get(k).removeDeadStores(analysis) && analysis.isRemoving()) {
+                list.remove(k);
+            }
+        }
+    }
+
+    public void analyzeNonNull(NonNullAnalysis analysis) {
+        for (AbstractInst i : getList()) {
+            i.analyzeNonNull(analysis);
+        }
+    }
+
+    @Override
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        for (int i = 0; i < size(); i++) {
+            AbstractInst inst = getList().get(i);
+            if (inst instanceof AbstractExpr) {
+                set(i, motion.hoist((AbstractExpr) inst));
+            } else {
+                inst.hoistChildren(motion);
+            }
+        }
+    }
+
+    @Override
+    protected void foldChildren(DecacCompiler compiler) {
+        // the instructions which are expressions (assignments, calls, ...)
+        for (int i = 0; i < size(); i++) {
+            AbstractInst inst = getList().get(i);
+            if (inst instanceof AbstractExpr) {
+                set(i, ((AbstractExpr) inst).foldExpr(compiler));
+            }
+        }
+    }
+
     @Override
     public void decompile(IndentPrintStream s) {
         for (AbstractInst i : getList()) {
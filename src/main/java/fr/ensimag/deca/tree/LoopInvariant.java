@@ -0,0 +1,117 @@
+package fr.ensimag.deca.tree;
+
+import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.context.ClassDefinition;
+import fr.ensimag.deca.context.EnvironmentExp;
+import fr.ensimag.deca.context.Type;
+import fr.ensimag.deca.tools.IndentPrintStream;
+import fr.ensimag.ima.pseudocode.Register;
+import fr.ensimag.ima.pseudocode.RegisterOffset;
+import fr.ensimag.ima.pseudocode.instructions.LOAD;
+import fr.ensimag.ima.pseudocode.instructions.STORE;
+import fr.ensimag.ima.pseudocode.instructions.WFLOAT;
+import fr.ensimag.ima.pseudocode.instructions.WFLOATX;
+import fr.ensimag.ima.pseudocode.instructions.WINT;
+import org.apache.commons.lang.Validate;
+
+import java.io.PrintStream;
+
+/**
+ * Expression whose value does not change in a loop (see
+ * LoopInvariantMotion): it is computed before the loop and kept in a word
+ * of the routine, which the register allocator keeps in a register.
+ *
+ * The node is added to the tree after the contextual verification.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class LoopInvariant extends AbstractExpr {
+    private final AbstractExpr expression;
+    /**
+     * Word holding the value while the loop is generated, null if the value
+     * is computed in place
+     */
+    private RegisterOffset slot;
+
+    public LoopInvariant(AbstractExpr expression) {
+        Validate.notNull(expression);
+        this.expression = expression;
+        setType(expression.getType());
+        setLocation(expression.getLocation());
+    }
+
+    public AbstractExpr getExpression() {
+        return expression;
+    }
+
+    /**
+     * Compute the value before the loop, in a new word of the routine
+     */
+    void codeGenPreheader(DecacCompiler compiler) {
+        slot = compiler.getstackTable().newInlineSlot();
+        expression.codeGenInst(compiler);
+        compiler.addInstruction(new STORE(Register.R0, slot));
+    }
+
+    /**
+     * End of the loop: the word may be used by another part of the routine
+     */
+    void freeSlot() {
+        slot = null;
+    }
+
+    @Override
+    public Type verifyExpr(DecacCompiler compiler, EnvironmentExp localEnv,
+            ClassDefinition currentClass) {
+        // built from a verified expression
+        return getType();
+    }
+
+    @Override
+    protected void codeGenInst(DecacCompiler compiler) {
+        if (slot == null) {
+            expression.codeGenInst(compiler);
+        } else {
+            compiler.addInstruction(new LOAD(slot, Register.R0));
+        }
+    }
+
+    @Override
+    protected void codeGenPrint(DecacCompiler compiler, boolean printHex) {
+        codeGenInst(compiler);
+        compiler.addInstruction(new LOAD(Register.R0, Register.R1));
+        if (getType().isInt()) {
+            compiler.addInstruction(new WINT());
+        } else if (printHex) {
+            compiler.addInstruction(new WFLOATX());
+        } else {
+            compiler.addInstruction(new WFLOAT());
+        }
+    }
+
+    @Override
+    protected void codeGenInstARM(DecacCompiler compiler) {
+        expression.codeGenInstARM(compiler);
+    }
+
+    @Override
+    protected void codeGenPrintARM(DecacCompiler compiler, boolean printHex) {
+        expression.codeGenPrintARM(compiler, printHex);
+    }
+
+    @Override
+    public void decompile(IndentPrintStream s) {
+        expression.decompile(s);
+    }
+
+    @Override
+    protected void prettyPrintChildren(PrintStream s, String prefix) {
+        expression.prettyPrint(s, prefix, true);
+    }
+
+    @Override
+    protected void iterChildren(TreeFunction f) {
+        expression.iter(f);
+    }
+}
@@ -0,0 +1,351 @@
+package fr.ensimag.deca.tree;
+
+import fr.ensimag.deca.context.Definition;
+import fr.ensimag.deca.context.ExpDefinition;
+import fr.ensimag.deca.context.FieldDefinition;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loop-invariant code motion and strength reduction: the expressions of a
+ * loop whose value is the same at each iteration are replaced by a
+ * LoopInvariant, computed once before the loop (in its preheader, see
+ * While.codeGenInst).
+ *
+ * An expression is invariant when it only reads variables and parameters
+ * the loop does not assign, and fields of this when the loop neither
+ * assigns a field nor calls a method (nor creates an object, which calls
+ * init). Since the preheader is run even when the body is not, only the
+ * computations which cannot stop the program are moved: int addition,
+ * subtraction and multiplication, opposite, conversion to float, and the
+ * other operations with -n only (no overflow nor division check).
+ *
+ * The induction variable of the loop is the int variable or parameter
+ * assigned only by the last instruction of its body, i = i + c or i = i - c
+ * (the step of a for loop). Its products by a literal or a variable the loop
+ * does not assign are replaced by an InductionProduct, incremented after the
+ * step, unless the multiplication is done with shifts. When the variable is
+ * known to be non-negative in the loop (for loop starting from a
+ * non-negative literal, incremented by c &gt; 0 and compared with a bound
+ * it cannot overflow), its divisions by a power of 2 are done with shifts.
+ *
+ * The loops are processed from the outermost one: an expression which is
+ * invariant in two nested loops is computed before the outer one.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class LoopInvariantMotion {
+    private static final Logger LOG = Logger.getLogger(LoopInvariantMotion.class);
+
+    private final Set<ExpDefinition> assigned;
+    private final boolean fieldsChange;
+    private final boolean noCheck;
+    private final List<LoopInvariant> hoisted = new ArrayList<LoopInvariant>();
+    /**
+     * Induction variable of the loop, null if there is none
+     */
+    private ExpDefinition induction;
+    /**
+     * Value added to the induction variable at each iteration
+     */
+    private int step;
+    private boolean nonNegative;
+    /**
+     * Products of the induction variable holding a word, by factor (value
+     * of a literal or definition of a variable)
+     */
+    private final Map<Object, InductionProduct> products = new LinkedHashMap<Object, InductionProduct>();
+    private int nbReduced = 0;
+    private int nbShifted = 0;
+
+    /**
+     * @param loop loop whose invariants are looked for
+     * @param noCheck true if the arithmetic errors are not checked (decac -n)
+     */
+    public LoopInvariantMotion(While loop, boolean noCheck) {
+        this.assigned = NonNullAnalysis.assignedVariables(loop);
+        this.noCheck = noCheck;
+        final boolean[] found = {false};
+        loop.iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                found[0] |= t instanceof MethodCall || t instanceof New
+                        || (t instanceof Assign && !isLocal(((Assign) t).getLeftOperand()));
+            }
+        });
+        this.fieldsChange = found[0];
+        findInductionVariable(loop);
+    }
+
+    /**
+     * Look for the induction variable of the loop (see the class comment)
+     */
+    private void findInductionVariable(While loop) {
+        List<AbstractInst> body = loop.getBody().getList();
+        if (body.isEmpty() || !(body.get(body.size() - 1) instanceof Assign)) {
+            return;
+        }
+        Assign assign = (Assign) body.get(body.size() - 1);
+        if (!isLocal(assign.getLeftOperand()) || !assign.getLeftOperand().getType().isInt()) {
+            return;
+        }
+        final ExpDefinition variable = (ExpDefinition) ((Identifier) assign.getLeftOperand()).getDefinition();
+        AbstractExpr value = assign.getRightOperand();
+        if (!(value instanceof Plus || value instanceof Minus)) {
+            return;
+        }
+        AbstractOpArith op = (AbstractOpArith) value;
+        if (isVariable(op.getLeftOperand(), variable) && op.getRightOperand() instanceof IntLiteral) {
+            int c = ((IntLiteral) op.getRightOperand()).getValue();
+            step = op instanceof Plus ? c : -c;
+        } else if (op instanceof Plus && op.getLeftOperand() instanceof IntLiteral
+                && isVariable(op.getRightOperand(), variable)) {
+            step = ((IntLiteral) op.getLeftOperand()).getValue();
+        } else {
+            return;
+        }
+        // the step must be the only assignment of the variable in the loop
+        final int[] nbAssigns = {0};
+        TreeFunction count = new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                if (t instanceof Assign && isVariable(((Assign) t).getLeftOperand(), variable)) {
+                    nbAssigns[0]++;
+                }
+            }
+        };
+        loop.getCondition().iter(count);
+        loop.getBody().iter(count);
+        if (nbAssigns[0] != 1) {
+            return;
+        }
+        induction = variable;
+        nonNegative = loop instanceof For && startsNonNegative(((For) loop).getInit())
+                && staysBelowBound(loop.getCondition());
+    }
+
+    /**
+     * @return true if the expression is the variable of the definition
+     */
+    private static boolean isVariable(AbstractExpr expr, ExpDefinition def) {
+        return expr instanceof Identifier && ((Identifier) expr).getDefinition() == def;
+    }
+
+    /**
+     * @return true if the initialization of the for loop assigns a
+     * non-negative literal to the induction variable
+     */
+    private boolean startsNonNegative(AbstractExpr init) {
+        if (!(init instanceof Assign)) {
+            return false;
+        }
+        Assign assign = (Assign) init;
+        return isVariable(assign.getLeftOperand(), induction)
+                && assign.getRightOperand() instanceof IntLiteral
+                && ((IntLiteral) assign.getRightOperand()).getValue() >= 0;
+    }
+
+    /**
+     * @return true if the condition compares the induction variable with a
+     * bound such that the step never overflows: i &lt; n with a step of 1,
+     * or a literal bound far enough from the largest int
+     */
+    private boolean staysBelowBound(AbstractExpr condition) {
+        if (step <= 0 || !(condition instanceof AbstractOpIneq)) {
+            return false;
+        }
+        AbstractOpIneq cmp = (AbstractOpIneq) condition;
+        AbstractExpr bound;
+        boolean strict;
+        if ((cmp instanceof Lower || cmp instanceof LowerOrEqual)
+                && isVariable(cmp.getLeftOperand(), induction)) {
+            bound = cmp.getRightOperand();
+            strict = cmp instanceof Lower;
+        } else if ((cmp instanceof Greater || cmp instanceof GreaterOrEqual)
+                && isVariable(cmp.getRightOperand(), induction)) {
+            bound = cmp.getLeftOperand();
+            strict = cmp instanceof Greater;
+        } else {
+            return false;
+        }
+        if (bound instanceof IntLiteral) {
+            long last = ((IntLiteral) bound).getValue() - (strict ? 1L : 0L);
+            return last + step <= Integer.MAX_VALUE;
+        }
+        return strict && step == 1;
+    }
+
+    /**
+     * @return the invariants replaced in the loop, in the order of their
+     * computation
+     */
+    public List<LoopInvariant> getHoisted() {
+        return hoisted;
+    }
+
+    /**
+     * @return the products of the induction variable holding a word, in the
+     * order of their computation
+     */
+    public List<InductionProduct> getAccumulators() {
+        return new ArrayList<InductionProduct>(products.values());
+    }
+
+    /**
+     * @return the number of products of the induction variable replaced
+     */
+    public int getNbReduced() {
+        return nbReduced;
+    }
+
+    /**
+     * @return the number of divisions of the induction variable done with
+     * shifts
+     */
+    public int getNbShifted() {
+        return nbShifted;
+    }
+
+    /**
+     * @return true if the expression is a variable or a parameter
+     */
+    private static boolean isLocal(AbstractExpr expr) {
+        return expr instanceof Identifier
+                && !(((Identifier) expr).getDefinition() instanceof FieldDefinition);
+    }
+
+    /**
+     * @return true if the expression is a field of this
+     */
+    private static boolean isFieldOfThis(AbstractExpr expr) {
+        if (expr instanceof Identifier) {
+            return ((Identifier) expr).getDefinition() instanceof FieldDefinition;
+        }
+        return expr instanceof Selection && ((Selection) expr).getSelectingClass() instanceof This;
+    }
+
+    /**
+     * @return true if the value of the expression is the same at each
+     * iteration and computing it cannot stop the program
+     */
+    private boolean isInvariant(AbstractExpr expr) {
+        if (expr instanceof IntLiteral || expr instanceof FloatLiteral
+                || expr instanceof BooleanLiteral || expr instanceof This
+                || expr instanceof LoopInvariant || expr instanceof InductionProduct) {
+            // the products met are those of an outer loop
+            return true;
+        }
+        if (isFieldOfThis(expr)) {
+            return !fieldsChange;
+        }
+        if (expr instanceof Identifier) {
+            Definition def = ((Identifier) expr).getDefinition();
+            return def instanceof ExpDefinition && !assigned.contains(def);
+        }
+        if (expr instanceof UnaryMinus || expr instanceof ConvFloat) {
+            return isInvariant(((AbstractUnaryExpr) expr).getOperand());
+        }
+        if (expr instanceof AbstractOpArith) {
+            AbstractOpArith op = (AbstractOpArith) expr;
+            boolean safe = noCheck || (op.getType().isInt()
+                    && (op instanceof Plus || op instanceof Minus || op instanceof Multiply));
+            return safe && isInvariant(op.getLeftOperand()) && isInvariant(op.getRightOperand());
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the expression is invariant and worth a word of the
+     * routine: a computation or a field load
+     */
+    private boolean isWorthHoisting(AbstractExpr expr) {
+        boolean computation = expr instanceof AbstractOpArith || expr instanceof UnaryMinus
+                || expr instanceof ConvFloat || isFieldOfThis(expr);
+        return computation && (expr.getType().isInt() || expr.getType().isFloat())
+                && isInvariant(expr);
+    }
+
+    /**
+     * @return the product of the induction variable replacing the
+     * expression, null if it is not one
+     */
+    private InductionProduct reduce(AbstractExpr expr) {
+        if (induction == null || !(expr instanceof Multiply) || !expr.getType().isInt()
+                || ((Multiply) expr).isShift()) {
+            return null;
+        }
+        Multiply product = (Multiply) expr;
+        AbstractExpr factor;
+        if (isVariable(product.getLeftOperand(), induction)) {
+            factor = product.getRightOperand();
+        } else if (isVariable(product.getRightOperand(), induction)) {
+            factor = product.getLeftOperand();
+        } else {
+            return null;
+        }
+        Object key;
+        AbstractExpr increment;
+        if (factor instanceof IntLiteral) {
+            key = ((IntLiteral) factor).getValue();
+            increment = factor.foldedLiteral(step * ((IntLiteral) factor).getValue());
+        } else if (isLocal(factor) && !assigned.contains(((Identifier) factor).getDefinition())
+                && step == 1) {
+            key = ((Identifier) factor).getDefinition();
+            increment = factor;
+        } else {
+            return null;
+        }
+        InductionProduct reduced = new InductionProduct(product, increment, products.get(key));
+        if (reduced.isAccumulator()) {
+            products.put(key, reduced);
+        }
+        nbReduced++;
+        LOG.info("Product at " + expr.getLocation() + " replaced by an addition at each iteration");
+        return reduced;
+    }
+
+    /**
+     * Do with shifts the division of the induction variable by a power of 2,
+     * when the variable is non-negative
+     */
+    private void shiftDivision(AbstractExpr expr) {
+        if (!nonNegative || !(expr instanceof Divide) || !expr.getType().isInt()) {
+            return;
+        }
+        Divide division = (Divide) expr;
+        if (isVariable(division.getLeftOperand(), induction)
+                && division.getRightOperand() instanceof IntLiteral
+                && division.setShift(((IntLiteral) division.getRightOperand()).getValue())) {
+            nbShifted++;
+            LOG.info("Division at " + expr.getLocation() + " done with shifts");
+        }
+    }
+
+    /**
+     * Replace the largest invariant subexpressions of the expression, and
+     * the products of the induction variable
+     *
+     * @return the expression replacing this one
+     */
+    AbstractExpr hoist(AbstractExpr expr) {
+        if (isWorthHoisting(expr)) {
+            LoopInvariant invariant = new LoopInvariant(expr);
+            hoisted.add(invariant);
+            LOG.info("Loop invariant at " + expr.getLocation() + " computed before the loop");
+            return invariant;
+        }
+        InductionProduct reduced = reduce(expr);
+        if (reduced != null) {
+            return reduced;
+        }
+        shiftDivision(expr);
+        expr.hoistChildren(this);
+        return expr;
+    }
+}
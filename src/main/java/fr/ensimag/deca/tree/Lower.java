@@ -1,5 +1,12 @@
 package fr.ensimag.deca.tree;
 
+import fr.ensimag.ima.pseudocode.ARMUnaryInstructionString;
+import fr.ensimag.ima.pseudocode.BranchInstruction;
+import fr.ensimag.ima.pseudocode.Label;
+import fr.ensimag.ima.pseudocode.instructions.BGT;
+import fr.ensimag.ima.pseudocode.instructions.BLE;
+import fr.ensimag.ima.pseudocode.instructionsARM.bge;
+import fr.ensimag.ima.pseudocode.instructionsARM.blt;
 import fr.ensimag.ima.pseudocode.Register;
 import fr.ensimag.ima.pseudocode.ARMRegister;
 import fr.ensimag.deca.DecacCompiler;
@@ -38,4 +45,22 @@ public class Lower extends AbstractOpIneq {
         compiler.addInstruction(new movlt(ARMRegister.r0, 1));
     }
 
+    boolean foldComparison(boolean lower, boolean equal) {
+        return lower;
+    }
+
+    BranchInstruction getBranch(boolean jumpIfTrue, Label target){
+        if (jumpIfTrue) {
+            return new BGT(target);
+        }
+        return new BLE(target);
+    }
+
+    ARMUnaryInstructionString getBranchARM(boolean jumpIfTrue, Label target){
+        if (jumpIfTrue) {
+            return new blt(target.toString());
+        }
+        return new bge(target.toString());
+    }
+
 }
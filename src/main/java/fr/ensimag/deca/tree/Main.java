@@ -1,12 +1,15 @@
 package fr.ensimag.deca.tree;
 
 import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.codegen.ARMFrame;
+import fr.ensimag.deca.codegen.RegisterAllocator;
 import fr.ensimag.deca.context.*;
+import fr.ensimag.deca.tools.CodeAnalyzer;
 import fr.ensimag.deca.tools.IndentPrintStream;
-import fr.ensimag.ima.pseudocode.ARMRegister;
 
 import java.io.PrintStream;
 
+import fr.ensimag.deca.tools.StackHashTableSymbol;
 import fr.ensimag.deca.tools.SymbolTable;
 import fr.ensimag.ima.pseudocode.instructions.HALT;
 import fr.ensimag.ima.pseudocode.instructions.LOAD;
@@ -46,20 +49,85 @@ public class Main extends AbstractMain {
         compiler.addComment(" --------------------------------------------------");
         compiler.addComment("             Main Program");
         compiler.addComment(" --------------------------------------------------");
+        int start = compiler.getProgramSize();
+        StackHashTableSymbol stackTable = compiler.getstackTable();
+        int firstVariable = stackTable.getNextOffset();
+        // the words of the inlined methods and of the loop invariants come first
+        int nbInlineSlots = MethodCall.countInlineSlots(this) + While.countInvariantSlots(this);
+        if (nbInlineSlots > 0) {
+            stackTable.setInlineSlots(new RegisterOffset(firstVariable, Register.GB));
+            stackTable.reserve(nbInlineSlots);
+        }
         declVariables.codeGenListDeclVar(compiler);
+        int endOfVariables = stackTable.getNextOffset();
         insts.codeGenListInst(compiler);
         compiler.addInstruction(new HALT());
+        stackTable.setInlineSlots(null);
+
+        // the variables are kept in registers, the spilled values after them
+        RegisterAllocator allocator = new RegisterAllocator(compiler, "main", Register.GB, endOfVariables);
+        for (int k = firstVariable; k < endOfVariables; k++) {
+            allocator.addVariable(new RegisterOffset(k, Register.GB), false);
+        }
+        allocator.allocate(compiler.getProgramLines(start));
+        stackTable.reserve(allocator.getNbSpillSlots());
+        compiler.getCodeAnalyzer().setCallStackSize(
+                CodeAnalyzer.getCallStackSize(compiler.getProgramLines(start)));
+    }
+
+    @Override
+    protected int eliminateDeadCode() {
+        DeadCodeElimination analysis = new DeadCodeElimination();
+        insts.removeUnreachable(analysis);
+        insts.removeDeadStores(analysis);
+        return analysis.getNbRemoved();
+    }
+
+    @Override
+    protected int eliminateNullChecks() {
+        NonNullAnalysis analysis = new NonNullAnalysis();
+        declVariables.analyzeNonNull(analysis);
+        insts.analyzeNonNull(analysis);
+        return analysis.getNbRemoved();
     }
 
     protected void codeGenMainARM(DecacCompiler compiler) {
-        compiler.addARMComment("Beginning of variables declaration");
-        declVariables.codeGenListDeclVarARM(compiler);
         compiler.addARMComment("Beginning of main ARM instructions:");
         compiler.addARMBlock("main:");
-        compiler.addInstruction(new push(ARMRegister.ip, ARMRegister.lr));
-        compiler.addInstruction(new bl("_varDeclAssign"));
+        // the variables accessed the most are kept in registers
+        final ARMFrame frame = compiler.getArmFrame();
+        countAccesses(this, frame, 1);
+        iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                if (t instanceof While) {
+                    countAccesses(t, frame, ARMFrame.LOOP_WEIGHT);
+                }
+            }
+        });
+        declVariables.codeGenListDeclVarAllocARM(compiler);
+        frame.allocate(compiler.getListRegisterARM());
+        frame.codeGenPrologue(compiler);
+        compiler.addARMComment("Beginning of variables declaration");
+        declVariables.codeGenListDeclVarARM(compiler);
         insts.codeGenListInstARM(compiler);
-        compiler.addInstruction(new pop(ARMRegister.ip, ARMRegister.pc));
+        frame.codeGenEpilogue(compiler);
+    }
+
+    /**
+     * Count the accesses to the variables of main in the tree, each one
+     * weighing weight (see ARMFrame)
+     */
+    private static void countAccesses(Tree tree, final ARMFrame frame, final int weight) {
+        tree.iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                if (t instanceof Identifier
+                        && ((Identifier) t).getDefinition() instanceof VariableDefinition) {
+                    frame.addAccesses(((Identifier) t).getExpDefinition(), weight);
+                }
+            }
+        });
     }
 
     @Override
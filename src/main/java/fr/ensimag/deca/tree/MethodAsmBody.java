@@ -51,4 +51,25 @@ public class MethodAsmBody extends AbstractMethodBody {
     public int getNumberLocalVariables(){
         return 0;
     }
+
+    @Override
+    protected int getInliningSize() {
+        // the assembly code uses the frame of the method
+        return -1;
+    }
+
+    @Override
+    protected boolean reachesEnd() {
+        return true;
+    }
+
+    @Override
+    protected int eliminateNullChecks() {
+        return 0;
+    }
+
+    @Override
+    protected int eliminateDeadCode() {
+        return 0;
+    }
 }
@@ -34,7 +34,7 @@ public class MethodBody extends AbstractMethodBody {
             Warning warning = new Warning(
                     "No return statement in non-void method.",
                     getLocation());
-            warning.emit();
+            warning.emit(compiler.getErrorStream());
         }
     }
 
@@ -45,11 +45,56 @@ public class MethodBody extends AbstractMethodBody {
         insts.codeGenListInst(compiler);
     }
 
+    @Override
+    protected int eliminateDeadCode() {
+        DeadCodeElimination analysis = new DeadCodeElimination();
+        insts.removeUnreachable(analysis);
+        insts.removeDeadStores(analysis);
+        return analysis.getNbRemoved();
+    }
+
+    @Override
+    protected int eliminateNullChecks() {
+        NonNullAnalysis analysis = new NonNullAnalysis();
+        declVariables.analyzeNonNull(analysis);
+        insts.analyzeNonNull(analysis);
+        return analysis.getNbRemoved();
+    }
+
     @Override
     public int getNumberLocalVariables() {
         return declVariables.getNumberLocalVariable();
     }
 
+    /**
+     * A body without local variables nor method calls may be inlined: its
+     * values are the object and the parameters only, and inlining it never
+     * leads to inlining it again.
+     */
+    @Override
+    protected int getInliningSize() {
+        if (!declVariables.isEmpty()) {
+            return -1;
+        }
+        final int[] size = {0};
+        final boolean[] callsMethod = {false};
+        insts.iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                size[0]++;
+                if (t instanceof MethodCall) {
+                    callsMethod[0] = true;
+                }
+            }
+        });
+        return callsMethod[0] ? -1 : size[0];
+    }
+
+    @Override
+    protected boolean reachesEnd() {
+        return insts.completesNormally();
+    }
+
     @Override
     public void decompile(IndentPrintStream s) {
         s.println("{");
@@ -3,21 +3,65 @@ package fr.ensimag.deca.tree;
 import fr.ensimag.deca.DecacCompiler;
 import fr.ensimag.deca.context.*;
 import fr.ensimag.deca.tools.IndentPrintStream;
+import fr.ensimag.deca.tools.StackHashTableSymbol;
 import fr.ensimag.deca.tools.SymbolTable;
 import fr.ensimag.ima.pseudocode.GPRegister;
+import fr.ensimag.ima.pseudocode.ImmediateString;
+import fr.ensimag.ima.pseudocode.Label;
 import fr.ensimag.ima.pseudocode.NullOperand;
 import fr.ensimag.ima.pseudocode.Register;
 import fr.ensimag.ima.pseudocode.RegisterOffset;
 import fr.ensimag.ima.pseudocode.instructions.*;
 import org.apache.commons.lang.Validate;
+import org.apache.log4j.Logger;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 public class MethodCall extends AbstractExpr {
+    private static final Logger LOG = Logger.getLogger(MethodCall.class);
+
+    /**
+     * Largest number of nodes of the body of an inlined method
+     */
+    public static final int INLINING_BUDGET = 50;
+
     private AbstractExpr callingClass;  //Can be This
     private AbstractIdentifier methodName;
     private ListExpr methodArgs;
+    /**
+     * Class whose declaration of the method is called whatever the object,
+     * null if the method is looked up in the method table of the object
+     */
+    private ClassDefinition implementation;
+    /**
+     * Declaration of the method whose body is generated in place of the call
+     * (with -O2), null if the method is called
+     */
+    private DeclMethod inlined;
+    /**
+     * Fields of the class of the inlined method, the inherited ones first
+     */
+    private List<DeclField> inlinedFields;
+    /**
+     * True when the object is known not to be null (see NonNullAnalysis), so
+     * that it is not checked
+     */
+    private boolean receiverNonNull = false;
+    /**
+     * Declaration of the method which returns the result of this call, null
+     * if the call is not replaced by a jump (see makeTailCall)
+     */
+    private DeclMethod tailCallOf;
+    /**
+     * True when the call replaced by a jump is a call of the method which
+     * makes it
+     */
+    private boolean selfTailCall = false;
 
     public MethodCall(AbstractExpr callingClass, AbstractIdentifier methodName, ListExpr methodArgs) {
         Validate.notNull(callingClass);
@@ -113,6 +157,19 @@ public class MethodCall extends AbstractExpr {
         methodArgs.prettyPrint(s, prefix, true);
     }
 
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        callingClass = callingClass.foldExpr(compiler);
+        methodArgs.foldChildren(compiler);
+        return this;
+    }
+
+    @Override
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        callingClass.hoistChildren(motion);
+        methodArgs.hoistChildren(motion);
+    }
+
     @Override
     protected void iterChildren(TreeFunction f) {
         callingClass.iter(f);
@@ -120,6 +177,139 @@ public class MethodCall extends AbstractExpr {
         methodArgs.iter(f);
     }
 
+    public AbstractExpr getCallingClass() {
+        return callingClass;
+    }
+
+    /**
+     * Remove the null check of the object, which is known not to be null
+     */
+    public void setReceiverNonNull() {
+        receiverNonNull = true;
+    }
+
+    /**
+     * Make the call direct when the class hierarchy shows that it always runs
+     * the same declaration of the method: the method is not redefined below
+     * the static type of the object, or the object is created by the call
+     * expression itself.
+     *
+     * @return true if the call is direct
+     */
+    public boolean devirtualize(ClassHierarchy hierarchy) {
+        if (!callingClass.getType().isClass()) {
+            return false;
+        }
+        ClassDefinition receiver = ((ClassType) callingClass.getType()).getDefinition();
+        SymbolTable.Symbol m = methodName.getName();
+        if (callingClass instanceof New) {
+            implementation = hierarchy.getImplementation(receiver, m);
+        } else {
+            implementation = hierarchy.getUniqueImplementation(receiver, m);
+        }
+        return implementation != null;
+    }
+
+    /**
+     * Replace the call by a jump when the method which returns its result
+     * can give its frame to the method called: the declaration called must be
+     * known (see devirtualize), not inlined, and have at most as many
+     * parameters. A call of the method itself jumps to the beginning of its
+     * body, keeping the registers; another method is jumped to once the frame
+     * is released. The decision is logged.
+     *
+     * @param currentClass class declaring the method
+     * @param method method whose return gives the result of the call
+     * @return true if the call is replaced by a jump
+     */
+    public boolean makeTailCall(ClassDefinition currentClass, DeclMethod method) {
+        if (implementation == null || inlined != null
+                || methodArgs.size() > method.getParameters().size()) {
+            return false;
+        }
+        tailCallOf = method;
+        selfTailCall = implementation == currentClass && methodName.getName() == method.getName();
+        if (selfTailCall) {
+            method.addSelfTailCall();
+            LOG.info("Call of " + methodName.getName() + " at " + getLocation()
+                    + " replaced by a jump to the beginning of the method");
+        } else {
+            LOG.info("Call of " + methodName.getName() + " at " + getLocation()
+                    + " replaced by a jump to " + implementation.toStringName() + "."
+                    + methodName.getName() + " in the frame of " + method.getName());
+        }
+        return true;
+    }
+
+    /**
+     * Decide whether the body of the method is generated in place of the
+     * call: the call must be direct (see devirtualize), and the body must be
+     * small and without local variables nor method calls. The decision is
+     * logged.
+     *
+     * @param declarations declaration of each class of the program
+     * @return true if the method is inlined
+     */
+    public boolean inline(Map<ClassDefinition, DeclClass> declarations) {
+        String call = "Call of " + methodName.getName() + " at " + getLocation();
+        if (implementation == null) {
+            LOG.info(call + " not inlined: the method run depends on the object");
+            return false;
+        }
+        DeclClass declaration = declarations.get(implementation);
+        DeclMethod method = declaration == null ? null
+                : declaration.getMethod(methodName.getName());
+        if (method == null) {
+            LOG.info(call + " not inlined: predefined method");
+            return false;
+        }
+        int size = method.getBody().getInliningSize();
+        if (size < 0) {
+            LOG.info(call + " not inlined: the body has local variables, "
+                    + "method calls or assembly code");
+            return false;
+        }
+        if (size > INLINING_BUDGET) {
+            LOG.info(call + " not inlined: body of " + size + " nodes, more than "
+                    + INLINING_BUDGET);
+            return false;
+        }
+        LOG.info(call + " inlined: body of " + size + " nodes");
+        inlined = method;
+        inlinedFields = new ArrayList<DeclField>();
+        for (ClassDefinition c = implementation; declarations.containsKey(c); c = c.getSuperClass()) {
+            List<DeclField> fields = new ArrayList<DeclField>();
+            for (AbstractDeclField f : declarations.get(c).getFields().getList()) {
+                fields.add((DeclField) f);
+            }
+            inlinedFields.addAll(0, fields);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of words of the routine used by the inlined
+     * methods of the tree (the object, the parameters and the loop
+     * invariants of each of them)
+     */
+    public static int countInlineSlots(Tree tree) {
+        final int[] nbSlots = {0};
+        tree.iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                if (t instanceof MethodCall && ((MethodCall) t).inlined != null) {
+                    nbSlots[0] += 1 + ((MethodCall) t).methodArgs.size()
+                            + While.countInvariantSlots(((MethodCall) t).inlined.getBody());
+                } else if (t instanceof While) {
+                    // the condition of a rotated loop is generated twice
+                    // (see While.codeGenInst), each copy with its own words
+                    nbSlots[0] += countInlineSlots(((While) t).getCondition());
+                }
+            }
+        });
+        return nbSlots[0];
+    }
+
     protected void codeGenPrint(DecacCompiler compiler, boolean printHex) {
         codeGenInst(compiler);
         compiler.addInstruction(new LOAD(Register.R0, Register.R1));
@@ -139,38 +329,189 @@ public class MethodCall extends AbstractExpr {
 
 
     protected void codeGenInst(DecacCompiler compiler) {
-        //we add the calling class in the stack
-        GPRegister usedRegister = compiler.getListRegister().getRegister(compiler);
-        compiler.addInstruction(new ADDSP(methodArgs.size()));
-        if(callingClass instanceof Identifier){
-            compiler.addInstruction(new LOAD(compiler.getstackTable().get(((Identifier)callingClass).getName()), usedRegister));
-        }
-        else{
-            callingClass.codeGenInst(compiler);
-            compiler.addInstruction(new LOAD(Register.R0, usedRegister));
+        if (inlined != null && compiler.getstackTable().hasInlineSlots()) {
+            codeGenInlined(compiler);
+            return;
         }
-        compiler.addInstruction(new STORE(usedRegister, new RegisterOffset(0, Register.SP)));
-        //we add arguments one by one
+        //we add the calling class (at 0(SP)) and the arguments in the stack
+        compiler.addInstruction(new ADDSP(methodArgs.size() + 1));
+        callingClass.codeGenInst(compiler);
+        compiler.addInstruction(new STORE(Register.R0, new RegisterOffset(0, Register.SP)));
+        //we add arguments one by one, stored from R0 where they are computed
         int counter = 1;
         for( AbstractExpr expr : methodArgs.getList()){
             expr.codeGenInst(compiler);
-            compiler.addInstruction(new LOAD(Register.R0, usedRegister));
-            compiler.addInstruction(new STORE(usedRegister, new RegisterOffset(-counter, Register.SP)));
+            compiler.addInstruction(new STORE(Register.R0, new RegisterOffset(-counter, Register.SP)));
             counter++;
         }
+        if (implementation != null && receiverNonNull) {
+            //the declaration called is known and the object is not null
+            compiler.addInstruction(new BSR(new Label("code." + implementation.toStringName()
+                    + "." + methodName.getName().getName())));
+            compiler.addInstruction(new SUBSP(methodArgs.size() + 1));
+            return;
+        }
         //we verify that the calling class is not null
+        GPRegister usedRegister = compiler.getListRegister().getRegister(compiler);
         compiler.addInstruction(new LOAD(new RegisterOffset(0, Register.SP), usedRegister));
-        compiler.addInstruction((new CMP(new NullOperand(), usedRegister)));
-        if (!compiler.getCompilerOptions().getNoCheck()) {
-            compiler.addInstruction(new BEQ(compiler.getErrorManager().getErrorLabel("Null dereferencing")));
-        }
-        //we get the list of methods for the corresponding class
-        compiler.addInstruction(new LOAD(new RegisterOffset(0, usedRegister), usedRegister));
-        //we call the method with the right index
-        compiler.addInstruction(new BSR(new RegisterOffset(methodName.getMethodDefinition().getIndex(), usedRegister)));
+        if (!receiverNonNull) {
+            compiler.addInstruction((new CMP(new NullOperand(), usedRegister)));
+            if (!compiler.getCompilerOptions().getNoCheck()) {
+                compiler.addInstruction(new BEQ(compiler.getErrorManager().getErrorLabel("Null dereferencing")));
+            }
+        }
+        if (implementation != null) {
+            //the declaration called is known: no need of the method table
+            compiler.addInstruction(new BSR(new Label("code." + implementation.toStringName()
+                    + "." + methodName.getName().getName())));
+        } else {
+            //we get the list of methods for the corresponding class
+            compiler.addInstruction(new LOAD(new RegisterOffset(0, usedRegister), usedRegister));
+            //we call the method with the right index
+            compiler.addInstruction(new BSR(new RegisterOffset(methodName.getMethodDefinition().getIndex(), usedRegister)));
+        }
         //we remove arguments from the stack
-        compiler.addInstruction(new SUBSP(methodArgs.size()));
+        compiler.addInstruction(new SUBSP(methodArgs.size() + 1));
 
         compiler.getListRegister().freeRegister(usedRegister, compiler);
     }
+
+    /**
+     * Generate the call as a jump (see makeTailCall). The object and the
+     * arguments are all computed before they replace this and the
+     * parameters, which they may use. A call of another method writes them to
+     * the words of the frame through a copy of LB, which the register
+     * allocator does not keep in registers, and jumps to its code: the frame
+     * is released before the jump (see DeclMethod.codeGen), and the method
+     * returns to the caller of this one.
+     */
+    void codeGenTailCall(DecacCompiler compiler) {
+        StackHashTableSymbol stackTable = compiler.getstackTable();
+        GPRegister object = null;
+        if (!selfTailCall || !(callingClass instanceof This)) {
+            callingClass.codeGenInst(compiler);
+            object = compiler.getListRegister().getRegister(compiler);
+            compiler.addInstruction(new LOAD(Register.R0, object));
+        }
+        List<GPRegister> values = new ArrayList<GPRegister>();
+        for (AbstractExpr expr : methodArgs.getList()) {
+            expr.codeGenInst(compiler);
+            GPRegister value = compiler.getListRegister().getRegister(compiler);
+            compiler.addInstruction(new LOAD(Register.R0, value));
+            values.add(value);
+        }
+        if (object != null && !receiverNonNull) {
+            //we verify that the calling class is not null
+            compiler.addInstruction(new CMP(new NullOperand(), object));
+            if (!compiler.getCompilerOptions().getNoCheck()) {
+                compiler.addInstruction(new BEQ(compiler.getErrorManager().getErrorLabel("Null dereferencing")));
+            }
+        }
+        if (selfTailCall) {
+            if (object != null) {
+                compiler.addInstruction(new STORE(object, stackTable.getThis()));
+                compiler.getListRegister().freeRegister(object, compiler);
+            }
+            Iterator<GPRegister> value = values.iterator();
+            for (AbstractDeclParam p : tailCallOf.getParameters().getList()) {
+                GPRegister register = value.next();
+                compiler.addInstruction(new STORE(register, stackTable.get(p.getName())));
+                compiler.getListRegister().freeRegister(register, compiler);
+            }
+            compiler.addInstruction(new BRA(stackTable.getStartOfCurrentMethod()));
+            return;
+        }
+        GPRegister frame = compiler.getListRegister().getRegister(compiler);
+        compiler.addInstruction(new LEA(new RegisterOffset(0, Register.LB), frame));
+        compiler.addInstruction(new STORE(object, new RegisterOffset(-2, frame)));
+        compiler.getListRegister().freeRegister(object, compiler);
+        int counter = -3;
+        for (GPRegister register : values) {
+            compiler.addInstruction(new STORE(register, new RegisterOffset(counter, frame)));
+            compiler.getListRegister().freeRegister(register, compiler);
+            counter--;
+        }
+        compiler.getListRegister().freeRegister(frame, compiler);
+        compiler.addInstruction(new BRA(new Label("code." + implementation.toStringName()
+                + "." + methodName.getName().getName())));
+    }
+
+    /**
+     * Generate the body of the inlined method in place of the call. The object
+     * and the arguments are stored to words of the routine (which the
+     * register allocator keeps in registers) standing for -2(LB), -3(LB)...,
+     * and a return jumps to the end of the body, leaving its value in R0.
+     */
+    private void codeGenInlined(DecacCompiler compiler) {
+        StackHashTableSymbol stackTable = compiler.getstackTable();
+        RegisterOffset thisSlot = stackTable.newInlineSlot();
+        callingClass.codeGenInst(compiler);
+        //we verify that the calling class is not null
+        if (!receiverNonNull) {
+            compiler.addInstruction(new CMP(new NullOperand(), Register.R0));
+            if (!compiler.getCompilerOptions().getNoCheck()) {
+                compiler.addInstruction(new BEQ(compiler.getErrorManager().getErrorLabel("Null dereferencing")));
+            }
+        }
+        compiler.addInstruction(new STORE(Register.R0, thisSlot));
+        List<RegisterOffset> argSlots = new ArrayList<RegisterOffset>();
+        for (AbstractExpr expr : methodArgs.getList()) {
+            expr.codeGenInst(compiler);
+            RegisterOffset slot = stackTable.newInlineSlot();
+            compiler.addInstruction(new STORE(Register.R0, slot));
+            argSlots.add(slot);
+        }
+
+        // in the body, the names are the ones of the method: the fields of
+        // its class, then its parameters
+        Map<SymbolTable.Symbol, RegisterOffset> hidden = new HashMap<SymbolTable.Symbol, RegisterOffset>();
+        for (DeclField f : inlinedFields) {
+            AbstractIdentifier field = f.getFieldName();
+            bind(stackTable, hidden, field.getName(),
+                    new RegisterOffset(field.getFieldDefinition().getIndex(), null));
+        }
+        int k = 0;
+        for (AbstractDeclParam p : inlined.getParameters().getList()) {
+            bind(stackTable, hidden, p.getName(), argSlots.get(k));
+            k++;
+        }
+        RegisterOffset callerThis = stackTable.getThis();
+        Label callerEnd = stackTable.getEnfOfCurrentMethod();
+        Label end = compiler.newLabel();
+        stackTable.setThis(thisSlot);
+        stackTable.setEnfOfCurrentMethod(end);
+
+        String name = implementation.toStringName() + "." + methodName.getName().getName();
+        compiler.addComment("inlined call of " + name);
+        inlined.getBody().codeGenMethodBody(compiler);
+        if (!inlined.getReturnType().isVoid() && inlined.getBody().reachesEnd()) {
+            compiler.addInstruction(new WSTR(new ImmediateString("Error : end of the method " + name + " without return")));
+            compiler.addInstruction(new WNL());
+            compiler.addInstruction(new ERROR());
+        }
+        compiler.addLabel(end);
+
+        stackTable.setThis(callerThis);
+        stackTable.setEnfOfCurrentMethod(callerEnd);
+        for (Map.Entry<SymbolTable.Symbol, RegisterOffset> entry : hidden.entrySet()) {
+            if (entry.getValue() == null) {
+                stackTable.remove(entry.getKey());
+            } else {
+                stackTable.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Give an address to a name of the inlined method, keeping in hidden the
+     * one it had in the caller (null if none)
+     */
+    private static void bind(StackHashTableSymbol stackTable,
+            Map<SymbolTable.Symbol, RegisterOffset> hidden,
+            SymbolTable.Symbol name, RegisterOffset address) {
+        if (!hidden.containsKey(name)) {
+            hidden.put(name, stackTable.contains(name) ? stackTable.get(name) : null);
+        }
+        stackTable.put(name, address);
+    }
 }
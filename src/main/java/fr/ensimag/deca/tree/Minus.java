@@ -34,18 +34,32 @@ public class Minus extends AbstractOpArith {
         if(getType().isInt()) {
             compiler.addInstruction(new sub(storedRegister, Reg1, storedRegister));
         } else {
-            compiler.addInstruction(new vmov(ARMRegister.s0, Reg1));
-            compiler.addInstruction(new vmov(ARMRegister.s1, storedRegister));
-            compiler.addARMBlock("        vsub.f32 s0, s0, s1");
+            compiler.addARMBlock("        vsub.f32 " + storedRegister + ", " + Reg1 + ", " + storedRegister);
             if (!compiler.getCompilerOptions().getNoCheck()) {
                 compiler.addInstruction(new bvs("float_arithmetic_overflow"));
             }
-            compiler.addInstruction(new vmov(storedRegister, ARMRegister.s0));
         }
     }
 
+    Integer foldInt(int left, int right) {
+        return intResult((long) left - right);
+    }
+
+    Float foldFloat(float left, float right) {
+        return floatResult(left - right, (double) left - right);
+    }
+
+    @Override
+    AbstractExpr simplify(DecacCompiler compiler) {
+        if (isIntLiteral(getRightOperand(), 0)) {
+            return getLeftOperand();
+        }
+        return this;
+    }
+
     @Override
     protected String getOperatorName() {
         return "-";
     }
+
 }
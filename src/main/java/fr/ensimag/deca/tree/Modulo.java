@@ -38,6 +38,18 @@ public class Modulo extends AbstractOpArith {
         return "%";
     }
 
+    Integer foldInt(int left, int right) {
+        if (right == 0) {
+            return null;
+        }
+        return intResult((long) left % right);
+    }
+
+    Float foldFloat(float left, float right) {
+        // the operands of % are ints
+        return null;
+    }
+
     public void codeGenOperations(Register Reg1, Register storedRegister, DecacCompiler compiler){
         compiler.addInstruction(new CMP(new ImmediateInteger(0), storedRegister));
         if (!compiler.getCompilerOptions().getNoCheck()) {
@@ -50,13 +62,14 @@ public class Modulo extends AbstractOpArith {
     public void codeGenOperationsARM(ARMRegister Reg1, ARMRegister storedRegister, DecacCompiler compiler){
         if(!getType().isInt()) {
             compiler.addInstruction(new b("input_output_error"));
-        }   
+        }
+        if (!compiler.getCompilerOptions().getNoCheck()) {
             compiler.addInstruction(new cmp(storedRegister, 0));
             compiler.addInstruction(new beq("division_by_zero"));
-            compiler.addInstruction(new mov(ARMRegister.r2, Reg1));
-            compiler.addInstruction(new mov(ARMRegister.r3, storedRegister));
-            compiler.addInstruction(new mov(ARMRegister.r0, ARMRegister.r2));
-            compiler.addInstruction(new mov(ARMRegister.r1, ARMRegister.r3));
-            compiler.addInstruction(new bl("divide"));
+        }
+        compiler.addInstruction(new mov(ARMRegister.r1, storedRegister));
+        compiler.addInstruction(new mov(ARMRegister.r0, Reg1));
+        compiler.getArmFunctionManager().codeGenDivide(compiler, true);
     }
+
 }
@@ -16,6 +16,73 @@ public class Multiply extends AbstractOpArith {
         super(leftOperand, rightOperand);
     }
 
+    // the multiplication of an int by 2^shift is done with shift SHL (-O1)
+    private static final int MAX_SHIFT = 4;
+    private int shift = 0;
+
+    /**
+     * @return true if the multiplication is done with shifts
+     */
+    boolean isShift() {
+        return shift > 0;
+    }
+
+    Integer foldInt(int left, int right) {
+        return intResult((long) left * right);
+    }
+
+    Float foldFloat(float left, float right) {
+        return floatResult(left * right, (double) left * right);
+    }
+
+    @Override
+    AbstractExpr simplify(DecacCompiler compiler) {
+        if (isLiteral(getRightOperand(), 1)) {
+            return getLeftOperand();
+        }
+        if (isLiteral(getLeftOperand(), 1)) {
+            return getRightOperand();
+        }
+        if (getType().isInt() && getLeftOperand() instanceof IntLiteral) {
+            // the literal does not need to be evaluated first
+            AbstractExpr literal = getLeftOperand();
+            setLeftOperand(getRightOperand());
+            setRightOperand(literal);
+        }
+        if (getType().isInt() && getRightOperand() instanceof IntLiteral) {
+            int value = ((IntLiteral) getRightOperand()).getValue();
+            if (value > 0 && Integer.bitCount(value) == 1
+                    && Integer.numberOfTrailingZeros(value) <= MAX_SHIFT) {
+                shift = Integer.numberOfTrailingZeros(value);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    protected void codeGenInst(DecacCompiler compiler) {
+        if (shift == 0) {
+            super.codeGenInst(compiler);
+            return;
+        }
+        getLeftOperand().codeGenInst(compiler);
+        for (int k = 0; k < shift; k++) {
+            compiler.addInstruction(new SHL(Register.R0));
+        }
+    }
+
+    @Override
+    protected void codeGenInstARM(DecacCompiler compiler) {
+        if (shift == 0) {
+            super.codeGenInstARM(compiler);
+            return;
+        }
+        getLeftOperand().codeGenInstARM(compiler);
+        for (int k = 0; k < shift; k++) {
+            compiler.addInstruction(new add(ARMRegister.r0, ARMRegister.r0, ARMRegister.r0));
+        }
+    }
+
     public void codeGenOperations(Register Reg1, Register storedRegister, DecacCompiler compiler){
         compiler.addInstruction(new MUL(Reg1, storedRegister));
         if (getType().isFloat() && !compiler.getCompilerOptions().getNoCheck()) {
@@ -27,13 +94,10 @@ public class Multiply extends AbstractOpArith {
         if(getType().isInt()) {
             compiler.addInstruction(new mul(storedRegister, Reg1, storedRegister));
         } else {
-            compiler.addInstruction(new vmov(ARMRegister.s0, Reg1));
-            compiler.addInstruction(new vmov(ARMRegister.s1, storedRegister));
-            compiler.addARMBlock("        vmul.f32 s0, s0, s1");
+            compiler.addARMBlock("        vmul.f32 " + storedRegister + ", " + Reg1 + ", " + storedRegister);
             if (!compiler.getCompilerOptions().getNoCheck()) {
                 compiler.addInstruction(new bvs("float_arithmetic_overflow"));
             }
-            compiler.addInstruction(new vmov(storedRegister, ARMRegister.s0));
         }
     }
 
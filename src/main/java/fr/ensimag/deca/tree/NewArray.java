@@ -0,0 +1,138 @@
+package fr.ensimag.deca.tree;
+
+import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.context.ClassDefinition;
+import fr.ensimag.deca.context.ContextualError;
+import fr.ensimag.deca.context.EnvironmentExp;
+import fr.ensimag.deca.context.Type;
+import fr.ensimag.deca.tools.IndentPrintStream;
+import fr.ensimag.ima.pseudocode.GPRegister;
+import fr.ensimag.ima.pseudocode.ImmediateInteger;
+import fr.ensimag.ima.pseudocode.Label;
+import fr.ensimag.ima.pseudocode.Register;
+import fr.ensimag.ima.pseudocode.RegisterIndexedOffset;
+import fr.ensimag.ima.pseudocode.RegisterOffset;
+import fr.ensimag.ima.pseudocode.instructions.*;
+import org.apache.commons.lang.Validate;
+
+import java.io.PrintStream;
+
+/**
+ * Creation of an array, i.e. new t[size]: one block of size + 1 words of
+ * the heap, holding the length then the elements, which get the default
+ * value of their type.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class NewArray extends AbstractExpr {
+    private final AbstractIdentifier elementType;
+    private AbstractExpr size;
+
+    /**
+     * @param elementType type of the elements (int[] for new int[size][])
+     * @param size number of elements
+     */
+    public NewArray(AbstractIdentifier elementType, AbstractExpr size) {
+        Validate.notNull(elementType);
+        Validate.notNull(size);
+        this.elementType = elementType;
+        this.size = size;
+    }
+
+    public AbstractExpr getSize() {
+        return size;
+    }
+
+    @Override
+    public Type verifyExpr(DecacCompiler compiler, EnvironmentExp localEnv,
+            ClassDefinition currentClass) throws ContextualError {
+        Type element = elementType.verifyType(compiler);
+        if (element.isVoid()) {
+            throw new ContextualError("(RULE 0.2) Array elements cannot be of type void.",
+                    elementType.getLocation());
+        }
+        elementType.setDefinition(compiler.getEnvTypes().get(elementType.getName()));
+        Type sizeType = size.verifyExpr(compiler, localEnv, currentClass);
+        if (!sizeType.isInt()) {
+            throw new ContextualError(
+                    "(RULE 3.33) Illegal array size type: is " + sizeType.getName() +
+                    ", int required.", size.getLocation());
+        }
+        Identifier arrayType = new Identifier(compiler.getSymbTable().create(
+                elementType.getName().getName() + "[]"));
+        arrayType.setLocation(getLocation());
+        Type currentType = arrayType.verifyType(compiler);
+        setType(currentType);
+        return currentType;
+    }
+
+    /**
+     * The elements are set from the last one. Unless decac -n, the program
+     * stops if the size is negative or the heap full.
+     */
+    @Override
+    protected void codeGenInst(DecacCompiler compiler) {
+        boolean check = !compiler.getCompilerOptions().getNoCheck();
+        size.codeGenInst(compiler);
+        GPRegister length = compiler.getListRegister().getRegister(compiler);
+        compiler.addInstruction(new LOAD(Register.R0, length));
+        if (check) {
+            compiler.addInstruction(new CMP(new ImmediateInteger(0), length));
+            compiler.addInstruction(new BLT(compiler.getErrorManager().getErrorLabel("Negative array size")));
+        }
+        compiler.addInstruction(new ADD(new ImmediateInteger(1), Register.R0));
+        GPRegister array = compiler.getListRegister().getRegister(compiler);
+        compiler.addInstruction(new NEW(Register.R0, array));
+        if (check) {
+            compiler.addInstruction(new BOV(compiler.getErrorManager().getErrorLabel("Heap Overflow")));
+        }
+        compiler.addInstruction(new STORE(length, new RegisterOffset(0, array)));
+        NoInitialization.codeGenDefaultValue(compiler, elementType.getDefinition().getType());
+        Label loop = compiler.newLabel();
+        Label end = compiler.newLabel();
+        compiler.addLabel(loop);
+        compiler.addInstruction(new CMP(new ImmediateInteger(0), length));
+        compiler.addInstruction(new BLE(end));
+        compiler.addInstruction(new STORE(Register.R0, new RegisterIndexedOffset(0, array, length)));
+        compiler.addInstruction(new SUB(new ImmediateInteger(1), length));
+        compiler.addInstruction(new BRA(loop));
+        compiler.addLabel(end);
+        compiler.addInstruction(new LOAD(array, Register.R0));
+        compiler.getListRegister().freeRegister(length, compiler);
+        compiler.getListRegister().freeRegister(array, compiler);
+    }
+
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        size = size.foldExpr(compiler);
+        return this;
+    }
+
+    @Override
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        size = motion.hoist(size);
+    }
+
+    @Override
+    public void decompile(IndentPrintStream s) {
+        // new int[size][] for the arrays of int[]
+        String name = elementType.getName().getName();
+        int base = name.indexOf('[');
+        s.print("new " + (base < 0 ? name : name.substring(0, base)) + "[");
+        size.decompile(s);
+        s.print("]" + (base < 0 ? "" : name.substring(base)));
+    }
+
+    @Override
+    protected void prettyPrintChildren(PrintStream s, String prefix) {
+        elementType.prettyPrint(s, prefix, false);
+        size.prettyPrint(s, prefix, true);
+    }
+
+    @Override
+    protected void iterChildren(TreeFunction f) {
+        elementType.iter(f);
+        size.iter(f);
+    }
+}
@@ -11,6 +11,7 @@ import fr.ensimag.ima.pseudocode.NullOperand;
 import fr.ensimag.ima.pseudocode.Register;
 import fr.ensimag.ima.pseudocode.RegisterOffset;
 import fr.ensimag.ima.pseudocode.instructions.ADDSP;
+import fr.ensimag.ima.pseudocode.ImmediateFloat;
 import fr.ensimag.ima.pseudocode.ImmediateInteger;
 import fr.ensimag.ima.pseudocode.instructions.LOAD;
 import fr.ensimag.ima.pseudocode.instructions.STORE;
@@ -63,15 +64,28 @@ public class NoInitialization extends AbstractInitialization {
     @Override
     public void codeGenDeclVar(DecacCompiler compiler, AbstractIdentifier varName) {
         RegisterOffset r = compiler.getstackTable().get(varName.getName());
-        if(varName.getType().isClassOrNull())
+        if(varName.getType().isClassOrNull() || varName.getType().isArray())
         compiler.addInstruction(new LOAD(new NullOperand(), Register.R0));
         compiler.addInstruction(new STORE(Register.R0, r));
         compiler.incrDeclaredVariables(1);
     }
 
     @Override
-    public void codeGenDeclField(DecacCompiler compiler) {
-        compiler.addInstruction(new LOAD(new ImmediateInteger(0), Register.R0));
+    public void codeGenDeclField(DecacCompiler compiler, Type type) {
+        codeGenDefaultValue(compiler, type);
+    }
+
+    /**
+     * Put in R0 the default value of the type: 0, 0.0, false or null
+     */
+    static void codeGenDefaultValue(DecacCompiler compiler, Type type) {
+        if (type.isClassOrNull() || type.isArray()) {
+            compiler.addInstruction(new LOAD(new NullOperand(), Register.R0));
+        } else if (type.isFloat()) {
+            compiler.addInstruction(new LOAD(new ImmediateFloat(0), Register.R0));
+        } else {
+            compiler.addInstruction(new LOAD(new ImmediateInteger(0), Register.R0));
+        }
     }
 
     protected void codeGenDeclVarARM(DecacCompiler compiler, AbstractIdentifier varName) {
@@ -0,0 +1,188 @@
+package fr.ensimag.deca.tree;
+
+import fr.ensimag.deca.context.Definition;
+import fr.ensimag.deca.context.ExpDefinition;
+import fr.ensimag.deca.context.ParamDefinition;
+import fr.ensimag.deca.context.VariableDefinition;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Forward dataflow analysis of the variables and parameters of a routine (the
+ * main program or a method) which are definitely not null, used to remove the
+ * null checks of the method calls whose object is one of them.
+ *
+ * The state is the set of these variables before the instruction being
+ * analysed. An instruction:
+ * <ul>
+ * <li>removes from it the variables it assigns (anywhere in the instruction,
+ * so that the order of evaluation inside it does not matter);</li>
+ * <li>adds to it the variables it dereferences with a check (object of a
+ * method call, indexed array), since the program stops if they are null,
+ * unless the dereference may be skipped by &amp;&amp; or ||; a field
+ * selection is not checked, so it adds nothing;</li>
+ * <li>adds to it the variable it assigns with new, this or a variable of
+ * the set.</li>
+ * </ul>
+ * The states of the two branches of a conditional are intersected, and a
+ * loop keeps only the variables it never assigns. The fields are not
+ * tracked: a method call may change them.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class NonNullAnalysis {
+    private final Set<ExpDefinition> nonNull;
+    /**
+     * Number of null checks removed, shared by the copies of the analysis
+     */
+    private final int[] nbRemoved;
+
+    public NonNullAnalysis() {
+        this(new HashSet<ExpDefinition>(), new int[1]);
+    }
+
+    private NonNullAnalysis(Set<ExpDefinition> nonNull, int[] nbRemoved) {
+        this.nonNull = nonNull;
+        this.nbRemoved = nbRemoved;
+    }
+
+    /**
+     * @return an analysis in the same state, for another path of the routine
+     */
+    NonNullAnalysis copy() {
+        return new NonNullAnalysis(new HashSet<ExpDefinition>(nonNull), nbRemoved);
+    }
+
+    /**
+     * Join of two paths: keep the variables which are not null on both
+     */
+    void join(NonNullAnalysis other) {
+        nonNull.retainAll(other.nonNull);
+    }
+
+    public int getNbRemoved() {
+        return nbRemoved[0];
+    }
+
+    /**
+     * @return the definition of the expression if it is a variable or a
+     * parameter of the routine, null otherwise
+     */
+    private static ExpDefinition variable(AbstractExpr expr) {
+        if (!(expr instanceof Identifier)) {
+            return null;
+        }
+        Definition def = ((Identifier) expr).getDefinition();
+        if (def instanceof VariableDefinition || def instanceof ParamDefinition) {
+            return (ExpDefinition) def;
+        }
+        return null;
+    }
+
+    /**
+     * @return the variables assigned in the tree
+     */
+    static Set<ExpDefinition> assignedVariables(Tree tree) {
+        final Set<ExpDefinition> assigned = new HashSet<ExpDefinition>();
+        tree.iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                if (t instanceof Assign) {
+                    ExpDefinition def = variable(((Assign) t).getLeftOperand());
+                    if (def != null) {
+                        assigned.add(def);
+                    }
+                }
+            }
+        });
+        return assigned;
+    }
+
+    /**
+     * @param excluded variables which may have changed
+     * @return true if the value of the expression is definitely not null
+     */
+    private boolean isNonNull(AbstractExpr expr, Set<ExpDefinition> excluded) {
+        if (expr instanceof This || expr instanceof New || expr instanceof NewArray) {
+            return true;
+        }
+        if (expr instanceof Cast) {
+            return isNonNull(((Cast) expr).getExpression(), excluded);
+        }
+        if (expr instanceof Assign) {
+            return isNonNull(((Assign) expr).getRightOperand(), excluded);
+        }
+        ExpDefinition def = variable(expr);
+        return def != null && nonNull.contains(def) && !excluded.contains(def);
+    }
+
+    /**
+     * Analyse an instruction, or an expression evaluated by an instruction
+     * (condition of a conditional or of a loop, initialization), marking
+     * the method calls whose object is not null
+     */
+    void analyzeInstruction(Tree tree) {
+        final Set<ExpDefinition> assigned = assignedVariables(tree);
+        final List<AbstractExpr> dereferenced = new ArrayList<AbstractExpr>();
+        final boolean[] conditional = {false};
+        tree.iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                if (t instanceof MethodCall) {
+                    MethodCall call = (MethodCall) t;
+                    if (isNonNull(call.getCallingClass(), assigned)) {
+                        call.setReceiverNonNull();
+                        nbRemoved[0]++;
+                    }
+                    dereferenced.add(call.getCallingClass());
+                } else if (t instanceof ArrayElement) {
+                    dereferenced.add(((ArrayElement) t).getArray());
+                } else if (t instanceof And || t instanceof Or) {
+                    conditional[0] = true;
+                }
+            }
+        });
+        ExpDefinition target = null;
+        if (tree instanceof Assign && isNonNull(((Assign) tree).getRightOperand(), assigned)) {
+            target = variable(((Assign) tree).getLeftOperand());
+        }
+        nonNull.removeAll(assigned);
+        if (!conditional[0]) {
+            for (AbstractExpr expr : dereferenced) {
+                ExpDefinition def = variable(expr);
+                if (def != null && !assigned.contains(def)) {
+                    nonNull.add(def);
+                }
+            }
+        }
+        if (target != null) {
+            nonNull.add(target);
+        }
+    }
+
+    /**
+     * Analyse the declaration of a variable, with its initialization
+     * (null if none)
+     */
+    void analyzeDeclaration(ExpDefinition variable, AbstractExpr initialization) {
+        nonNull.remove(variable);
+        if (initialization != null) {
+            analyzeInstruction(initialization);
+            if (isNonNull(initialization, new HashSet<ExpDefinition>())) {
+                nonNull.add(variable);
+            }
+        }
+    }
+
+    /**
+     * Start the analysis of a loop, whose state at each iteration keeps only
+     * the variables it does not assign
+     */
+    void enterLoop(Tree loop) {
+        nonNull.removeAll(assignedVariables(loop));
+    }
+}
@@ -3,6 +3,7 @@ package fr.ensimag.deca.tree;
 import fr.ensimag.deca.context.*;
 import fr.ensimag.ima.pseudocode.ARMRegister;
 import fr.ensimag.ima.pseudocode.GPRegister;
+import fr.ensimag.ima.pseudocode.Label;
 import fr.ensimag.ima.pseudocode.Register;
 import fr.ensimag.ima.pseudocode.instructions.CMP;
 import fr.ensimag.ima.pseudocode.instructions.SEQ;
@@ -40,8 +41,31 @@ public class Not extends AbstractUnaryExpr {
         compiler.addInstruction(new sub(ARMRegister.r0, ARMRegister.r2, storedRegister));
     }
 
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        super.foldExpr(compiler);
+        if (getOperand() instanceof BooleanLiteral) {
+            return foldedLiteral(!((BooleanLiteral) getOperand()).getValue());
+        }
+        if (getOperand() instanceof Not) {
+            return ((Not) getOperand()).getOperand();
+        }
+        return this;
+    }
+
+    @Override
+    protected void codeGenCondition(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        getOperand().codeGenCondition(compiler, !jumpIfTrue, target);
+    }
+
+    @Override
+    protected void codeGenConditionARM(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        getOperand().codeGenConditionARM(compiler, !jumpIfTrue, target);
+    }
+
     @Override
     protected String getOperatorName() {
         return "!";
     }
+
 }
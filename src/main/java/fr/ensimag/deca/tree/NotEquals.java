@@ -1,5 +1,12 @@
 package fr.ensimag.deca.tree;
 
+import fr.ensimag.ima.pseudocode.ARMUnaryInstructionString;
+import fr.ensimag.ima.pseudocode.BranchInstruction;
+import fr.ensimag.ima.pseudocode.Label;
+import fr.ensimag.ima.pseudocode.instructions.BEQ;
+import fr.ensimag.ima.pseudocode.instructions.BNE;
+import fr.ensimag.ima.pseudocode.instructionsARM.beq;
+import fr.ensimag.ima.pseudocode.instructionsARM.bne;
 import fr.ensimag.ima.pseudocode.Register;
 import fr.ensimag.ima.pseudocode.ARMRegister;
 import fr.ensimag.ima.pseudocode.instructions.SNE;
@@ -34,4 +41,23 @@ public class NotEquals extends AbstractOpExactCmp {
         super.codeGenOperationsARM(Reg1, storedRegister, compiler);
         compiler.addInstruction(new movne(ARMRegister.r0, 1));
     }
+
+    boolean foldComparison(boolean lower, boolean equal) {
+        return !equal;
+    }
+
+    BranchInstruction getBranch(boolean jumpIfTrue, Label target){
+        if (jumpIfTrue) {
+            return new BNE(target);
+        }
+        return new BEQ(target);
+    }
+
+    ARMUnaryInstructionString getBranchARM(boolean jumpIfTrue, Label target){
+        if (jumpIfTrue) {
+            return new bne(target.toString());
+        }
+        return new beq(target.toString());
+    }
+
 }
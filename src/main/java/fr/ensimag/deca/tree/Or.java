@@ -1,16 +1,7 @@
 package fr.ensimag.deca.tree;
 
-import fr.ensimag.ima.pseudocode.Register;
-import fr.ensimag.ima.pseudocode.ARMRegister;
 import fr.ensimag.deca.DecacCompiler;
-import fr.ensimag.ima.pseudocode.instructions.ADD;
-import fr.ensimag.ima.pseudocode.instructions.CMP;
-import fr.ensimag.ima.pseudocode.instructions.SNE;
-import fr.ensimag.ima.pseudocode.ImmediateInteger;
-import fr.ensimag.ima.pseudocode.instructionsARM.add;
-import fr.ensimag.ima.pseudocode.instructionsARM.cmp;
-import fr.ensimag.ima.pseudocode.instructionsARM.mov;
-import fr.ensimag.ima.pseudocode.instructionsARM.movgt;
+import fr.ensimag.ima.pseudocode.Label;
 
 /**
  *
@@ -28,19 +19,44 @@ public class Or extends AbstractOpBool {
         return "||";
     }
 
-    public void codeGenOperations(Register Reg1, Register storedRegister, DecacCompiler compiler){
-        compiler.addInstruction(new ADD(Reg1, storedRegister));
-        compiler.addInstruction(new CMP(new ImmediateInteger(0), storedRegister));
-        compiler.addInstruction(new SNE(compiler.getListRegister().R0));
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        super.foldExpr(compiler);
+        if (getLeftOperand() instanceof BooleanLiteral) {
+            // true || b is true without evaluating b, false || b is b
+            return ((BooleanLiteral) getLeftOperand()).getValue() ? getLeftOperand() : getRightOperand();
+        }
+        if (getRightOperand() instanceof BooleanLiteral
+                && !((BooleanLiteral) getRightOperand()).getValue()) {
+            return getLeftOperand();
+        }
+        return this;
     }
 
-    public void codeGenOperationsARM(ARMRegister Reg1, ARMRegister storedRegister, DecacCompiler compiler){
-        compiler.addInstruction(new mov(ARMRegister.r3, 0));
-        compiler.addInstruction(new add(storedRegister, Reg1, storedRegister));
-        compiler.addInstruction(new cmp(storedRegister, 0));
-        compiler.addInstruction(new movgt(ARMRegister.r3, 1));
-        compiler.addInstruction(new mov(ARMRegister.r0, ARMRegister.r3));
+    @Override
+    protected void codeGenCondition(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        if (jumpIfTrue) {
+            getLeftOperand().codeGenCondition(compiler, true, target);
+            getRightOperand().codeGenCondition(compiler, true, target);
+        } else {
+            Label endOr = compiler.newLabel();
+            getLeftOperand().codeGenCondition(compiler, true, endOr);
+            getRightOperand().codeGenCondition(compiler, false, target);
+            compiler.addLabel(endOr);
+        }
+    }
 
+    @Override
+    protected void codeGenConditionARM(DecacCompiler compiler, boolean jumpIfTrue, Label target) {
+        if (jumpIfTrue) {
+            getLeftOperand().codeGenConditionARM(compiler, true, target);
+            getRightOperand().codeGenConditionARM(compiler, true, target);
+        } else {
+            Label endOr = compiler.newLabel();
+            getLeftOperand().codeGenConditionARM(compiler, true, endOr);
+            getRightOperand().codeGenConditionARM(compiler, false, target);
+            compiler.addLabel(endOr);
+        }
     }
 
 }
@@ -1,10 +1,15 @@
 package fr.ensimag.deca.tree;
 
 import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.ima.pseudocode.GPRegister;
+import fr.ensimag.ima.pseudocode.ImmediateFloat;
 import fr.ensimag.ima.pseudocode.Register;
 import fr.ensimag.ima.pseudocode.ARMRegister;
 import fr.ensimag.ima.pseudocode.instructions.ADD;
 import fr.ensimag.ima.pseudocode.instructions.BOV;
+import fr.ensimag.ima.pseudocode.instructions.FMA;
+import fr.ensimag.ima.pseudocode.instructions.LOAD;
+import fr.ensimag.ima.pseudocode.instructions.MUL;
 import fr.ensimag.ima.pseudocode.instructionsARM.*;
 
 /**
@@ -16,6 +21,76 @@ public class Plus extends AbstractOpArith {
         super(leftOperand, rightOperand);
     }
 
+    /**
+     * @return the multiplication of floats which is an operand of this
+     * addition, to compute both with FMA (decac --fma), null if there is none
+     */
+    private Multiply fusedProduct(DecacCompiler compiler) {
+        if (!getType().isFloat() || !compiler.getCompilerOptions().getFusedMultiplyAdd()) {
+            return null;
+        }
+        if (getLeftOperand() instanceof Multiply) {
+            return (Multiply) getLeftOperand();
+        }
+        if (getRightOperand() instanceof Multiply) {
+            return (Multiply) getRightOperand();
+        }
+        return null;
+    }
+
+    /**
+     * a * b + c is computed by FMA a, R0 with b in R0 and c in R1, i.e. with
+     * one rounding and one overflow check. The operands are evaluated in the
+     * order of the source, except c when it has no side effect: it is then
+     * evaluated first, so that it does not have to save b.
+     */
+    @Override
+    protected void codeGenInst(DecacCompiler compiler) {
+        Multiply product = fusedProduct(compiler);
+        if (product == null) {
+            super.codeGenInst(compiler);
+            return;
+        }
+        AbstractExpr addend = product == getLeftOperand() ? getRightOperand() : getLeftOperand();
+        boolean addendFirst = product == getRightOperand()
+                || !DeadCodeElimination.hasSideEffects(addend);
+        GPRegister addendRegister = null;
+        if (addendFirst && !(addend instanceof FloatLiteral)) {
+            addend.codeGenInst(compiler);
+            addendRegister = compiler.getListRegister().getRegister(compiler);
+            compiler.addInstruction(new LOAD(Register.R0, addendRegister));
+        }
+        product.getLeftOperand().codeGenInst(compiler);
+        GPRegister factor = compiler.getListRegister().getRegister(compiler);
+        compiler.addInstruction(new LOAD(Register.R0, factor));
+        product.getRightOperand().codeGenInst(compiler);
+        if (addendRegister != null) {
+            compiler.addInstruction(new LOAD(addendRegister, Register.R1));
+            compiler.getListRegister().freeRegister(addendRegister, compiler);
+        } else if (addendFirst) {
+            compiler.addInstruction(new LOAD(new ImmediateFloat(((FloatLiteral) addend).getValue()), Register.R1));
+        } else {
+            // R1 is used by the evaluation of some expressions
+            GPRegister otherFactor = compiler.getListRegister().getRegister(compiler);
+            compiler.addInstruction(new LOAD(Register.R0, otherFactor));
+            addend.codeGenInst(compiler);
+            compiler.addInstruction(new LOAD(Register.R0, Register.R1));
+            compiler.addInstruction(new LOAD(otherFactor, Register.R0));
+            compiler.getListRegister().freeRegister(otherFactor, compiler);
+        }
+        if (!compiler.getCompilerOptions().getNoCheck()) {
+            // ima does not clear the overflow flag in FMA: an int overflow
+            // before it would be taken for its own, MUL clears it and does
+            // not change c
+            compiler.addInstruction(new MUL(new ImmediateFloat(1.0f), Register.R1));
+        }
+        compiler.addInstruction(new FMA(factor, Register.R0));
+        compiler.getListRegister().freeRegister(factor, compiler);
+        if (!compiler.getCompilerOptions().getNoCheck()) {
+            compiler.addInstruction(new BOV(compiler.getErrorManager().getErrorLabel("Float arithmetic overflow")));
+        }
+    }
+
     public void codeGenOperations(Register Reg1, Register storedRegister, DecacCompiler compiler){
         compiler.addInstruction(new ADD(Reg1, storedRegister));
         if (getType().isFloat() && !compiler.getCompilerOptions().getNoCheck()) {
@@ -27,18 +102,36 @@ public class Plus extends AbstractOpArith {
         if(getType().isInt()) {
             compiler.addInstruction(new add(storedRegister, Reg1, storedRegister));
         } else {
-            compiler.addInstruction(new vmov(ARMRegister.s0, Reg1));
-            compiler.addInstruction(new vmov(ARMRegister.s1, storedRegister));
-            compiler.addARMBlock("        vadd.f32 s0, s0, s1");
+            compiler.addARMBlock("        vadd.f32 " + storedRegister + ", " + Reg1 + ", " + storedRegister);
             if (!compiler.getCompilerOptions().getNoCheck()) {
                 compiler.addInstruction(new bvs("float_arithmetic_overflow"));
             }
-            compiler.addInstruction(new vmov(storedRegister, ARMRegister.s0));
         }
     }
 
+    Integer foldInt(int left, int right) {
+        return intResult((long) left + right);
+    }
+
+    Float foldFloat(float left, float right) {
+        return floatResult(left + right, (double) left + right);
+    }
+
+    @Override
+    AbstractExpr simplify(DecacCompiler compiler) {
+        // x + 0.0 is not x when x is -0.0: only ints are simplified
+        if (isIntLiteral(getRightOperand(), 0)) {
+            return getLeftOperand();
+        }
+        if (isIntLiteral(getLeftOperand(), 0)) {
+            return getRightOperand();
+        }
+        return this;
+    }
+
     @Override
     protected String getOperatorName() {
         return "+";
     }
+
 }
@@ -25,8 +25,6 @@ public class Println extends AbstractPrint {
         compiler.addInstruction(new WNL());
     }
 
-    private static boolean armAlreadyLabel = false;
-
     @Override
     protected void codeGenInstARM(DecacCompiler compiler) {
         super.codeGenInstARM(compiler);
@@ -39,4 +37,5 @@ public class Println extends AbstractPrint {
     String getSuffix() {
         return "ln";
     }
+
 }
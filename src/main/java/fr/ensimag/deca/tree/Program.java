@@ -1,6 +1,8 @@
 package fr.ensimag.deca.tree;
 
+import fr.ensimag.deca.CompilerOptions;
 import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.deca.codegen.ARMFrame;
 import fr.ensimag.deca.context.*;
 import fr.ensimag.deca.tools.IndentPrintStream;
 import fr.ensimag.deca.tools.SymbolTable;
@@ -8,6 +10,9 @@ import fr.ensimag.ima.pseudocode.ARMRegister;
 import fr.ensimag.ima.pseudocode.instructions.HALT;
 import fr.ensimag.ima.pseudocode.instructionsARM.b;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import org.apache.commons.lang.Validate;
 import org.apache.log4j.Logger;
 import fr.ensimag.ima.pseudocode.Register;
@@ -51,6 +56,139 @@ public class Program extends AbstractProgram {
         LOG.debug("verify program: end");
     }
 
+    @Override
+    public void optimizeProgram(DecacCompiler compiler) {
+        if (compiler.getCompilerOptions().getOptimization() >= 1) {
+            LOG.debug("constant folding: start");
+            foldAll(compiler);
+            LOG.debug("constant folding: end");
+            eliminateDeadCode();
+            devirtualize();
+            eliminateNullChecks();
+        }
+        if (compiler.getCompilerOptions().getOptimization() >= 2) {
+            inlineMethods();
+        }
+        if (compiler.getCompilerOptions().getOptimization() >= 1) {
+            eliminateTailCalls();
+            hoistLoopInvariants(compiler.getCompilerOptions().getNoCheck());
+        }
+    }
+
+    /**
+     * Make direct the method calls which always run the same declaration of
+     * the method (class hierarchy analysis)
+     */
+    private void devirtualize() {
+        final ClassHierarchy hierarchy = classes.getHierarchy();
+        final int[] nbCalls = {0, 0};
+        iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                if (t instanceof MethodCall) {
+                    nbCalls[0]++;
+                    if (((MethodCall) t).devirtualize(hierarchy)) {
+                        nbCalls[1]++;
+                    }
+                }
+            }
+        });
+        LOG.info("Devirtualization: " + nbCalls[1] + " of " + nbCalls[0]
+                + " method calls made direct");
+    }
+
+    /**
+     * Remove the instructions which are never run or whose result is never
+     * used, in the main program and in the body of each method
+     */
+    private void eliminateDeadCode() {
+        final int[] nbRemoved = {main.eliminateDeadCode()};
+        classes.iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                if (t instanceof DeclMethod) {
+                    nbRemoved[0] += ((DeclMethod) t).getBody().eliminateDeadCode();
+                }
+            }
+        });
+        LOG.info("Dead code elimination: " + nbRemoved[0] + " instructions removed");
+    }
+
+    /**
+     * Remove the null checks of the method calls whose object is known not to
+     * be null, in the main program and in the body of each method
+     */
+    private void eliminateNullChecks() {
+        final int[] nbRemoved = {main.eliminateNullChecks()};
+        classes.iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                if (t instanceof DeclMethod) {
+                    nbRemoved[0] += ((DeclMethod) t).getBody().eliminateNullChecks();
+                }
+            }
+        });
+        LOG.info("Null checks: " + nbRemoved[0] + " removed");
+    }
+
+    /**
+     * Replace the calls whose result is returned by jumps, after the inlining
+     * which removes the calls of the small methods
+     */
+    private void eliminateTailCalls() {
+        int nbReplaced = 0;
+        for (AbstractDeclClass c : classes.getList()) {
+            nbReplaced += ((DeclClass) c).eliminateTailCalls();
+        }
+        LOG.info("Tail calls: " + nbReplaced + " calls replaced by jumps");
+    }
+
+    /**
+     * Inline the small methods at their direct call sites
+     */
+    private void inlineMethods() {
+        final Map<ClassDefinition, DeclClass> declarations = classes.getDeclarations();
+        final int[] nbInlined = {0};
+        iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                if (t instanceof MethodCall && ((MethodCall) t).inline(declarations)) {
+                    nbInlined[0]++;
+                }
+            }
+        });
+        LOG.info("Inlining: " + nbInlined[0] + " method calls inlined");
+    }
+
+    /**
+     * Compute the loop invariant expressions before their loop, and replace
+     * the products of the induction variables by additions, the outer loops
+     * first
+     */
+    private void hoistLoopInvariants(boolean noCheck) {
+        final List<While> loops = new ArrayList<While>();
+        iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                if (t instanceof While) {
+                    loops.add((While) t);
+                }
+            }
+        });
+        int nbHoisted = 0;
+        int nbReduced = 0;
+        int nbShifted = 0;
+        for (While loop : loops) {
+            LoopInvariantMotion motion = loop.hoistInvariants(noCheck);
+            nbHoisted += motion.getHoisted().size();
+            nbReduced += motion.getNbReduced();
+            nbShifted += motion.getNbShifted();
+        }
+        LOG.info("Loop invariant code motion: " + nbHoisted + " expressions computed before their loop");
+        LOG.info("Strength reduction: " + nbReduced + " products replaced by additions, "
+                + nbShifted + " divisions done with shifts");
+    }
+
     @Override
     public void codeGenProgram(DecacCompiler compiler) {
         //creation of the register bench with a given number of registers
@@ -61,9 +199,11 @@ public class Program extends AbstractProgram {
         // after analysis of the program, we generate the TSTO instruction
         int d1 = compiler.getCodeAnalyzer().getNeededStackSize();
         int d2 = compiler.getCodeAnalyzer().getNbDeclaredVariables();
+        // the global words also hold the values spilled in main
+        int globals = Math.max(d2, compiler.getstackTable().getNextOffset() - 1);
         if (!compiler.getCompilerOptions().getArmBool()) {
-            compiler.getErrorManager().setTstoArg(d1);
-            compiler.getErrorManager().setAddspArg(d2);
+            compiler.getErrorManager().setTstoArg(d1 - d2 + globals);
+            compiler.getErrorManager().setAddspArg(globals);
 
             compiler.getErrorManager().addTstoCheck(compiler);
             compiler.getErrorManager().genCodeErrorManager(compiler);
@@ -72,6 +212,11 @@ public class Program extends AbstractProgram {
         compiler.getListRegister().freeAllRegisters();
     }
     public void codeGenProgramARM(DecacCompiler compiler) {
+        if (!compiler.getCompilerOptions().getArmArch().equals(CompilerOptions.DEFAULT_ARM_ARCH)) {
+            // the architecture given to the assembler is the default one
+            compiler.addARMBlock(".arch " + compiler.getCompilerOptions().getArmArch());
+            compiler.addARMBlock(".fpu vfp");
+        }
         compiler.addARMBlock(".text");
         compiler.addARMBlock(".global main");
         compiler.addARMBlock(".extern printf");
@@ -79,6 +224,8 @@ public class Program extends AbstractProgram {
         compiler.addARMComment("ARM program");
         //creation of ARM Register
         compiler.setListRegisterARM(new ARMRegister());
+        compiler.setListFloatRegisterARM(ARMRegister.newFloatBench());
+        compiler.setArmFrame(new ARMFrame());
         main.codeGenMainARM(compiler);
         compiler.getArmFunctionManager().genCodeFunctionManager(compiler);
         compiler.getArmErrorManager().genCodeErrorManagerARM(compiler);
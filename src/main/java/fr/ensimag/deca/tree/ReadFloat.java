@@ -48,18 +48,14 @@ public class ReadFloat extends AbstractReadExpr {
     public void codeGenInstARM(DecacCompiler compiler) {
         compiler.addInstruction(new ldr(ARMRegister.r0, "=flottant"));
         compiler.addInstruction(new ldr(ARMRegister.r1, "=tmpfloat"));
-        compiler.addInstruction(new bl("scanf"));
+        compiler.getArmFunctionManager().codeGenCall(compiler, "scanf");
         compiler.addInstruction(new ldr(ARMRegister.r1, "=tmpfloat"));
-        compiler.addInstruction(new ldr(ARMRegister.r0, "[r1]"));
+        compiler.addInstruction(new vldr(ARMRegister.s0, "[r1]"));
     }
 
     protected void codeGenPrintARM(DecacCompiler compiler, boolean printHex){
         codeGenInstARM(compiler);
-        compiler.addInstruction(new vmov(ARMRegister.s0, ARMRegister.r0));
-        compiler.addARMBlock("        vcvt.f64.f32 d0, s0");
-        compiler.addInstruction(new vmov(ARMRegister.r2, ARMRegister.r3, ARMRegister.d0));
-        compiler.addInstruction(new ldr(ARMRegister.r0, "=flottant"));
-        compiler.addInstruction(new bl("printf"));
+        codeGenPrintFloatARM(compiler, ARMRegister.s0);
     }
 
     @Override
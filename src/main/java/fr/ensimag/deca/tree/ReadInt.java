@@ -44,7 +44,7 @@ public class ReadInt extends AbstractReadExpr {
     public void codeGenInstARM(DecacCompiler compiler) {
         compiler.addInstruction(new ldr(ARMRegister.r0, "=int"));
         compiler.addInstruction(new ldr(ARMRegister.r1, "=tmpint"));
-        compiler.addInstruction(new bl("scanf"));
+        compiler.getArmFunctionManager().codeGenCall(compiler, "scanf");
         compiler.addInstruction(new ldr(ARMRegister.r1, "=tmpint"));
         compiler.addInstruction(new ldr(ARMRegister.r0, "[r1]"));
     }
@@ -10,6 +10,11 @@ import java.io.PrintStream;
 
 public class Return extends AbstractInst {
     private AbstractExpr returnExpr;
+    /**
+     * True when the returned value is a call generated as a jump (see
+     * MethodCall.makeTailCall)
+     */
+    private boolean tailCall = false;
 
     public Return(AbstractExpr returnExpr) {
         this.returnExpr = returnExpr;
@@ -31,8 +36,35 @@ public class Return extends AbstractInst {
     @Override
     public boolean checkLast() { return true; }
 
+    @Override
+    protected boolean completesNormally() {
+        return false;
+    }
+
+    @Override
+    protected boolean removeDeadStores(DeadCodeElimination analysis) {
+        analysis.analyzeReturn(returnExpr);
+        return false;
+    }
+
+    /**
+     * Replace the returned call by a jump, if the method can give its frame
+     * to the method called
+     *
+     * @return true if the call is replaced
+     */
+    boolean eliminateTailCall(ClassDefinition currentClass, DeclMethod method) {
+        tailCall = returnExpr instanceof MethodCall
+                && ((MethodCall) returnExpr).makeTailCall(currentClass, method);
+        return tailCall;
+    }
+
     @Override
     protected void codeGenInst(DecacCompiler compiler) {
+        if (tailCall) {
+            ((MethodCall) returnExpr).codeGenTailCall(compiler);
+            return;
+        }
         returnExpr.codeGenInst(compiler);
         compiler.addInstruction(new BRA(compiler.getstackTable().getEnfOfCurrentMethod()));
     }
@@ -54,6 +86,16 @@ public class Return extends AbstractInst {
         returnExpr.prettyPrint(s, prefix, true);
     }
 
+    @Override
+    protected void foldChildren(DecacCompiler compiler) {
+        returnExpr = returnExpr.foldExpr(compiler);
+    }
+
+    @Override
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        returnExpr = motion.hoist(returnExpr);
+    }
+
     @Override
     protected void iterChildren(TreeFunction f) {
         returnExpr.iter(f);
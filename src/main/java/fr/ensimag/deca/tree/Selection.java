@@ -33,7 +33,7 @@ public class Selection extends AbstractLValue {
      * is mapped to a class instance. Then checks whether the selected
      * identifier is part of the current environment. Finally, if the selected
      * identifier is mapped to a protected field, checks whether the field is
-     * visible in the current scope.
+     * visible in the current scope. The only field of an array is its length.
      *
      * @param compiler  (contains the "env_types" attribute)
      * @param localEnv
@@ -49,7 +49,14 @@ public class Selection extends AbstractLValue {
     @Override
     public Type verifyExpr(DecacCompiler compiler, EnvironmentExp localEnv,
             ClassDefinition currentClass) throws ContextualError {
-        ClassType currentType = selectingClass.verifyExpr(compiler, localEnv, currentClass).asClassType(
+        Type selectingType = selectingClass.verifyExpr(compiler, localEnv, currentClass);
+        if (selectingType.isArray()) {
+            Type lengthType = selectedField.verifyExpr(
+                    compiler, ((ArrayType) selectingType).getMembers(), currentClass);
+            setType(lengthType);
+            return lengthType;
+        }
+        ClassType currentType = selectingType.asClassType(
                 "(RULE 3.65) Field selection applied to expression of non-class type: (\u001B[31m" +
                 selectingClass.getType().toString() + "\u001B[0m)." + selectedField.toString(),
                 getLocation());
@@ -95,6 +102,17 @@ public class Selection extends AbstractLValue {
         selectedField.prettyPrint(s, prefix, true);
     }
 
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        selectingClass = selectingClass.foldExpr(compiler);
+        return this;
+    }
+
+    @Override
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        selectingClass.hoistChildren(motion);
+    }
+
     @Override
     protected void iterChildren(TreeFunction f) {
         selectingClass.iter(f);
@@ -103,12 +121,7 @@ public class Selection extends AbstractLValue {
 
     protected void codeGenPrint(DecacCompiler compiler, boolean printHex) {
         //on recupère l'adresse de l'objet dans R0
-        if(selectingClass instanceof Cast || selectingClass instanceof This || selectingClass instanceof Selection){
-            selectingClass.codeGenInst(compiler);
-        }else{
-            RegisterOffset r = compiler.getstackTable().get(compiler.getSymbTable().get(((Identifier)selectingClass).getName().getName()));
-            compiler.addInstruction(new LOAD(r, Register.R0));
-        }
+        selectingClass.codeGenInst(compiler);
         compiler.addInstruction(new LOAD(new RegisterOffset( selectedField.getFieldDefinition().getIndex() , Register.R0), Register.R1));
         if(selectedField.getType().isInt()){
             compiler.addInstruction(new WINT());
@@ -125,21 +138,8 @@ public class Selection extends AbstractLValue {
 
 
     protected void codeGenInst(DecacCompiler compiler) {
-        RegisterOffset r;
-        RegisterOffset offset;
-        if(selectingClass instanceof Cast || selectingClass instanceof This){
-            selectingClass.codeGenInst(compiler);
-            offset = new RegisterOffset(selectedField.getFieldDefinition().getIndex(), Register.R0);
-        }else{
-            if(selectingClass instanceof Identifier){
-                r = compiler.getstackTable().get(compiler.getSymbTable().get(((Identifier)selectingClass).getName().getName()));
-                compiler.addInstruction(new LOAD(r, Register.R1));
-            }else{
-                selectingClass.codeGenInst(compiler);
-                compiler.addInstruction(new LOAD(Register.R0, Register.R1));
-            }
-            offset = new RegisterOffset(selectedField.getFieldDefinition().getIndex(), Register.R1);
-        }
-        compiler.addInstruction(new LOAD(offset, Register.R0));
+        selectingClass.codeGenInst(compiler);
+        compiler.addInstruction(new LOAD(
+                new RegisterOffset(selectedField.getFieldDefinition().getIndex(), Register.R0), Register.R0));
     }
 }
@@ -17,9 +17,6 @@ import org.apache.commons.lang.Validate;
  * @date 01/01/2022
  */
 public class StringLiteral extends AbstractStringLiteral {
-    private static int i;
-    private static int printCounter=0;
-
     @Override
     public String getValue() {
         return value;
@@ -64,8 +61,7 @@ public class StringLiteral extends AbstractStringLiteral {
 
     @Override
     protected void codeGenPrintARM(DecacCompiler compiler, boolean printHex) {
-        String msgName = "msg"+printCounter;
-        printCounter++;
+        String msgName = compiler.newARMStringName();
         compiler.addARMBlock(".data");
         compiler.addARMBlock(msgName + ": " + ".asciz " + "\"" + value + "\"");  //label with name of variable 
         compiler.addARMBlock(".text");
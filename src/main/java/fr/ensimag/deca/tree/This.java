@@ -6,11 +6,8 @@ import fr.ensimag.deca.context.ContextualError;
 import fr.ensimag.deca.context.EnvironmentExp;
 import fr.ensimag.deca.context.Type;
 import fr.ensimag.deca.tools.IndentPrintStream;
-import fr.ensimag.ima.pseudocode.NullOperand;
 import fr.ensimag.ima.pseudocode.Register;
 import fr.ensimag.ima.pseudocode.RegisterOffset;
-import fr.ensimag.ima.pseudocode.instructions.BEQ;
-import fr.ensimag.ima.pseudocode.instructions.CMP;
 import fr.ensimag.ima.pseudocode.instructions.LOAD;
 
 import java.io.PrintStream;
@@ -59,11 +56,8 @@ public class This extends AbstractExpr {
 
     @Override
     protected void codeGenInst(DecacCompiler compiler) {
-        compiler.addInstruction(new LOAD(new RegisterOffset(-2, Register.LB), Register.R0));
-        compiler.addInstruction(new CMP(new NullOperand(), Register.R0));
-        if (!compiler.getCompilerOptions().getNoCheck()) {
-            compiler.addInstruction(new BEQ(compiler.getErrorManager().getErrorLabel("Null dereferencing")));
-        }
+        // the object of a method is checked by the call, it is never null
+        compiler.addInstruction(new LOAD(compiler.getstackTable().getThis(), Register.R0));
     }
 
     @Override
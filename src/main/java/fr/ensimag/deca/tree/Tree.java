@@ -244,6 +244,37 @@ public abstract class Tree {
         return true;
     }
 
+    /**
+     * Replace the expressions which are direct children of this node by
+     * their folded version (see AbstractExpr.foldExpr). Expressions fold
+     * their own operands, so only the other nodes holding expressions
+     * override this.
+     */
+    protected void foldChildren(DecacCompiler compiler) {
+        // Nothing by default.
+    }
+
+    /**
+     * Replace the loop invariant expressions of the subtree which are
+     * children of this node (see LoopInvariantMotion.hoist), and look for
+     * them in the other children. Only the nodes with children override it.
+     */
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        // Nothing by default.
+    }
+
+    /**
+     * Fold the constant expressions of the whole tree (decac -O1).
+     */
+    public void foldAll(final DecacCompiler compiler) {
+        iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                t.foldChildren(compiler);
+            }
+        });
+    }
+
     /**
      * Check that the location has been correctly set for this tree.
      *
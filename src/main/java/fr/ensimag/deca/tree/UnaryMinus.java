@@ -30,6 +30,20 @@ public class UnaryMinus extends AbstractUnaryExpr {
         return resType;
     }
 
+    @Override
+    protected AbstractExpr foldExpr(DecacCompiler compiler) {
+        super.foldExpr(compiler);
+        if (getOperand() instanceof IntLiteral) {
+            int value = ((IntLiteral) getOperand()).getValue();
+            if (value != Integer.MIN_VALUE) {
+                return foldedLiteral(-value);
+            }
+        } else if (getOperand() instanceof FloatLiteral) {
+            return foldedLiteral(-((FloatLiteral) getOperand()).getValue());
+        }
+        return this;
+    }
+
     public void codeGenOperations(GPRegister storedRegister, DecacCompiler compiler){
         compiler.addInstruction(new OPP(storedRegister, compiler.getListRegister().R1));
         compiler.addInstruction(new LOAD(compiler.getListRegister().R1, storedRegister));
@@ -37,9 +51,8 @@ public class UnaryMinus extends AbstractUnaryExpr {
 
     public void codeGenOperationsARM(ARMRegister storedRegister, DecacCompiler compiler){
         if (getType().isFloat()) {
-            compiler.addInstruction(new vmov(ARMRegister.s0, storedRegister));
+            // the operand is in s0
             compiler.addARMBlock("        vneg.f32 s0, s0");
-            compiler.addInstruction(new vmov(storedRegister,ARMRegister.s0));
         } else {
             compiler.addInstruction(new neg(ARMRegister.r1, storedRegister));
             compiler.addInstruction(new mov(storedRegister, ARMRegister.r1));
@@ -70,11 +83,7 @@ public class UnaryMinus extends AbstractUnaryExpr {
         codeGenInstARM(compiler);
 
         if (super.getType().isFloat()) {
-            compiler.addInstruction(new vmov(ARMRegister.s0, ARMRegister.r0));
-            compiler.addARMBlock("        vcvt.f64.f32 d0, s0");
-            compiler.addInstruction(new vmov(ARMRegister.r2, ARMRegister.r3, ARMRegister.d0));
-            compiler.addInstruction(new ldr(ARMRegister.r0, "=flottant"));
-            compiler.addInstruction(new bl("printf"));
+            codeGenPrintFloatARM(compiler, ARMRegister.s0);
         }
         else {
             compiler.addInstruction(new mov(ARMRegister.r1, ARMRegister.r0));
@@ -6,17 +6,14 @@ import fr.ensimag.deca.context.ClassDefinition;
 import fr.ensimag.deca.context.ContextualError;
 import fr.ensimag.deca.context.EnvironmentExp;
 import fr.ensimag.deca.tools.IndentPrintStream;
-import fr.ensimag.ima.pseudocode.ARMRegister;
 import fr.ensimag.ima.pseudocode.Label;
-import fr.ensimag.ima.pseudocode.ImmediateInteger;
-import fr.ensimag.ima.pseudocode.instructions.BNE;
 import fr.ensimag.ima.pseudocode.instructions.BRA;
-import fr.ensimag.ima.pseudocode.instructions.CMP;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import fr.ensimag.ima.pseudocode.instructionsARM.b;
-import fr.ensimag.ima.pseudocode.instructionsARM.bne;
-import fr.ensimag.ima.pseudocode.instructionsARM.cmp;
 import org.apache.commons.lang.Validate;
 
 /**
@@ -27,6 +24,15 @@ import org.apache.commons.lang.Validate;
 public class While extends AbstractInst {
     private AbstractExpr condition;
     private ListInst body;
+    /**
+     * Values computed before the loop (see LoopInvariantMotion)
+     */
+    private List<LoopInvariant> invariants = new ArrayList<LoopInvariant>();
+    /**
+     * Products of the induction variable kept in a word (see
+     * LoopInvariantMotion)
+     */
+    private List<InductionProduct> products = new ArrayList<InductionProduct>();
 
     public AbstractExpr getCondition() {
         return condition;
@@ -43,14 +49,85 @@ public class While extends AbstractInst {
         this.body = body;
     }
 
+    /**
+     * Replace the expressions of the loop whose value does not change by
+     * values computed before it, and the products of its induction variable
+     * by additions (see LoopInvariantMotion). The inner loops are processed
+     * after this one.
+     *
+     * @param noCheck true with decac -n
+     * @return the motion, which counts the expressions replaced
+     */
+    public LoopInvariantMotion hoistInvariants(boolean noCheck) {
+        LoopInvariantMotion motion = new LoopInvariantMotion(this, noCheck);
+        condition = motion.hoist(condition);
+        body.hoistChildren(motion);
+        invariants.addAll(motion.getHoisted());
+        products.addAll(motion.getAccumulators());
+        return motion;
+    }
+
+    /**
+     * @return the number of words of the routine used by the invariants and
+     * the induction products of the loops of the tree
+     */
+    public static int countInvariantSlots(Tree tree) {
+        final int[] nbSlots = {0};
+        tree.iter(new TreeFunction() {
+            @Override
+            public void apply(Tree t) {
+                if (t instanceof While) {
+                    nbSlots[0] += ((While) t).invariants.size() + ((While) t).products.size();
+                }
+            }
+        });
+        return nbSlots[0];
+    }
+
+    /**
+     * With -O1, the invariants and the induction products are computed first
+     * (preheader), then the loop is rotated: the condition is tested once
+     * before it, and at the end of each iteration to jump back to the start
+     * of the body, so that an iteration runs one branch instead of two. The
+     * products are incremented at the end of the body, after the step.
+     */
     @Override
     protected void codeGenInst(DecacCompiler compiler) {
-        Label beginWhile = new Label();
-        Label endWhile = new Label();
+        Label endWhile = compiler.newLabel();
+        if (compiler.getCompilerOptions().getOptimization() >= 1) {
+            boolean preheader = compiler.getstackTable().hasInlineSlots();
+            if (preheader) {
+                for (LoopInvariant invariant : invariants) {
+                    invariant.codeGenPreheader(compiler);
+                }
+                for (InductionProduct product : products) {
+                    product.codeGenPreheader(compiler);
+                }
+            }
+            Label beginBody = compiler.newLabel();
+            condition.codeGenCondition(compiler, false, endWhile);
+            compiler.addLabel(beginBody);
+            body.codeGenListInst(compiler);
+            if (preheader) {
+                for (InductionProduct product : products) {
+                    product.codeGenIncrement(compiler);
+                }
+            }
+            condition.codeGenCondition(compiler, true, beginBody);
+            compiler.addLabel(endWhile);
+            if (preheader) {
+                for (LoopInvariant invariant : invariants) {
+                    invariant.freeSlot();
+                }
+                for (InductionProduct product : products) {
+                    product.freeSlot();
+                }
+            }
+            return;
+        }
+        Label beginWhile = compiler.newLabel();
         compiler.addLabel(beginWhile);
-        condition.codeGenInst(compiler);
-        compiler.addInstruction(new CMP(new ImmediateInteger(1), compiler.getListRegister().R0));
-        compiler.addInstruction(new BNE(endWhile));
+        condition.codeGenCondition(compiler, false, endWhile);
         body.codeGenListInst(compiler);
         compiler.addInstruction(new BRA(beginWhile));
         compiler.addLabel(endWhile);
@@ -58,12 +135,20 @@ public class While extends AbstractInst {
 
     @Override
     protected void codeGenInstARM(DecacCompiler compiler) {
-        Label beginWhile = new Label();
-        Label endWhile = new Label();
+        Label endWhile = compiler.newLabel();
+        if (compiler.getCompilerOptions().getOptimization() >= 1) {
+            // rotated loop, see codeGenInst
+            Label beginBody = compiler.newLabel();
+            condition.codeGenConditionARM(compiler, false, endWhile);
+            compiler.addLabel(beginBody);
+            body.codeGenListInstARM(compiler);
+            condition.codeGenConditionARM(compiler, true, beginBody);
+            compiler.addLabel(endWhile);
+            return;
+        }
+        Label beginWhile = compiler.newLabel();
         compiler.addLabel(beginWhile);
-        condition.codeGenInstARM(compiler);
-        compiler.addInstruction(new cmp(ARMRegister.r0, 1));
-        compiler.addInstruction(new bne(endWhile.toString()));
+        condition.codeGenConditionARM(compiler, false, endWhile);
         body.codeGenListInstARM(compiler);
         compiler.addInstruction(new b(beginWhile.toString()));
         compiler.addLabel(endWhile);
@@ -88,6 +173,17 @@ public class While extends AbstractInst {
         s.print("}");
     }
 
+    @Override
+    protected void foldChildren(DecacCompiler compiler) {
+        condition = condition.foldExpr(compiler);
+    }
+
+    @Override
+    protected void hoistChildren(LoopInvariantMotion motion) {
+        condition = motion.hoist(condition);
+        body.hoistChildren(motion);
+    }
+
     @Override
     protected void iterChildren(TreeFunction f) {
         condition.iter(f);
@@ -100,4 +196,52 @@ public class While extends AbstractInst {
         body.prettyPrint(s, prefix, true);
     }
 
+    @Override
+    protected boolean completesNormally() {
+        // there is no break: a loop whose condition is true is only left by a return
+        return !(condition instanceof BooleanLiteral) || !((BooleanLiteral) condition).getValue();
+    }
+
+    @Override
+    protected List<AbstractInst> removeUnreachable(DeadCodeElimination analysis) {
+        if (condition instanceof BooleanLiteral && !((BooleanLiteral) condition).getValue()) {
+            analysis.remove(this, "condition always false");
+            return Collections.emptyList();
+        }
+        body.removeUnreachable(analysis);
+        return Collections.<AbstractInst>singletonList(this);
+    }
+
+    /**
+     * The variables live before the condition are computed by iterating over
+     * the body until they do not change, then the dead stores of the body
+     * are removed.
+     */
+    @Override
+    protected boolean removeDeadStores(DeadCodeElimination analysis) {
+        DeadCodeElimination head = analysis.copy(false);
+        head.addUses(condition);
+        while (true) {
+            DeadCodeElimination next = head.copy(false);
+            body.removeDeadStores(next);
+            next.join(analysis);
+            next.addUses(condition);
+            if (next.sameLiveness(head)) {
+                break;
+            }
+            head = next;
+        }
+        body.removeDeadStores(head.copy(analysis.isRemoving()));
+        analysis.join(head);
+        return false;
+    }
+
+    @Override
+    protected void analyzeNonNull(NonNullAnalysis analysis) {
+        analysis.enterLoop(this);
+        analysis.analyzeInstruction(condition);
+        // the loop is left after the condition
+        body.analyzeNonNull(analysis.copy());
+    }
+
 }
@@ -1,8 +1,7 @@
 package fr.ensimag.ima.pseudocode;
 
 import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-import java.util.LinkedList;
+import java.io.PrintWriter;
 
 import fr.ensimag.ima.pseudocode.ARMLine;
 
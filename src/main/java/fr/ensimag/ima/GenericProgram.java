@@ -1,8 +1,17 @@
 package fr.ensimag.ima.pseudocode;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-import java.util.LinkedList;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Abstract representation of an IMA program, i.e. set of Lines.
@@ -11,7 +20,21 @@ import java.util.LinkedList;
  * @date 01/01/2022
  */
 public abstract class GenericProgram {
-    protected final LinkedList<AbstractLine> lines = new LinkedList<AbstractLine>();
+    /**
+     * Size of the buffer through which the program is written to a file
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Lines of the program, in a growable array
+     */
+    protected final ArrayList<AbstractLine> lines = new ArrayList<AbstractLine>(1024);
+
+    /**
+     * Lines displayed before the other ones (see addFirstInstruction), kept
+     * apart so that adding one does not shift the whole program
+     */
+    protected final ArrayList<AbstractLine> prologue = new ArrayList<AbstractLine>(4);
 
     public void add(AbstractLine line) {
         lines.add(line);
@@ -32,8 +55,29 @@ public abstract class GenericProgram {
         lines.add(new Line(null, i, s));
     }
     
+    /**
+     * Add an instruction before all the other ones, including those
+     * previously added by this method. These lines are not counted by size
+     * and getLines, whose indexes stay valid.
+     */
     public void addFirstInstruction(Instruction i) {
-        lines.addFirst(new Line(i));
+        prologue.add(0, new Line(i));
+    }
+
+    /**
+     * @return the number of lines of the program, apart from the ones added
+     * by addFirstInstruction
+     */
+    public int size() {
+        return lines.size();
+    }
+
+    /**
+     * @return the lines of the program from the given index to the end, as a
+     * view through which lines can be replaced, inserted or removed
+     */
+    public List<AbstractLine> getLines(int start) {
+        return lines.subList(start, lines.size());
     }
 
     /**
@@ -42,13 +86,17 @@ public abstract class GenericProgram {
      * used anymore after calling this function.
      */
     public void append(IMAProgram p) {
+        lines.addAll(p.prologue);
         lines.addAll(p.lines);
     }
 
     /**
      * Display the program in a textual form readable by IMA to stream s.
      */
-    public void display(PrintStream s) {
+    public void display(PrintWriter s) {
+        for (AbstractLine l: prologue) {
+            l.display(s);
+        }
         for (AbstractLine l: lines) {
             l.display(s);
         }
@@ -58,10 +106,33 @@ public abstract class GenericProgram {
      * Return the program in a textual form readable by IMA as a String.
      */
     public String display() {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        PrintStream s = new PrintStream(out);
+        StringWriter out = new StringWriter();
+        PrintWriter s = new PrintWriter(out);
         display(s);
+        s.flush();
         return out.toString();
     }
 
+    /**
+     * Write the program to the given file, which is created or replaced, in
+     * a single pass through a buffered writer on a channel of the file. The
+     * characters the default charset cannot encode are written as '?', as a
+     * PrintStream does.
+     */
+    public void write(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                PrintWriter s = new PrintWriter(new BufferedWriter(Channels.newWriter(
+                        channel, Charset.defaultCharset().newEncoder()
+                                .onMalformedInput(CodingErrorAction.REPLACE)
+                                .onUnmappableCharacter(CodingErrorAction.REPLACE), -1),
+                        WRITE_BUFFER_SIZE))) {
+            display(s);
+            s.flush();
+            if (s.checkError()) {
+                throw new IOException("Failed to write " + file);
+            }
+        }
+    }
+
 }
@@ -4,8 +4,7 @@ import fr.ensimag.ima.pseudocode.instructions.TSTO;
 import fr.ensimag.ima.pseudocode.instructions.BOV;
 
 import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-import java.util.LinkedList;
+import java.io.PrintWriter;
 
 
 /**
@@ -1,6 +1,6 @@
 package fr.ensimag.ima.pseudocode;
 
-import java.io.PrintStream;
+import java.io.PrintWriter;
 import org.apache.commons.lang.Validate;
 
 /**
@@ -23,7 +23,7 @@ public class ARMBinaryInstructionStringToReg extends Instruction {
     }
 
     @Override
-    void displayOperands(PrintStream s) {
+    void displayOperands(PrintWriter s) {
         s.print(" ");
         s.print(operand1);
         s.print(", ");
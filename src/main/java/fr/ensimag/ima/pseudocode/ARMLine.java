@@ -3,7 +3,7 @@ package fr.ensimag.ima.pseudocode;
 import fr.ensimag.ima.pseudocode.ARMProgram;
 import fr.ensimag.ima.pseudocode.Line;
 
-import java.io.PrintStream;
+import java.io.PrintWriter;
 
 
 /**
@@ -17,7 +17,7 @@ public class ARMLine extends Line {
         super(comment);}
 
     @Override
-    void display(PrintStream s) {
+    void display(PrintWriter s) {
         boolean tab = false;
         if (label != null) {
             s.print(label);
@@ -1,6 +1,11 @@
 package fr.ensimag.ima.pseudocode;
 
 import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.ima.pseudocode.instructionsARM.pop;
+import fr.ensimag.ima.pseudocode.instructionsARM.push;
+
+import java.util.ArrayList;
+import java.util.List;
 
 
 
@@ -14,21 +19,44 @@ import fr.ensimag.deca.DecacCompiler;
 public class ARMRegister extends DVal {
     private String name; 
     /**
-     * number of given registers (12 by default in ARM32bit)
+     * number of given registers (11 by default in ARM32bit, r11 being the
+     * frame pointer), the last ones being taken out by reserveRegister
+     */
+    private int maxIndex;
+
+    /**
+     * number of registers the bench keeps for the temporaries
+     */
+    private static final int MIN_TEMPORARIES = 2;
+
+    /**
+     * r (or s) registers handed out by this bench, owned by one compilation
+     * only
+     */
+    private final ARMGPRegister[] bank;
+    private final String letter;
+
+    /**
+     * index of the register the bench never gives (r7), -1 if none
+     */
+    private final int skippedIndex;
+
+    /**
+     * first register of the bench
      */
-    private static int maxIndex = 12;
+    private final int firstIndex;
     
     /**
      * current index for a supposedly available register
     */
-    private int currentIndex = 4;
+    private int currentIndex;
     
     
     /**
     * public constructor to access them more easily
     */
     public ARMRegister() {
-        this(12);
+        this(11);
     }
     
     /**
@@ -38,22 +66,48 @@ public class ARMRegister extends DVal {
         this("ARM Register Bench", maxIndex);
     }
     
+    /**
+     * Bench of the VFP registers s2 to s15 for the float temporaries, s0
+     * and s1 being scratch registers like r0 to r3. A call does not keep
+     * them (see getUsedRegisters).
+     */
+    public static ARMRegister newFloatBench() {
+        return new ARMRegister("ARM VFP Register Bench", "s", 2, 16);
+    }
+
+    /**
+     * Single register operand (fp, sp, lr...), not used as a bench
+     */
     protected ARMRegister(String name) {
-        this(name, 12);
+        this.name = name;
+        this.maxIndex = 0;
+        this.bank = null;
+        this.letter = null;
+        this.skippedIndex = -1;
+        this.firstIndex = 0;
     }
     
     protected ARMRegister(String name, int maxIndex) {
+        this(name, "r", 4, maxIndex);
+    }
+
+    private ARMRegister(String name, String letter, int firstIndex, int maxIndex) {
         this.name = name;
         this.maxIndex = maxIndex;
+        this.bank = initRegisters(letter, maxIndex);
+        this.letter = letter;
+        this.skippedIndex = letter.equals("r") ? 7 : -1;
+        this.firstIndex = firstIndex;
+        this.currentIndex = firstIndex;
     }
 
     public String debugDisplay() {
         String s = name + "[";
         for (int k = 0; k < maxIndex-1; k++) {
-            s += "r" + Integer.toString(k) + ":" + r[k].debugDisplay() + " | ";
+            s += letter + Integer.toString(k) + ":" + bank[k].debugDisplay() + " | ";
         }
-        s += "r" + Integer.toString(maxIndex-1) + ":" + 
-                r[maxIndex-1].debugDisplay() + "]";
+        s += letter + Integer.toString(maxIndex-1) + ":" + 
+                bank[maxIndex-1].debugDisplay() + "]";
         
         return s;
     }
@@ -90,19 +144,19 @@ public class ARMRegister extends DVal {
      * General Purpose Registers. Array is private because Java arrays cannot be
      * made immutable, use getR(i) to access it.
      */
-    protected static final ARMGPRegister[] r = initRegisters();
+    protected static final ARMGPRegister[] r = initRegisters("r", 12);
     
     /**
      * General Purpose s Registers. Array is private because Java arrays cannot be
      * made immutable, use getS(i) to access it.
      */
-    protected static final ARMGPRegister[] s = initRegisters("s");
+    protected static final ARMGPRegister[] s = initRegisters("s", 32);
 
     /**
      * General Purpose d Registers. Array is private because Java arrays cannot be
      * made immutable, use getD(i) to access it.
      */
-    protected static final ARMGPRegister[] d = initRegisters("d");
+    protected static final ARMGPRegister[] d = initRegisters("d", 16);
     
     /**
      * General Purpose Registers
@@ -172,17 +226,9 @@ public class ARMRegister extends DVal {
     public static final ARMGPRegister r7 = r[7];
 
 
-    static private ARMGPRegister[] initRegisters() {
-        ARMGPRegister [] res = new ARMGPRegister[maxIndex];
-        for (int i = 0; i < maxIndex; i++) {
-            res[i] = new ARMGPRegister("r" + i, i);
-        }
-        return res;
-    }
-
-    static private ARMGPRegister[] initRegisters(String letter) {
-        ARMGPRegister [] res = new ARMGPRegister[maxIndex];
-        for (int i = 0; i < maxIndex; i++) {
+    static private ARMGPRegister[] initRegisters(String letter, int nbRegisters) {
+        ARMGPRegister [] res = new ARMGPRegister[nbRegisters];
+        for (int i = 0; i < nbRegisters; i++) {
             res[i] = new ARMGPRegister(letter + i, i);
         }
         return res;
@@ -197,29 +243,85 @@ public class ARMRegister extends DVal {
         
         for (int k = currentIndex; k < maxIndex; k++) {
             // if the register is available
-            if (r[k].available()) {
+            if (bank[k].available()) {
                 // and different from r7 (for simplication)
-                if (k != 7) {
+                if (k != skippedIndex) {
                     // we make it unavailable and say that we do not need to push it
-                    r[k].use();
+                    bank[k].use();
                     // we update the index for a supposedly free register
                     currentIndex = k+1;
-                    return r[k];
+                    return bank[k];
 		}
             }
         }
         
         // if we arrive here, no available register was found
         // in this case, we take the last register and push it
-        // before using it
-        ARMGPRegister pushedRegister = r[maxIndex-1]; // for now
+        // before using it (with another register, to keep sp aligned on 8
+        // bytes)
+        ARMGPRegister pushedRegister = bank[lastIndex()];
         assert !(pushedRegister.available());
         pushedRegister.incrNbPushOnRegister(1);
         
-        //compiler.addInstruction(new push(pushedRegister));
+        if (letter.equals("s")) {
+            compiler.addARMBlock("        vpush " + pairOf(pushedRegister));
+        } else {
+            compiler.addInstruction(new push(pushedRegister, ip));
+        }
         compiler.incrPushCount(1);
         
-        return r[maxIndex-1];
+        return pushedRegister;
+    }
+
+    /**
+     * @return the index of the last register of the bench
+     */
+    private int lastIndex() {
+        return maxIndex - 1 == skippedIndex ? maxIndex - 2 : maxIndex - 1;
+    }
+
+    /**
+     * @return the list of the s register and of the one before it
+     */
+    private String pairOf(ARMGPRegister register) {
+        return "{" + bank[register.getNumber() - 1] + "-" + register + "}";
+    }
+
+    /**
+     * @return the registers of the bench in use, in increasing order
+     */
+    public List<ARMGPRegister> getUsedRegisters() {
+        List<ARMGPRegister> used = new ArrayList<ARMGPRegister>();
+        for (int k = firstIndex; k < maxIndex; k++) {
+            if (k != skippedIndex && !bank[k].available()) {
+                used.add(bank[k]);
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Take the last register out of the bench, for a variable kept in it
+     * while the bench gives the other ones. Must be called before the bench
+     * gives any register.
+     *
+     * @return the register, null if the bench would keep less than
+     * MIN_TEMPORARIES registers
+     */
+    public ARMGPRegister reserveRegister() {
+        int nbTemporaries = 0;
+        for (int k = currentIndex; k < maxIndex - 1; k++) {
+            if (k != skippedIndex) {
+                nbTemporaries++;
+            }
+        }
+        if (nbTemporaries < MIN_TEMPORARIES) {
+            return null;
+        }
+        maxIndex--;
+        assert bank[maxIndex].available();
+        bank[maxIndex].use();
+        return bank[maxIndex];
     }
     
     /**
@@ -232,7 +334,11 @@ public class ARMRegister extends DVal {
             // if values were pushed onto it
             if (usedRegister.getNbPushOnRegister() > 0) {
                 // we Pop the register and decrease the number of Push on it
-                // compiler.addInstruction(new pop(usedRegister));
+                if (letter.equals("s")) {
+                    compiler.addARMBlock("        vpop " + pairOf(usedRegister));
+                } else {
+                    compiler.addInstruction(new pop(usedRegister, ip));
+                }
                 compiler.incrPopCount(1);
                 usedRegister.decrNbPushOnRegister(1);
             
@@ -260,18 +366,18 @@ public class ARMRegister extends DVal {
      */
     public ARMGPRegister getRegisterWithoutCompiler(){
         for (int k = currentIndex; k < maxIndex; k++) {
-            if (r[k].available()) {
-                if (k != 7) {
-                    r[k].use();
+            if (bank[k].available()) {
+                if (k != skippedIndex) {
+                    bank[k].use();
                     currentIndex = k+1;
-		    return r[k];
+		    return bank[k];
 		}
             }
         }
-        ARMGPRegister pushedRegister = r[maxIndex-1]; // for now
+        ARMGPRegister pushedRegister = bank[lastIndex()];
         assert !(pushedRegister.available());
         pushedRegister.incrNbPushOnRegister(1);
-        return r[maxIndex-1];
+        return pushedRegister;
     }
     
     /**
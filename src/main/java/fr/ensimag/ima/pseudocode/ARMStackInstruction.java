@@ -1,6 +1,6 @@
 package fr.ensimag.ima.pseudocode;
 
-import java.io.PrintStream;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -13,8 +13,12 @@ public class ARMStackInstruction extends Instruction {
         return operandtable.get(i);
     }
 
+    public int getNbOperands() {
+        return operandtable.size();
+    }
+
     @Override
-    void displayOperands(PrintStream s) {
+    void displayOperands(PrintWriter s) {
         s.print(" {");
         s.print(getOperand(0));
         for (int i = 1; i < operandtable.size(); i++) {
@@ -1,6 +1,6 @@
 package fr.ensimag.ima.pseudocode;
 
-import java.io.PrintStream;
+import java.io.PrintWriter;
 import org.apache.commons.lang.Validate;
 
 /**
@@ -26,7 +26,7 @@ public class ARMTernaryInstruction extends Instruction {
     }
 
     @Override
-    void displayOperands(PrintStream s) {
+    void displayOperands(PrintWriter s) {
         s.print(" ");
         s.print(operand1);
         s.print(", ");
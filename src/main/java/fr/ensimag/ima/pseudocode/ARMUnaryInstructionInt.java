@@ -1,6 +1,6 @@
 package fr.ensimag.ima.pseudocode;
 
-import java.io.PrintStream;
+import java.io.PrintWriter;
 
 /**
  * Instruction with a single operand.
@@ -19,7 +19,7 @@ public class ARMUnaryInstructionInt extends UnaryInstruction {
     }
 
     @Override
-    void displayOperands(PrintStream s) {
+    void displayOperands(PrintWriter s) {
         s.print(" ");
         s.print(super.operand.toString().replace("\"", ""));
     }
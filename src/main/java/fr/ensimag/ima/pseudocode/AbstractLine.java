@@ -1,6 +1,6 @@
 package fr.ensimag.ima.pseudocode;
 
-import java.io.PrintStream;
+import java.io.PrintWriter;
 
 /**
  * Line of a program
@@ -9,5 +9,5 @@ import java.io.PrintStream;
  * @date 01/01/2022
  */
 public abstract class AbstractLine {
-    abstract void display(PrintStream s);
+    abstract void display(PrintWriter s);
 }
@@ -1,6 +1,6 @@
 package fr.ensimag.ima.pseudocode;
 
-import java.io.PrintStream;
+import java.io.PrintWriter;
 import org.apache.commons.lang.Validate;
 
 /**
@@ -20,8 +20,18 @@ public class BinaryInstruction extends Instruction {
         return operand2;
     }
 
+    /**
+     * Replace the operands, e.g. a virtual register by a physical one
+     */
+    public void setOperands(Operand op1, Operand op2) {
+        Validate.notNull(op1);
+        Validate.notNull(op2);
+        this.operand1 = op1;
+        this.operand2 = op2;
+    }
+
     @Override
-    void displayOperands(PrintStream s) {
+    void displayOperands(PrintWriter s) {
         s.print(" ");
         s.print(operand1);
         s.print(", ");
@@ -2,24 +2,24 @@ package fr.ensimag.ima.pseudocode;
 
 /**
  * General Purpose Register operand (R0, R1, ... R15).
- * 
+ *
  * @author Ensimag
  * @date 01/01/2022
  */
 public class GPRegister extends Register {
-    
+
     private int number;
 
     /**
-     * Available if not used for saving a result
+     * Virtual registers are given by a register bench to the code generation,
+     * the register allocator replaces them by physical ones (or by memory)
      */
-    private boolean availability = true;
-    
+    private final boolean virtual;
+
     /**
-     * Accessed by push if the register was used in a PUSH expression
-     * With this, we can keep track of the future POP
+     * Available if not used for saving a result
      */
-    private int nbPushOnRegister = 0;
+    private boolean availability = true;
 
     /**
      * @return the number of the register, e.g. 12 for R12.
@@ -27,21 +27,15 @@ public class GPRegister extends Register {
     public int getNumber() {
         return number;
     }
-    
-    public void incrNbPushOnRegister(int nbPush) {
-        nbPushOnRegister += nbPush;
-    }
-    
-    public void decrNbPushOnRegister(int nbPop) {
-        nbPushOnRegister -= nbPop;
-    }
-    
-    public int getNbPushOnRegister() {
-        return nbPushOnRegister;
+
+    /**
+     * @return true if the register is a virtual register, which has to be
+     * replaced by the register allocator before the program is displayed
+     */
+    public boolean isVirtual() {
+        return virtual;
     }
-    
 
-    
     /**
      * @return true if the register is available for use, else false
      */
@@ -49,10 +43,15 @@ public class GPRegister extends Register {
         return availability;
     }
 
-    
+
     GPRegister(String name, int number) {
+        this(name, number, false);
+    }
+
+    GPRegister(String name, int number, boolean virtual) {
         super(name);
         this.number = number;
+        this.virtual = virtual;
         this.availability = true;
     }
 
@@ -71,26 +70,10 @@ public class GPRegister extends Register {
     }
 
     public String debugDisplay(){
-        String s;
         if (availability) {
-            // available
-            s = " [ ]";
-        } else {        
-            if (nbPushOnRegister < 0) {
-                s = " [X]"; // abnormal state
-            } else {
-                // used with a certain number of PUSH on it
-                s = " [" + Integer.toString(nbPushOnRegister) + "]";
-            }
+            return " [ ]";
+        } else {
+            return " [X]";
         }
-        
-        return s;
-    }    
-
-    // Try not to abuse this function and use the incr and decr methods
-    // We only want to use this with 0
-    public void setNbPushOnRegister(int number) {
-        assert(number == 0);
-        nbPushOnRegister = 0;
     }
 }
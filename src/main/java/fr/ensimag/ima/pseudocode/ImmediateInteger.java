@@ -14,6 +14,10 @@ public class ImmediateInteger extends DVal {
         this.value = value;
     }
 
+    public int getValue() {
+        return value;
+    }
+
     @Override
     public String toString() {
         return "#" + value;
@@ -1,6 +1,6 @@
 package fr.ensimag.ima.pseudocode;
 
-import java.io.PrintStream;
+import java.io.PrintWriter;
 
 /**
  * Portion of IMA assembly code to be dumped verbatim into the
@@ -18,7 +18,7 @@ public class InlinePortion extends AbstractLine {
     }
     
     @Override
-    void display(PrintStream s) {
+    void display(PrintWriter s) {
         s.println(asmCode);
     }
     
@@ -1,6 +1,6 @@
 package fr.ensimag.ima.pseudocode;
 
-import java.io.PrintStream;
+import java.io.PrintWriter;
 
 /**
  * IMA instruction.
@@ -12,8 +12,8 @@ public abstract class Instruction {
     String getName() {
         return this.getClass().getSimpleName();
     }
-    abstract void displayOperands(PrintStream s);
-    void display(PrintStream s) {
+    abstract void displayOperands(PrintWriter s);
+    void display(PrintWriter s) {
         s.print(getName());
         displayOperands(s);
     }
@@ -1,6 +1,6 @@
 package fr.ensimag.ima.pseudocode;
 
-import java.io.PrintStream;
+import java.io.PrintWriter;
 
 /**
  * Line of code in an IMA program.
@@ -49,7 +49,7 @@ public class Line extends AbstractLine {
     protected Label label;
 
     @Override
-    void display(PrintStream s) {
+    void display(PrintWriter s) {
         boolean tab = false;
         if (label != null) {
             s.print(label);
@@ -1,6 +1,6 @@
 package fr.ensimag.ima.pseudocode;
 
-import java.io.PrintStream;
+import java.io.PrintWriter;
 
 /**
  * Instruction without operand.
@@ -10,7 +10,7 @@ import java.io.PrintStream;
  */
 public abstract class NullaryInstruction extends Instruction {
     @Override
-    void displayOperands(PrintStream s) {
+    void displayOperands(PrintWriter s) {
         // no operand
     }
 }
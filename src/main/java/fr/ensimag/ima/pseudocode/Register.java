@@ -1,10 +1,9 @@
 package fr.ensimag.ima.pseudocode;
 
 import fr.ensimag.deca.DecacCompiler;
-import fr.ensimag.ima.pseudocode.instructions.PUSH;
-import fr.ensimag.ima.pseudocode.instructions.POP;
 
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -18,7 +17,14 @@ public class Register extends DVal {
     /**
      * number of given registers (16 by default)
      */
-    private static int maxIndex = 16;
+    private int maxIndex;
+
+    /**
+     * Virtual registers handed out by this bench. Each bench owns its own
+     * GPRegister objects so that two compilations running in parallel
+     * (decac -P) never share them.
+     */
+    private final List<GPRegister> virtualRegisters;
     
     /**
     * public constructor to access them more easily
@@ -34,24 +40,27 @@ public class Register extends DVal {
         this("Register Bench", maxIndex);
     }
     
+    /**
+     * Single register operand (GB, LB, SP, Rk), not used as a bench
+     */
     protected Register(String name) {
-        this(name, 16);
+        this.name = name;
+        this.maxIndex = 0;
+        this.virtualRegisters = null;
     }
     
     protected Register(String name, int maxIndex) {
         this.name = name;
         this.maxIndex = maxIndex;
+        this.virtualRegisters = new ArrayList<GPRegister>();
     }
 
     public String debugDisplay() {
         String s = name + "[";
-        for (int k = 0; k < maxIndex-1; k++) {
-            s += "R" + Integer.toString(k) + ":" + R[k].debugDisplay() + " | ";
+        for (GPRegister register : virtualRegisters) {
+            s += register + ":" + register.debugDisplay() + " | ";
         }
-        s += "R" + Integer.toString(maxIndex-1) + ":" + 
-                R[maxIndex-1].debugDisplay() + "]";
-        
-        return s;
+        return s + "R2-R" + Integer.toString(maxIndex-1) + "]";
     }
 
     @Override
@@ -75,7 +84,7 @@ public class Register extends DVal {
      * General Purpose Registers. Array is private because Java arrays cannot be
      * made immutable, use getR(i) to access it.
      */
-    protected static final GPRegister[] R = initRegisters();
+    protected static final GPRegister[] R = initRegisters(16);
     /**
      * General Purpose Registers
      */
@@ -91,9 +100,9 @@ public class Register extends DVal {
      */
     public static final GPRegister R1 = R[1];
 
-    static private GPRegister[] initRegisters() {
-        GPRegister [] res = new GPRegister[maxIndex];
-        for (int i = 0; i < maxIndex; i++) {
+    static private GPRegister[] initRegisters(int nbRegisters) {
+        GPRegister [] res = new GPRegister[nbRegisters];
+        for (int i = 0; i < nbRegisters; i++) {
             res[i] = new GPRegister("R" + i, i);
         }
         return res;
@@ -101,92 +110,49 @@ public class Register extends DVal {
 
     
     /**
-     * @return a register. This register is taken as the first available
-     * register. If no such register is found, we return the last one
-     * and indicate that it will need to be pushed.
+     * @return the total number of registers given by the option -r, the
+     * register allocator using R2 to R(n-1)
      */
-    public GPRegister getRegister(DecacCompiler compiler){
-        
-        // we try to find an available register
-        GPRegister targetRegister;
-        
-        for (int k = 2; k < maxIndex; k++) {
-            if (R[k].available()) {
-                R[k].use();
-                return R[k];
-            }
-        }
-        
-        // If we get here, it means all the registers (but R0 and R1)
-        // contain a saved value
-        // In this case we will need to use a PUSH instruction on the register
-        // we target
-        // However, our targetting method is taking the register with the
-        // minimum number of PUSH on it
-        
-        // we want the register with the least number of push
-        int minimumPush = R[2].getNbPushOnRegister();
-        targetRegister = R[2];
-        
-        for (int j = 2; j < maxIndex; j++) {
-            int nbPush = R[j].getNbPushOnRegister();
-            if (nbPush < minimumPush) {
-                minimumPush = nbPush;
-                targetRegister = R[j];
-            }
-        }
-        
-        // at this point, targetRegister contains the register with the
-        // least amount of Push on it
-        assert !(targetRegister.available());
-        targetRegister.incrNbPushOnRegister(1);
-        compiler.incrPushCount(1);
-        compiler.addInstruction(new PUSH(targetRegister));
+    public int getNbRegisters() {
+        return maxIndex;
+    }
 
-        return targetRegister;
+    /**
+     * @return a new virtual register. The code generation can use as many
+     * of them as it wants: they are replaced by physical registers, or by
+     * memory when there are not enough of them, by the register allocator
+     * (see fr.ensimag.deca.codegen.RegisterAllocator).
+     */
+    public GPRegister getRegister(DecacCompiler compiler){
+        GPRegister register = new GPRegister("V" + virtualRegisters.size(),
+                virtualRegisters.size(), true);
+        register.use();
+        virtualRegisters.add(register);
+        return register;
     }
-    
+
     /**
-     * free register given in argument and set its needPush field to false.
+     * Mark a register given by getRegister as no longer used by the code
+     * generation.
      */
     public void freeRegister(GPRegister usedRegister, DecacCompiler compiler) {
-        // if register is free, do nothing
-        // else
-        if (!usedRegister.available()) {
-            // if values were pushed onto it
-            if (usedRegister.getNbPushOnRegister() > 0) {
-                // we POP the register and decrease the number of PUSH on it
-                compiler.addInstruction(new POP(usedRegister));
-                compiler.incrPopCount(1);
-                usedRegister.decrNbPushOnRegister(1);
-            
-            } else {
-                // we do not need to pop and just make it free
-                usedRegister.free();
-
-            }
-        }
+        usedRegister.free();
     }
-    
+
     /**
      * Reinitializes the registers in terms of charge.
-     * It is useful to clean the static field R
+     * It is useful to clean the registers of the bench
      */
     public void freeAllRegisters() {
-        for (int k = 2; k < maxIndex; k++) {
-            R[k].setNbPushOnRegister(0);
-            R[k].free();
+        for (GPRegister register : virtualRegisters) {
+            register.free();
         }
     }
-    
+
     /**
-     * Use all registers and put their PUSH counts to 0.
-     * This method will be used by the code generation for functions
+     * @return the number of virtual registers given by the bench
      */
-    public void useAllRegisters() {
-        for (int k = 2; k < maxIndex; k++) {
-            R[k].use();
-            R[k].setNbPushOnRegister(0);
-        }
+    public int getNbVirtualRegisters() {
+        return virtualRegisters.size();
     }
-}
\ No newline at end of file
+}
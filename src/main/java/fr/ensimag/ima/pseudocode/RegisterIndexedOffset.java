@@ -0,0 +1,39 @@
+package fr.ensimag.ima.pseudocode;
+
+/**
+ * Operand representing an indexed register indirection with offset, e.g.
+ * 1(R3, R4): the word at 1 + V[R3] + V[R4], R3 holding an address and R4 an
+ * integer.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class RegisterIndexedOffset extends DAddr {
+    private final int offset;
+    private final Register register;
+    private final Register index;
+
+    public RegisterIndexedOffset(int offset, Register register, Register index) {
+        super();
+        this.offset = offset;
+        this.register = register;
+        this.index = index;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public Register getRegister() {
+        return register;
+    }
+
+    public Register getIndex() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return offset + "(" + register + ", " + index + ")";
+    }
+}
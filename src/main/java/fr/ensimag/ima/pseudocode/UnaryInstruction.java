@@ -1,6 +1,6 @@
 package fr.ensimag.ima.pseudocode;
 
-import java.io.PrintStream;
+import java.io.PrintWriter;
 import org.apache.commons.lang.Validate;
 
 /**
@@ -13,7 +13,7 @@ public abstract class UnaryInstruction extends Instruction {
     protected Operand operand;
 
     @Override
-    void displayOperands(PrintStream s) {
+    void displayOperands(PrintWriter s) {
         s.print(" ");
         s.print(operand);
     }
@@ -27,4 +27,12 @@ public abstract class UnaryInstruction extends Instruction {
         return operand;
     }
 
+    /**
+     * Replace the operand, e.g. a virtual register by a physical one
+     */
+    public void setOperand(Operand operand) {
+        Validate.notNull(operand);
+        this.operand = operand;
+    }
+
 }
@@ -0,0 +1,15 @@
+package fr.ensimag.ima.pseudocode.instructionsARM;
+
+import fr.ensimag.ima.pseudocode.ARMUnaryInstructionString;
+
+
+/**
+ * @author Ensimag
+ * @date 17/01/2022
+ */
+public class bge extends ARMUnaryInstructionString {
+
+    public bge(String op) {
+        super(op);
+    }
+}
\ No newline at end of file
@@ -1,5 +1,5 @@
 package fr.ensimag.ima.pseudocode.instructionsARM;
-import java.io.PrintStream;
+import java.io.PrintWriter;
 import fr.ensimag.ima.pseudocode.*;
 import org.apache.commons.lang.Validate;
 
@@ -10,7 +10,7 @@ import org.apache.commons.lang.Validate;
  */
 public class vcvt extends ARMTernaryInstruction {
 
-    void displayOperands(PrintStream s) {
+    void displayOperands(PrintWriter s) {
         s.print(".f64.s32 ");
         s.print(getOperand1());
         s.print(", ");
@@ -1,5 +1,5 @@
 package fr.ensimag.ima.pseudocode.instructionsARM;
-import java.io.PrintStream;
+import java.io.PrintWriter;
 
 import fr.ensimag.ima.pseudocode.*;
 import fr.ensimag.ima.pseudocode.DVal;
@@ -0,0 +1,17 @@
+package fr.ensimag.ima.pseudocode.instructionsARM;
+
+import fr.ensimag.ima.pseudocode.*;
+
+/**
+ * @author Ensimag
+ * @date 01/01/2022
+ */
+public class vstr extends ARMBinaryInstructionStringToReg {
+
+    public vstr(ARMGPRegister op1, String op2) {
+        super(op1, op2);
+    }
+
+    
+
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package fr.ensimag.ima.vm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+/**
+ * Command-line entry point of the virtual machine, accepting the options of
+ * ima that make sense without the debugger:
+ * <pre>
+ *   [-s] [-p stack size] [-t heap size] [-T time limit] file.ass
+ * </pre>
+ *
+ * @author Ensimag
+ * @date 01/01/2022
+ */
+public class Ima {
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.in, System.out, System.err));
+    }
+
+    /**
+     * @return the exit status of the execution
+     */
+    static int run(String[] args, InputStream in, PrintStream out, PrintStream err) {
+        boolean stats = false;
+        int stackSize = ImaMachine.DEFAULT_STACK_SIZE;
+        int heapSize = ImaMachine.DEFAULT_HEAP_SIZE;
+        long timeLimit = 0;
+        String file = null;
+        try {
+            for (int k = 0; k < args.length; k++) {
+                if (args[k].equals("-s")) {
+                    stats = true;
+                } else if (args[k].equals("-p") && k + 1 < args.length) {
+                    stackSize = Integer.parseInt(args[++k]);
+                } else if (args[k].equals("-t") && k + 1 < args.length) {
+                    heapSize = Integer.parseInt(args[++k]);
+                } else if (args[k].equals("-T") && k + 1 < args.length) {
+                    timeLimit = Long.parseLong(args[++k]);
+                } else if (file == null && !args[k].startsWith("-")) {
+                    file = args[k];
+                } else {
+                    throw new NumberFormatException();
+                }
+            }
+        } catch (NumberFormatException e) {
+            file = null;
+        }
+        if (file == null) {
+            err.println("Usage : ima [-s] [-p taille pile] [-t taille tas]"
+                    + " [-T limite temps] fichier_assembleur");
+            return 1;
+        }
+
+        try {
+            ImaCode code = ImaAssembler.assemble(Files.readAllBytes(new File(file).toPath()));
+            ImaMachine machine = new ImaMachine(code, in, out);
+            machine.setStats(stats);
+            machine.setStackSize(stackSize);
+            machine.setHeapSize(heapSize);
+            machine.setTimeLimit(timeLimit);
+            return machine.run();
+        } catch (ImaSyntaxError e) {
+            out.println(e.getMessage());
+            return 1;
+        } catch (IOException e) {
+            err.println("IMA -- Fichier " + file + " : " + e.getMessage());
+            return 1;
+        }
+    }
+}
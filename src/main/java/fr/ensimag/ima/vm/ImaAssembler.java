@@ -0,0 +1,387 @@
+package fr.ensimag.ima.vm;
+
+import fr.ensimag.ima.pseudocode.GenericProgram;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoder of IMA programs into ImaCode.
+ *
+ * The decoder reads the textual form of the program, the one ima reads: the
+ * lines built by the code generator and the inline portions (methods written
+ * in assembly) are handled the same way, and the line numbers in the error
+ * messages of the machine are those of the .ass file. The text is read as
+ * ISO-8859-1 so that the bytes of the strings are written back unchanged by
+ * WSTR, whatever their encoding.
+ *
+ * @author Ensimag
+ * @date 01/01/2022
+ */
+public class ImaAssembler {
+
+    /**
+     * Decode a program built by the compiler.
+     */
+    public static ImaCode assemble(GenericProgram program) throws ImaSyntaxError {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintWriter s = new PrintWriter(new OutputStreamWriter(bytes, Charset.defaultCharset()));
+        program.display(s);
+        s.flush();
+        return assemble(bytes.toByteArray());
+    }
+
+    /**
+     * Decode the content of a .ass file.
+     */
+    public static ImaCode assemble(byte[] text) throws ImaSyntaxError {
+        return new ImaAssembler(new String(text, StandardCharsets.ISO_8859_1)).assemble();
+    }
+
+    private final String text;
+
+    private int[] opcodes = new int[256];
+    private int[] operands = new int[256 * ImaCode.STRIDE];
+    private int[] lines = new int[256];
+    private int[] costs = new int[256];
+    private final List<byte[]> strings = new ArrayList<byte[]>();
+    private int size = 0;
+
+    private final Map<String, Integer> labels = new HashMap<String, Integer>();
+    /** Operands referring to a label: index in operands, label, line */
+    private final List<Object[]> fixups = new ArrayList<Object[]>();
+
+    // current line and position in this line
+    private String line;
+    private int pos;
+    private int lineNumber;
+
+    private ImaAssembler(String text) {
+        this.text = text;
+    }
+
+    private ImaCode assemble() throws ImaSyntaxError {
+        int start = 0;
+        lineNumber = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            line = text.substring(start, end);
+            if (line.endsWith("\r")) {
+                line = line.substring(0, line.length() - 1);
+            }
+            lineNumber++;
+            pos = 0;
+            parseLine();
+            start = end + 1;
+        }
+
+        for (Object[] fixup : fixups) {
+            Integer target = labels.get((String) fixup[1]);
+            if (target == null) {
+                throw new ImaSyntaxError((Integer) fixup[2],
+                        "Etiquette non definie : " + fixup[1],
+                        "etiquette " + fixup[1] + " non definie");
+            }
+            operands[(Integer) fixup[0] + 1] = target;
+        }
+        return new ImaCode(opcodes, operands, lines, costs,
+                strings.toArray(new byte[strings.size()][]), size);
+    }
+
+    private void parseLine() throws ImaSyntaxError {
+        skipSpaces();
+        if (atEndOfLine()) {
+            return;
+        }
+        String word = readWord();
+        skipSpaces();
+        if (pos < line.length() && line.charAt(pos) == ':') {
+            // label definition, possibly followed by an instruction
+            if (word.isEmpty()) {
+                throw error("etiquette attendue");
+            }
+            if (labels.containsKey(word)) {
+                throw new ImaSyntaxError(lineNumber, "ERREUR ligne " + lineNumber
+                        + " : etiquette " + word + " deja definie !!",
+                        "etiquette " + word + " definie deux fois");
+            }
+            labels.put(word, size);
+            pos++;
+            skipSpaces();
+            if (atEndOfLine()) {
+                return;
+            }
+            word = readWord();
+            skipSpaces();
+        }
+
+        int op = ImaCode.opcode(word.toUpperCase());
+        if (op < 0) {
+            throw error("instruction inconnue : " + word);
+        }
+        ensureCapacity();
+        int index = size * ImaCode.STRIDE;
+        int cost = ImaCode.baseCost(op);
+        for (int k = 0; k < 2; k++) {
+            int shape = ImaCode.shape(op, k);
+            if (shape == ImaCode.NO_OPERAND) {
+                break;
+            }
+            if (k > 0) {
+                expect(',');
+            }
+            skipSpaces();
+            int slot = index + k * ImaCode.OPERAND_SIZE;
+            parseOperand(slot);
+            checkShape(op, shape, slot);
+            cost += operandCost(shape, slot);
+        }
+        skipSpaces();
+        if (!atEndOfLine()) {
+            throw error("fin de ligne attendue apres " + ImaCode.mnemonic(op));
+        }
+        opcodes[size] = op;
+        lines[size] = lineNumber;
+        costs[size] = cost;
+        size++;
+    }
+
+    private void parseOperand(int slot) throws ImaSyntaxError {
+        if (pos >= line.length()) {
+            throw error("operande attendu");
+        }
+        char c = line.charAt(pos);
+        if (c == '#') {
+            pos++;
+            String value = readWord();
+            if (value.equals("null")) {
+                operands[slot] = ImaCode.K_NULL;
+            } else if (isInteger(value)) {
+                try {
+                    operands[slot] = ImaCode.K_INT;
+                    operands[slot + 1] = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    throw error("entier hors limites : " + value);
+                }
+            } else {
+                float f;
+                try {
+                    f = Float.parseFloat(value);
+                } catch (NumberFormatException e) {
+                    throw error("valeur immediate incorrecte : " + value);
+                }
+                if (Float.isInfinite(f) || Float.isNaN(f) || !Character.isDigit(value.charAt(
+                        value.startsWith("-") || value.startsWith("+") ? 1 : 0))) {
+                    throw error("valeur immediate incorrecte : " + value);
+                }
+                operands[slot] = ImaCode.K_FLOAT;
+                operands[slot + 1] = Float.floatToRawIntBits(f);
+            }
+        } else if (c == '"') {
+            operands[slot] = ImaCode.K_STRING;
+            operands[slot + 1] = strings.size();
+            strings.add(readString().getBytes(StandardCharsets.ISO_8859_1));
+        } else if (c == '-' || c == '+' || Character.isDigit(c)) {
+            String d = readWord();
+            if (!isInteger(d)) {
+                throw error("deplacement incorrect : " + d);
+            }
+            expect('(');
+            skipSpaces();
+            int base = readRegister();
+            skipSpaces();
+            operands[slot + 2] = Integer.parseInt(d);
+            operands[slot + 1] = base;
+            if (pos < line.length() && line.charAt(pos) == ',') {
+                pos++;
+                skipSpaces();
+                operands[slot] = ImaCode.K_INDEXED;
+                operands[slot + 3] = readRegister();
+                skipSpaces();
+            } else {
+                operands[slot] = ImaCode.K_INDIRECT;
+            }
+            expect(')');
+        } else {
+            int save = pos;
+            String word = readWord();
+            if (word.isEmpty()) {
+                throw error("operande incorrect");
+            }
+            int register = registerNumber(word);
+            if (register >= 0) {
+                operands[slot] = ImaCode.K_REG;
+                operands[slot + 1] = register;
+            } else {
+                pos = save;
+                operands[slot] = ImaCode.K_LABEL;
+                fixups.add(new Object[] {slot, readWord(), lineNumber});
+            }
+        }
+    }
+
+    private void checkShape(int op, int shape, int slot) throws ImaSyntaxError {
+        int kind = operands[slot];
+        boolean ok;
+        switch (shape) {
+        case ImaCode.DVAL:
+            ok = kind != ImaCode.K_STRING;
+            break;
+        case ImaCode.DADR:
+            ok = kind == ImaCode.K_INDIRECT || kind == ImaCode.K_INDEXED;
+            break;
+        case ImaCode.GPREG:
+            ok = kind == ImaCode.K_REG && operands[slot + 1] < ImaCode.NB_GP_REGISTERS;
+            break;
+        case ImaCode.STRING:
+            ok = kind == ImaCode.K_STRING;
+            break;
+        default:
+            ok = false;
+        }
+        if (kind == ImaCode.K_INDEXED
+                && operands[slot + 3] >= ImaCode.NB_GP_REGISTERS) {
+            ok = false;
+        }
+        if (!ok) {
+            throw error("operande incorrect pour " + ImaCode.mnemonic(op));
+        }
+    }
+
+    private int operandCost(int shape, int slot) {
+        switch (operands[slot]) {
+        case ImaCode.K_REG:
+            return ImaCode.COST_DIRECT;
+        case ImaCode.K_INDIRECT:
+            return ImaCode.COST_INDIRECT;
+        case ImaCode.K_INDEXED:
+            return ImaCode.COST_INDEXED;
+        case ImaCode.K_LABEL:
+            return ImaCode.COST_LABEL;
+        case ImaCode.K_STRING:
+            return ImaCode.COST_CHARACTER * strings.get(operands[slot + 1]).length;
+        default:
+            return ImaCode.COST_IMMEDIATE;
+        }
+    }
+
+    private static boolean isInteger(String s) {
+        int start = (s.startsWith("-") || s.startsWith("+")) ? 1 : 0;
+        if (start == s.length()) {
+            return false;
+        }
+        for (int k = start; k < s.length(); k++) {
+            if (!Character.isDigit(s.charAt(k))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of the register named word, -1 if word is not a
+     * register
+     */
+    private static int registerNumber(String word) {
+        if (word.equals("GB")) {
+            return ImaCode.GB;
+        } else if (word.equals("LB")) {
+            return ImaCode.LB;
+        } else if (word.equals("SP")) {
+            return ImaCode.SP;
+        } else if (word.length() >= 2 && word.length() <= 3 && word.charAt(0) == 'R'
+                && isInteger(word.substring(1)) && Character.isDigit(word.charAt(1))) {
+            int n = Integer.parseInt(word.substring(1));
+            if (n < ImaCode.NB_GP_REGISTERS) {
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    private int readRegister() throws ImaSyntaxError {
+        String word = readWord();
+        int register = registerNumber(word);
+        if (register < 0) {
+            throw error("registre attendu : " + word);
+        }
+        return register;
+    }
+
+    /**
+     * Read a string literal, in which "" stands for "
+     */
+    private String readString() throws ImaSyntaxError {
+        StringBuilder sb = new StringBuilder();
+        pos++;
+        while (true) {
+            if (pos >= line.length()) {
+                throw error("chaine non terminee");
+            }
+            char c = line.charAt(pos++);
+            if (c == '"') {
+                if (pos < line.length() && line.charAt(pos) == '"') {
+                    sb.append('"');
+                    pos++;
+                } else {
+                    return sb.toString();
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    /**
+     * Read a label, a mnemonic, a register or an immediate value
+     */
+    private String readWord() {
+        int start = pos;
+        while (pos < line.length() && " \t,;:\"#()".indexOf(line.charAt(pos)) < 0) {
+            pos++;
+        }
+        return line.substring(start, pos);
+    }
+
+    private void expect(char c) throws ImaSyntaxError {
+        skipSpaces();
+        if (pos >= line.length() || line.charAt(pos) != c) {
+            throw error("'" + c + "' attendu");
+        }
+        pos++;
+    }
+
+    private void skipSpaces() {
+        while (pos < line.length() && (line.charAt(pos) == ' ' || line.charAt(pos) == '\t')) {
+            pos++;
+        }
+    }
+
+    private boolean atEndOfLine() {
+        return pos >= line.length() || line.charAt(pos) == ';';
+    }
+
+    private void ensureCapacity() {
+        if (size == opcodes.length) {
+            int capacity = 2 * size;
+            opcodes = Arrays.copyOf(opcodes, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            costs = Arrays.copyOf(costs, capacity);
+            operands = Arrays.copyOf(operands, capacity * ImaCode.STRIDE);
+        }
+    }
+
+    private ImaSyntaxError error(String message) {
+        return new ImaSyntaxError(lineNumber, message);
+    }
+}
@@ -0,0 +1,248 @@
+package fr.ensimag.ima.vm;
+
+import java.util.Arrays;
+
+/**
+ * IMA program decoded for the virtual machine (see ImaMachine).
+ *
+ * Instructions are stored in parallel arrays indexed by the program counter:
+ * the operation code, the line of the instruction in the source text (for
+ * error messages), its static cost in IMA time units, and its two operands
+ * encoded as OPERAND_SIZE integers each (kind, then up to three fields).
+ * Labels are resolved to program counters and strings are stored in a
+ * separate table, so the interpreter never looks at the text again.
+ *
+ * @author Ensimag
+ * @date 01/01/2022
+ */
+public class ImaCode {
+
+    // Operation codes
+    static final int LOAD = 0;
+    static final int STORE = 1;
+    static final int LEA = 2;
+    static final int PEA = 3;
+    static final int PUSH = 4;
+    static final int POP = 5;
+    static final int NEW = 6;
+    static final int DEL = 7;
+    static final int ADD = 8;
+    static final int SUB = 9;
+    static final int MUL = 10;
+    static final int OPP = 11;
+    static final int QUO = 12;
+    static final int REM = 13;
+    static final int DIV = 14;
+    static final int CMP = 15;
+    static final int FLOAT = 16;
+    static final int INT = 17;
+    static final int FMA = 18;
+    static final int SHL = 19;
+    static final int SHR = 20;
+    static final int SEQ = 21;
+    static final int SNE = 22;
+    static final int SGT = 23;
+    static final int SLT = 24;
+    static final int SGE = 25;
+    static final int SLE = 26;
+    static final int SOV = 27;
+    static final int BRA = 28;
+    static final int BEQ = 29;
+    static final int BNE = 30;
+    static final int BGT = 31;
+    static final int BLT = 32;
+    static final int BGE = 33;
+    static final int BLE = 34;
+    static final int BOV = 35;
+    static final int BSR = 36;
+    static final int RTS = 37;
+    static final int RINT = 38;
+    static final int RFLOAT = 39;
+    static final int WINT = 40;
+    static final int WFLOAT = 41;
+    static final int WFLOATX = 42;
+    static final int WSTR = 43;
+    static final int WNL = 44;
+    static final int ADDSP = 45;
+    static final int SUBSP = 46;
+    static final int TSTO = 47;
+    static final int HALT = 48;
+    static final int ERROR = 49;
+    static final int SETROUND_TONEAREST = 50;
+    static final int SETROUND_UPWARD = 51;
+    static final int SETROUND_DOWNWARD = 52;
+    static final int SETROUND_TOWARDZERO = 53;
+
+    // Shapes of the operands accepted by an instruction
+    static final int NO_OPERAND = 0;
+    /** any value: register, immediate, label or memory word */
+    static final int DVAL = 1;
+    /** memory address: d(XX) or d(XX, Rm) */
+    static final int DADR = 2;
+    /** general purpose register R0 .. R15 */
+    static final int GPREG = 3;
+    /** string literal */
+    static final int STRING = 4;
+
+    /**
+     * Mnemonic, shapes of the two operands and cost (in IMA time units, see
+     * the file config_machine.ads of ima) of each operation code.
+     */
+    private static final Object[][] INSTRUCTIONS = {
+        {"LOAD", DVAL, GPREG, 2},
+        {"STORE", GPREG, DADR, 2},
+        {"LEA", DADR, GPREG, 0},
+        {"PEA", DADR, NO_OPERAND, 4},
+        {"PUSH", GPREG, NO_OPERAND, 4},
+        {"POP", GPREG, NO_OPERAND, 2},
+        {"NEW", DVAL, GPREG, 16},
+        {"DEL", GPREG, NO_OPERAND, 16},
+        {"ADD", DVAL, GPREG, 2},
+        {"SUB", DVAL, GPREG, 2},
+        {"MUL", DVAL, GPREG, 20},
+        {"OPP", DVAL, GPREG, 2},
+        {"QUO", DVAL, GPREG, 40},
+        {"REM", DVAL, GPREG, 40},
+        {"DIV", DVAL, GPREG, 40},
+        {"CMP", DVAL, GPREG, 2},
+        {"FLOAT", DVAL, GPREG, 4},
+        {"INT", DVAL, GPREG, 4},
+        {"FMA", DVAL, GPREG, 21},
+        {"SHL", GPREG, NO_OPERAND, 2},
+        {"SHR", GPREG, NO_OPERAND, 2},
+        {"SEQ", GPREG, NO_OPERAND, 2},
+        {"SNE", GPREG, NO_OPERAND, 2},
+        {"SGT", GPREG, NO_OPERAND, 2},
+        {"SLT", GPREG, NO_OPERAND, 2},
+        {"SGE", GPREG, NO_OPERAND, 2},
+        {"SLE", GPREG, NO_OPERAND, 2},
+        {"SOV", GPREG, NO_OPERAND, 2},
+        {"BRA", DVAL, NO_OPERAND, 5},
+        {"BEQ", DVAL, NO_OPERAND, 4},
+        {"BNE", DVAL, NO_OPERAND, 4},
+        {"BGT", DVAL, NO_OPERAND, 4},
+        {"BLT", DVAL, NO_OPERAND, 4},
+        {"BGE", DVAL, NO_OPERAND, 4},
+        {"BLE", DVAL, NO_OPERAND, 4},
+        {"BOV", DVAL, NO_OPERAND, 4},
+        {"BSR", DVAL, NO_OPERAND, 9},
+        {"RTS", NO_OPERAND, NO_OPERAND, 8},
+        {"RINT", NO_OPERAND, NO_OPERAND, 16},
+        {"RFLOAT", NO_OPERAND, NO_OPERAND, 16},
+        {"WINT", NO_OPERAND, NO_OPERAND, 16},
+        {"WFLOAT", NO_OPERAND, NO_OPERAND, 16},
+        {"WFLOATX", NO_OPERAND, NO_OPERAND, 16},
+        {"WSTR", STRING, NO_OPERAND, 16},
+        {"WNL", NO_OPERAND, NO_OPERAND, 14},
+        {"ADDSP", DVAL, NO_OPERAND, 4},
+        {"SUBSP", DVAL, NO_OPERAND, 4},
+        {"TSTO", DVAL, NO_OPERAND, 4},
+        {"HALT", NO_OPERAND, NO_OPERAND, 1},
+        {"ERROR", NO_OPERAND, NO_OPERAND, 1},
+        {"SETROUND_TONEAREST", NO_OPERAND, NO_OPERAND, 20},
+        {"SETROUND_UPWARD", NO_OPERAND, NO_OPERAND, 20},
+        {"SETROUND_DOWNWARD", NO_OPERAND, NO_OPERAND, 20},
+        {"SETROUND_TOWARDZERO", NO_OPERAND, NO_OPERAND, 20},
+    };
+
+    static final int NB_OPCODES = INSTRUCTIONS.length;
+
+    /**
+     * @return the operation code of an instruction name, -1 if unknown
+     */
+    static int opcode(String mnemonic) {
+        for (int op = 0; op < NB_OPCODES; op++) {
+            if (INSTRUCTIONS[op][0].equals(mnemonic)) {
+                return op;
+            }
+        }
+        return -1;
+    }
+
+    static String mnemonic(int op) {
+        return (String) INSTRUCTIONS[op][0];
+    }
+
+    static int shape(int op, int k) {
+        return (Integer) INSTRUCTIONS[op][1 + k];
+    }
+
+    static int baseCost(int op) {
+        return (Integer) INSTRUCTIONS[op][3];
+    }
+
+    // Kinds of decoded operands, first field of an operand
+    static final int K_NONE = 0;
+    /** register: a = register number */
+    static final int K_REG = 1;
+    /** d(XX): a = base register, b = d */
+    static final int K_INDIRECT = 2;
+    /** d(XX, Rm): a = base register, b = d, c = index register */
+    static final int K_INDEXED = 3;
+    /** #n: a = n */
+    static final int K_INT = 4;
+    /** #x: a = bits of x */
+    static final int K_FLOAT = 5;
+    /** #null */
+    static final int K_NULL = 6;
+    /** label: a = program counter of the label */
+    static final int K_LABEL = 7;
+    /** "...": a = index in the string table */
+    static final int K_STRING = 8;
+
+    /** Number of integers per operand */
+    static final int OPERAND_SIZE = 4;
+    /** Number of integers per instruction in the operand array */
+    static final int STRIDE = 2 * OPERAND_SIZE;
+
+    // Register numbers: R0 .. R15, then the address registers
+    static final int NB_GP_REGISTERS = 16;
+    static final int GB = 16;
+    static final int LB = 17;
+    static final int SP = 18;
+    static final int NB_REGISTERS = 19;
+
+    // Cost of the operands evaluated by an instruction (config_machine.ads)
+    static final int COST_DIRECT = 0;
+    static final int COST_INDIRECT = 4;
+    static final int COST_INDEXED = 5;
+    static final int COST_IMMEDIATE = 2;
+    static final int COST_LABEL = 2;
+    static final int COST_CHARACTER = 2;
+
+    final int[] opcodes;
+    final int[] operands;
+    final int[] lines;
+    final int[] costs;
+    final byte[][] strings;
+    final int size;
+
+    ImaCode(int[] opcodes, int[] operands, int[] lines, int[] costs,
+            byte[][] strings, int size) {
+        this.opcodes = opcodes;
+        this.operands = operands;
+        this.lines = lines;
+        this.costs = costs;
+        this.strings = strings;
+        this.size = size;
+    }
+
+    /**
+     * @return the number of instructions of the program
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int pc = 0; pc < size; pc++) {
+            sb.append(pc).append(": ").append(mnemonic(opcodes[pc]))
+                    .append(' ').append(Arrays.toString(Arrays.copyOfRange(
+                            operands, pc * STRIDE, (pc + 1) * STRIDE)))
+                    .append(" (line ").append(lines[pc]).append(")\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,165 @@
+package fr.ensimag.ima.vm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.math.BigInteger;
+
+/**
+ * Reading of the integers (RINT) and floats (RFLOAT) typed by the user,
+ * following the automata of ima (lecture_entiers.adb, lecture_flottants.adb):
+ * spaces and newlines before a number are skipped, the number ends with a
+ * space or a newline, and a wrong character ends the reading without
+ * consuming the rest of the line.
+ *
+ * @author Ensimag
+ * @date 01/01/2022
+ */
+class ImaInput {
+    /** Length of the buffer of ima, longer numbers are rejected */
+    private static final int MAX_LENGTH = 80;
+
+    private final PushbackInputStream in;
+
+    /** Value of the last number read */
+    int intValue;
+    float floatValue;
+
+    ImaInput(InputStream in) {
+        this.in = new PushbackInputStream(in);
+    }
+
+    /**
+     * Thrown at the end of the input, or when the input is not a number
+     */
+    static class BadInput extends Exception {
+        private static final long serialVersionUID = 5215896183218003641L;
+    }
+
+    /**
+     * Read an integer in intValue
+     */
+    void readInt() throws BadInput, IOException {
+        String s = readToken(false);
+        int e = Math.max(s.indexOf('e'), s.indexOf('E'));
+        BigInteger value = new BigInteger(e < 0 ? s : s.substring(0, e));
+        if (e >= 0) {
+            int exponent;
+            try {
+                exponent = Integer.parseInt(s.substring(e + 1));
+            } catch (NumberFormatException ex) {
+                throw new BadInput();
+            }
+            if (value.signum() != 0) {
+                if (exponent > 10) {
+                    throw new BadInput();
+                }
+                value = value.multiply(BigInteger.TEN.pow(exponent));
+            }
+        }
+        if (value.bitLength() > 31) {
+            throw new BadInput();
+        }
+        intValue = value.intValue();
+    }
+
+    /**
+     * Read a float in floatValue
+     */
+    void readFloat() throws BadInput, IOException {
+        String s = readToken(true);
+        float f;
+        try {
+            f = Float.parseFloat(s);
+        } catch (NumberFormatException e) {
+            throw new BadInput();
+        }
+        if (Float.isInfinite(f) || Float.isNaN(f)) {
+            throw new BadInput();
+        }
+        floatValue = f;
+    }
+
+    /**
+     * Read the characters of a number: [+-]digits[e digits] for an integer,
+     * [+-]digits.digits[e[+-]digits] for a float.
+     */
+    private String readToken(boolean isFloat) throws BadInput, IOException {
+        final int start = 0;
+        final int afterSign = 1;
+        final int afterDigit = 2;
+        StringBuilder s = new StringBuilder();
+        int state = start;
+        boolean inMantissa = true;
+        boolean beforePoint = true;
+
+        int c = ' ';
+        while (c == ' ') {
+            if (endOfLine()) {
+                skipLine();
+                c = ' ';
+            } else {
+                c = get();
+            }
+        }
+        while (c != ' ') {
+            if (s.length() == MAX_LENGTH) {
+                throw new BadInput();
+            }
+            boolean digit = c >= '0' && c <= '9';
+            if (state == start && (c == '+' || c == '-')) {
+                state = afterSign;
+            } else if (state != afterDigit && digit) {
+                state = afterDigit;
+            } else if (state == afterDigit && digit) {
+                // still in the number
+            } else if (state == afterDigit && isFloat && c == '.' && beforePoint) {
+                beforePoint = false;
+                state = afterSign;
+            } else if (state == afterDigit && (c == 'e' || c == 'E') && inMantissa) {
+                inMantissa = false;
+                // a sign is allowed in the exponent of a float only
+                state = isFloat ? start : afterSign;
+            } else {
+                throw new BadInput();
+            }
+            s.append((char) c);
+            c = endOfLine() ? ' ' : get();
+        }
+        if (state != afterDigit || (isFloat && beforePoint)) {
+            throw new BadInput();
+        }
+        return s.toString();
+    }
+
+    private int peek() throws IOException {
+        int c = in.read();
+        if (c >= 0) {
+            in.unread(c);
+        }
+        return c;
+    }
+
+    private boolean endOfLine() throws IOException {
+        int c = peek();
+        return c == '\n' || c < 0;
+    }
+
+    private void skipLine() throws BadInput, IOException {
+        int c;
+        do {
+            c = in.read();
+        } while (c >= 0 && c != '\n');
+        if (c < 0) {
+            throw new BadInput();
+        }
+    }
+
+    private int get() throws BadInput, IOException {
+        int c = in.read();
+        if (c < 0) {
+            throw new BadInput();
+        }
+        return c;
+    }
+}
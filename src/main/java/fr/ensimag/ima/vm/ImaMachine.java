@@ -0,0 +1,988 @@
+package fr.ensimag.ima.vm;
+
+import static fr.ensimag.ima.vm.ImaCode.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Interpreter of decoded IMA programs, behaving like ima (same outputs,
+ * error messages, condition codes and execution times).
+ *
+ * Every word of the machine (registers and memory) holds a typed value: a
+ * type tag, an integer (the value itself, the bits of a float, the offset of
+ * an address or a program counter) and, for addresses, the number of the
+ * memory block. Block 1 is the stack (words 1 .. stack size), the following
+ * ones are allocated by NEW, and block 0 is the null address. All of them
+ * are stored in primitive arrays, so the execution loop allocates nothing
+ * besides the blocks created by NEW.
+ *
+ * @author Ensimag
+ * @date 01/01/2022
+ */
+public class ImaMachine {
+    public static final int DEFAULT_STACK_SIZE = 10000;
+    public static final int DEFAULT_HEAP_SIZE = 10000;
+
+    // Types of the values
+    private static final byte UNDEFINED = 0;
+    private static final byte INTEGER = 1;
+    private static final byte FLOATING = 2;
+    private static final byte ADDRESS = 3;
+    private static final byte CODE_ADDRESS = 4;
+
+    private static final int NULL_BLOCK = 0;
+    private static final int STACK_BLOCK = 1;
+
+    /**
+     * Memory block: words lo .. hi
+     */
+    private static final class Block {
+        final int lo;
+        final int hi;
+        final byte[] types;
+        final int[] values;
+        final int[] blocks;
+
+        Block(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+            types = new byte[hi + 1];
+            values = new int[hi + 1];
+            blocks = new int[hi + 1];
+        }
+
+        boolean contains(int offset) {
+            return offset >= lo && offset <= hi;
+        }
+    }
+
+    /**
+     * Error stopping the execution, reported with the line of the faulty
+     * instruction
+     */
+    private static final class Failure extends RuntimeException {
+        private static final long serialVersionUID = -6015472963285186573L;
+
+        Failure(String message) {
+            super(message);
+        }
+    }
+
+    private final ImaCode code;
+    private final ImaInput input;
+    private final OutputStream out;
+
+    private int stackSize = DEFAULT_STACK_SIZE;
+    private int heapSize = DEFAULT_HEAP_SIZE;
+    private long timeLimit = 0;
+    private boolean stats = false;
+
+    // registers
+    private final byte[] regTypes = new byte[NB_REGISTERS];
+    private final int[] regValues = new int[NB_REGISTERS];
+    private final int[] regBlocks = new int[NB_REGISTERS];
+
+    // memory
+    private Block[] blocks;
+    private int nbBlocks;
+    private int allocated;
+
+    // condition codes
+    private boolean n;
+    private boolean z;
+    private boolean ov;
+
+    private int roundingMode = SETROUND_TONEAREST;
+    private long time;
+
+    // value computed by fetch()
+    private byte valType;
+    private int value;
+    private int valBlock;
+    // address computed by address()
+    private int addrBlock;
+    private int addrOffset;
+
+    // output buffer and current column, as counted by Ada.Text_IO
+    private final byte[] buffer = new byte[8192];
+    private int buffered = 0;
+    private int column = 1;
+
+    /**
+     * @param code program to execute
+     * @param in input read by RINT and RFLOAT
+     * @param out output of the program and of the error messages
+     */
+    public ImaMachine(ImaCode code, InputStream in, OutputStream out) {
+        this.code = code;
+        this.input = new ImaInput(in);
+        this.out = out;
+    }
+
+    /**
+     * Number of words of the stack (ima -p)
+     */
+    public void setStackSize(int stackSize) {
+        this.stackSize = stackSize;
+    }
+
+    /**
+     * Number of words that can be allocated by NEW (ima -t)
+     */
+    public void setHeapSize(int heapSize) {
+        this.heapSize = heapSize;
+    }
+
+    /**
+     * Stop the execution after the given time, 0 for no limit (ima -T)
+     */
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     * Display the size of the program and its execution time at the end of
+     * the execution (ima -s)
+     */
+    public void setStats(boolean stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * @return the execution time of the last run, in IMA time units
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Execute the program.
+     *
+     * @return the exit status of ima: 0 after HALT, 1 after ERROR or an
+     * execution error
+     */
+    public int run() throws IOException {
+        reset();
+        int status;
+        try {
+            status = execute();
+            // like Ada.Text_IO when closing the standard output
+            if (column > 1) {
+                newLine();
+            }
+        } finally {
+            flush();
+        }
+        return status;
+    }
+
+    private void reset() {
+        Arrays.fill(regTypes, UNDEFINED);
+        blocks = new Block[16];
+        blocks[STACK_BLOCK] = new Block(1, stackSize);
+        nbBlocks = 2;
+        allocated = 0;
+        for (int r : new int[] {GB, LB, SP}) {
+            regTypes[r] = ADDRESS;
+            regValues[r] = 0;
+            regBlocks[r] = STACK_BLOCK;
+        }
+        n = false;
+        z = false;
+        ov = false;
+        roundingMode = SETROUND_TONEAREST;
+        time = 0;
+        column = 1;
+    }
+
+    private int execute() throws IOException {
+        final int[] opcodes = code.opcodes;
+        final int[] operands = code.operands;
+        final int[] costs = code.costs;
+        final int size = code.size;
+        final byte[] rt = regTypes;
+        final int[] rv = regValues;
+        final int[] rb = regBlocks;
+
+        int pc = 0;
+        int current = 0;
+        try {
+            while (true) {
+                if (pc >= size) {
+                    setCol(3);
+                    print("** IMA ** ERREUR ** Plus d'instructions !!");
+                    newLine();
+                    return 1;
+                }
+                current = pc;
+                final int o = pc * STRIDE;
+                final int op = opcodes[pc++];
+                time += costs[current];
+                if (timeLimit > 0 && time > timeLimit) {
+                    print("ERREUR : Limite de temps (-T) ecoulee");
+                    newLine();
+                    printStats(" (LIMITE ECOULEE)");
+                    return 0;
+                }
+                // register operand of the instruction, if any
+                final int r1 = operands[o + 1];
+                final int r2 = operands[o + OPERAND_SIZE + 1];
+                switch (op) {
+                case LOAD:
+                    fetch(o);
+                    rt[r2] = valType;
+                    rv[r2] = value;
+                    rb[r2] = valBlock;
+                    setCC(valType, value, valBlock);
+                    break;
+                case STORE: {
+                    address(o + OPERAND_SIZE);
+                    Block b = block(addrBlock, addrOffset);
+                    if (b == null) {
+                        throw new Failure("STORE : Pas une adresse memoire");
+                    }
+                    b.types[addrOffset] = rt[r1];
+                    b.values[addrOffset] = rv[r1];
+                    b.blocks[addrOffset] = rb[r1];
+                    setCC(rt[r1], rv[r1], rb[r1]);
+                    break;
+                }
+                case PUSH: {
+                    int sp = rv[SP] + 1;
+                    Block b = stackWord(sp);
+                    if (b == null) {
+                        throw new Failure("PUSH : Debordement de la pile");
+                    }
+                    rv[SP] = sp;
+                    b.types[sp] = rt[r1];
+                    b.values[sp] = rv[r1];
+                    b.blocks[sp] = rb[r1];
+                    setCC(rt[r1], rv[r1], rb[r1]);
+                    break;
+                }
+                case POP: {
+                    int sp = rv[SP];
+                    Block b = stackWord(sp);
+                    if (b == null) {
+                        throw new Failure("POP : SP ne contient pas une adresse de la pile");
+                    }
+                    rt[r1] = b.types[sp];
+                    rv[r1] = b.values[sp];
+                    rb[r1] = b.blocks[sp];
+                    rv[SP] = sp - 1;
+                    setCC(rt[r1], rv[r1], rb[r1]);
+                    break;
+                }
+                case LEA:
+                    address(o);
+                    rt[r2] = ADDRESS;
+                    rv[r2] = addrOffset;
+                    rb[r2] = addrBlock;
+                    break;
+                case PEA: {
+                    address(o);
+                    int sp = rv[SP] + 1;
+                    Block b = stackWord(sp);
+                    if (b == null) {
+                        throw new Failure("PEA : Debordement de la pile");
+                    }
+                    rv[SP] = sp;
+                    b.types[sp] = ADDRESS;
+                    b.values[sp] = addrOffset;
+                    b.blocks[sp] = addrBlock;
+                    break;
+                }
+                case NEW:
+                    fetch(o);
+                    if (valType != INTEGER || value < 0 || (long) allocated + value > heapSize) {
+                        ov = true;
+                    } else {
+                        rt[r2] = ADDRESS;
+                        rv[r2] = 0;
+                        rb[r2] = allocate(value);
+                        allocated += value;
+                        ov = false;
+                    }
+                    break;
+                case DEL:
+                    if (rt[r1] != ADDRESS || rb[r1] <= STACK_BLOCK || blocks[rb[r1]] == null) {
+                        ov = true;
+                    } else {
+                        allocated -= blocks[rb[r1]].hi + 1;
+                        blocks[rb[r1]] = null;
+                        rt[r1] = UNDEFINED;
+                        ov = false;
+                    }
+                    break;
+                case ADD:
+                case SUB:
+                case MUL:
+                    fetch(o);
+                    ov = false;
+                    if (valType == INTEGER && rt[r2] == INTEGER) {
+                        long result = op == ADD ? (long) rv[r2] + value
+                                : op == SUB ? (long) rv[r2] - value
+                                : (long) rv[r2] * value;
+                        ov = result != (int) result;
+                        rv[r2] = (int) result;
+                    } else if (valType == FLOATING && rt[r2] == FLOATING) {
+                        setFloat(r2, arithmetic(op, Float.intBitsToFloat(rv[r2]),
+                                Float.intBitsToFloat(value)));
+                    } else {
+                        throw operandsError(op, valType, rt[r2]);
+                    }
+                    setCC(rt[r2], rv[r2], rb[r2]);
+                    break;
+                case OPP:
+                    fetch(o);
+                    if (valType == INTEGER) {
+                        rt[r2] = INTEGER;
+                        rv[r2] = -value;
+                    } else if (valType == FLOATING) {
+                        rt[r2] = FLOATING;
+                        rv[r2] = Float.floatToRawIntBits(-Float.intBitsToFloat(value));
+                    } else {
+                        throw new Failure("OPP avec operande : " + typeName(valType));
+                    }
+                    setCC(rt[r2], rv[r2], rb[r2]);
+                    break;
+                case QUO:
+                case REM:
+                    fetch(o);
+                    if (valType != INTEGER || rt[r2] != INTEGER) {
+                        throw operandsError(op, valType, rt[r2]);
+                    }
+                    if (value == 0 || (op == QUO && value == -1 && rv[r2] == Integer.MIN_VALUE)) {
+                        ov = true;
+                    } else {
+                        rv[r2] = op == QUO ? rv[r2] / value : rv[r2] % value;
+                        setCC(INTEGER, rv[r2], 0);
+                        ov = false;
+                    }
+                    break;
+                case DIV:
+                    fetch(o);
+                    if (valType != FLOATING || rt[r2] != FLOATING) {
+                        throw operandsError(op, valType, rt[r2]);
+                    }
+                    ov = false;
+                    if (setFloat(r2, arithmetic(op, Float.intBitsToFloat(rv[r2]),
+                            Float.intBitsToFloat(value)))) {
+                        setCC(FLOATING, rv[r2], 0);
+                    }
+                    break;
+                case CMP:
+                    fetch(o);
+                    if (valType == INTEGER && rt[r2] == INTEGER) {
+                        n = rv[r2] < value;
+                        z = rv[r2] == value;
+                    } else if (valType == FLOATING && rt[r2] == FLOATING) {
+                        float x = Float.intBitsToFloat(rv[r2]);
+                        float y = Float.intBitsToFloat(value);
+                        n = x < y;
+                        z = x == y;
+                    } else if (valType == ADDRESS && rt[r2] == ADDRESS) {
+                        z = rb[r2] == valBlock && rv[r2] == value;
+                        n = !z;
+                        // ima does not count the comparison itself here
+                        time -= ImaCode.baseCost(CMP);
+                    } else {
+                        throw operandsError(op, valType, rt[r2]);
+                    }
+                    break;
+                case FLOAT:
+                    fetch(o);
+                    if (valType != INTEGER) {
+                        throw new Failure("FLOAT avec operande : " + typeName(valType));
+                    }
+                    rt[r2] = FLOATING;
+                    rv[r2] = Float.floatToRawIntBits(toFloat(value));
+                    ov = false;
+                    break;
+                case INT: {
+                    fetch(o);
+                    if (valType != FLOATING) {
+                        throw new Failure("INT avec operande : " + typeName(valType));
+                    }
+                    float x = Float.intBitsToFloat(value);
+                    if (x >= 2147483648f || x < -2147483648f) {
+                        ov = true;
+                    } else {
+                        rt[r2] = INTEGER;
+                        rv[r2] = (int) x;
+                        ov = false;
+                    }
+                    break;
+                }
+                case FMA:
+                    fetch(o);
+                    if (valType != FLOATING) {
+                        throw new Failure("FMA avec operande 1 : " + typeName(valType));
+                    } else if (rt[r2] != FLOATING) {
+                        throw new Failure("FMA avec operande 2 : " + typeName(rt[r2]));
+                    } else if (rt[1] != FLOATING) {
+                        throw new Failure("FMA avec operande implicite (R1) : "
+                                + typeName(rt[1]));
+                    }
+                    ov = false;
+                    setFloat(r2, fma(Float.intBitsToFloat(value),
+                            Float.intBitsToFloat(rv[r2]), Float.intBitsToFloat(rv[1])));
+                    setCC(FLOATING, rv[r2], 0);
+                    break;
+                case SHL:
+                    if (rt[r1] != INTEGER) {
+                        throw new Failure("SHL avec operande 1 : " + typeName(rt[r1]));
+                    }
+                    ov = false;
+                    if (rv[r1] >= (1 << 30) || rv[r1] < -(1 << 30)) {
+                        ov = true;
+                        rv[r1] = 0;
+                    } else {
+                        rv[r1] = rv[r1] * 2;
+                    }
+                    setCC(INTEGER, rv[r1], 0);
+                    break;
+                case SHR:
+                    if (rt[r1] != INTEGER) {
+                        throw new Failure("SHR avec operande 1 : " + typeName(rt[r1]));
+                    }
+                    rv[r1] = rv[r1] / 2;
+                    setCC(INTEGER, rv[r1], 0);
+                    break;
+                case SEQ:
+                case SNE:
+                case SGT:
+                case SLT:
+                case SGE:
+                case SLE:
+                case SOV: {
+                    boolean cond = condition(op);
+                    rt[r1] = INTEGER;
+                    rv[r1] = cond ? 1 : 0;
+                    if (cond) {
+                        time++;
+                    }
+                    break;
+                }
+                case BRA:
+                    fetch(o);
+                    if (valType != CODE_ADDRESS) {
+                        throw new Failure("BRA avec operande : " + typeName(valType));
+                    }
+                    pc = value;
+                    break;
+                case BEQ:
+                case BNE:
+                case BGT:
+                case BLT:
+                case BGE:
+                case BLE:
+                case BOV:
+                    fetch(o);
+                    if (valType != CODE_ADDRESS) {
+                        throw new Failure(mnemonic(op) + " avec operande : " + typeName(valType));
+                    }
+                    if (condition(op)) {
+                        pc = value;
+                        time++;
+                    }
+                    break;
+                case BSR: {
+                    fetch(o);
+                    if (valType != CODE_ADDRESS) {
+                        throw new Failure("BSR avec operande : " + typeName(valType));
+                    }
+                    int sp = rv[SP] + 2;
+                    Block b = stackWord(sp);
+                    if (b == null || stackWord(sp - 1) == null) {
+                        throw new Failure("BSR : Debordement de la pile");
+                    }
+                    b.types[sp - 1] = CODE_ADDRESS;
+                    b.values[sp - 1] = pc;
+                    b.types[sp] = rt[LB];
+                    b.values[sp] = rv[LB];
+                    b.blocks[sp] = rb[LB];
+                    rv[SP] = sp;
+                    rt[LB] = ADDRESS;
+                    rv[LB] = sp;
+                    rb[LB] = rb[SP];
+                    pc = value;
+                    break;
+                }
+                case RTS: {
+                    if (rt[LB] != ADDRESS) {
+                        throw new Failure("RTS : LB ne contient pas une adresse ** IMPOSSIBLE **");
+                    }
+                    int lb = rv[LB];
+                    Block b = block(rb[LB], lb - 1);
+                    if (b == null || b.types[lb - 1] != CODE_ADDRESS) {
+                        throw new Failure("RTS : Pas d'adresse de retour");
+                    }
+                    pc = b.values[lb - 1];
+                    rt[SP] = ADDRESS;
+                    rv[SP] = lb - 2;
+                    rb[SP] = rb[LB];
+                    b = block(rb[LB], lb);
+                    if (b == null || b.types[lb] != ADDRESS) {
+                        throw new Failure("RTS : Pas une adresse memoire pour LB");
+                    }
+                    rv[LB] = b.values[lb];
+                    rb[LB] = b.blocks[lb];
+                    break;
+                }
+                case RINT:
+                    flush();
+                    try {
+                        input.readInt();
+                        rt[1] = INTEGER;
+                        rv[1] = input.intValue;
+                        setCC(INTEGER, rv[1], 0);
+                        ov = false;
+                    } catch (ImaInput.BadInput e) {
+                        ov = true;
+                    }
+                    break;
+                case RFLOAT:
+                    flush();
+                    try {
+                        input.readFloat();
+                        rt[1] = FLOATING;
+                        rv[1] = Float.floatToRawIntBits(input.floatValue);
+                        setCC(FLOATING, rv[1], 0);
+                        ov = false;
+                    } catch (ImaInput.BadInput e) {
+                        ov = true;
+                    }
+                    break;
+                case WINT:
+                    if (rt[1] != INTEGER) {
+                        throw new Failure("WINT avec R1 " + typeName(rt[1]));
+                    }
+                    print(Integer.toString(rv[1]));
+                    break;
+                case WFLOAT:
+                    if (rt[1] != FLOATING) {
+                        throw new Failure("WFLOAT avec R1 " + typeName(rt[1]));
+                    }
+                    print(formatFloat(Float.intBitsToFloat(rv[1])));
+                    break;
+                case WFLOATX:
+                    if (rt[1] != FLOATING) {
+                        throw new Failure("WFLOATX avec R1 " + typeName(rt[1]));
+                    }
+                    print(formatFloatHex(Float.intBitsToFloat(rv[1])));
+                    break;
+                case WSTR:
+                    write(code.strings[r1]);
+                    break;
+                case WNL:
+                    newLine();
+                    break;
+                case ADDSP:
+                case SUBSP:
+                    fetch(o);
+                    if (valType != INTEGER || rt[SP] != ADDRESS) {
+                        throw new Failure(mnemonic(op) + " : Pas une adresse");
+                    }
+                    rv[SP] += op == ADDSP ? value : -value;
+                    break;
+                case TSTO:
+                    fetch(o);
+                    ov = valType != INTEGER || rt[SP] != ADDRESS
+                            || stackSize < (long) rv[SP] + value;
+                    break;
+                case HALT:
+                    printStats("");
+                    return 0;
+                case ERROR:
+                    printStats("");
+                    return 1;
+                case SETROUND_TONEAREST:
+                case SETROUND_UPWARD:
+                case SETROUND_DOWNWARD:
+                case SETROUND_TOWARDZERO:
+                    roundingMode = op;
+                    break;
+                default:
+                    throw new IllegalStateException("unknown operation code " + op);
+                }
+            }
+        } catch (Failure e) {
+            setCol(3);
+            print("** IMA ** ERREUR ** Ligne " + code.lines[current] + " : ");
+            newLine();
+            setCol(5);
+            print(e.getMessage());
+            newLine();
+            return 1;
+        }
+    }
+
+    /**
+     * Value of the operand starting at operands[o], in valType, value and
+     * valBlock
+     */
+    private void fetch(int o) {
+        final int[] operands = code.operands;
+        switch (operands[o]) {
+        case K_REG: {
+            int r = operands[o + 1];
+            valType = regTypes[r];
+            value = regValues[r];
+            valBlock = regBlocks[r];
+            return;
+        }
+        case K_INT:
+            valType = INTEGER;
+            value = operands[o + 1];
+            return;
+        case K_FLOAT:
+            valType = FLOATING;
+            value = operands[o + 1];
+            return;
+        case K_NULL:
+            valType = ADDRESS;
+            value = 0;
+            valBlock = NULL_BLOCK;
+            return;
+        case K_LABEL:
+            valType = CODE_ADDRESS;
+            value = operands[o + 1];
+            return;
+        default:
+            address(o);
+            Block b = block(addrBlock, addrOffset);
+            if (b == null) {
+                throw new Failure(operands[o] == K_INDIRECT
+                        ? "Adressage indirect : pas une adresse valide"
+                        : "Adressage indirect indexe : pas une adresse d'un mot adressable");
+            }
+            valType = b.types[addrOffset];
+            value = b.values[addrOffset];
+            valBlock = b.blocks[addrOffset];
+        }
+    }
+
+    /**
+     * Address designated by the operand d(XX) or d(XX, Rm) starting at
+     * operands[o], in addrBlock and addrOffset
+     */
+    private void address(int o) {
+        final int[] operands = code.operands;
+        int base = operands[o + 1];
+        boolean indexed = operands[o] == K_INDEXED;
+        if (regTypes[base] != ADDRESS || regBlocks[base] == NULL_BLOCK) {
+            throw new Failure(indexed
+                    ? "Adressage indirect indexe : la base ne contient pas une adresse"
+                    : "Adressage indirect : la base ne contient pas une adresse");
+        }
+        addrBlock = regBlocks[base];
+        addrOffset = regValues[base] + operands[o + 2];
+        if (indexed) {
+            int index = operands[o + 3];
+            if (regTypes[index] != INTEGER) {
+                throw new Failure("Adressage indirect indexe : l'index ne contient pas un entier");
+            }
+            addrOffset += regValues[index];
+        }
+    }
+
+    /**
+     * @return the block containing the word (block, offset), null if this
+     * word does not exist
+     */
+    private Block block(int block, int offset) {
+        if (block <= NULL_BLOCK || block >= nbBlocks) {
+            return null;
+        }
+        Block b = blocks[block];
+        return b != null && b.contains(offset) ? b : null;
+    }
+
+    /**
+     * @return the block of the word of the stack designated by offset from
+     * SP's block, null if there is no such word
+     */
+    private Block stackWord(int offset) {
+        if (regTypes[SP] != ADDRESS) {
+            return null;
+        }
+        return block(regBlocks[SP], offset);
+    }
+
+    private int allocate(int size) {
+        if (nbBlocks == blocks.length) {
+            blocks = Arrays.copyOf(blocks, 2 * nbBlocks);
+        }
+        blocks[nbBlocks] = new Block(0, size - 1);
+        return nbBlocks++;
+    }
+
+    private void setCC(byte type, int v, int block) {
+        switch (type) {
+        case INTEGER:
+            n = v < 0;
+            z = v == 0;
+            break;
+        case FLOATING: {
+            float f = Float.intBitsToFloat(v);
+            n = f < 0;
+            z = f == 0;
+            break;
+        }
+        case ADDRESS:
+            z = block == NULL_BLOCK;
+            n = !z;
+            break;
+        default:
+            // condition codes unchanged
+        }
+    }
+
+    private boolean condition(int op) {
+        switch (op) {
+        case SEQ:
+        case BEQ:
+            return z;
+        case SNE:
+        case BNE:
+            return !z;
+        case SGT:
+        case BGT:
+            return !z && !n;
+        case SLT:
+        case BLT:
+            return n;
+        case SGE:
+        case BGE:
+            return !n;
+        case SLE:
+        case BLE:
+            return z || n;
+        default:
+            return ov;
+        }
+    }
+
+    /**
+     * Store a float result in register r, or set OV if it is not a finite
+     * float (the register is then unchanged)
+     *
+     * @return true if the result was stored
+     */
+    private boolean setFloat(int r, float f) {
+        if (Float.isInfinite(f) || Float.isNaN(f)) {
+            ov = true;
+            return false;
+        }
+        regTypes[r] = FLOATING;
+        regValues[r] = Float.floatToRawIntBits(f);
+        return true;
+    }
+
+    private static Failure operandsError(int op, byte t1, byte t2) {
+        return new Failure(mnemonic(op) + " avec op1 : " + typeName(t1)
+                + " et op2 : " + typeName(t2));
+    }
+
+    private static String typeName(byte type) {
+        switch (type) {
+        case INTEGER:
+            return "entier";
+        case FLOATING:
+            return "flottant";
+        case ADDRESS:
+            return "adresse memoire";
+        case CODE_ADDRESS:
+            return "adresse code";
+        default:
+            return "indefini";
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Floating point arithmetic. Java only rounds to nearest: the other
+    // rounding modes (SETROUND_xxx) are obtained by comparing the result
+    // with the exact value.
+
+    private static final MathContext DIVISION_PRECISION = new MathContext(80);
+
+    /**
+     * @return x op y, op being ADD, SUB, MUL or DIV
+     */
+    private float arithmetic(int op, float x, float y) {
+        float result = op == ADD ? x + y : op == SUB ? x - y : op == MUL ? x * y : x / y;
+        if (roundingMode == SETROUND_TONEAREST || Float.isInfinite(result)
+                || Float.isNaN(result)) {
+            return result;
+        }
+        BigDecimal a = new BigDecimal(x);
+        BigDecimal b = new BigDecimal(y);
+        BigDecimal exact = op == ADD ? a.add(b) : op == SUB ? a.subtract(b)
+                : op == MUL ? a.multiply(b) : a.divide(b, DIVISION_PRECISION);
+        return round(exact, result);
+    }
+
+    private float toFloat(int i) {
+        float result = (float) i;
+        if (roundingMode == SETROUND_TONEAREST) {
+            return result;
+        }
+        return round(new BigDecimal(i), result);
+    }
+
+    /**
+     * @return x * y + z, rounded once
+     */
+    private float fma(float x, float y, float z) {
+        double product = (double) x * y; // exact
+        if (Double.isInfinite(product) || Float.isInfinite(z) || Float.isNaN(z)) {
+            return (float) (product + z);
+        }
+        BigDecimal exact = new BigDecimal(product).add(new BigDecimal(z));
+        return round(exact, exact.floatValue());
+    }
+
+    /**
+     * Round an exact value to a float according to the current rounding
+     * mode, approx being one of the two floats surrounding it.
+     */
+    private float round(BigDecimal exact, float approx) {
+        if (Float.isInfinite(approx) || Float.isNaN(approx)) {
+            return approx;
+        }
+        int cmp = new BigDecimal(approx).compareTo(exact);
+        if (cmp == 0) {
+            return approx;
+        }
+        float lo = cmp < 0 ? approx : Math.nextDown(approx);
+        float hi = cmp < 0 ? Math.nextUp(approx) : approx;
+        if (Float.isInfinite(lo) || Float.isInfinite(hi)) {
+            return approx;
+        }
+        switch (roundingMode) {
+        case SETROUND_UPWARD:
+            return hi;
+        case SETROUND_DOWNWARD:
+            return lo;
+        case SETROUND_TOWARDZERO:
+            return exact.signum() > 0 ? lo : hi;
+        default:
+            BigDecimal middle = new BigDecimal(lo).add(new BigDecimal(hi))
+                    .divide(BigDecimal.valueOf(2));
+            int c = exact.compareTo(middle);
+            if (c != 0) {
+                return c < 0 ? lo : hi;
+            }
+            return (Float.floatToRawIntBits(lo) & 1) == 0 ? lo : hi;
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Output
+
+    /**
+     * Format of WFLOAT: Float'Image of Ada in lower case, i.e. 6 significant
+     * digits and an exponent of at least two digits (e.g. 1.50000e+00).
+     */
+    static String formatFloat(float f) {
+        String sign = (Float.floatToRawIntBits(f) < 0) ? "-" : "";
+        if (Float.isNaN(f) || Float.isInfinite(f)) {
+            return sign + (Float.isNaN(f) ? "nan" : "inf");
+        }
+        if (f == 0) {
+            return sign + "0.00000e+00";
+        }
+        BigDecimal d = new BigDecimal(Math.abs(f)).round(new MathContext(6, RoundingMode.HALF_UP));
+        int exponent = d.precision() - d.scale() - 1;
+        StringBuilder digits = new StringBuilder(d.unscaledValue().toString());
+        while (digits.length() < 6) {
+            digits.append('0');
+        }
+        String e = Integer.toString(Math.abs(exponent));
+        return sign + digits.charAt(0) + "." + digits.substring(1, 6) + "e"
+                + (exponent < 0 ? "-" : "+") + (e.length() < 2 ? "0" : "") + e;
+    }
+
+    /**
+     * Format of WFLOATX: printf("%a") of C (e.g. 0x1.8p+0)
+     */
+    static String formatFloatHex(float f) {
+        String sign = (Float.floatToRawIntBits(f) < 0) ? "-" : "";
+        if (Float.isNaN(f) || Float.isInfinite(f)) {
+            return sign + (Float.isNaN(f) ? "nan" : "inf");
+        }
+        if (f == 0) {
+            return sign + "0x0p+0";
+        }
+        // normalized as a double, even for the subnormal floats
+        String s = Double.toHexString(Math.abs((double) f));
+        int p = s.indexOf('p');
+        String mantissa = s.substring(0, p);
+        String exponent = s.substring(p + 1);
+        if (mantissa.endsWith(".0")) {
+            mantissa = mantissa.substring(0, mantissa.length() - 2);
+        }
+        return sign + mantissa + "p" + (exponent.startsWith("-") ? "" : "+") + exponent;
+    }
+
+    private void printStats(String limit) throws IOException {
+        if (!stats) {
+            return;
+        }
+        print("Nombre d'instructions : " + String.format("%8d", code.size)
+                + "  Temps d'execution" + limit + " : "
+                + (time <= Integer.MAX_VALUE ? " " + time : "### DES EONS ###"));
+        newLine();
+    }
+
+    private void print(String s) throws IOException {
+        for (int k = 0; k < s.length(); k++) {
+            put((byte) s.charAt(k));
+        }
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        for (byte b : bytes) {
+            put(b);
+        }
+    }
+
+    private void newLine() throws IOException {
+        put((byte) '\n');
+    }
+
+    /**
+     * Move to the given column like Set_Col of Ada.Text_IO
+     */
+    private void setCol(int col) throws IOException {
+        if (column > col) {
+            newLine();
+        }
+        while (column < col) {
+            put((byte) ' ');
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (buffered == buffer.length) {
+            flush();
+        }
+        buffer[buffered++] = b;
+        column = (b == '\n') ? 1 : column + 1;
+    }
+
+    private void flush() throws IOException {
+        if (buffered > 0) {
+            out.write(buffer, 0, buffered);
+            buffered = 0;
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,44 @@
+package fr.ensimag.ima.vm;
+
+/**
+ * Exception raised when an IMA program cannot be decoded (unknown
+ * instruction, malformed operand, undefined label, ...). Its message is the
+ * one displayed by ima in the same situation, the precise cause being
+ * available with getReason().
+ *
+ * @author Ensimag
+ * @date 01/01/2022
+ */
+public class ImaSyntaxError extends Exception {
+    private static final long serialVersionUID = -2371903426817352384L;
+
+    private final int line;
+    private final String reason;
+
+    public ImaSyntaxError(int line, String message, String reason) {
+        super(message);
+        this.line = line;
+        this.reason = reason;
+    }
+
+    /**
+     * Syntax error, reported by ima as "LIGNE n -- erreur syntaxique"
+     */
+    public ImaSyntaxError(int line, String reason) {
+        this(line, "LIGNE  " + line + " -- erreur syntaxique", reason);
+    }
+
+    /**
+     * @return the line of the program containing the error
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return the description of the error
+     */
+    public String getReason() {
+        return reason;
+    }
+}
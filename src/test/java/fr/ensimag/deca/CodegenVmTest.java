@@ -0,0 +1,120 @@
+package fr.ensimag.deca;
+
+import fr.ensimag.ima.vm.ImaAssembler;
+import fr.ensimag.ima.vm.ImaMachine;
+import fr.ensimag.ima.vm.ImaSyntaxError;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the whole codegen test suite (src/test/deca/codegen) in this JVM:
+ * every program having an expected result is compiled, executed in the IMA
+ * virtual machine and its output compared with its .res file, as
+ * Codegen-test.sh does with ima.
+ */
+public class CodegenVmTest {
+    private static final Path SOURCES = Paths.get("src/test/deca/codegen");
+    private static final Path RESULTS = Paths.get("src/test/results/deca/codegen");
+    /** Bound on the execution time of each program, in ima cycles */
+    private static final long TIME_LIMIT = 100000000L;
+
+    @Test
+    public void testCodegenSuite() throws Exception {
+        runSuite();
+    }
+
+    @Test
+    public void testCodegenSuiteOptimized() throws Exception {
+        // the folded programs must behave as the others
+        runSuite("-O1");
+    }
+
+    @Test
+    public void testCodegenSuiteInlined() throws Exception {
+        // the inlined methods must behave as the called ones
+        runSuite("-O2");
+    }
+
+    @Test
+    public void testCodegenSuiteFusedMultiplyAdd() throws Exception {
+        // the expected results do not depend on the rounding of a * b + c
+        runSuite("-O2", "--fma");
+    }
+
+    private void runSuite(String... options) throws Exception {
+        // compile a copy of the tests, so that no .ass is left in the sources
+        Path dir = Files.createTempDirectory("decac-codegen");
+        List<String> args = new ArrayList<String>();
+        args.add("--no-cache");
+        for (String option : options) {
+            args.add(option);
+        }
+        List<Path> expected = new ArrayList<Path>();
+        List<Path> copies = new ArrayList<Path>();
+        try (Stream<Path> files = Files.walk(SOURCES)) {
+            for (Path source : files.sorted().collect(Collectors.toList())) {
+                Path copy = dir.resolve(SOURCES.relativize(source).toString());
+                if (Files.isDirectory(source)) {
+                    Files.createDirectories(copy);
+                    continue;
+                }
+                Files.copy(source, copy, StandardCopyOption.REPLACE_EXISTING);
+                String name = SOURCES.relativize(source).toString();
+                Path res = RESULTS.resolve(name.replaceAll("\\.deca$", ".res"));
+                if (name.endsWith(".deca") && Files.exists(res)) {
+                    args.add(copy.toString());
+                    expected.add(res);
+                    copies.add(copy);
+                }
+            }
+        }
+        assertFalse(copies.isEmpty());
+
+        CompilerOptions compilerOptions = new CompilerOptions();
+        compilerOptions.parseArgs(args.toArray(new String[args.size()]));
+        ByteArrayOutputStream compilerOutput = new ByteArrayOutputStream();
+        PrintStream compilerStream = new PrintStream(compilerOutput, true);
+        boolean[] errors = DecacMain.compileFiles(compilerOptions, compilerStream, compilerStream);
+
+        List<String> failures = new ArrayList<String>();
+        for (int k = 0; k < copies.size(); k++) {
+            String name = dir.relativize(copies.get(k)).toString();
+            if (errors[k]) {
+                failures.add(name + " (compilation)");
+                continue;
+            }
+            File ass = new File(DecacCompiler.getDestFile(copies.get(k).toFile(), compilerOptions));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try {
+                ImaMachine machine = new ImaMachine(
+                        ImaAssembler.assemble(Files.readAllBytes(ass.toPath())),
+                        new ByteArrayInputStream(new byte[0]), output);
+                machine.setTimeLimit(TIME_LIMIT);
+                machine.run();
+            } catch (ImaSyntaxError e) {
+                // displayed by ima on its standard output
+                output.write((e.getMessage() + "\n").getBytes(StandardCharsets.ISO_8859_1));
+            }
+            if (!new String(Files.readAllBytes(expected.get(k)), StandardCharsets.ISO_8859_1)
+                    .equals(new String(output.toByteArray(), StandardCharsets.ISO_8859_1))) {
+                failures.add(name);
+            }
+        }
+        assertEquals(new ArrayList<String>(), failures,
+                new String(compilerOutput.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
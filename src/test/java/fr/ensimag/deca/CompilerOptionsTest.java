@@ -209,5 +209,76 @@ public class CompilerOptionsTest{
 
         
     }
-    
+
+    @Test
+    public void testDaemon() throws CLIException {
+        String[] args = { "--daemon", "--port", "4242" };
+        CompilerOptions compOpt = new CompilerOptions();
+        compOpt.parseArgs(args);
+        assertEquals(true, compOpt.getDaemon());
+        assertEquals(4242, compOpt.getPort());
+        assertEquals(0, compOpt.getSourceFiles().size());
+    }
+
+    @Test
+    public void testDaemonWithFile() throws CLIException {
+        // the files are sent later to the server
+        String[] args = { "--daemon", "oui.deca" };
+        CompilerOptions compOpt = new CompilerOptions();
+        assertThrows(CLIException.class, () -> {compOpt.parseArgs(args);});
+    }
+
+    @Test
+    public void testOptimization() throws CLIException {
+        String[] args = { "-O1", "oui.deca" };
+        CompilerOptions compOpt = new CompilerOptions();
+        compOpt.parseArgs(args);
+        assertEquals(1, compOpt.getOptimization());
+        assertNotEquals(new CompilerOptions().getCodeGenKey(), compOpt.getCodeGenKey());
+
+        String[] noFile = { "-O1" };
+        assertThrows(CLIException.class, () -> {new CompilerOptions().parseArgs(noFile);});
+
+        String[] inlining = { "-O2", "oui.deca" };
+        CompilerOptions compOpt2 = new CompilerOptions();
+        compOpt2.parseArgs(inlining);
+        assertEquals(2, compOpt2.getOptimization());
+        assertNotEquals(compOpt.getCodeGenKey(), compOpt2.getCodeGenKey());
+    }
+
+    @Test
+    public void testFusedMultiplyAdd() throws CLIException {
+        String[] args = { "--fma", "oui.deca" };
+        CompilerOptions compOpt = new CompilerOptions();
+        compOpt.parseArgs(args);
+        assertTrue(compOpt.getFusedMultiplyAdd());
+        assertFalse(new CompilerOptions().getFusedMultiplyAdd());
+        assertNotEquals(new CompilerOptions().getCodeGenKey(), compOpt.getCodeGenKey());
+
+        String[] noFile = { "--fma" };
+        assertThrows(CLIException.class, () -> {new CompilerOptions().parseArgs(noFile);});
+    }
+
+    @Test
+    public void testArmArch() throws CLIException {
+        CompilerOptions defaultArch = new CompilerOptions();
+        defaultArch.parseArgs(new String[] { "-a", "oui.deca" });
+        assertEquals("armv6", defaultArch.getArmArch());
+        assertFalse(defaultArch.getArmHardwareDivide());
+
+        String[] args = { "-a", "--arm-arch", "armv7ve", "oui.deca" };
+        CompilerOptions compOpt = new CompilerOptions();
+        compOpt.parseArgs(args);
+        assertEquals("armv7ve", compOpt.getArmArch());
+        assertTrue(compOpt.getArmHardwareDivide());
+        assertNotEquals(defaultArch.getCodeGenKey(), compOpt.getCodeGenKey());
+
+        String[] unknown = { "-a", "--arm-arch", "armv4", "oui.deca" };
+        assertThrows(CLIException.class, () -> {new CompilerOptions().parseArgs(unknown);});
+        String[] noArch = { "-a", "oui.deca", "--arm-arch" };
+        assertThrows(CLIException.class, () -> {new CompilerOptions().parseArgs(noArch);});
+        String[] noArm = { "--arm-arch", "armv8-a", "oui.deca" };
+        assertThrows(CLIException.class, () -> {new CompilerOptions().parseArgs(noArm);});
+    }
+
 }
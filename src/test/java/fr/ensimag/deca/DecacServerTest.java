@@ -0,0 +1,61 @@
+package fr.ensimag.deca;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the line protocol of the compile server (decac --daemon).
+ */
+public class DecacServerTest {
+
+    private File writeSource(File dir, String name, String program) throws IOException {
+        File source = new File(dir, name);
+        try (FileWriter writer = new FileWriter(source)) {
+            writer.write(program);
+        }
+        return source;
+    }
+
+    @Test
+    public void testRequests() throws IOException {
+        File dir = Files.createTempDirectory("decac-server").toFile();
+        File ok = writeSource(dir, "ok.deca", "{ println(\"ok\"); }");
+        File bad = writeSource(dir, "bad.deca", "{ int x = 1.5; }");
+
+        String requests = ok.getPath() + "\n"
+                + "-v\t" + bad.getPath() + "\n"
+                + DecacServer.QUIT + "\n"
+                + ok.getPath() + "\n";
+        StringWriter answer = new StringWriter();
+        DecacServer server = new DecacServer();
+        // "quit" stops the server before the last request
+        assertFalse(server.serve(new BufferedReader(new StringReader(requests)),
+                new PrintWriter(answer)));
+
+        String[] lines = answer.toString().split("\r?\n");
+        assertEquals(4, lines.length);
+        assertEquals(DecacServer.FILE + new File(dir, "ok.ass").getAbsolutePath(), lines[0]);
+        assertEquals(DecacServer.EXIT + 0, lines[1]);
+        assertTrue(lines[2].startsWith(DecacServer.ERR));
+        assertTrue(lines[2].contains("RULE 3.28"));
+        assertEquals(DecacServer.EXIT + 1, lines[3]);
+        assertTrue(new File(dir, "ok.ass").exists());
+    }
+
+    @Test
+    public void testBadOptions() {
+        StringWriter answer = new StringWriter();
+        assertEquals(1, new DecacServer().handleRequest("-r 2 oui.deca",
+                new PrintWriter(answer)));
+        assertTrue(answer.toString().startsWith(DecacServer.ERR));
+    }
+}
@@ -0,0 +1,143 @@
+package fr.ensimag.deca.codegen;
+
+import fr.ensimag.ima.pseudocode.ARMProgram;
+import fr.ensimag.ima.pseudocode.ARMRegister;
+import fr.ensimag.ima.pseudocode.IMAProgram;
+import fr.ensimag.ima.pseudocode.ImmediateInteger;
+import fr.ensimag.ima.pseudocode.Label;
+import fr.ensimag.ima.pseudocode.Register;
+import fr.ensimag.ima.pseudocode.RegisterOffset;
+import fr.ensimag.ima.pseudocode.instructions.*;
+import fr.ensimag.ima.pseudocode.instructionsARM.add;
+import fr.ensimag.ima.pseudocode.instructionsARM.bl;
+import fr.ensimag.ima.pseudocode.instructionsARM.ldr;
+import fr.ensimag.ima.pseudocode.instructionsARM.mov;
+import fr.ensimag.ima.vm.ImaAssembler;
+import fr.ensimag.ima.vm.ImaMachine;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Rules of the peephole optimizers, the IMA code being checked by running it
+ * in the IMA virtual machine.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class PeepholeOptimizerTest {
+
+    private String run(IMAProgram program) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ImaMachine(ImaAssembler.assemble(program),
+                new ByteArrayInputStream(new byte[0]), output).run();
+        return output.toString();
+    }
+
+    @Test
+    public void testIMARules() throws Exception {
+        RegisterOffset x = new RegisterOffset(1, Register.GB);
+        Label end = new Label("end");
+        IMAProgram program = new IMAProgram();
+        program.addInstruction(new ADDSP(1));
+        // x = 6
+        program.addInstruction(new LOAD(new ImmediateInteger(6), Register.R0));
+        program.addInstruction(new STORE(Register.R0, x));
+        program.addInstruction(new LOAD(x, Register.R0));
+        // R2 = x * 7, the multiplication being done in R0
+        program.addInstruction(new LOAD(Register.R0, Register.getR(2)));
+        program.addInstruction(new LOAD(new ImmediateInteger(7), Register.R0));
+        program.addInstruction(new MUL(Register.getR(2), Register.R0));
+        program.addInstruction(new LOAD(Register.R0, Register.getR(2)));
+        program.addInstruction(new LOAD(Register.getR(2), Register.R0));
+        program.addInstruction(new PUSH(Register.getR(2)));
+        program.addInstruction(new POP(Register.getR(2)));
+        program.addInstruction(new BRA(end));
+        program.addLabel(end);
+        program.addInstruction(new LOAD(Register.getR(2), Register.R1));
+        program.addInstruction(new WINT());
+        program.addInstruction(new WNL());
+        program.addInstruction(new HALT());
+        int size = program.size();
+        assertEquals("42\n", run(program));
+
+        IMAPeepholeOptimizer optimizer = new IMAPeepholeOptimizer(16);
+        optimizer.optimize(program.getLines(0));
+        assertEquals("42\n", run(program));
+        assertEquals(1, optimizer.getRemovedLines("branch-to-next"));
+        assertEquals(2, optimizer.getRemovedLines("push-pop"));
+        assertTrue(optimizer.getRemovedLines("redundant-load") >= 2);
+        assertFalse(program.display().contains("PUSH"), program.display());
+        assertTrue(program.size() <= size - 6, program.display());
+    }
+
+    @Test
+    public void testConditionCodesKept() throws Exception {
+        Label positive = new Label("positive");
+        Label end = new Label("end");
+        IMAProgram program = new IMAProgram();
+        program.addInstruction(new LOAD(new ImmediateInteger(-3), Register.getR(2)));
+        // the copy sets the condition codes used by the branch
+        program.addInstruction(new LOAD(Register.getR(2), Register.getR(2)));
+        program.addInstruction(new BGT(positive));
+        program.addInstruction(new WSTR("negative"));
+        program.addInstruction(new BRA(end));
+        program.addLabel(positive);
+        program.addInstruction(new WSTR("positive"));
+        program.addLabel(end);
+        program.addInstruction(new WNL());
+        program.addInstruction(new HALT());
+
+        IMAPeepholeOptimizer optimizer = new IMAPeepholeOptimizer(16);
+        optimizer.optimize(program.getLines(0));
+        assertEquals(0, optimizer.getRemovedLines("self-copy"));
+        assertEquals("negative\n", run(program));
+    }
+
+    @Test
+    public void testCallerSavedRegisterAcrossCall() throws Exception {
+        Label method = new Label("method");
+        IMAProgram program = new IMAProgram();
+        // R9 is caller-saved with 16 registers: the method overwrites it
+        program.addInstruction(new LOAD(new ImmediateInteger(5), Register.getR(9)));
+        program.addInstruction(new BSR(method));
+        program.addInstruction(new LOAD(Register.getR(9), Register.R1));
+        program.addInstruction(new WINT());
+        program.addInstruction(new WNL());
+        program.addInstruction(new HALT());
+        program.addLabel(method);
+        program.addInstruction(new LOAD(new ImmediateInteger(7), Register.getR(9)));
+        program.addInstruction(new RTS());
+
+        IMAPeepholeOptimizer optimizer = new IMAPeepholeOptimizer(16);
+        optimizer.optimize(program.getLines(0));
+        assertEquals(1, optimizer.getRemovedLines("dead-load"), program.display());
+        assertEquals("7\n", run(program));
+    }
+
+    @Test
+    public void testARMCopyForward() {
+        ARMProgram program = new ARMProgram();
+        // printf("%i", 1 + 2), the sum being computed in r0 and kept in r4
+        program.addInstruction(new mov(ARMRegister.r0, 1));
+        program.addInstruction(new mov(ARMRegister.getR(4), ARMRegister.r0));
+        program.addInstruction(new mov(ARMRegister.r0, 2));
+        program.addInstruction(new add(ARMRegister.r0, ARMRegister.getR(4), ARMRegister.r0));
+        program.addInstruction(new mov(ARMRegister.getR(4), ARMRegister.r0));
+        program.addInstruction(new ldr(ARMRegister.r0, "=int"));
+        program.addInstruction(new mov(ARMRegister.r1, ARMRegister.getR(4)));
+        program.addInstruction(new mov(ARMRegister.getR(4), ARMRegister.r1));
+        // r0 and r1 are the arguments of the call
+        program.addInstruction(new bl("printf"));
+
+        ARMPeepholeOptimizer optimizer = new ARMPeepholeOptimizer();
+        optimizer.optimize(program.getLines(0));
+        assertEquals(2, optimizer.getRemovedLines("copy-forward"));
+        assertEquals(1, optimizer.getRemovedLines("redundant-move"));
+        assertEquals("\tmov r4, #1\n\tmov r0, #2\n\tadd r4, r4, r0\n"
+                + "\tldr r0, =int\n\tmov r1, r4\n\tbl printf\n",
+                program.display().replace("\n\n", "\n"));
+    }
+}
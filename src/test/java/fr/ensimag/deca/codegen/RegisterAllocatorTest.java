@@ -0,0 +1,195 @@
+package fr.ensimag.deca.codegen;
+
+import fr.ensimag.deca.CompilerOptions;
+import fr.ensimag.deca.DecacCompiler;
+import fr.ensimag.ima.pseudocode.AbstractLine;
+import fr.ensimag.ima.pseudocode.GPRegister;
+import fr.ensimag.ima.pseudocode.IMAProgram;
+import fr.ensimag.ima.pseudocode.ImmediateInteger;
+import fr.ensimag.ima.pseudocode.Label;
+import fr.ensimag.ima.pseudocode.Line;
+import fr.ensimag.ima.pseudocode.Register;
+import fr.ensimag.ima.pseudocode.RegisterOffset;
+import fr.ensimag.ima.pseudocode.instructions.*;
+import fr.ensimag.ima.vm.ImaAssembler;
+import fr.ensimag.ima.vm.ImaMachine;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Allocation of small routines, checked by running them in the IMA virtual
+ * machine.
+ *
+ * @author gl49
+ * @date 01/01/2022
+ */
+public class RegisterAllocatorTest {
+
+    private DecacCompiler compiler(int nbRegisters) {
+        DecacCompiler compiler = new DecacCompiler(new CompilerOptions(), null);
+        compiler.setListRegister(new Register(nbRegisters));
+        return compiler;
+    }
+
+    private String run(List<AbstractLine> routine, int nbGlobals) throws Exception {
+        IMAProgram program = new IMAProgram();
+        program.addInstruction(new ADDSP(nbGlobals));
+        for (AbstractLine line : routine) {
+            program.add(line);
+        }
+        String text = program.display();
+        assertFalse(text.matches("(?s).*\\bV[0-9]+\\b.*"), text);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ImaMachine(ImaAssembler.assemble(program),
+                new ByteArrayInputStream(new byte[0]), output).run();
+        return output.toString();
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        // 6 values live at the same time, with only R2 and R3
+        DecacCompiler compiler = compiler(4);
+        List<AbstractLine> routine = new ArrayList<AbstractLine>();
+        GPRegister[] values = new GPRegister[6];
+        for (int k = 0; k < values.length; k++) {
+            values[k] = compiler.getListRegister().getRegister(compiler);
+            routine.add(new Line(new LOAD(new ImmediateInteger(k + 1), values[k])));
+        }
+        routine.add(new Line(new LOAD(new ImmediateInteger(0), Register.R1)));
+        for (int k = 0; k < values.length; k++) {
+            routine.add(new Line(new MUL(new ImmediateInteger(10), Register.R1)));
+            routine.add(new Line(new ADD(values[k], Register.R1)));
+        }
+        routine.add(new Line(new WINT()));
+        routine.add(new Line(new HALT()));
+
+        RegisterAllocator allocator = new RegisterAllocator(compiler, "test", Register.GB, 1);
+        allocator.allocate(routine);
+        // at least 4 values are spilled, a temporary is needed to store them
+        assertTrue(allocator.getNbSpilled() >= 4);
+        assertEquals(allocator.getNbSpilled(), allocator.getNbSpillSlots());
+        assertEquals(2, allocator.getUsedRegisters().size());
+        assertEquals("123456\n", run(routine, allocator.getNbSpillSlots()));
+    }
+
+    @Test
+    public void testVariableInLoop() throws Exception {
+        // i = 0; while (i < 3) { i = i + 1 }; print(i), i being at 1(GB)
+        DecacCompiler compiler = compiler(16);
+        RegisterOffset i = new RegisterOffset(1, Register.GB);
+        Label loop = new Label("loop");
+        Label end = new Label("end");
+        List<AbstractLine> routine = new ArrayList<AbstractLine>();
+        routine.add(new Line(new LOAD(new ImmediateInteger(0), Register.R0)));
+        routine.add(new Line(new STORE(Register.R0, i)));
+        routine.add(new Line(loop, new LOAD(i, Register.R0), null));
+        routine.add(new Line(new CMP(new ImmediateInteger(3), Register.R0)));
+        routine.add(new Line(new BGE(end)));
+        routine.add(new Line(new LOAD(i, Register.R0)));
+        routine.add(new Line(new ADD(new ImmediateInteger(1), Register.R0)));
+        routine.add(new Line(new STORE(Register.R0, i)));
+        routine.add(new Line(new BRA(loop)));
+        routine.add(new Line(end, new LOAD(i, Register.R1), null));
+        routine.add(new Line(new WINT()));
+        routine.add(new Line(new HALT()));
+
+        RegisterAllocator allocator = new RegisterAllocator(compiler, "test", Register.GB, 2);
+        allocator.addVariable(i, false);
+        allocator.allocate(routine);
+        assertEquals(0, allocator.getNbSpilled());
+        assertEquals(1, allocator.getUsedRegisters().size());
+        assertEquals("3\n", run(routine, 1));
+        for (AbstractLine line : routine) {
+            Line l = (Line) line;
+            if (l.getInstruction() instanceof STORE) {
+                fail("the variable is still in memory");
+            }
+        }
+    }
+
+    @Test
+    public void testCallingConvention() throws Exception {
+        // R2 and R3 are callee-saved, R4 and R5 caller-saved, the routine
+        // sub clobbering the latter
+        DecacCompiler compiler = compiler(6);
+        Label sub = new Label("sub");
+        List<AbstractLine> routine = new ArrayList<AbstractLine>();
+        GPRegister[] values = new GPRegister[3];
+        for (int k = 0; k < values.length; k++) {
+            values[k] = compiler.getListRegister().getRegister(compiler);
+            routine.add(new Line(new LOAD(new ImmediateInteger(k + 1), values[k])));
+        }
+        routine.add(new Line(new BSR(sub)));
+        routine.add(new Line(new LOAD(new ImmediateInteger(0), Register.R1)));
+        for (int k = 0; k < values.length; k++) {
+            routine.add(new Line(new MUL(new ImmediateInteger(10), Register.R1)));
+            routine.add(new Line(new ADD(values[k], Register.R1)));
+        }
+        routine.add(new Line(new WINT()));
+        routine.add(new Line(new HALT()));
+
+        RegisterAllocator allocator = new RegisterAllocator(compiler, "test", Register.GB, 1);
+        allocator.allocate(routine);
+        assertEquals(0, allocator.getNbSpilled());
+        assertEquals(2, allocator.getCalleeSavedRegisters().size());
+        // the third value is saved around the call
+        assertEquals(1, allocator.getNbSpillSlots());
+        routine.add(new Line(sub, new LOAD(new ImmediateInteger(0), Register.getR(4)), null));
+        routine.add(new Line(new LOAD(new ImmediateInteger(0), Register.getR(5))));
+        routine.add(new Line(new RTS()));
+        assertEquals("123\n", run(routine, allocator.getNbSpillSlots()));
+    }
+
+    @Test
+    public void testSpilledRatherThanSavedInLoop() throws Exception {
+        // as above, the routine sub being called in a loop whose counter is
+        // at 1(GB): the third value, only used after the loop, is spilled
+        DecacCompiler compiler = compiler(6);
+        Label sub = new Label("sub");
+        Label loop = new Label("loop");
+        RegisterOffset counter = new RegisterOffset(1, Register.GB);
+        List<AbstractLine> routine = new ArrayList<AbstractLine>();
+        GPRegister[] values = new GPRegister[3];
+        for (int k = 0; k < values.length; k++) {
+            values[k] = compiler.getListRegister().getRegister(compiler);
+            routine.add(new Line(new LOAD(new ImmediateInteger(k + 1), values[k])));
+        }
+        routine.add(new Line(new LOAD(new ImmediateInteger(0), Register.R0)));
+        routine.add(new Line(new STORE(Register.R0, counter)));
+        routine.add(new Line(loop, new BSR(sub), null));
+        routine.add(new Line(new LOAD(counter, Register.R0)));
+        routine.add(new Line(new ADD(new ImmediateInteger(1), Register.R0)));
+        routine.add(new Line(new STORE(Register.R0, counter)));
+        routine.add(new Line(new CMP(new ImmediateInteger(3), Register.R0)));
+        routine.add(new Line(new BLT(loop)));
+        routine.add(new Line(new LOAD(new ImmediateInteger(0), Register.R1)));
+        for (int k = 0; k < values.length; k++) {
+            routine.add(new Line(new MUL(new ImmediateInteger(10), Register.R1)));
+            routine.add(new Line(new ADD(values[k], Register.R1)));
+        }
+        routine.add(new Line(new WINT()));
+        routine.add(new Line(new HALT()));
+
+        RegisterAllocator allocator = new RegisterAllocator(compiler, "test", Register.GB, 2);
+        allocator.allocate(routine);
+        assertEquals(1, allocator.getNbSpilled());
+        assertEquals(2, allocator.getCalleeSavedRegisters().size());
+        int nbStores = 0;
+        for (AbstractLine line : routine) {
+            if (((Line) line).getInstruction() instanceof STORE) {
+                nbStores++;
+            }
+        }
+        // the counter twice, the spilled value once
+        assertEquals(3, nbStores);
+        routine.add(new Line(sub, new LOAD(new ImmediateInteger(0), Register.getR(4)), null));
+        routine.add(new Line(new LOAD(new ImmediateInteger(0), Register.getR(5))));
+        routine.add(new Line(new RTS()));
+        assertEquals("123\n", run(routine, 1 + allocator.getNbSpillSlots()));
+    }
+}
@@ -0,0 +1,94 @@
+package fr.ensimag.deca.context;
+
+import fr.ensimag.deca.tools.SymbolTable;
+import fr.ensimag.deca.tree.Location;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Object <- A <- B <- C, A <- D: f is declared in A and redefined in C, g is
+ * only declared in A, h is declared in B.
+ */
+public class TestClassHierarchy {
+    private SymbolTable symbT;
+    private ClassDefinition object, a, b, c, d;
+    private SymbolTable.Symbol f, g, h;
+    private ClassHierarchy hierarchy;
+
+    private ClassDefinition declareClass(String name, ClassDefinition superClass) {
+        ClassDefinition def = new ClassType(symbT.create(name), Location.BUILTIN, superClass).getDefinition();
+        hierarchy.addClass(def);
+        return def;
+    }
+
+    private void declareMethod(ClassDefinition def, SymbolTable.Symbol name, int index)
+            throws EnvironmentExp.DoubleDefException {
+        def.getMembers().declare(name, new MethodDefinition(
+                new VoidType(symbT.create("void")), Location.BUILTIN, new Signature(), index));
+    }
+
+    @BeforeEach
+    public void setup() throws EnvironmentExp.DoubleDefException {
+        symbT = new SymbolTable();
+        hierarchy = new ClassHierarchy();
+        object = new ClassType(symbT.create("Object"), Location.BUILTIN, null).getDefinition();
+        a = declareClass("A", object);
+        b = declareClass("B", a);
+        c = declareClass("C", b);
+        d = declareClass("D", a);
+        f = symbT.create("f");
+        g = symbT.create("g");
+        h = symbT.create("h");
+        declareMethod(a, f, 2);
+        declareMethod(a, g, 3);
+        declareMethod(b, h, 4);
+        declareMethod(c, f, 2);
+    }
+
+    @Test
+    public void testImplementation() {
+        assertSame(a, hierarchy.getImplementation(a, f));
+        assertSame(a, hierarchy.getImplementation(b, f));
+        assertSame(c, hierarchy.getImplementation(c, f));
+        assertSame(a, hierarchy.getImplementation(d, g));
+        assertNull(hierarchy.getImplementation(a, h));
+    }
+
+    @Test
+    public void testUniqueImplementation() {
+        // redefined in C, below A and B
+        assertNull(hierarchy.getUniqueImplementation(a, f));
+        assertNull(hierarchy.getUniqueImplementation(b, f));
+        assertSame(c, hierarchy.getUniqueImplementation(c, f));
+        assertSame(a, hierarchy.getUniqueImplementation(d, f));
+        // never redefined
+        assertSame(a, hierarchy.getUniqueImplementation(a, g));
+        assertSame(a, hierarchy.getUniqueImplementation(c, g));
+        assertSame(b, hierarchy.getUniqueImplementation(b, h));
+    }
+
+    @Test
+    public void testSubclasses() {
+        assertEquals(1, hierarchy.getSubclasses(object).size());
+        assertEquals(2, hierarchy.getSubclasses(a).size());
+        assertTrue(hierarchy.getSubclasses(c).isEmpty());
+    }
+
+    @Test
+    public void testNumbers() {
+        hierarchy.numberClasses(object);
+        // preorder: Object, A, B, C, D
+        assertEquals(0, object.getNumber());
+        assertEquals(4, object.getLastSubclassNumber());
+        assertEquals(1, a.getNumber());
+        assertEquals(4, a.getLastSubclassNumber());
+        assertEquals(2, b.getNumber());
+        assertEquals(3, b.getLastSubclassNumber());
+        assertEquals(3, c.getNumber());
+        assertEquals(3, c.getLastSubclassNumber());
+        assertEquals(4, d.getNumber());
+        // D is not a subclass of B
+        assertTrue(d.getNumber() > b.getLastSubclassNumber());
+    }
+}
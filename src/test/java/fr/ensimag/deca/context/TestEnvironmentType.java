@@ -10,7 +10,7 @@ public class TestEnvironmentType {
 
     @Test
     public void testGet() throws ContextualError {
-        EnvironmentType envT = EnvironmentType.getEnvTypes();
+        EnvironmentType envT = new EnvironmentType();
         SymbolTable symbT= new SymbolTable();
         SymbolTable.Symbol symb = symbT.create("x");
         envT.put(symb, Mockito.mock(TypeDefinition.class));
@@ -23,7 +23,7 @@ public class TestEnvironmentType {
         assertThrows(ContextualError.class, new Executable() {
             @Override
             public void execute() throws Throwable {
-                EnvironmentType envT = EnvironmentType.getEnvTypes();
+                EnvironmentType envT = new EnvironmentType();
                 SymbolTable symbT= new SymbolTable();
                 SymbolTable.Symbol symb = symbT.create("x");
                 envT.get(symb, null);
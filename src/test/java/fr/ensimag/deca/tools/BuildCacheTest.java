@@ -0,0 +1,75 @@
+package fr.ensimag.deca.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author gl49
+ */
+public class BuildCacheTest {
+
+    private static void write(File f, String content) throws IOException {
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(File f) throws IOException {
+        return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRestoreAndIncludes() throws IOException {
+        File dir = Files.createTempDirectory("decac-cache").toFile();
+        BuildCache cache = new BuildCache(new File(dir, "cache"));
+        File source = new File(dir, "prog.deca");
+        File include = new File(dir, "lib.decah");
+        File dest = new File(dir, "prog.ass");
+        write(source, "#include \"lib.decah\"\n{}");
+        write(include, "class A {}");
+        write(dest, "\tHALT\n");
+
+        String key = cache.key(Files.readAllBytes(source.toPath()), "r=16");
+        assertFalse(cache.restore(key, source, dest));
+
+        Map<String, String> includes = new LinkedHashMap<String, String>();
+        includes.put("lib.decah", "class A {}");
+        cache.store(key, includes, dest);
+        assertTrue(dest.delete());
+        assertTrue(cache.restore(key, source, dest));
+        assertEquals("\tHALT\n", read(dest));
+
+        // other options, other entry
+        assertNotEquals(key, cache.key(Files.readAllBytes(source.toPath()), "r=4"));
+
+        // a modified include invalidates the entry
+        write(include, "class B {}");
+        assertFalse(cache.restore(key, source, dest));
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        File dir = Files.createTempDirectory("decac-cache").toFile();
+        File cacheDir = new File(dir, "cache");
+        // room for one entry only
+        BuildCache cache = new BuildCache(cacheDir, 100);
+        File source = new File(dir, "prog.deca");
+        File dest = new File(dir, "prog.ass");
+        write(source, "{}");
+        write(dest, "; 0123456789012345678901234567890123456789\n\tHALT\n");
+
+        String first = cache.key("{}".getBytes(StandardCharsets.UTF_8), "r=16");
+        String second = cache.key("{}".getBytes(StandardCharsets.UTF_8), "r=8");
+        cache.store(first, new LinkedHashMap<String, String>(), dest);
+        new File(cacheDir, first + ".entry").setLastModified(System.currentTimeMillis() - 10000);
+        cache.store(second, new LinkedHashMap<String, String>(), dest);
+
+        assertFalse(cache.restore(first, source, dest));
+        assertTrue(cache.restore(second, source, dest));
+    }
+}
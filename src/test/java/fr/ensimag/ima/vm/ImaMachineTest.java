@@ -0,0 +1,95 @@
+package fr.ensimag.ima.vm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the virtual machine against the outputs of ima on small programs.
+ */
+public class ImaMachineTest {
+
+    private int status;
+
+    private String run(String program, String input) throws IOException, ImaSyntaxError {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImaMachine machine = new ImaMachine(
+                ImaAssembler.assemble(program.getBytes(StandardCharsets.ISO_8859_1)),
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.ISO_8859_1)), output);
+        status = machine.run();
+        return new String(output.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void testFloats() throws Exception {
+        assertEquals("1.00000e-01\n0x1.99999ap-4\n-0.00000e+00\n1.23457e+05\n0x1.16c2p-133\n",
+                run("\tLOAD #0.1, R1\n\tWFLOAT\n\tWNL\n\tWFLOATX\n\tWNL\n"
+                        + "\tLOAD #-0.0, R1\n\tWFLOAT\n\tWNL\n"
+                        + "\tLOAD #123456.75, R1\n\tWFLOAT\n\tWNL\n"
+                        + "\tLOAD #1.0e-40, R1\n\tWFLOATX\n\tWNL\n\tHALT\n", ""));
+        assertEquals(0, status);
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        assertEquals("-2147483648\n1\n",
+                run("\tLOAD #2147483647, R1\n\tADD #1, R1\n\tBOV o\n\tHALT\n"
+                        + "o:\tWINT\n\tWNL\n\tLOAD #3, R1\n\tQUO #0, R1\n\tSOV R2\n"
+                        + "\tLOAD R2, R1\n\tWINT\n\tWNL\n\tHALT\n", ""));
+    }
+
+    @Test
+    public void testOverflowCleared() throws Exception {
+        // FMA and SHL clear the overflow left by a previous instruction
+        assertEquals("ok\nok\n",
+                run("\tLOAD #2147483647, R2\n\tADD #1, R2\n"
+                        + "\tLOAD #2.0, R0\n\tLOAD #0.5, R1\n\tFMA #1.5, R0\n\tBOV o\n"
+                        + "\tWSTR \"ok\"\n\tWNL\n"
+                        + "\tLOAD #2147483647, R2\n\tADD #1, R2\n"
+                        + "\tLOAD #3, R0\n\tSHL R0\n\tBOV o\n"
+                        + "\tWSTR \"ok\"\n\tWNL\n\tHALT\n"
+                        + "o:\tWSTR \"overflow\"\n\tWNL\n\tHALT\n", ""));
+    }
+
+    @Test
+    public void testCallAndRead() throws Exception {
+        String program = "\tTSTO #2\n\tBOV e\n\tBSR f\n\tWINT\n\tWNL\n\tHALT\n"
+                + "f:\tRINT\n\tBOV e\n\tMUL #2, R1\n\tRTS\n"
+                + "e:\tWSTR \"input \"\"error\"\"\"\n\tWNL\n\tERROR\n";
+        assertEquals("42\n", run(program, "  \n 21\n"));
+        assertEquals(0, status);
+        assertEquals("input \"error\"\n", run(program, "21x\n"));
+        assertEquals(1, status);
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        // the messages start at column 3, on the current line if possible
+        assertEquals("a ** IMA ** ERREUR ** Plus d'instructions !!\n",
+                run("\tWSTR \"a\"\n", ""));
+        assertEquals("abc\n  ** IMA ** ERREUR ** Plus d'instructions !!\n",
+                run("\tWSTR \"abc\"\n", ""));
+        assertEquals(1, status);
+        assertEquals("  ** IMA ** ERREUR ** Ligne 2 : \n"
+                + "    Adressage indirect : la base ne contient pas une adresse\n",
+                run("\tLOAD #1, R0\n\tLOAD 0(R0), R1\n", ""));
+        assertEquals(1, status);
+        try {
+            ImaAssembler.assemble("\tBRA nowhere\n".getBytes(StandardCharsets.ISO_8859_1));
+            fail("undefined label accepted");
+        } catch (ImaSyntaxError e) {
+            assertEquals("Etiquette non definie : nowhere", e.getMessage());
+        }
+        try {
+            ImaAssembler.assemble("\tLOAD #1, R0\n\tLOAD R0\n".getBytes(StandardCharsets.ISO_8859_1));
+            fail("missing operand accepted");
+        } catch (ImaSyntaxError e) {
+            assertEquals(2, e.getLine());
+            assertEquals("LIGNE  2 -- erreur syntaxique", e.getMessage());
+        }
+    }
+}
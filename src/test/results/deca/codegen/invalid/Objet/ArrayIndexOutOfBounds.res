@@ -0,0 +1 @@
+ERROR: Index out of bounds
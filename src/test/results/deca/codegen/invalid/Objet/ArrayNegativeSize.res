@@ -0,0 +1 @@
+ERROR: Negative array size
@@ -1 +1 @@
-LIGNE  107 -- erreur syntaxique
+LIGNE  119 -- erreur syntaxique
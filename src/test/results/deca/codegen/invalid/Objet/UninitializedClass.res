@@ -1,2 +1,2 @@
-  ** IMA ** ERREUR ** Ligne 24 : 
+  ** IMA ** ERREUR ** Ligne 26 : 
     Adressage indirect : la base ne contient pas une adresse
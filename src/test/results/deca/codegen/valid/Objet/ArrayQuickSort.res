@@ -0,0 +1,3 @@
+sorted 300
+16 144 272
+32656 32688 32752
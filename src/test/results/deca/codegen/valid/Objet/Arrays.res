@@ -0,0 +1,6 @@
+9 81 10 0
+0.00000e+00 2.00000e+00 3.00000e+00
+7 7
+null elements
+12 0 2
+42
@@ -0,0 +1,4 @@
+3 3
+yes
+call
+10 3
@@ -0,0 +1 @@
+0 0.00000e+00 false true
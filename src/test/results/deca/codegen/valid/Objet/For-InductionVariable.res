@@ -0,0 +1,3 @@
+17663 998
+19100
+0
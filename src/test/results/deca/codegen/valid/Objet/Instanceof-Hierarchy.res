@@ -0,0 +1 @@
+111010101001
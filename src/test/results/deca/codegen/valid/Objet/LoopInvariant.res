@@ -0,0 +1,3 @@
+425 30
+18 8
+0
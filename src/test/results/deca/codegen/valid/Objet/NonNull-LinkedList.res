@@ -0,0 +1,2 @@
+10 20 30 40 11 21 31 41 
+8
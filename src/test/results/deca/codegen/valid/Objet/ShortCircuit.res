@@ -0,0 +1 @@
+a b ok1 a ok2 a b a ok3 false true a b ok4
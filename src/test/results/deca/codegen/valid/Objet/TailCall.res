@@ -0,0 +1,6 @@
+6 1
+500500
+1000
+7 12
+0 1 4
+1 0
@@ -0,0 +1,4 @@
+-4 -1 1 -3 2147483647 -2147483648
+1.98413e-04 5.00000e-01 -0.00000e+00 8.00000e+00
+24 6 5.00000e+00
+a
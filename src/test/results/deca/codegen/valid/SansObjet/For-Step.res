@@ -0,0 +1,4 @@
+55 11
+10 -1
+1 2 4 8 16 32 64 
+13 2147483647
@@ -0,0 +1,2 @@
+-2147483648
+3.50000e+00
@@ -0,0 +1,4 @@
+4.37500e+00 4.37500e+00
+1.44531e+00
+6.37500e+00 3.00000e+00
+1.31250e+01